@@ -0,0 +1,43 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Marker service registered for every enabled feature.
+ *
+ * <p>
+ * This is a stand-in for the {@code org.osgi.service.condition.Condition}
+ * service which is not available in OSGi R7 runtimes. The {@link FeatureManager}
+ * registers a {@link FeatureCondition} service with the
+ * {@link #CONDITION_ID} service property set to {@code osgi.feature.X} for
+ * every effectively enabled feature {@code X} and unregisters it as soon as
+ * the feature or any of its prerequisites gets disabled. Components can
+ * therefore be activated and deactivated by Declarative Services depending on
+ * the enablement of a feature by referencing the corresponding condition. For
+ * example:
+ * </p>
+ *
+ * <pre>
+ * &#64;Reference(target = "(osgi.condition.id=osgi.feature.myfeature)")
+ * private FeatureCondition myFeature;
+ * </pre>
+ *
+ * @see FeatureManager
+ *
+ * @since 1.1
+ */
+@ProviderType
+public interface FeatureCondition {
+
+    /**
+     * Service property identifying the condition. The value of this property
+     * for a feature {@code X} is {@code osgi.feature.X}.
+     */
+    String CONDITION_ID = "osgi.condition.id";
+
+    /**
+     * Service property specifying the identifier of the enabled feature
+     */
+    String FEATURE_ID   = "osgi.feature.id";
+
+}
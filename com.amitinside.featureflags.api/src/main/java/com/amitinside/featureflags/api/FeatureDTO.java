@@ -31,27 +31,50 @@ public class FeatureDTO extends DTO {
     /**
      * The identifier of the feature
      */
-    public String  id;
+    public String   id;
 
     /**
      * The bundle identifier containing the feature
      */
-    public long    bundleId;
+    public long     bundleId;
 
     /**
-     * The name of the feature
+     * The (localized) name of the feature
      */
-    public String  name;
+    public String   name;
 
     /**
-     * The description of the feature
+     * The (localized) description of the feature
      */
-    public String  description;
+    public String   description;
 
     /**
      * The enablement flag of the feature that denotes whether the feature is
-     * enabled or not
+     * enabled or not (whether a typed variant has a value)
      */
-    public boolean isEnabled;
+    public boolean  isEnabled;
+
+    /**
+     * The effective enablement flag of the feature that denotes whether the
+     * feature and all its prerequisites are effectively enabled
+     *
+     * @since 1.1
+     */
+    public boolean  isEffectivelyEnabled;
+
+    /**
+     * The IDs of the prerequisite features
+     *
+     * @since 1.1
+     */
+    public String[] prerequisites;
+
+    /**
+     * The value of a typed variant ({@code Integer}, {@code Long},
+     * {@code Double} or {@code String}) or {@code null} for boolean features
+     *
+     * @since 1.1
+     */
+    public Object   value;
 
 }
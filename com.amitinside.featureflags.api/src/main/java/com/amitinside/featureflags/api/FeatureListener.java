@@ -0,0 +1,33 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Whiteboard service notified whenever the features or their states change.
+ *
+ * <p>
+ * The {@link FeatureManager} notifies all registered listeners whenever a new
+ * generation of the feature states has been published, for example as
+ * features have been updated, configured, added by a scanned bundle or
+ * removed. The notifications are delivered asynchronously and in order. Rapid
+ * changes are coalesced, so that a listener is not necessarily notified of
+ * every generation but always of the latest one.
+ * </p>
+ *
+ * @see FeatureManager#snapshot()
+ *
+ * @ThreadSafe
+ * @since 1.1
+ */
+@ConsumerType
+public interface FeatureListener {
+
+    /**
+     * Notifies that the features or their states have changed
+     *
+     * @param snapshot The snapshot of the feature states at the generation
+     *            which has been published
+     */
+    void featuresChanged(FeatureSnapshot snapshot);
+
+}
@@ -1,8 +1,10 @@
 package com.amitinside.featureflags.api;
 
+import java.time.Instant;
 import java.util.stream.Stream;
 
 import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.util.promise.Promise;
 
 /**
  * The {@link FeatureManager} service is the application access point to the
@@ -33,7 +35,44 @@ public interface FeatureManager {
      * the feature id in OSGi Metatype XML Configuration to identify unique features
      * in an OSGi configuration.
      */
-    String METATYPE_FEATURE_ID_PREFIX = "osgi.feature.";
+    String METATYPE_FEATURE_ID_PREFIX      = "osgi.feature.";
+
+    /**
+     * The prefix of the prerequisite identifier pattern. An attribute definition
+     * in OSGi Metatype XML Configuration or a configuration property with the
+     * identifier {@code osgi.prerequisite.X} specifies the IDs of the features
+     * which must be effectively enabled for the feature {@code X} to be
+     * effectively enabled. The configuration property takes precedence over
+     * the default value of the attribute definition.
+     *
+     * @since 1.1
+     */
+    String METATYPE_PREREQUISITE_ID_PREFIX = "osgi.prerequisite.";
+
+    /**
+     * The prefix of the schedule identifier pattern. A configuration property
+     * with the identifier {@code osgi.schedule.X} persists the scheduled
+     * updates of the feature {@code X} in the configuration declaring the
+     * feature. Every scheduled update is specified as
+     * {@code <enablement>@<ISO-8601 instant>}, for example
+     * {@code true@2018-01-01T00:00:00Z}.
+     *
+     * @since 1.1
+     */
+    String SCHEDULE_ID_PREFIX              = "osgi.schedule.";
+
+    /**
+     * The prefix of the kill switch identifier pattern. A configuration
+     * property with the identifier {@code osgi.killswitch.X} specifies the
+     * policy disabling the feature {@code X} automatically when the failures
+     * reported to the {@link FeatureMonitor} exceed it. The policy is
+     * specified as {@code <maximum error rate in percent>%/<ISO-8601 window>},
+     * for example {@code 5%/PT30S} to disable the feature if more than 5% of
+     * its executions within the last 30 seconds failed.
+     *
+     * @since 1.1
+     */
+    String KILL_SWITCH_ID_PREFIX           = "osgi.killswitch.";
 
     /**
      * Capability name for feature
@@ -48,7 +87,25 @@ public interface FeatureManager {
      *  filter:="(&amp;(osgi.extender=osgi.feature)(version&gt;=1.0)(!(version&gt;=2.0)))"
      * </pre>
      */
-    String FEATURE_CAPABILITY_NAME    = "osgi.feature";
+    String FEATURE_CAPABILITY_NAME         = "osgi.feature";
+
+    /**
+     * The factory PID of the configurations persisting the per-tenant
+     * overrides of the features. Every such configuration specifies the
+     * {@link #TENANT_ID_PROPERTY tenant} and the overridden enablement flags
+     * as {@code osgi.feature.X} properties.
+     *
+     * @since 1.1
+     */
+    String TENANT_FACTORY_PID              = "osgi.feature.tenant";
+
+    /**
+     * The configuration property specifying the tenant ID of a per-tenant
+     * override configuration
+     *
+     * @since 1.1
+     */
+    String TENANT_ID_PROPERTY              = "tenant.id";
 
     /**
      * Retrieve all (known) {@link FeatureDTO} instances registered in the runtime
@@ -75,10 +132,65 @@ public interface FeatureManager {
      */
     Stream<FeatureDTO> getFeatures(String featureID);
 
+    /**
+     * Retrieve all (known) {@link FeatureDTO} instances registered in the runtime
+     * whose names and descriptions are localized to the specified locale
+     * <p>
+     * The names and descriptions are loaded lazily from the metatype
+     * localization of the bundles specifying the features. The default
+     * localization is used if no localization exists for the specified locale.
+     * </p>
+     *
+     * @param locale The locale as specified in
+     *            {@code MetaTypeInformation#getObjectClassDefinition(String, String)}
+     *            or {@code null} for the default locale
+     * @return The known {@link FeatureDTO} instances
+     *
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getLocalizedFeatures(String locale);
+
+    /**
+     * Returns all (known) {@link FeatureDTO} instances registered with the
+     * specified feature ID whose names and descriptions are localized to the
+     * specified locale
+     *
+     * @param featureID The feature ID
+     * @param locale The locale as specified in
+     *            {@code MetaTypeInformation#getObjectClassDefinition(String, String)}
+     *            or {@code null} for the default locale
+     * @return The known {@link FeatureDTO} instances
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     *
+     * @since 1.1
+     */
+    Stream<FeatureDTO> getLocalizedFeatures(String featureID, String locale);
+
+    /**
+     * Returns an immutable snapshot of the states of all (known) features
+     * <p>
+     * Acquiring a snapshot is cheap as it does not copy any state. All checks
+     * performed against the returned snapshot resolve against the same
+     * generation of the features, regardless of concurrent updates.
+     * </p>
+     *
+     * @return The snapshot of the current generation
+     *
+     * @since 1.1
+     */
+    FeatureSnapshot snapshot();
+
     /**
      * Updates the specified feature. If there exists multiple features with the
      * same identifier, all feature instances will therefore be updated to the
      * specified enablement flag.
+     * <p>
+     * The update is reflected by {@link #getFeatures(String)} as soon as this
+     * method returns, even before the configuration change has been delivered.
+     * If the configuration cannot be persisted, the previous enablement flag is
+     * restored. Typed variants are not affected by this method.
+     * </p>
      *
      * @param featureID The feature ID
      * @param isEnabled the value for the enablement of the feature
@@ -86,4 +198,90 @@ public interface FeatureManager {
      * @throws IllegalArgumentException if {@code featureID} is empty
      */
     void updateFeature(String featureID, boolean isEnabled);
+
+    /**
+     * Updates the specified feature asynchronously. If there exists multiple
+     * features with the same identifier, all feature instances will therefore be
+     * updated to the specified enablement flag.
+     * <p>
+     * The update is reflected by {@link #getFeatures(String)} as soon as this
+     * method returns. Depending on the configuration of the implementation,
+     * rapid updates of the same feature can be coalesced into a single
+     * configuration update which persists the last specified enablement flag.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @return The promise that is resolved as soon as the configuration update
+     *         covering this update has been persisted or failed if it could not
+     *         be persisted
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     *
+     * @since 1.1
+     */
+    Promise<Void> updateFeatureAsync(String featureID, boolean isEnabled);
+
+    /**
+     * Schedules an update of the specified feature at the specified time. If
+     * there exists multiple features with the same identifier, all feature
+     * instances will therefore be updated to the specified enablement flag.
+     * <p>
+     * The scheduled update is persisted in the configurations declaring the
+     * feature and is applied like {@link #updateFeatureAsync(String, boolean)}
+     * once the time has come. An update whose time has already passed is
+     * applied immediately. Applied updates are removed from the
+     * configurations.
+     * </p>
+     *
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @param time The time to update the feature at
+     * @throws NullPointerException if {@code featureID} or {@code time} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty or the
+     *             feature is not known
+     * @throws IllegalStateException if the scheduled update cannot be
+     *             persisted
+     *
+     * @since 1.1
+     */
+    void scheduleFeature(String featureID, boolean isEnabled, Instant time);
+
+    /**
+     * Cancels all scheduled updates of the specified feature
+     *
+     * @param featureID The feature ID
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code featureID} is empty
+     * @throws IllegalStateException if the cancellation cannot be persisted
+     *
+     * @since 1.1
+     */
+    void cancelSchedules(String featureID);
+
+    /**
+     * Overrides the enablement of the specified feature for the specified
+     * tenant. The override takes precedence over the effective enablement of
+     * the feature whenever the feature is checked for this tenant with
+     * {@link FeatureSnapshot#isEnabled(String, String)}.
+     * <p>
+     * The overrides of a tenant are persisted in a factory configuration of
+     * {@link #TENANT_FACTORY_PID}. They are reflected by {@link #snapshot()} as
+     * soon as this method returns.
+     * </p>
+     *
+     * @param tenantID The tenant ID
+     * @param featureID The feature ID
+     * @param isEnabled the value for the enablement of the feature for the
+     *            tenant or {@code null} to remove the override
+     * @throws NullPointerException if {@code tenantID} or {@code featureID} is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code tenantID} or
+     *             {@code featureID} is empty
+     * @throws IllegalStateException if the override cannot be persisted
+     *
+     * @since 1.1
+     */
+    void overrideFeature(String tenantID, String featureID, Boolean isEnabled);
 }
\ No newline at end of file
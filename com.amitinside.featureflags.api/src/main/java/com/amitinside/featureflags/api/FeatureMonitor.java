@@ -0,0 +1,68 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * The {@link FeatureMonitor} service collects the outcomes of the code paths
+ * guarded by features.
+ *
+ * <p>
+ * Applications report every success and failure of a feature. The outcomes are
+ * counted in a sliding window and evaluated against the kill switch policy of
+ * the feature, which is configured by a {@code osgi.killswitch.X} property in
+ * the configuration declaring the feature {@code X}. As soon as the error rate
+ * exceeds the policy, the feature is disabled through
+ * {@link FeatureManager#updateFeature(String, boolean)} and an event is posted
+ * to the {@link #KILL_SWITCH_TOPIC} topic. Reporting the outcomes of features
+ * without a policy or of disabled features is a no-op.
+ * </p>
+ *
+ * <p>
+ * Reporting does not block and is intended to be invoked on hot paths.
+ * </p>
+ *
+ * @noimplement This interface is not intended to be implemented by consumers.
+ * @noextend This interface is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#KILL_SWITCH_ID_PREFIX
+ *
+ * @ThreadSafe
+ * @since 1.1
+ */
+@ProviderType
+public interface FeatureMonitor {
+
+    /**
+     * The topic of the event posted whenever a feature has been disabled by
+     * its kill switch policy
+     */
+    String KILL_SWITCH_TOPIC = "com/amitinside/featureflags/KILL_SWITCH";
+
+    /**
+     * Event property specifying the identifier of the disabled feature
+     */
+    String FEATURE_ID        = "feature.id";
+
+    /**
+     * Event property specifying the error rate (in percent) which tripped the
+     * kill switch
+     */
+    String ERROR_RATE        = "error.rate";
+
+    /**
+     * Reports a successful execution of the specified feature
+     *
+     * @param featureID The feature ID
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    void reportSuccess(String featureID);
+
+    /**
+     * Reports a failed execution of the specified feature
+     *
+     * @param featureID The feature ID
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    void reportFailure(String featureID);
+
+}
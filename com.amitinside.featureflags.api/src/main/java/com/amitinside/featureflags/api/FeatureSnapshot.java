@@ -0,0 +1,135 @@
+package com.amitinside.featureflags.api;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Immutable view of the states of all (known) features at a fixed generation
+ * of the {@link FeatureManager}.
+ *
+ * <p>
+ * A snapshot is intended to be acquired once per unit of work (for example a
+ * request) and to be consulted for every feature check of this unit. All
+ * checks are therefore consistent with each other even if features are updated
+ * concurrently. Updates performed after the snapshot has been acquired are
+ * only visible to the snapshots acquired later on.
+ * </p>
+ *
+ * <p>
+ * Besides boolean features, a snapshot provides the values of typed variants
+ * which are declared by {@code osgi.feature.X} attribute definitions of type
+ * {@code INTEGER}, {@code LONG}, {@code DOUBLE} or {@code STRING}. A
+ * {@code STRING} variant with option values is an enum-like variant whose
+ * value is restricted to its option values. The values are read without
+ * boxing.
+ * </p>
+ *
+ * @noimplement This interface is not intended to be implemented by consumers.
+ * @noextend This interface is not intended to be extended by consumers.
+ *
+ * @see FeatureManager#snapshot()
+ *
+ * @ThreadSafe
+ * @since 1.1
+ */
+@ProviderType
+public interface FeatureSnapshot {
+
+    /**
+     * Returns the generation of the {@link FeatureManager} this snapshot has
+     * been taken at. The generation increases whenever features are added,
+     * updated or removed.
+     *
+     * @return the generation
+     */
+    long getGeneration();
+
+    /**
+     * Checks whether the specified feature is effectively enabled, that is
+     * enabled with all its prerequisites being effectively enabled. If there
+     * exists multiple features with the same identifier, the feature is
+     * considered enabled if any of them is enabled.
+     *
+     * @param featureID The feature ID
+     * @return {@code true} if the feature is known and effectively enabled,
+     *         otherwise {@code false}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    boolean isEnabled(String featureID);
+
+    /**
+     * Checks whether the specified feature is enabled for the specified
+     * tenant. An override of the tenant takes precedence over the effective
+     * enablement of the feature. Tenants without any override are resolved
+     * without any further lookup.
+     *
+     * @param featureID The feature ID
+     * @param tenantID The tenant ID or {@code null} to ignore overrides
+     * @return {@code true} if the feature is known and enabled for the tenant,
+     *         otherwise {@code false}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     *
+     * @see FeatureManager#overrideFeature(String, String, Boolean)
+     */
+    boolean isEnabled(String featureID, String tenantID);
+
+    /**
+     * Returns the value of the specified {@code INTEGER} variant
+     *
+     * @param featureID The feature ID
+     * @param defaultValue The value to return if the feature is not known, is
+     *            not an {@code INTEGER} variant or has no value
+     * @return the value of the variant or {@code defaultValue}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    int getInt(String featureID, int defaultValue);
+
+    /**
+     * Returns the value of the specified {@code LONG} variant
+     *
+     * @param featureID The feature ID
+     * @param defaultValue The value to return if the feature is not known, is
+     *            not a {@code LONG} variant or has no value
+     * @return the value of the variant or {@code defaultValue}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    long getLong(String featureID, long defaultValue);
+
+    /**
+     * Returns the value of the specified {@code DOUBLE} variant
+     *
+     * @param featureID The feature ID
+     * @param defaultValue The value to return if the feature is not known, is
+     *            not a {@code DOUBLE} variant or has no value
+     * @return the value of the variant or {@code defaultValue}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    double getDouble(String featureID, double defaultValue);
+
+    /**
+     * Returns the value of the specified {@code STRING} variant
+     *
+     * @param featureID The feature ID
+     * @param defaultValue The value to return if the feature is not known, is
+     *            not a {@code STRING} variant or has no value
+     * @return the value of the variant or {@code defaultValue}
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    String getString(String featureID, String defaultValue);
+
+    /**
+     * Returns the value of the specified {@code STRING} variant as a constant
+     * of the enum type of the specified default value. The option values of
+     * the attribute definition declaring the variant are expected to be the
+     * names of the enum constants.
+     *
+     * @param featureID The feature ID
+     * @param defaultValue The value to return if the feature is not known, is
+     *            not a {@code STRING} variant, has no value or its value is not
+     *            the name of a constant of the enum type
+     * @return the value of the variant or {@code defaultValue}
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    <E extends Enum<E>> E getEnum(String featureID, E defaultValue);
+
+}
@@ -0,0 +1,39 @@
+package com.amitinside.featureflags.api.exposure;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the exposure of a subject to the value of a
+ * feature.
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see ExposureSink
+ *
+ * @NotThreadSafe
+ */
+public class ExposureDTO extends DTO {
+
+    /**
+     * The identifier of the evaluated feature
+     */
+    public String featureID;
+
+    /**
+     * The identifier of the subject (for example a user or a tenant) the
+     * feature has been evaluated for
+     */
+    public String subjectID;
+
+    /**
+     * The value the subject has been exposed to ({@link Boolean} for the
+     * enablement of a feature)
+     */
+    public Object value;
+
+    /**
+     * The time of the exposure in milliseconds since the epoch
+     */
+    public long   time;
+
+}
@@ -0,0 +1,55 @@
+package com.amitinside.featureflags.api.exposure;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for the metrics of the recorded exposures.
+ *
+ * <p>
+ * All counters are cumulative since the activation of the recorder.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see ExposureRecorder#getMetrics()
+ *
+ * @NotThreadSafe
+ */
+public class ExposureMetricsDTO extends DTO {
+
+    /**
+     * The number of exposures waiting to be delivered to the sinks
+     */
+    public long queueDepth;
+
+    /**
+     * The maximum number of exposures waiting to be delivered
+     */
+    public long queueCapacity;
+
+    /**
+     * The number of exposures which have been recorded
+     */
+    public long recorded;
+
+    /**
+     * The number of exposures which have been dropped as duplicates
+     */
+    public long duplicates;
+
+    /**
+     * The number of exposures which have been dropped as the queue was full
+     */
+    public long dropped;
+
+    /**
+     * The number of exposures which have been delivered to the sinks
+     */
+    public long delivered;
+
+    /**
+     * The number of batches a sink failed to consume
+     */
+    public long sinkFailures;
+
+}
@@ -0,0 +1,51 @@
+package com.amitinside.featureflags.api.exposure;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+/**
+ * The {@link ExposureRecorder} service records which subjects have been
+ * exposed to which feature values.
+ *
+ * <p>
+ * If exposure recording is enabled, every evaluation of a feature for a
+ * subject through {@link FeatureSnapshot#isEnabled(String, String)} is
+ * recorded implicitly. The values of typed variants are recorded explicitly
+ * through {@link #record(String, String, Object)}. Repeated exposures of a
+ * subject to the same value are dropped. The exposures are queued without
+ * blocking and delivered to the registered {@link ExposureSink}s in batches
+ * in the background. Exposures are dropped rather than slowing down the
+ * evaluations if the queue is full.
+ * </p>
+ *
+ * @noimplement This interface is not intended to be implemented by consumers.
+ * @noextend This interface is not intended to be extended by consumers.
+ *
+ * @ThreadSafe
+ * @since 1.0
+ */
+@ProviderType
+public interface ExposureRecorder {
+
+    /**
+     * Records the exposure of the specified subject to the specified value of
+     * the specified feature. This is a no-op if exposure recording is
+     * disabled.
+     *
+     * @param featureID The feature ID
+     * @param subjectID The subject ID
+     * @param value The value the subject has been exposed to
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    void record(String featureID, String subjectID, Object value);
+
+    /**
+     * Returns the current metrics of the recorded exposures
+     *
+     * @return the metrics (never {@code null})
+     */
+    ExposureMetricsDTO getMetrics();
+
+}
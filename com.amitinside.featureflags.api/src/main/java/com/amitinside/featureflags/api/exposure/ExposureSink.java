@@ -0,0 +1,33 @@
+package com.amitinside.featureflags.api.exposure;
+
+import java.util.List;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Whiteboard service consuming the recorded exposures.
+ *
+ * <p>
+ * The exposures are delivered in batches by a single background thread, so
+ * that sinks can write them efficiently to a file, a database or a message
+ * broker. A failing batch is not delivered again.
+ * </p>
+ *
+ * @see ExposureRecorder
+ *
+ * @NotThreadSafe
+ * @since 1.0
+ */
+@ConsumerType
+public interface ExposureSink {
+
+    /**
+     * Consumes a batch of exposures
+     *
+     * @param exposures The exposures in the order they have been recorded
+     *            (never empty)
+     * @throws Exception if the batch cannot be consumed
+     */
+    void consume(List<ExposureDTO> exposures) throws Exception;
+
+}
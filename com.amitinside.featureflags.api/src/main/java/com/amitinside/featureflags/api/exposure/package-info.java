@@ -0,0 +1,20 @@
+/**
+ * Provides the API to record which subjects have been exposed to which
+ * feature values, for example to analyze experiments
+ *
+ * <p>
+ * Bundles wishing to use this package must list the package in the
+ * Import-Package header of the bundle's manifest. Sinks implement the
+ * {@link com.amitinside.featureflags.api.exposure.ExposureSink} interface and
+ * register it as service.
+ *
+ * <p>
+ * Example import for consumers using the API in this package:
+ * <p>
+ * {@code  Import-Package: com.amitinside.featureflags.api.exposure;version="[1.0,2.0)"}
+ *
+ * @since 1.0
+ */
+@org.osgi.annotation.bundle.Export
+@org.osgi.annotation.versioning.Version("1.0")
+package com.amitinside.featureflags.api.exposure;
@@ -14,10 +14,10 @@
  * <p>
  * Example import for providers implementing the API in this package:
  * <p>
- * {@code  Import-Package: com.amitinside.featureflags.api;version="[1.0,1.1)"}
+ * {@code  Import-Package: com.amitinside.featureflags.api;version="[1.1,1.2)"}
  *
  * @since 1.0
  */
 @org.osgi.annotation.bundle.Export
-@org.osgi.annotation.versioning.Version("1.0")
+@org.osgi.annotation.versioning.Version("1.1")
 package com.amitinside.featureflags.api;
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.amitinside.featureflags.api.replication;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Data Transfer Object for an update of a feature replicated across the nodes
+ * of a cluster.
+ *
+ * <p>
+ * Every update is versioned by the Lamport clock of the node performing it.
+ * An update supersedes another update of the same feature if its version is
+ * greater or, in case of equal versions, if its node identifier is greater.
+ * </p>
+ *
+ * @noextend This class is not intended to be extended by consumers.
+ *
+ * @see ReplicationTransport
+ *
+ * @NotThreadSafe
+ */
+public class FeatureDeltaDTO extends DTO {
+
+    /**
+     * The identifier of the updated feature
+     */
+    public String  featureID;
+
+    /**
+     * The updated state of the feature
+     */
+    public boolean isEnabled;
+
+    /**
+     * The Lamport timestamp of the update
+     */
+    public long    version;
+
+    /**
+     * The identifier of the node which performed the update
+     */
+    public String  nodeID;
+
+}
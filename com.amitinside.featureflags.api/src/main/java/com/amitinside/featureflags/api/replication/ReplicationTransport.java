@@ -0,0 +1,59 @@
+package com.amitinside.featureflags.api.replication;
+
+import java.util.function.Consumer;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * The {@link ReplicationTransport} service delivers the updates of the
+ * features between the nodes of a cluster.
+ *
+ * <p>
+ * The feature manager of every node connects to the transport with its node
+ * identifier and broadcasts its local updates. The transport delivers every
+ * broadcast update to the receivers of all other connected nodes. Deltas
+ * might be delivered more than once and in any order since the feature
+ * managers resolve concurrent updates by their versions (last writer wins).
+ * </p>
+ *
+ * <p>
+ * The delivery is best effort: {@link #broadcast(FeatureDeltaDTO)} must
+ * neither block for long nor throw exceptions on failing deliveries, since it
+ * is invoked on the path of the local updates.
+ * </p>
+ *
+ * @ThreadSafe
+ * @since 1.0
+ */
+@ConsumerType
+public interface ReplicationTransport {
+
+    /**
+     * Connects the specified node to the transport. Connecting a node again
+     * replaces its receiver.
+     *
+     * @param nodeID The node ID
+     * @param receiver Receives the deltas broadcast by the other nodes
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    void connect(String nodeID, Consumer<FeatureDeltaDTO> receiver);
+
+    /**
+     * Disconnects the specified node from the transport
+     *
+     * @param nodeID The node ID
+     * @throws NullPointerException if {@code nodeID} is {@code null}
+     */
+    void disconnect(String nodeID);
+
+    /**
+     * Delivers the specified delta to all connected nodes except the node
+     * which performed the update
+     *
+     * @param delta The delta to broadcast
+     * @throws NullPointerException if {@code delta} is {@code null}
+     */
+    void broadcast(FeatureDeltaDTO delta);
+
+}
@@ -0,0 +1,20 @@
+/**
+ * Provides the SPI to replicate the updates of the features across the nodes
+ * of a cluster
+ *
+ * <p>
+ * Bundles wishing to use this package must list the package in the
+ * Import-Package header of the bundle's manifest. Transports implement the
+ * {@link com.amitinside.featureflags.api.replication.ReplicationTransport}
+ * interface and register it as service.
+ *
+ * <p>
+ * Example import for transports implementing the SPI in this package:
+ * <p>
+ * {@code  Import-Package: com.amitinside.featureflags.api.replication;version="[1.0,2.0)"}
+ *
+ * @since 1.0
+ */
+@org.osgi.annotation.bundle.Export
+@org.osgi.annotation.versioning.Version("1.0")
+package com.amitinside.featureflags.api.replication;
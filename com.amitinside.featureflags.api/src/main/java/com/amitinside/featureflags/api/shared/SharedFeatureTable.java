@@ -0,0 +1,194 @@
+package com.amitinside.featureflags.api.shared;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Layout of the feature table shared through a memory-mapped file.
+ *
+ * <p>
+ * The file consists of a header of {@value #HEADER_SIZE} bytes followed by a
+ * fixed number of slots of {@value #SLOT_SIZE} bytes each. All numbers are
+ * stored in big-endian byte order.
+ * </p>
+ *
+ * <pre>
+ * Header
+ *  0  int   magic number ({@value #MAGIC})
+ *  4  int   layout version ({@value #LAYOUT_VERSION})
+ *  8  long  sequence (odd while the table is being written, {@value #STALE_SEQUENCE} once replaced)
+ * 16  long  generation of the feature states
+ * 24  int   capacity (number of slots)
+ * 28  int   count (number of used slots)
+ *
+ * Slot
+ *  0  byte  state (1 if enabled, otherwise 0)
+ *  1  byte  length of the feature ID in bytes (unsigned)
+ *  2  byte[] UTF-8 encoded feature ID
+ * </pre>
+ *
+ * <p>
+ * The used slots are sorted by the unsigned bytes of their feature IDs, so
+ * that a feature is looked up by binary search. The table is written under a
+ * sequence lock: the writer increments the sequence to an odd value before
+ * and to an even value after every write. A reader retries whenever the
+ * sequence has been odd or has changed while reading, which lets readers in
+ * other processes read consistent states without any lock.
+ * </p>
+ *
+ * <p>
+ * The mapped memory is accessed with plain reads and writes, hence the
+ * sequence lock relies on explicit fences. The writer issues a
+ * {@link #storeFence() store fence} after making the sequence odd and another
+ * one before making it even again, so that no write of the table becomes
+ * visible outside of the odd sequence. The reader issues a
+ * {@link #loadFence() load fence} after reading the sequence and another one
+ * before reading it again, so that no read of the table is performed outside
+ * of the two reads of the sequence. Together they guarantee that a reader
+ * which observed the same even sequence twice has read a table which has not
+ * been written in between.
+ * </p>
+ *
+ * <p>
+ * A table is never resized in place. If the table has to be recreated with
+ * another capacity, the writer sets the sequence of the existing file to
+ * {@link #STALE_SEQUENCE} before replacing the file by a new one. The stale
+ * sequence is odd, so that no read of the old table succeeds anymore, and
+ * tells the readers still mapping the old file to map the new one instead.
+ * </p>
+ *
+ * @since 1.0
+ */
+public final class SharedFeatureTable {
+
+    /** Magic number identifying a feature table ({@code FFLG}) */
+    public static final int           MAGIC                 = 0x46464C47;
+
+    /** Version of the layout */
+    public static final int           LAYOUT_VERSION        = 1;
+
+    /** Offset of the magic number */
+    public static final int           MAGIC_OFFSET          = 0;
+
+    /** Offset of the layout version */
+    public static final int           LAYOUT_VERSION_OFFSET = 4;
+
+    /** Offset of the sequence */
+    public static final int           SEQUENCE_OFFSET       = 8;
+
+    /** Sequence of a table whose file has been replaced by a new one */
+    public static final long          STALE_SEQUENCE        = -1L;
+
+    /** Offset of the generation */
+    public static final int           GENERATION_OFFSET     = 16;
+
+    /** Offset of the capacity */
+    public static final int           CAPACITY_OFFSET       = 24;
+
+    /** Offset of the count */
+    public static final int           COUNT_OFFSET          = 28;
+
+    /** Size of the header in bytes */
+    public static final int           HEADER_SIZE           = 32;
+
+    /** Size of a slot in bytes */
+    public static final int           SLOT_SIZE             = 128;
+
+    /** Offset of the state within a slot */
+    public static final int           STATE_OFFSET          = 0;
+
+    /** Offset of the length of the feature ID within a slot */
+    public static final int           ID_LENGTH_OFFSET      = 1;
+
+    /** Offset of the feature ID within a slot */
+    public static final int           ID_OFFSET             = 2;
+
+    /** Maximum length of a feature ID in bytes */
+    public static final int           MAX_ID_LENGTH         = SLOT_SIZE - ID_OFFSET;
+
+    /** Issues a store fence */
+    private static final MethodHandle STORE_FENCE           = fence("releaseFence", "storeFence");
+
+    /** Issues a load fence */
+    private static final MethodHandle LOAD_FENCE            = fence("acquireFence", "loadFence");
+
+    /** Constructor */
+    private SharedFeatureTable() {
+        throw new IllegalAccessError("Non-Instantiable");
+    }
+
+    /**
+     * Returns the size in bytes of a table with the specified capacity
+     *
+     * @param capacity the number of slots
+     * @return the size of the file
+     */
+    public static long sizeOf(final int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the offset of the specified slot
+     *
+     * @param slot the index of the slot
+     * @return the offset of the slot
+     */
+    public static int offsetOf(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Ensures that the reads and writes preceding the fence are not reordered
+     * with the writes following it
+     */
+    public static void storeFence() {
+        try {
+            STORE_FENCE.invokeExact();
+        } catch (final Throwable e) {
+            // never occurs as a fence does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Ensures that the reads preceding the fence are not reordered with the
+     * reads and writes following it
+     */
+    public static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (final Throwable e) {
+            // never occurs as a fence does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the fence of {@code java.lang.invoke.VarHandle} available as of
+     * Java 9 or otherwise the corresponding fence of {@code sun.misc.Unsafe}
+     * available in Java 8
+     */
+    private static MethodHandle fence(final String varHandleFence, final String unsafeFence) {
+        final Lookup     lookup = MethodHandles.lookup();
+        final MethodType type   = MethodType.methodType(void.class);
+        try {
+            return lookup.findStatic(Class.forName("java.lang.invoke.VarHandle"), varHandleFence, type);
+        } catch (final ReflectiveOperationException e) {
+            // Java 8
+        }
+        try {
+            // the bootstrap class loader is asked directly as bundles do not import sun.misc
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe", false, null);
+            final Field    field       = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return lookup.findVirtual(unsafeClass, unsafeFence, type)
+                    .bindTo(field.get(null));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Memory fences are not supported by the runtime", e);
+        }
+    }
+
+}
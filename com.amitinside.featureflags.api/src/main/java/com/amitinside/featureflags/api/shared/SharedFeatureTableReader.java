@@ -0,0 +1,256 @@
+package com.amitinside.featureflags.api.shared;
+
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.CAPACITY_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.COUNT_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.GENERATION_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.HEADER_SIZE;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.ID_LENGTH_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.ID_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.LAYOUT_VERSION;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.LAYOUT_VERSION_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAGIC;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAGIC_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAX_ID_LENGTH;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.SEQUENCE_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.SLOT_SIZE;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.STALE_SEQUENCE;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.STATE_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.loadFence;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Reads the states of the features from a {@link SharedFeatureTable} which
+ * is written by the feature manager of another process.
+ *
+ * <p>
+ * The table is mapped into memory once and every lookup is performed directly
+ * on the mapped pages by binary search, without copying the table and without
+ * any lock. Lookups racing with a write of the table are retried until they
+ * observe a consistent table.
+ * </p>
+ *
+ * <p>
+ * The capacity of the table is fixed when it is mapped. If the table is
+ * recreated with another capacity, the replaced table is marked as stale and
+ * the reader maps the new file as soon as it observes the mark.
+ * </p>
+ *
+ * @ThreadSafe
+ * @since 1.0
+ */
+public final class SharedFeatureTableReader {
+
+    /** Number of attempts to spin before yielding to other threads */
+    private static final int SPIN_ATTEMPTS = 100;
+
+    /** Maximum number of attempts to observe a consistent table */
+    private static final int MAX_ATTEMPTS  = 100_000;
+
+    /** Result of a lookup of an unknown feature */
+    private static final int UNKNOWN       = -1;
+
+    /** The path of the file */
+    private final Path       path;
+
+    /** The mapped table, replaced once the file has been replaced */
+    private volatile Mapping mapping;
+
+    /** A mapped table together with its number of slots */
+    private static final class Mapping {
+        final ByteBuffer buffer;
+        final int        capacity;
+
+        Mapping(final ByteBuffer buffer, final int capacity) {
+            this.buffer   = buffer;
+            this.capacity = capacity;
+        }
+    }
+
+    private SharedFeatureTableReader(final Path path, final Mapping mapping) {
+        this.path    = path;
+        this.mapping = mapping;
+    }
+
+    /**
+     * Maps the feature table stored in the specified file
+     *
+     * @param path the path of the file
+     * @return the reader of the table
+     *
+     * @throws NullPointerException if {@code path} is {@code null}
+     * @throws IOException if the file cannot be mapped or is not a feature
+     *             table
+     */
+    public static SharedFeatureTableReader open(final Path path) throws IOException {
+        requireNonNull(path, "Path cannot be null");
+
+        return new SharedFeatureTableReader(path, map(path));
+    }
+
+    private static Mapping map(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            final long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a feature table: " + path);
+            }
+            // the mapping remains valid after closing the channel
+            final ByteBuffer buffer = channel.map(READ_ONLY, 0, size);
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(LAYOUT_VERSION_OFFSET) != LAYOUT_VERSION) {
+                throw new IOException("Not a feature table: " + path);
+            }
+            final int capacity = (int) Math.min(buffer.getInt(CAPACITY_OFFSET), (size - HEADER_SIZE) / SLOT_SIZE);
+            return new Mapping(buffer, Math.max(0, capacity));
+        }
+    }
+
+    /**
+     * Checks whether the specified feature is enabled
+     *
+     * @param featureID The feature ID
+     * @return {@code true} if the feature is known and enabled, otherwise
+     *         {@code false}
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalStateException if no consistent table could be observed
+     *             as the table is being written continuously
+     */
+    public boolean isEnabled(final String featureID) {
+        return lookup(featureID) == 1;
+    }
+
+    /**
+     * Checks whether the specified feature is known
+     *
+     * @param featureID The feature ID
+     * @return {@code true} if the feature is known, otherwise {@code false}
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalStateException if no consistent table could be observed
+     *             as the table is being written continuously
+     */
+    public boolean contains(final String featureID) {
+        return lookup(featureID) != UNKNOWN;
+    }
+
+    /**
+     * Returns the generation of the feature states in the table. The
+     * generation increases whenever the table is written.
+     *
+     * @return the generation
+     *
+     * @throws IllegalStateException if no consistent table could be observed
+     *             as the table is being written continuously
+     */
+    public long getGeneration() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            final Mapping    current  = mapping;
+            final ByteBuffer buffer   = current.buffer;
+            final long       sequence = buffer.getLong(SEQUENCE_OFFSET);
+            if (sequence == STALE_SEQUENCE) {
+                remap(current);
+            } else if ((sequence & 1) == 0) {
+                loadFence();
+                final long generation = buffer.getLong(GENERATION_OFFSET);
+                loadFence();
+                if (buffer.getLong(SEQUENCE_OFFSET) == sequence) {
+                    return generation;
+                }
+            }
+            backOff(attempt);
+        }
+        throw new IllegalStateException("Feature table is being written continuously");
+    }
+
+    private int lookup(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        final byte[] key = featureID.getBytes(UTF_8);
+        if (key.length > MAX_ID_LENGTH) {
+            return UNKNOWN;
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            final Mapping    current  = mapping;
+            final ByteBuffer buffer   = current.buffer;
+            final long       sequence = buffer.getLong(SEQUENCE_OFFSET);
+            if (sequence == STALE_SEQUENCE) {
+                remap(current);
+            } else if ((sequence & 1) == 0) {
+                loadFence();
+                final int state = search(current, key);
+                loadFence();
+                if (buffer.getLong(SEQUENCE_OFFSET) == sequence) {
+                    return state;
+                }
+            }
+            backOff(attempt);
+        }
+        throw new IllegalStateException("Feature table is being written continuously");
+    }
+
+    /**
+     * Searches the specified feature ID. The table might be torn if a write
+     * is in progress, therefore all offsets are kept within the bounds of the
+     * table and the result is discarded by the caller.
+     */
+    private static int search(final Mapping mapping, final byte[] key) {
+        final ByteBuffer buffer = mapping.buffer;
+        int              low    = 0;
+        int              high   = Math.min(Math.max(buffer.getInt(COUNT_OFFSET), 0), mapping.capacity) - 1;
+        while (low <= high) {
+            final int mid    = low + high >>> 1;
+            final int offset = HEADER_SIZE + mid * SLOT_SIZE;
+            final int result = compare(buffer, offset, key);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.get(offset + STATE_OFFSET) == 1 ? 1 : 0;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static int compare(final ByteBuffer buffer, final int offset, final byte[] key) {
+        final int length = Math.min(buffer.get(offset + ID_LENGTH_OFFSET) & 0xFF, MAX_ID_LENGTH);
+        final int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            final int result = (buffer.get(offset + ID_OFFSET + i) & 0xFF) - (key[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Maps the file which replaced the specified stale table unless another
+     * thread did so already. The new file might not have been written yet,
+     * in which case the caller retries.
+     */
+    private synchronized void remap(final Mapping stale) {
+        if (mapping != stale) {
+            return;
+        }
+        try {
+            mapping = map(path);
+        } catch (final IOException e) {
+            // the table is not yet recreated
+        }
+    }
+
+    private static void backOff(final int attempt) {
+        if (attempt >= SPIN_ATTEMPTS) {
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+/**
+ * Provides a reader of the feature table shared by the feature manager with
+ * co-located processes through a memory-mapped file
+ *
+ * <p>
+ * This package has no dependency on OSGi and can be used by any JVM on the
+ * same host as the feature manager.
+ *
+ * <p>
+ * Example import for consumers using the API in this package:
+ * <p>
+ * {@code  Import-Package: com.amitinside.featureflags.api.shared;version="[1.0,2.0)"}
+ *
+ * @since 1.0
+ */
+@org.osgi.annotation.bundle.Export
+@org.osgi.annotation.versioning.Version("1.0")
+package com.amitinside.featureflags.api.shared;
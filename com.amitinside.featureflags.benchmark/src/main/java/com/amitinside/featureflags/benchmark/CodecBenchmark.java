@@ -0,0 +1,81 @@
+package com.amitinside.featureflags.benchmark;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.featureflags.provider.FeatureCodec;
+import com.amitinside.featureflags.provider.FeatureCodec.Encoder;
+import com.amitinside.featureflags.provider.FeatureCodec.FeatureValue;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+
+/**
+ * Measures the export and the import of {@value #FEATURES} features through
+ * the {@link FeatureCodec} in both formats. Both must take well under a
+ * second. The features are spread over PIDs of 100 features each and a
+ * tenth of them are typed variants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    /** The number of features */
+    private static final int   FEATURES = 100_000;
+
+    @Param({ "BINARY", "JSON" })
+    public Format              format;
+
+    private List<FeatureValue> values;
+
+    private byte[]             encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        values = new ArrayList<>(FEATURES);
+        for (int i = 0; i < FEATURES; i++) {
+            final Object value = i % 10 == 0 ? (Object) Integer.valueOf(i) : (Object) Boolean.valueOf(i % 2 == 0);
+            values.add(new FeatureValue("com.example.pid" + i / 100, "feature" + i, value));
+        }
+        encoded = export();
+    }
+
+    @Benchmark
+    public byte[] export() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        try (Encoder encoder = new Encoder(Channels.newChannel(out), format)) {
+            for (final FeatureValue value : values) {
+                encoder.write(value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        final int[] count = new int[1];
+        FeatureCodec.decode(Channels.newChannel(new ByteArrayInputStream(encoded)), format, v -> count[0]++);
+        return count[0];
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.amitinside.featureflags.benchmark;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.featureflags.provider.BackgroundExecutors;
+
+/**
+ * Compares the executor modes of the {@link BackgroundExecutors} on blocking
+ * background work.
+ *
+ * <p>
+ * Every invocation submits a batch of tasks which block for
+ * {@value #BLOCKING_MILLIS} ms each, as a bundle scan does while waiting for
+ * MetaType, and waits for all of them. With {@code platform} threads, the
+ * batch is limited by the pool size, whereas with {@code virtual} threads all
+ * tasks block concurrently. On a runtime without virtual threads (before Java
+ * 21), both modes use platform threads and must not differ.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    /** The time in milliseconds every task blocks */
+    private static final int BLOCKING_MILLIS = 5;
+
+    /** The pool size of the platform threads (the default of the feature manager) */
+    private static final int POOL_SIZE       = 3;
+
+    @Param({ BackgroundExecutors.MODE_PLATFORM, BackgroundExecutors.MODE_VIRTUAL })
+    public String            mode;
+
+    @Param({ "10", "100" })
+    public int               tasks;
+
+    private ExecutorService  executor;
+
+    @Setup
+    public void setUp() {
+        executor = new BackgroundExecutors(mode, POOL_SIZE).newExecutor();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, SECONDS);
+    }
+
+    @Benchmark
+    public void blockingTasks() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                LockSupport.parkNanos(MILLISECONDS.toNanos(BLOCKING_MILLIS));
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+}
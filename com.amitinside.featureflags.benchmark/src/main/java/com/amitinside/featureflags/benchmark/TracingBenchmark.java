@@ -0,0 +1,90 @@
+package com.amitinside.featureflags.benchmark;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amitinside.featureflags.provider.FeatureTracer;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.RegistrySnapshot;
+
+/**
+ * Measures the overhead of the {@link FeatureTracer} on the evaluation of a
+ * feature.
+ *
+ * <p>
+ * {@code none} evaluates a snapshot built without any tracer, {@code inactive}
+ * a snapshot whose tracer samples no feature and {@code other} a snapshot
+ * whose tracer samples another feature than the evaluated one. Both
+ * {@code none} and {@code inactive} check whether the tracer is active, as a
+ * snapshot without tracer falls back to a tracer which never becomes active.
+ * {@code baseline} performs the same lookup without any check of the tracer,
+ * so that its difference to {@code isEnabled} is the cost of the check, and
+ * {@code other} shows the cost of the sampling lookup. Run
+ * {@code gradlew :com.amitinside.featureflags.benchmark:jmh} and pass
+ * {@code -PjmhArgs="-prof perfasm"} to inspect the generated code.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingBenchmark {
+
+    /** The number of features in the snapshot */
+    private static final int FEATURES = 256;
+
+    @Param({ "none", "inactive", "other" })
+    public String            tracing;
+
+    private RegistrySnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        final List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < FEATURES; i++) {
+            final Feature feature = new Feature();
+            feature.id        = "feature" + i;
+            feature.isEnabled = i % 2 == 0;
+            features.add(feature);
+        }
+        final FeatureTracer tracer = new FeatureTracer(1024);
+        if ("other".equals(tracing)) {
+            tracer.setSamplingRate("feature1", 1);
+        }
+        snapshot = RegistrySnapshot.of(1, Collections.singletonList(features), null, Collections.emptyList(),
+                null, "none".equals(tracing) ? null : tracer);
+    }
+
+    @Benchmark
+    public boolean baseline() {
+        return snapshot.isEffectivelyEnabled("feature0");
+    }
+
+    @Benchmark
+    public boolean isEnabled() {
+        return snapshot.isEnabled("feature0");
+    }
+
+    @Benchmark
+    public boolean isEnabledForTenant() {
+        return snapshot.isEnabled("feature0", "tenant");
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.amitinside.featureflags.example;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+import com.amitinside.featureflags.api.FeatureCondition;
+
+@Component
+public final class ExampleFeatureCondition {
+
+    @Reference(target = "(osgi.condition.id=osgi.feature.myfeature)")
+    private FeatureCondition condition;
+
+    @Activate
+    protected void activate() {
+        System.out.println("Example Feature Condition is >>Satisfied<<");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        System.out.println("Example Feature Condition is >>Unsatisfied<<");
+    }
+}
@@ -0,0 +1,240 @@
+package com.amitinside.featureflags.loadgen;
+
+import static com.amitinside.featureflags.loadgen.SyntheticBundles.featureID;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+import com.amitinside.featureflags.api.FeatureListener;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+/**
+ * Measures the feature manager in a running framework.
+ *
+ * <p>
+ * On activation, the generator installs {@value #BUNDLES_PROPERTY} synthetic
+ * bundles declaring {@value #FEATURES_PROPERTY} features each (see
+ * {@link SyntheticBundles}) and measures the time until the feature manager
+ * has discovered all of them together with the used heap. Afterwards, it
+ * uninstalls and installs the bundles one after the other for
+ * {@value #CHURN_PROPERTY} cycles and measures the time until the features of
+ * every cycle have been removed and discovered again. The results are
+ * written as JSON (see {@link LoadReport}) to the file
+ * {@value #OUTPUT_PROPERTY} and the framework is stopped.
+ * </p>
+ *
+ * <p>
+ * All parameters are framework properties, so that the generator is
+ * configured by the {@code -runproperties} of its bndrun file.
+ * </p>
+ */
+@Component(immediate = true)
+public final class LoadGenerator implements FeatureListener {
+
+    /** The framework property of the number of synthetic bundles */
+    public static final String BUNDLES_PROPERTY  = "loadgen.bundles";
+
+    /** The framework property of the number of features of every synthetic bundle */
+    public static final String FEATURES_PROPERTY = "loadgen.features";
+
+    /** The framework property of the number of churn cycles */
+    public static final String CHURN_PROPERTY    = "loadgen.churn";
+
+    /** The framework property of the time in milliseconds to await the discovery of the features */
+    public static final String TIMEOUT_PROPERTY  = "loadgen.timeout";
+
+    /** The framework property of the path of the JSON file of the results */
+    public static final String OUTPUT_PROPERTY   = "loadgen.output";
+
+    /** The default number of synthetic bundles */
+    static final int           DEFAULT_BUNDLES   = 100;
+
+    /** The default number of features of every synthetic bundle */
+    static final int           DEFAULT_FEATURES  = 20;
+
+    /** The default number of churn cycles */
+    static final int           DEFAULT_CHURN     = 200;
+
+    /** The default time in milliseconds to await the discovery of the features */
+    static final long          DEFAULT_TIMEOUT   = 60_000L;
+
+    /** The default path of the JSON file of the results */
+    static final String        DEFAULT_OUTPUT    = "loadgen.json";
+
+    /** Notified whenever the feature manager publishes a new generation */
+    private final Object       monitor           = new Object();
+
+    /** Executor to run the measurements */
+    private ExecutorService    executor;
+
+    /** Feature Manager Service Instance Reference */
+    @Reference
+    private FeatureManager     featureManager;
+
+    @Activate
+    protected void activate(final BundleContext bundleContext) {
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> run(bundleContext));
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void featuresChanged(final FeatureSnapshot snapshot) {
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    private void run(final BundleContext bundleContext) {
+        final int          bundles   = Integer.parseInt(getProperty(bundleContext, BUNDLES_PROPERTY,
+                DEFAULT_BUNDLES));
+        final int          features  = Integer.parseInt(getProperty(bundleContext, FEATURES_PROPERTY,
+                DEFAULT_FEATURES));
+        final int          churn     = Integer.parseInt(getProperty(bundleContext, CHURN_PROPERTY, DEFAULT_CHURN));
+        final long         timeout   = Long.parseLong(getProperty(bundleContext, TIMEOUT_PROPERTY, DEFAULT_TIMEOUT));
+        final Path         output    = Paths.get(getProperty(bundleContext, OUTPUT_PROPERTY, DEFAULT_OUTPUT));
+        final LoadReport   report    = new LoadReport(bundles, features);
+        final List<Bundle> installed = new ArrayList<>();
+        try {
+            final ServiceReference<FeatureManager> reference = bundleContext
+                    .getServiceReference(FeatureManager.class);
+            report.providerVersion   = reference.getBundle()
+                    .getVersion()
+                    .toString();
+            report.heapBaselineBytes = usedHeap();
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < bundles; i++) {
+                installed.add(install(bundleContext, i, features));
+            }
+            report.installMillis = millisSince(start);
+            await(snapshot -> isDiscovered(snapshot, 0, bundles, features), timeout);
+            report.discoveryMillis = millisSince(start);
+            report.heapUsedBytes   = usedHeap();
+
+            final long churnStart = System.nanoTime();
+            for (int i = 0; i < churn && bundles > 0; i++) {
+                final int index = i % bundles;
+                installed.get(index)
+                        .uninstall();
+                await(snapshot -> !snapshot.isEnabled(featureID(index, 0)), timeout);
+                installed.set(index, install(bundleContext, index, features));
+                await(snapshot -> isDiscovered(snapshot, index, index + 1, features), timeout);
+                report.churnCycles++;
+            }
+            report.churnMillis = millisSince(churnStart);
+
+            Files.write(output, report.toJson()
+                    .getBytes(UTF_8));
+            System.out.println("Load generation results written to " + output.toAbsolutePath());
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        } catch (final Exception e) {
+            System.err.println("Load generation failed");
+            e.printStackTrace();
+        } finally {
+            for (final Bundle bundle : installed) {
+                try {
+                    bundle.uninstall();
+                } catch (final BundleException | IllegalStateException e) {
+                    // already uninstalled
+                }
+            }
+            try {
+                bundleContext.getBundle(0)
+                        .stop();
+            } catch (final BundleException e) {
+                // the framework is stopped anyway
+            }
+        }
+    }
+
+    private static Bundle install(final BundleContext bundleContext, final int index, final int features)
+            throws BundleException {
+        final Bundle bundle = bundleContext.installBundle("loadgen:" + SyntheticBundles.symbolicName(index),
+                new ByteArrayInputStream(SyntheticBundles.create(index, features)));
+        bundle.start();
+        return bundle;
+    }
+
+    /**
+     * Awaits the first snapshot of the feature manager which matches the
+     * specified condition
+     */
+    private void await(final Predicate<FeatureSnapshot> condition, final long timeout)
+            throws InterruptedException, TimeoutException {
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeout);
+        synchronized (monitor) {
+            while (!condition.test(featureManager.snapshot())) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("Features have not been discovered within " + timeout + " ms");
+                }
+                monitor.wait(Math.max(1, NANOSECONDS.toMillis(remaining)));
+            }
+        }
+    }
+
+    /**
+     * Checks whether all features of the specified range of synthetic bundles
+     * are known to the snapshot
+     */
+    private static boolean isDiscovered(final FeatureSnapshot snapshot, final int from, final int to,
+            final int features) {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < features; j++) {
+                if (!snapshot.isEnabled(featureID(i, j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage()
+                .getUsed();
+    }
+
+    private static long millisSince(final long start) {
+        return NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String getProperty(final BundleContext bundleContext, final String key,
+            final Object defaultValue) {
+        final String value = bundleContext.getProperty(key);
+        return value == null ? String.valueOf(defaultValue) : value.trim();
+    }
+
+}
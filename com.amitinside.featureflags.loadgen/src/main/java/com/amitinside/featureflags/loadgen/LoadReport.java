@@ -0,0 +1,104 @@
+package com.amitinside.featureflags.loadgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of a run of the {@link LoadGenerator}.
+ *
+ * <p>
+ * The results are written as a flat JSON object whose keys are stable
+ * across releases, so that the runs of different releases can be compared by
+ * any tool. Durations are reported in milliseconds and heap usages in bytes.
+ * </p>
+ */
+public final class LoadReport {
+
+    /** The number of synthetic bundles */
+    public final int  bundles;
+
+    /** The number of features declared by every synthetic bundle */
+    public final int  featuresPerBundle;
+
+    /** The time to install and start all synthetic bundles */
+    public long       installMillis;
+
+    /** The time from the first installed bundle until all features have been discovered */
+    public long       discoveryMillis;
+
+    /** The used heap before the synthetic bundles have been installed */
+    public long       heapBaselineBytes;
+
+    /** The used heap once all features have been discovered */
+    public long       heapUsedBytes;
+
+    /** The number of uninstall and install cycles of a single bundle */
+    public int        churnCycles;
+
+    /** The time of all churn cycles until the features of every cycle have been discovered again */
+    public long       churnMillis;
+
+    /** The version of the feature manager */
+    public String     providerVersion;
+
+    /** The time the run has been started in milliseconds since the epoch */
+    public final long timestamp;
+
+    /**
+     * Constructor
+     *
+     * @param bundles the number of synthetic bundles
+     * @param featuresPerBundle the number of features declared by every
+     *            synthetic bundle
+     */
+    public LoadReport(final int bundles, final int featuresPerBundle) {
+        this.bundles           = bundles;
+        this.featuresPerBundle = featuresPerBundle;
+        this.timestamp         = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the results as JSON object
+     *
+     * @return the JSON (never {@code null})
+     */
+    public String toJson() {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        final int                 total  = bundles * featuresPerBundle;
+        values.put("timestamp", timestamp);
+        values.put("providerVersion", providerVersion);
+        values.put("javaVersion", System.getProperty("java.version"));
+        values.put("bundles", bundles);
+        values.put("featuresPerBundle", featuresPerBundle);
+        values.put("features", total);
+        values.put("installMillis", installMillis);
+        values.put("discoveryMillis", discoveryMillis);
+        values.put("heapBaselineBytes", heapBaselineBytes);
+        values.put("heapUsedBytes", heapUsedBytes);
+        values.put("heapBytesPerFeature", total == 0 ? 0 : (heapUsedBytes - heapBaselineBytes) / total);
+        values.put("churnCycles", churnCycles);
+        values.put("churnMillis", churnMillis);
+        values.put("churnCyclesPerSecond", churnMillis == 0 ? 0 : churnCycles * 1000.0 / churnMillis);
+
+        final StringBuilder builder = new StringBuilder("{");
+        values.forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append('"')
+                    .append(key)
+                    .append("\":");
+            if (value instanceof String) {
+                // the versions never contain characters to be escaped
+                builder.append('"')
+                        .append(value)
+                        .append('"');
+            } else {
+                builder.append(value);
+            }
+        });
+        return builder.append('}')
+                .toString();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.amitinside.featureflags.loadgen;
+
+import static com.amitinside.featureflags.api.FeatureManager.FEATURE_CAPABILITY_NAME;
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Builds the synthetic bundles installed by the {@link LoadGenerator}.
+ *
+ * <p>
+ * Every bundle contains nothing but a metatype resource declaring a single
+ * object class definition whose boolean attribute definitions are all
+ * enabled by default, so that a feature is known to the feature manager if
+ * and only if it is enabled in its snapshots.
+ * </p>
+ */
+public final class SyntheticBundles {
+
+    /** The prefix of the symbolic names (and PIDs) of the synthetic bundles */
+    public static final String SYMBOLIC_NAME_PREFIX = "com.amitinside.featureflags.loadgen.synthetic.";
+
+    /** The path of the metatype resource of every synthetic bundle */
+    public static final String METATYPE_PATH        = "OSGI-INF/metatype/metatype.xml";
+
+    /** The requirement of the feature flags extender */
+    private static final String EXTENDER_REQUIREMENT = "osgi.extender;filter:=\"(&(osgi.extender="
+            + FEATURE_CAPABILITY_NAME + ")(version>=1.0)(!(version>=2.0)))\"";
+
+    /** Constructor */
+    private SyntheticBundles() {
+        throw new IllegalAccessError("Non-Instantiable");
+    }
+
+    /**
+     * Returns the symbolic name of the specified synthetic bundle which also
+     * is the PID of its features
+     *
+     * @param bundle the index of the bundle
+     * @return the symbolic name (never {@code null})
+     */
+    public static String symbolicName(final int bundle) {
+        return SYMBOLIC_NAME_PREFIX + bundle;
+    }
+
+    /**
+     * Returns the ID of the specified feature of the specified synthetic bundle
+     *
+     * @param bundle the index of the bundle
+     * @param feature the index of the feature within the bundle
+     * @return the feature ID (never {@code null})
+     */
+    public static String featureID(final int bundle, final int feature) {
+        return "loadgen_" + bundle + "_" + feature;
+    }
+
+    /**
+     * Builds the specified synthetic bundle
+     *
+     * @param bundle the index of the bundle
+     * @param features the number of features declared by the bundle
+     * @return the content of the bundle (never {@code null})
+     */
+    public static byte[] create(final int bundle, final int features) {
+        final Manifest   manifest   = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue("Bundle-ManifestVersion", "2");
+        attributes.putValue("Bundle-SymbolicName", symbolicName(bundle));
+        attributes.putValue("Bundle-Version", "1.0.0");
+        attributes.putValue("Require-Capability", EXTENDER_REQUIREMENT);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bytes, manifest)) {
+            jar.putNextEntry(new JarEntry(METATYPE_PATH));
+            jar.write(metatype(bundle, features).getBytes(UTF_8));
+            jar.closeEntry();
+        } catch (final IOException e) {
+            // cannot happen as the bundle is written to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String metatype(final int bundle, final int features) {
+        final String        pid     = symbolicName(bundle);
+        final StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<metatype:MetaData xmlns:metatype=\"http://www.osgi.org/xmlns/metatype/v1.3.0\">\n")
+                .append("  <OCD id=\"")
+                .append(pid)
+                .append("\" name=\"Synthetic Bundle ")
+                .append(bundle)
+                .append("\">\n");
+        for (int i = 0; i < features; i++) {
+            builder.append("    <AD id=\"")
+                    .append(METATYPE_FEATURE_ID_PREFIX)
+                    .append(featureID(bundle, i))
+                    .append("\" type=\"Boolean\" default=\"true\" name=\"Feature ")
+                    .append(i)
+                    .append("\" description=\"Synthetic feature ")
+                    .append(i)
+                    .append(" of bundle ")
+                    .append(bundle)
+                    .append("\"/>\n");
+        }
+        return builder.append("  </OCD>\n")
+                .append("  <Designate pid=\"")
+                .append(pid)
+                .append("\">\n")
+                .append("    <Object ocdref=\"")
+                .append(pid)
+                .append("\"/>\n")
+                .append("  </Designate>\n")
+                .append("</metatype:MetaData>\n")
+                .toString();
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.amitinside.featureflags.loadgen;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class LoadReportTest {
+
+    @Test
+    public void testJson() {
+        final LoadReport report = new LoadReport(10, 5);
+        report.providerVersion   = "1.0.0";
+        report.installMillis     = 12;
+        report.discoveryMillis   = 40;
+        report.heapBaselineBytes = 1000;
+        report.heapUsedBytes     = 6000;
+        report.churnCycles       = 20;
+        report.churnMillis       = 400;
+
+        final String json = report.toJson();
+        assertTrue(json.startsWith("{\"timestamp\":" + report.timestamp + ",\"providerVersion\":\"1.0.0\","));
+        assertTrue(json.contains(",\"bundles\":10,\"featuresPerBundle\":5,\"features\":50,\"installMillis\":12,"
+                + "\"discoveryMillis\":40,\"heapBaselineBytes\":1000,\"heapUsedBytes\":6000,"
+                + "\"heapBytesPerFeature\":100,\"churnCycles\":20,\"churnMillis\":400,"
+                + "\"churnCyclesPerSecond\":50.0}"));
+    }
+
+}
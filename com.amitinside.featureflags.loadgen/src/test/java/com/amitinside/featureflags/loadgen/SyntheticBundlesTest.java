@@ -0,0 +1,57 @@
+package com.amitinside.featureflags.loadgen;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.junit.Test;
+
+public final class SyntheticBundlesTest {
+
+    @Test
+    public void testBundleDeclaresFeatures() throws IOException {
+        try (JarInputStream jar = new JarInputStream(new ByteArrayInputStream(SyntheticBundles.create(7, 3)))) {
+            final Attributes attributes = jar.getManifest()
+                    .getMainAttributes();
+            assertEquals("2", attributes.getValue("Bundle-ManifestVersion"));
+            assertEquals(SyntheticBundles.symbolicName(7), attributes.getValue("Bundle-SymbolicName"));
+            assertTrue(attributes.getValue("Require-Capability")
+                    .contains("(osgi.extender=osgi.feature)"));
+
+            final JarEntry entry = jar.getNextJarEntry();
+            assertEquals(SyntheticBundles.METATYPE_PATH, entry.getName());
+            final String metatype = read(jar);
+            for (int i = 0; i < 3; i++) {
+                assertTrue(metatype.contains("<AD id=\"osgi.feature." + SyntheticBundles.featureID(7, i)
+                        + "\" type=\"Boolean\" default=\"true\""));
+            }
+            assertTrue(metatype.contains("<Designate pid=\"" + SyntheticBundles.symbolicName(7) + "\">"));
+            assertNull(jar.getNextJarEntry());
+        }
+    }
+
+    @Test
+    public void testFeatureIDsAreUnique() {
+        assertNotEquals(SyntheticBundles.featureID(1, 11), SyntheticBundles.featureID(11, 1));
+    }
+
+    private static String read(final JarInputStream jar) throws IOException {
+        final ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+        final byte[]                buffer = new byte[1024];
+        int                         read;
+        while ((read = jar.read(buffer)) > 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+
+}
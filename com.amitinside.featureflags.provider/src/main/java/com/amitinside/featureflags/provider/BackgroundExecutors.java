@@ -0,0 +1,157 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Creates the executors of the background work of the provider.
+ *
+ * <p>
+ * Listener dispatch, configuration writes and bundle scans block on I/O in
+ * Configuration Admin and MetaType. On a Java runtime supporting virtual
+ * threads (21 or later), all executors run their tasks on virtual threads, so
+ * that blocked tasks do not hold platform threads, and every bundle scan runs
+ * on its own virtual thread. On older runtimes, the executors fall back to
+ * platform threads and the bundle scans share a bounded pool. The virtual
+ * threads are created reflectively, as the provider is compiled for Java 8.
+ * </p>
+ *
+ * @Immutable
+ */
+public final class BackgroundExecutors {
+
+    /** Uses virtual threads if supported by the runtime and platform threads otherwise */
+    public static final String MODE_AUTO     = "auto";
+
+    /** Uses virtual threads (falls back to platform threads if not supported by the runtime) */
+    public static final String MODE_VIRTUAL  = "virtual";
+
+    /** Uses platform threads */
+    public static final String MODE_PLATFORM = "platform";
+
+    /** The supported modes */
+    public static final List<String>  MODES                   = Arrays.asList(MODE_AUTO, MODE_VIRTUAL,
+            MODE_PLATFORM);
+
+    /** Time in seconds an idle thread of a bounded pool is kept alive */
+    private static final long          KEEP_ALIVE             = 60L;
+
+    /** Creates virtual threads ({@code null} if not supported by the runtime) */
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+    /** Creates the threads of all executors */
+    private final ThreadFactory        threadFactory;
+
+    /** Flag denoting that the executors run their tasks on virtual threads */
+    private final boolean              isVirtual;
+
+    /** Maximum number of concurrent tasks of a bounded pool */
+    private final int                  poolSize;
+
+    /**
+     * Constructor
+     *
+     * @param mode one of {@link #MODES}
+     * @param poolSize maximum number of concurrent tasks of an executor
+     *            returned by {@link #newExecutor()} if platform threads are used
+     *
+     * @throws NullPointerException if {@code mode} is {@code null}
+     * @throws IllegalArgumentException if {@code mode} is not supported or
+     *             {@code poolSize} is not positive
+     */
+    public BackgroundExecutors(final String mode, final int poolSize) {
+        requireNonNull(mode, "Mode cannot be null");
+        checkArgument(MODES.contains(mode), "Mode must be one of " + MODES);
+        checkArgument(poolSize > 0, "Pool size must be positive");
+
+        isVirtual     = !MODE_PLATFORM.equals(mode) && VIRTUAL_THREAD_FACTORY != null;
+        threadFactory = isVirtual ? VIRTUAL_THREAD_FACTORY : Executors.defaultThreadFactory();
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Checks whether the runtime supports virtual threads
+     *
+     * @return {@code true} if virtual threads are supported, otherwise
+     *         {@code false}
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * Checks whether the executors run their tasks on virtual threads
+     *
+     * @return {@code true} if virtual threads are used, otherwise
+     *         {@code false}
+     */
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    /**
+     * Returns a new executor running its tasks concurrently. With virtual
+     * threads, no task waits for a free thread, otherwise at most
+     * {@code poolSize} tasks run at a time.
+     *
+     * @return the executor (never {@code null})
+     */
+    public ExecutorService newExecutor() {
+        if (isVirtual) {
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE, SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns a new executor running its tasks one after the other in
+     * submission order
+     *
+     * @return the executor (never {@code null})
+     */
+    public ExecutorService newSerialExecutor() {
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Returns a new executor running its delayed and periodic tasks one after
+     * the other
+     *
+     * @return the executor (never {@code null})
+     */
+    public ScheduledExecutorService newScheduledExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Returns the factory of virtual threads ({@code Thread.ofVirtual().factory()})
+     * or {@code null} if the runtime does not support virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual")
+                    .invoke(null);
+            final Method factory = Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // not available before Java 21 (or a preview feature of Java 19 and 20)
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counter of the successes and failures within a sliding window.
+ *
+ * <p>
+ * The window is divided into a fixed number of buckets which are reused in a
+ * ring. Every bucket counts with striped {@link LongAdder}s, so that threads
+ * reporting concurrently do not contend on a single memory location. A bucket
+ * is claimed for its current period by a compare-and-set of its epoch and is
+ * cleared by the claiming thread. Increments racing with the rollover of their
+ * bucket can therefore be lost, which is negligible for an error rate.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class ErrorRateCounter {
+
+    /** Updates the epoch of a bucket atomically */
+    private static final AtomicLongFieldUpdater<Bucket> EPOCH = AtomicLongFieldUpdater.newUpdater(Bucket.class,
+            "epoch");
+
+    /** Length of the period of a bucket in milliseconds */
+    private final long     bucketMillis;
+
+    /** The buckets covering the window */
+    private final Bucket[] buckets;
+
+    private static final class Bucket {
+        // not private to be accessible by the field updater
+        volatile long           epoch     = -1;
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures  = new LongAdder();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param window length of the window in milliseconds
+     * @param bucketCount number of buckets to divide the window into
+     *
+     * @throws IllegalArgumentException if {@code window} or
+     *             {@code bucketCount} is not positive
+     */
+    public ErrorRateCounter(final long window, final int bucketCount) {
+        checkArgument(window > 0, "Window must be positive");
+        checkArgument(bucketCount > 0, "Bucket count must be positive");
+
+        bucketMillis = Math.max(1, window / bucketCount);
+        buckets      = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Records an outcome
+     *
+     * @param isFailure {@code true} if the outcome is a failure
+     * @param now the current time in milliseconds
+     */
+    public void record(final boolean isFailure, final long now) {
+        final long   epoch  = now / bucketMillis;
+        final Bucket bucket = buckets[(int) (epoch % buckets.length)];
+        final long   actual = bucket.epoch;
+        if (actual < epoch && EPOCH.compareAndSet(bucket, actual, epoch)) {
+            bucket.successes.reset();
+            bucket.failures.reset();
+        }
+        (isFailure ? bucket.failures : bucket.successes).increment();
+    }
+
+    /**
+     * Returns the number of failures within the window
+     *
+     * @param now the current time in milliseconds
+     * @return the number of failures
+     */
+    public long getFailures(final long now) {
+        final long oldest = now / bucketMillis - buckets.length;
+        long       sum    = 0;
+        for (final Bucket bucket : buckets) {
+            if (bucket.epoch > oldest) {
+                sum += bucket.failures.sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the number of outcomes within the window
+     *
+     * @param now the current time in milliseconds
+     * @return the number of successes and failures
+     */
+    public long getTotal(final long now) {
+        final long oldest = now / bucketMillis - buckets.length;
+        long       sum    = 0;
+        for (final Bucket bucket : buckets) {
+            if (bucket.epoch > oldest) {
+                sum += bucket.successes.sum() + bucket.failures.sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Discards all recorded outcomes
+     */
+    public void reset() {
+        for (final Bucket bucket : buckets) {
+            bucket.epoch = -1;
+            bucket.successes.reset();
+            bucket.failures.reset();
+        }
+    }
+
+}
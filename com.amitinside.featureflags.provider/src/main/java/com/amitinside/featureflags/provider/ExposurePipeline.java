@@ -0,0 +1,229 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.amitinside.featureflags.api.exposure.ExposureDTO;
+import com.amitinside.featureflags.api.exposure.ExposureMetricsDTO;
+import com.amitinside.featureflags.api.exposure.ExposureSink;
+
+/**
+ * Records the exposures of subjects to feature values and delivers them to the
+ * registered {@link ExposureSink}s in batches.
+ *
+ * <p>
+ * Recording is meant to be invoked on the evaluation path and therefore never
+ * blocks: an exposure which has been seen recently according to the
+ * {@link FingerprintCache} is dropped as duplicate, any other one is offered
+ * to a {@link MpscRingBuffer} and dropped if the buffer is full. The buffer is
+ * drained by the specified executor every drain interval and as soon as it is
+ * half full. Every drained batch of at most {@value #MAX_BATCH_SIZE} exposures
+ * is delivered to every sink once. A sink failing to consume a batch is
+ * reported to the error handler and does not affect the other sinks.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class ExposurePipeline {
+
+    /** The maximum number of exposures delivered at once */
+    public static final int                   MAX_BATCH_SIZE = 512;
+
+    /** The queued exposures */
+    private final MpscRingBuffer<ExposureDTO> buffer;
+
+    /** The recently seen exposures */
+    private final FingerprintCache            seen;
+
+    /** The sinks to deliver to (might change concurrently) */
+    private final Collection<ExposureSink>    sinks;
+
+    /** Clock to read the time of the exposures from */
+    private final Clock                       clock;
+
+    /** Executor to drain the buffer */
+    private final ScheduledExecutorService    executor;
+
+    /** Interval in milliseconds to drain the buffer */
+    private final long                        drainInterval;
+
+    /** Handles the failures of the sinks */
+    private final Consumer<Exception>         errorHandler;
+
+    /** Flag denoting that an early drain has been requested but not yet started */
+    private final AtomicBoolean               drainRequested = new AtomicBoolean();
+
+    /** The number of recorded exposures */
+    private final LongAdder                   recorded       = new LongAdder();
+
+    /** The number of exposures dropped as duplicates */
+    private final LongAdder                   duplicates     = new LongAdder();
+
+    /** The number of exposures dropped as the buffer was full */
+    private final LongAdder                   dropped        = new LongAdder();
+
+    /** The number of delivered exposures (only updated by the drainer) */
+    private final LongAdder                   delivered      = new LongAdder();
+
+    /** The number of batches the sinks failed to consume */
+    private final LongAdder                   sinkFailures   = new LongAdder();
+
+    /** The periodic drain of the buffer ({@code null} if not started) */
+    private ScheduledFuture<?>                drainer;
+
+    /** Flag denoting that the pipeline has been closed */
+    private volatile boolean                  closed;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the number of exposures to queue at most
+     * @param dedupCapacity the number of recently seen exposures to retain
+     * @param sinks the sinks to deliver to (might change concurrently)
+     * @param clock clock to read the time of the exposures from
+     * @param executor executor to drain the buffer
+     * @param drainInterval interval in milliseconds to drain the buffer
+     * @param errorHandler handles the failures of the sinks
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code capacity},
+     *             {@code dedupCapacity} or {@code drainInterval} is not
+     *             positive
+     */
+    public ExposurePipeline(final int capacity, final int dedupCapacity, final Collection<ExposureSink> sinks,
+            final Clock clock, final ScheduledExecutorService executor, final long drainInterval,
+            final Consumer<Exception> errorHandler) {
+        checkArgument(drainInterval > 0, "Drain interval must be positive");
+
+        this.buffer        = new MpscRingBuffer<>(capacity);
+        this.seen          = new FingerprintCache(dedupCapacity);
+        this.sinks         = requireNonNull(sinks, "Sinks cannot be null");
+        this.clock         = requireNonNull(clock, "Clock instance cannot be null");
+        this.executor      = requireNonNull(executor, "Executor instance cannot be null");
+        this.drainInterval = drainInterval;
+        this.errorHandler  = requireNonNull(errorHandler, "Error handler cannot be null");
+    }
+
+    /**
+     * Starts draining the buffer every drain interval
+     */
+    public synchronized void start() {
+        if (drainer == null && !closed) {
+            drainer = executor.scheduleWithFixedDelay(this::drain, drainInterval, drainInterval, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops draining the buffer periodically and delivers the queued
+     * exposures. Subsequent exposures are ignored.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (drainer != null) {
+                drainer.cancel(false);
+                drainer = null;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Records the exposure of the specified subject to the specified value of
+     * the specified feature unless it is a duplicate or the buffer is full
+     *
+     * @param featureID the feature ID
+     * @param subjectID the subject ID
+     * @param value the value the subject has been exposed to
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public void record(final String featureID, final String subjectID, final Object value) {
+        if (closed) {
+            return;
+        }
+        if (!seen.add(featureID, subjectID, value)) {
+            duplicates.increment();
+            return;
+        }
+        final ExposureDTO exposure = new ExposureDTO();
+        exposure.featureID = featureID;
+        exposure.subjectID = subjectID;
+        exposure.value     = value;
+        exposure.time      = clock.millis();
+        if (!buffer.offer(exposure)) {
+            dropped.increment();
+            return;
+        }
+        recorded.increment();
+        if (buffer.size() > buffer.capacity() / 2 && drainRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (final RejectedExecutionException e) {
+                // closed concurrently, the exposures are delivered by the close
+            }
+        }
+    }
+
+    /**
+     * Returns the current metrics of the pipeline
+     *
+     * @return the metrics (never {@code null})
+     */
+    public ExposureMetricsDTO getMetrics() {
+        final ExposureMetricsDTO metrics = new ExposureMetricsDTO();
+        metrics.queueDepth    = buffer.size();
+        metrics.queueCapacity = buffer.capacity();
+        metrics.recorded      = recorded.sum();
+        metrics.duplicates    = duplicates.sum();
+        metrics.dropped       = dropped.sum();
+        metrics.delivered     = delivered.sum();
+        metrics.sinkFailures  = sinkFailures.sum();
+        return metrics;
+    }
+
+    /**
+     * Delivers the queued exposures in batches (serialized as the buffer only
+     * supports a single consumer)
+     */
+    private synchronized void drain() {
+        drainRequested.set(false);
+        List<ExposureDTO> batch = new ArrayList<>();
+        while (buffer.drain(batch::add, MAX_BATCH_SIZE) > 0) {
+            deliver(Collections.unmodifiableList(batch));
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void deliver(final List<ExposureDTO> batch) {
+        boolean isDelivered = false;
+        for (final ExposureSink sink : sinks) {
+            try {
+                sink.consume(batch);
+                isDelivered = true;
+            } catch (final Exception e) {
+                sinkFailures.increment();
+                errorHandler.accept(e);
+            }
+        }
+        if (isDelivered) {
+            delivered.add(batch.size());
+        }
+    }
+
+}
@@ -0,0 +1,816 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Streaming codec of the values of the features to back up or to move them
+ * between environments.
+ *
+ * <p>
+ * A value is either a {@code Boolean} for a boolean feature or the
+ * {@code Integer}, {@code Long}, {@code Double} or {@code String} value of a
+ * typed variant, always together with the configuration PID of the feature.
+ * The values are written and read through NIO channels with a fixed buffer,
+ * so that neither side ever holds the encoded form as a whole. The binary
+ * format can also be read from a buffer such as a memory-mapped file.
+ * Consecutive values of the same PID are grouped, thus the values should be
+ * written PID after PID.
+ * </p>
+ *
+ * <p>
+ * {@link Format#BINARY BINARY} is a compact tagged format. It starts with the
+ * magic bytes {@code FFX} and the version, followed by a PID tag whenever the
+ * PID changes and a value tag with the feature ID and the value per feature.
+ * Strings are prefixed by their length, integral numbers are written as
+ * zig-zag variable-length numbers. {@link Format#JSON JSON} is a JSON object
+ * with an object of the features per PID, for example
+ * <code>{"my.pid": {"myfeature": true, "myvariant": 42}}</code>.
+ * </p>
+ */
+public final class FeatureCodec {
+
+    /** The suffix of the names of JSON files */
+    public static final String  JSON_SUFFIX = ".json";
+
+    /** The size of the buffers of the channels */
+    static final int            BUFFER_SIZE = 1 << 16;
+
+    /** The magic bytes of the binary format */
+    private static final byte[] MAGIC       = { 'F', 'F', 'X' };
+
+    /** The version of the binary format */
+    private static final byte   VERSION     = 1;
+
+    private static final byte   TAG_END     = 0;
+    private static final byte   TAG_PID     = 1;
+    private static final byte   TAG_FALSE   = 2;
+    private static final byte   TAG_TRUE    = 3;
+    private static final byte   TAG_INTEGER = 4;
+    private static final byte   TAG_LONG    = 5;
+    private static final byte   TAG_DOUBLE  = 6;
+    private static final byte   TAG_STRING  = 7;
+
+    private static final byte[] HEX         = "0123456789abcdef".getBytes(UTF_8);
+
+    /**
+     * The encoding of the values
+     */
+    public enum Format {
+        BINARY,
+        JSON;
+
+        /**
+         * Returns the format of the specified file
+         *
+         * @param file the file
+         * @return {@link #JSON} for files ending with {@value FeatureCodec#JSON_SUFFIX},
+         *         otherwise {@link #BINARY}
+         */
+        public static Format of(final Path file) {
+            requireNonNull(file, "File cannot be null");
+            return file.toString()
+                    .endsWith(JSON_SUFFIX) ? JSON : BINARY;
+        }
+    }
+
+    /**
+     * The value of a feature
+     *
+     * @Immutable
+     */
+    public static final class FeatureValue {
+        /** The configuration PID of the feature */
+        public final String pid;
+        /** The ID of the feature */
+        public final String featureID;
+        /** The value of the feature */
+        public final Object value;
+
+        /**
+         * Constructor
+         *
+         * @param pid the configuration PID of the feature
+         * @param featureID the ID of the feature
+         * @param value the value of the feature
+         *
+         * @throws NullPointerException if any of the specified arguments is
+         *             {@code null}
+         * @throws IllegalArgumentException if the type of {@code value} is
+         *             not supported
+         */
+        public FeatureValue(final String pid, final String featureID, final Object value) {
+            this.pid       = requireNonNull(pid, "Configuration PID cannot be null");
+            this.featureID = requireNonNull(featureID, "Feature ID cannot be null");
+            this.value     = requireNonNull(value, "Value cannot be null");
+            checkArgument(value instanceof Boolean || value instanceof Integer || value instanceof Long
+                    || value instanceof Double || value instanceof String, "Unsupported value type");
+        }
+
+        @Override
+        public String toString() {
+            return pid + "/" + featureID + "=" + value;
+        }
+    }
+
+    /** Constructor */
+    private FeatureCodec() {
+        throw new IllegalAccessError("Non-Instantiable");
+    }
+
+    /**
+     * Writes the values of the features to a channel. Closing the encoder
+     * completes the encoded form and flushes it, but leaves the channel open.
+     */
+    public static final class Encoder implements Closeable {
+        private final WritableByteChannel channel;
+        private final Format              format;
+        private final ByteBuffer          buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private String                    pid;
+        private boolean                   isFirstOfPID;
+        private int                       count;
+        private boolean                   closed;
+
+        /**
+         * Constructor
+         *
+         * @param channel the channel to write to
+         * @param format the format to write
+         *
+         * @throws NullPointerException if any of the specified arguments is
+         *             {@code null}
+         */
+        public Encoder(final WritableByteChannel channel, final Format format) {
+            this.channel = requireNonNull(channel, "Channel cannot be null");
+            this.format  = requireNonNull(format, "Format cannot be null");
+            if (format == Format.BINARY) {
+                buffer.put(MAGIC)
+                        .put(VERSION);
+            } else {
+                buffer.put((byte) '{');
+            }
+        }
+
+        /**
+         * Writes the specified value
+         *
+         * @param value the value to write
+         * @throws IOException if the channel cannot be written
+         * @throws NullPointerException if {@code value} is {@code null}
+         * @throws IllegalStateException if the encoder has been closed
+         */
+        public void write(final FeatureValue value) throws IOException {
+            requireNonNull(value, "Value cannot be null");
+            if (closed) {
+                throw new IllegalStateException("Encoder has been closed");
+            }
+            if (format == Format.BINARY) {
+                writeBinary(value);
+            } else {
+                writeJson(value);
+            }
+            count++;
+        }
+
+        /**
+         * Returns the number of written values
+         *
+         * @return the number of values
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ensure(2);
+            if (format == Format.BINARY) {
+                buffer.put(TAG_END);
+            } else {
+                if (pid != null) {
+                    buffer.put((byte) '}');
+                }
+                buffer.put((byte) '}');
+            }
+            flush();
+        }
+
+        private void writeBinary(final FeatureValue value) throws IOException {
+            if (!value.pid.equals(pid)) {
+                pid = value.pid;
+                ensure(1);
+                buffer.put(TAG_PID);
+                putString(pid);
+            }
+            final Object v = value.value;
+            ensure(1);
+            if (v instanceof Boolean) {
+                buffer.put((Boolean) v ? TAG_TRUE : TAG_FALSE);
+                putString(value.featureID);
+            } else if (v instanceof Integer) {
+                buffer.put(TAG_INTEGER);
+                putString(value.featureID);
+                putVarLong(zigZag((Integer) v));
+            } else if (v instanceof Long) {
+                buffer.put(TAG_LONG);
+                putString(value.featureID);
+                putVarLong(zigZag((Long) v));
+            } else if (v instanceof Double) {
+                buffer.put(TAG_DOUBLE);
+                putString(value.featureID);
+                ensure(8);
+                buffer.putDouble((Double) v);
+            } else {
+                buffer.put(TAG_STRING);
+                putString(value.featureID);
+                putString((String) v);
+            }
+        }
+
+        private void writeJson(final FeatureValue value) throws IOException {
+            if (!value.pid.equals(pid)) {
+                ensure(2);
+                if (pid != null) {
+                    buffer.put((byte) '}')
+                            .put((byte) ',');
+                }
+                pid = value.pid;
+                putJsonString(pid);
+                ensure(2);
+                buffer.put((byte) ':')
+                        .put((byte) '{');
+                isFirstOfPID = true;
+            }
+            if (!isFirstOfPID) {
+                ensure(1);
+                buffer.put((byte) ',');
+            }
+            isFirstOfPID = false;
+            putJsonString(value.featureID);
+            ensure(1);
+            buffer.put((byte) ':');
+            final Object v = value.value;
+            if (v instanceof String || v instanceof Double && !Double.isFinite((Double) v)) {
+                // JSON has no literals for NaN and the infinities
+                putJsonString(v.toString());
+            } else {
+                putAscii(v.toString());
+            }
+        }
+
+        private void putString(final String s) throws IOException {
+            putVarLong(utf8Length(s));
+            putUtf8(s, false);
+        }
+
+        private void putJsonString(final String s) throws IOException {
+            ensure(1);
+            buffer.put((byte) '"');
+            putUtf8(s, true);
+            ensure(1);
+            buffer.put((byte) '"');
+        }
+
+        private void putAscii(final String s) throws IOException {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buffer.put((byte) s.charAt(i));
+            }
+        }
+
+        private void putUtf8(final String s, final boolean isJson) throws IOException {
+            final int length = s.length();
+            for (int i = 0; i < length; i++) {
+                ensure(6);
+                final char c = s.charAt(i);
+                if (isJson && (c == '"' || c == '\\')) {
+                    buffer.put((byte) '\\')
+                            .put((byte) c);
+                } else if (isJson && c < 0x20) {
+                    buffer.put((byte) '\\')
+                            .put((byte) 'u')
+                            .put((byte) '0')
+                            .put((byte) '0')
+                            .put(HEX[c >> 4])
+                            .put(HEX[c & 0xF]);
+                } else if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | c >> 6))
+                            .put((byte) (0x80 | c & 0x3F));
+                } else if (isSurrogatePair(s, i)) {
+                    final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xF0 | codePoint >> 18))
+                            .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                            .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                            .put((byte) (0x80 | codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // an unpaired surrogate cannot be encoded
+                    buffer.put((byte) '?');
+                } else {
+                    buffer.put((byte) (0xE0 | c >> 12))
+                            .put((byte) (0x80 | c >> 6 & 0x3F))
+                            .put((byte) (0x80 | c & 0x3F));
+                }
+            }
+        }
+
+        private void putVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Flushes the buffer unless it has room for the specified number of
+         * bytes
+         */
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the values of the features from the specified channel and passes
+     * them to the specified consumer one after the other
+     *
+     * @param channel the channel to read from
+     * @param format the format to read
+     * @param consumer the consumer of the values
+     * @throws IOException if the channel cannot be read or its content is
+     *             malformed
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public static void decode(final ReadableByteChannel channel, final Format format,
+            final Consumer<FeatureValue> consumer) throws IOException {
+        requireNonNull(channel, "Channel cannot be null");
+        requireNonNull(format, "Format cannot be null");
+        requireNonNull(consumer, "Consumer cannot be null");
+
+        if (format == Format.BINARY) {
+            new BinaryDecoder(channel, emptyBuffer()).decode(consumer);
+        } else {
+            new JsonDecoder(channel, emptyBuffer()).decode(consumer);
+        }
+    }
+
+    /**
+     * Reads the values of the features in the {@link Format#BINARY BINARY}
+     * format from the remaining bytes of the specified buffer, for example a
+     * memory-mapped file, and passes them to the specified consumer one
+     * after the other
+     *
+     * @param buffer the buffer to read from
+     * @param consumer the consumer of the values
+     * @throws IOException if the content of the buffer is malformed
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public static void decode(final ByteBuffer buffer, final Consumer<FeatureValue> consumer) throws IOException {
+        requireNonNull(buffer, "Buffer cannot be null");
+        requireNonNull(consumer, "Consumer cannot be null");
+
+        new BinaryDecoder(null, buffer.slice()).decode(consumer);
+    }
+
+    /**
+     * Buffered input of a channel or the content of a buffer if there is no
+     * channel
+     */
+    private static class Input {
+        private final ReadableByteChannel channel;
+        protected final ByteBuffer        buffer;
+        private long                      position;
+
+        private Input(final ReadableByteChannel channel, final ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer  = buffer;
+        }
+
+        /**
+         * Reads from the channel until the specified number of bytes (at
+         * most the capacity of the buffer) are buffered
+         *
+         * @return {@code false} if the channel or the buffer ends before
+         */
+        protected boolean request(final int bytes) throws IOException {
+            while (buffer.remaining() < bytes) {
+                if (channel == null) {
+                    return false;
+                }
+                buffer.compact();
+                final int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the next byte without consuming it or {@code -1} at the end
+         */
+        protected int peekByte() throws IOException {
+            return request(1) ? buffer.get(buffer.position()) & 0xFF : -1;
+        }
+
+        protected int readByte() throws IOException {
+            if (!request(1)) {
+                throw error("Unexpected end");
+            }
+            position++;
+            return buffer.get() & 0xFF;
+        }
+
+        protected void skip(final int bytes) {
+            position += bytes;
+            buffer.position(buffer.position() + bytes);
+        }
+
+        protected IOException error(final String message) {
+            return new IOException(message + " at position " + position);
+        }
+    }
+
+    private static final class BinaryDecoder extends Input {
+
+        private BinaryDecoder(final ReadableByteChannel channel, final ByteBuffer buffer) {
+            super(channel, buffer);
+        }
+
+        private void decode(final Consumer<FeatureValue> consumer) throws IOException {
+            for (final byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw error("Not a feature export");
+                }
+            }
+            final int version = readByte();
+            if (version != VERSION) {
+                throw error("Unsupported version " + version);
+            }
+            String pid = null;
+            while (true) {
+                final int tag = readByte();
+                if (tag == TAG_END) {
+                    return;
+                }
+                if (tag == TAG_PID) {
+                    pid = readString();
+                    continue;
+                }
+                if (pid == null) {
+                    throw error("Missing configuration PID");
+                }
+                final String featureID = readString();
+                final Object value;
+                switch (tag) {
+                    case TAG_FALSE:
+                        value = Boolean.FALSE;
+                        break;
+                    case TAG_TRUE:
+                        value = Boolean.TRUE;
+                        break;
+                    case TAG_INTEGER:
+                        value = (int) unZigZag(readVarLong());
+                        break;
+                    case TAG_LONG:
+                        value = unZigZag(readVarLong());
+                        break;
+                    case TAG_DOUBLE:
+                        if (!request(8)) {
+                            throw error("Unexpected end");
+                        }
+                        value = buffer.getDouble(buffer.position());
+                        skip(8);
+                        break;
+                    case TAG_STRING:
+                        value = readString();
+                        break;
+                    default:
+                        throw error("Unknown tag " + tag);
+                }
+                consumer.accept(new FeatureValue(pid, featureID, value));
+            }
+        }
+
+        private String readString() throws IOException {
+            final long length = readVarLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw error("Invalid string length");
+            }
+            final int bytes = (int) length;
+            if (bytes <= buffer.capacity()) {
+                if (!request(bytes)) {
+                    throw error("Unexpected end");
+                }
+                final String s;
+                if (buffer.hasArray()) {
+                    s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), bytes, UTF_8);
+                } else {
+                    final byte[] content = new byte[bytes];
+                    buffer.duplicate()
+                            .get(content);
+                    s = new String(content, UTF_8);
+                }
+                skip(bytes);
+                return s;
+            }
+            final byte[] content = new byte[bytes];
+            for (int i = 0; i < bytes; i++) {
+                content[i] = (byte) readByte();
+            }
+            return new String(content, UTF_8);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw error("Malformed number");
+        }
+    }
+
+    /**
+     * Streaming parser of the JSON format whose values are booleans, numbers,
+     * strings or {@code null} (ignored)
+     */
+    private static final class JsonDecoder extends Input {
+
+        private JsonDecoder(final ReadableByteChannel channel, final ByteBuffer buffer) {
+            super(channel, buffer);
+        }
+
+        private void decode(final Consumer<FeatureValue> consumer) throws IOException {
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    final String pid = readString();
+                    expect(':');
+                    expect('{');
+                    if (!consume('}')) {
+                        do {
+                            final String featureID = readString();
+                            expect(':');
+                            final Object value = readValue();
+                            if (value != null) {
+                                consumer.accept(new FeatureValue(pid, featureID, value));
+                            }
+                        } while (consume(','));
+                        expect('}');
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (peek() != -1) {
+                throw error("Unexpected content after the object");
+            }
+        }
+
+        private Object readValue() throws IOException {
+            final int c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == 't') {
+                expectWord("true");
+                return Boolean.TRUE;
+            }
+            if (c == 'f') {
+                expectWord("false");
+                return Boolean.FALSE;
+            }
+            if (c == 'n') {
+                expectWord("null");
+                return null;
+            }
+            final StringBuilder number = new StringBuilder();
+            while (peekByte() != -1 && "+-.eE0123456789".indexOf(peekByte()) >= 0) {
+                number.append((char) readByte());
+            }
+            final String text = number.toString();
+            if (isIntegral(text)) {
+                try {
+                    // integral numbers are kept exact for the INTEGER and LONG variants
+                    return Long.valueOf(text);
+                } catch (final NumberFormatException e) {
+                    // exceeds the range of a long
+                }
+            }
+            try {
+                return Double.valueOf(text);
+            } catch (final NumberFormatException e) {
+                throw error("Unsupported value");
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            final StringBuilder builder = new StringBuilder();
+            while (true) {
+                final int c = readByte();
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c >= 0x80) {
+                    builder.appendCodePoint(readCodePoint(c));
+                    continue;
+                }
+                if (c != '\\') {
+                    builder.append((char) c);
+                    continue;
+                }
+                final int escaped = readByte();
+                switch (escaped) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        int hex = 0;
+                        for (int i = 0; i < 4; i++) {
+                            final int digit = Character.digit(readByte(), 16);
+                            if (digit < 0) {
+                                throw error("Invalid escape sequence");
+                            }
+                            hex = hex << 4 | digit;
+                        }
+                        builder.append((char) hex);
+                        break;
+                    default:
+                        builder.append((char) escaped);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Decodes the UTF-8 sequence starting with the specified byte
+         */
+        private int readCodePoint(final int first) throws IOException {
+            final int continuations;
+            int       codePoint;
+            if ((first & 0xE0) == 0xC0) {
+                continuations = 1;
+                codePoint     = first & 0x1F;
+            } else if ((first & 0xF0) == 0xE0) {
+                continuations = 2;
+                codePoint     = first & 0x0F;
+            } else if ((first & 0xF8) == 0xF0) {
+                continuations = 3;
+                codePoint     = first & 0x07;
+            } else {
+                throw error("Malformed UTF-8");
+            }
+            for (int i = 0; i < continuations; i++) {
+                final int b = readByte();
+                if ((b & 0xC0) != 0x80) {
+                    throw error("Malformed UTF-8");
+                }
+                codePoint = codePoint << 6 | b & 0x3F;
+            }
+            if (!Character.isValidCodePoint(codePoint)) {
+                throw error("Malformed UTF-8");
+            }
+            return codePoint;
+        }
+
+        private void expectWord(final String word) throws IOException {
+            for (int i = 0; i < word.length(); i++) {
+                if (readByte() != word.charAt(i)) {
+                    throw error("Unsupported value");
+                }
+            }
+        }
+
+        private void expect(final char c) throws IOException {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private boolean consume(final char c) throws IOException {
+            if (peek() == c) {
+                readByte();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips the whitespace and returns the next byte without consuming
+         * it or {@code -1} at the end
+         */
+        private int peek() throws IOException {
+            int c;
+            while ((c = peekByte()) == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                readByte();
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Returns an empty buffer to be filled from a channel
+     */
+    private static ByteBuffer emptyBuffer() {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isSurrogatePair(final String s, final int index) {
+        return Character.isHighSurrogate(s.charAt(index)) && index + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(index + 1));
+    }
+
+    /**
+     * Returns the number of bytes of the UTF-8 encoding of the specified
+     * string as written by the {@link Encoder}
+     */
+    private static int utf8Length(final String s) {
+        final int length = s.length();
+        int       bytes  = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (isSurrogatePair(s, i)) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isIntegral(final String number) {
+        final int start = number.startsWith("-") ? 1 : 0;
+        if (start == number.length()) {
+            return false;
+        }
+        for (int i = start; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long zigZag(final long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(final long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+}
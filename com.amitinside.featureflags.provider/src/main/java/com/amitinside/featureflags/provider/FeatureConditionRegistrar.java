@@ -0,0 +1,141 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureCondition.CONDITION_ID;
+import static com.amitinside.featureflags.api.FeatureCondition.FEATURE_ID;
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import com.amitinside.featureflags.api.FeatureCondition;
+
+/**
+ * Registers a {@link FeatureCondition} service for every enabled feature.
+ *
+ * <p>
+ * Changes of the feature states only request a synchronization of the
+ * registrations. The synchronization runs asynchronously and handles all the
+ * changes requested in the meantime at once, so that many features flipping
+ * together result in a single pass of registrations and unregistrations.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureConditionRegistrar {
+
+    /** The condition service object shared by all registrations */
+    private static final FeatureCondition CONDITION = new FeatureCondition() {
+        // marker service
+    };
+
+    /** Bundle Context to register the conditions with */
+    private final BundleContext                                      bundleContext;
+
+    /** Supplies the identifiers of all currently enabled features */
+    private final Supplier<Set<String>>                              enabledFeatures;
+
+    /** Executor to run the synchronizations */
+    private final Executor                                           executor;
+
+    /** Flag denoting that a synchronization has been requested but not yet started */
+    private final AtomicBoolean                                      syncRequested = new AtomicBoolean();
+
+    /** Data container -> Key: Feature ID Value: Condition registration */
+    private final Map<String, ServiceRegistration<FeatureCondition>> registrations = new HashMap<>();
+
+    /** Flag denoting that the registrar has been closed */
+    private volatile boolean                                         closed;
+
+    /**
+     * Constructor
+     *
+     * @param bundleContext bundle context to register the conditions with
+     * @param enabledFeatures supplies the identifiers of all enabled features
+     * @param executor executor to run the synchronizations
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureConditionRegistrar(final BundleContext bundleContext, final Supplier<Set<String>> enabledFeatures,
+            final Executor executor) {
+        this.bundleContext   = requireNonNull(bundleContext, "Bundle context instance cannot be null");
+        this.enabledFeatures = requireNonNull(enabledFeatures, "Enabled features supplier cannot be null");
+        this.executor        = requireNonNull(executor, "Executor instance cannot be null");
+    }
+
+    /**
+     * Requests a synchronization of the registered conditions with the enabled
+     * features. Requests made before a pending synchronization has started are
+     * handled by that synchronization.
+     */
+    public void requestSync() {
+        if (!closed && syncRequested.compareAndSet(false, true)) {
+            executor.execute(this::sync);
+        }
+    }
+
+    /**
+     * Unregisters all conditions. Subsequent synchronization requests are
+     * ignored.
+     */
+    public void close() {
+        closed = true;
+        synchronized (registrations) {
+            registrations.values()
+                    .forEach(FeatureConditionRegistrar::unregister);
+            registrations.clear();
+        }
+    }
+
+    private void sync() {
+        syncRequested.set(false);
+        final Set<String> enabled = enabledFeatures.get();
+        synchronized (registrations) {
+            if (closed) {
+                return;
+            }
+            final Iterator<Entry<String, ServiceRegistration<FeatureCondition>>> it = registrations.entrySet()
+                    .iterator();
+            while (it.hasNext()) {
+                final Entry<String, ServiceRegistration<FeatureCondition>> entry = it.next();
+                if (!enabled.contains(entry.getKey())) {
+                    unregister(entry.getValue());
+                    it.remove();
+                }
+            }
+            for (final String featureID : enabled) {
+                if (!registrations.containsKey(featureID)) {
+                    final Dictionary<String, Object> properties = new Hashtable<>();
+                    properties.put(CONDITION_ID, METATYPE_FEATURE_ID_PREFIX + featureID);
+                    properties.put(FEATURE_ID, featureID);
+                    final ServiceRegistration<FeatureCondition> registration = bundleContext
+                            .registerService(FeatureCondition.class, CONDITION, properties);
+                    if (registration != null) {
+                        registrations.put(featureID, registration);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void unregister(final ServiceRegistration<FeatureCondition> registration) {
+        try {
+            registration.unregister();
+        } catch (final IllegalStateException e) {
+            // already unregistered since the bundle is stopping
+        }
+    }
+
+}
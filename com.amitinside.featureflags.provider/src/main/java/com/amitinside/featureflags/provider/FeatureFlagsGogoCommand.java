@@ -1,16 +1,32 @@
 package com.amitinside.featureflags.provider;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static java.util.stream.Collectors.toList;
 import static org.apache.felix.service.command.CommandProcessor.COMMAND_FUNCTION;
 import static org.apache.felix.service.command.CommandProcessor.COMMAND_SCOPE;
+import static org.osgi.service.component.annotations.ReferenceCardinality.OPTIONAL;
+import static org.osgi.service.component.annotations.ReferencePolicy.DYNAMIC;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 
 import com.amitinside.featureflags.api.FeatureDTO;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+import com.amitinside.featureflags.provider.FeatureJournal.Entry;
+import com.amitinside.featureflags.provider.FeatureTracer.Trace;
 
 //@formatter:off
 @Component(
@@ -20,20 +36,47 @@ import com.amitinside.featureflags.api.FeatureManager;
               COMMAND_FUNCTION + "=features",
               COMMAND_FUNCTION + "=updatefeature",
               COMMAND_FUNCTION + "=enablefeature",
-              COMMAND_FUNCTION + "=disablefeature"
+              COMMAND_FUNCTION + "=disablefeature",
+              COMMAND_FUNCTION + "=overridefeature",
+              COMMAND_FUNCTION + "=clearoverride",
+              COMMAND_FUNCTION + "=schedulefeature",
+              COMMAND_FUNCTION + "=enablefeatureat",
+              COMMAND_FUNCTION + "=disablefeatureafter",
+              COMMAND_FUNCTION + "=cancelschedules",
+              COMMAND_FUNCTION + "=history",
+              COMMAND_FUNCTION + "=tracefeature",
+              COMMAND_FUNCTION + "=samplingrates",
+              COMMAND_FUNCTION + "=traces",
+              COMMAND_FUNCTION + "=cleartraces",
+              COMMAND_FUNCTION + "=export",
+              COMMAND_FUNCTION + "=import"
          }
 )
 //@formatter:on
 public final class FeatureFlagsGogoCommand {
 
     @Reference
-    private FeatureManager featureManager;
+    private FeatureManager          featureManager;
+
+    @Reference
+    private FeatureTracer           tracer;
+
+    @Reference
+    private FeatureTransfer         transfer;
+
+    @Reference(cardinality = OPTIONAL, policy = DYNAMIC)
+    private volatile FeatureJournal journal;
 
     public List<FeatureDTO> features() {
         return featureManager.getFeatures()
                 .collect(toList());
     }
 
+    public List<FeatureDTO> features(final String locale) {
+        return featureManager.getLocalizedFeatures(locale)
+                .collect(toList());
+    }
+
     public void updatefeature(final String featureID, final boolean isEnabled) {
         featureManager.updateFeature(featureID, isEnabled);
     }
@@ -45,4 +88,121 @@ public final class FeatureFlagsGogoCommand {
     public void disablefeature(final String featureID) {
         updatefeature(featureID, false);
     }
+
+    public void overridefeature(final String tenantID, final String featureID, final boolean isEnabled) {
+        featureManager.overrideFeature(tenantID, featureID, isEnabled);
+    }
+
+    public void clearoverride(final String tenantID, final String featureID) {
+        featureManager.overrideFeature(tenantID, featureID, null);
+    }
+
+    /**
+     * @param time ISO-8601 instant, for example {@code 2018-01-01T00:00:00Z}
+     */
+    public void schedulefeature(final String featureID, final boolean isEnabled, final String time) {
+        featureManager.scheduleFeature(featureID, isEnabled, Instant.parse(time));
+    }
+
+    public void enablefeatureat(final String featureID, final String time) {
+        schedulefeature(featureID, true, time);
+    }
+
+    /**
+     * @param duration ISO-8601 duration, for example {@code PT2H}
+     */
+    public void disablefeatureafter(final String featureID, final String duration) {
+        featureManager.scheduleFeature(featureID, false, Instant.now()
+                .plus(Duration.parse(duration)));
+    }
+
+    public void cancelschedules(final String featureID) {
+        featureManager.cancelSchedules(featureID);
+    }
+
+    public List<Entry> history() throws IOException {
+        return query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public List<Entry> history(final String featureID) throws IOException {
+        return query(featureID, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param from ISO-8601 instant (inclusive), for example
+     *            {@code 2018-01-01T00:00:00Z}
+     * @param to ISO-8601 instant (exclusive)
+     */
+    public List<Entry> history(final String from, final String to) throws IOException {
+        return history(null, from, to);
+    }
+
+    public List<Entry> history(final String featureID, final String from, final String to) throws IOException {
+        final Instant start = Instant.parse(from);
+        final Instant end   = Instant.parse(to);
+        return query(featureID, start.toEpochMilli(), end.toEpochMilli());
+    }
+
+    /**
+     * @param rate fraction of the evaluations to trace between {@code 0}
+     *            (stops the tracing) and {@code 1}
+     */
+    public void tracefeature(final String featureID, final double rate) {
+        tracer.setSamplingRate(featureID, rate);
+    }
+
+    public Map<String, Double> samplingrates() {
+        return tracer.getSamplingRates();
+    }
+
+    public List<Trace> traces() {
+        return tracer.getTraces(null);
+    }
+
+    public List<Trace> traces(final String featureID) {
+        return tracer.getTraces(featureID);
+    }
+
+    public void cleartraces() {
+        tracer.clear();
+    }
+
+    /**
+     * @param path file to write, in JSON if its name ends with {@code .json}
+     *            and in the binary format otherwise
+     */
+    public int export(final String path) throws IOException {
+        return export(path, null);
+    }
+
+    /**
+     * @param filter glob pattern of the feature IDs, for example
+     *            {@code payment*}
+     */
+    public int export(final String path, final String filter) throws IOException {
+        final Path file = Paths.get(path);
+        try (FileChannel channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            return transfer.exportFeatures(channel, Format.of(file), filter);
+        }
+    }
+
+    // Gogo resolves the command import, a Java keyword, to this method
+    public int _import(final String path) throws IOException {
+        return _import(path, null);
+    }
+
+    public int _import(final String path, final String filter) throws IOException {
+        final Path file = Paths.get(path);
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            return transfer.importFeatures(channel, Format.of(file), filter);
+        }
+    }
+
+    private List<Entry> query(final String featureID, final long from, final long to) throws IOException {
+        final FeatureJournal current = journal;
+        if (current == null) {
+            throw new IllegalStateException("Journal is not enabled");
+        }
+        return current.query(featureID, from, to);
+    }
 }
@@ -0,0 +1,449 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the updates of the features.
+ *
+ * <p>
+ * The entries are written to memory-mapped segment files of fixed size in
+ * the journal directory. Appending only enqueues the entry and requests a
+ * commit which runs asynchronously, so that the journal does not add any
+ * latency to the updates. A commit writes all entries enqueued so far and
+ * forces them to the storage at once (group commit). Every record is
+ * prefixed by its length and checksum, so that a record torn by a crash is
+ * detected and discarded when the journal is reopened.
+ * </p>
+ *
+ * <p>
+ * A new segment is started as soon as a record does not fit into the current
+ * one. As soon as there are more segments than retained, the oldest segments
+ * are compacted into a single segment which only keeps the last entry of
+ * every feature, so that the state of every feature at the beginning of the
+ * retained history is never lost.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureJournal implements Closeable {
+
+    /** The source of the updates performed through the {@code FeatureManager} */
+    public static final String          SOURCE_API         = "api";
+
+    /** The source of the scheduled updates */
+    public static final String          SOURCE_SCHEDULE    = "schedule";
+
+    /** The source of the updates performed by the kill switches */
+    public static final String          SOURCE_KILL_SWITCH = "killswitch";
+
+    /** The prefix of the segment file names */
+    static final String                 SEGMENT_PREFIX     = "journal-";
+
+    /** The suffix of the segment file names */
+    static final String                 SEGMENT_SUFFIX     = ".log";
+
+    /** The size of the length and the checksum preceding every record */
+    private static final int            RECORD_HEADER_SIZE = 8;
+
+    /** The directory of the segments */
+    private final Path                  directory;
+
+    /** The size of a segment in bytes */
+    private final int                   segmentSize;
+
+    /** The maximum number of segments */
+    private final int                   maxSegments;
+
+    /** Executor to run the commits */
+    private final Executor              executor;
+
+    /** Handles the failures of the asynchronous commits */
+    private final Consumer<IOException> errorHandler;
+
+    /** The entries which have not been committed yet */
+    private final Queue<Entry>          pending            = new ConcurrentLinkedQueue<>();
+
+    /** Flag denoting that a commit has been requested but not yet started */
+    private final AtomicBoolean         commitRequested    = new AtomicBoolean();
+
+    /** The segments in ascending order (guarded by {@code this}) */
+    private final List<Path>            segments           = new ArrayList<>();
+
+    /** Channel of the current segment (guarded by {@code this}) */
+    private FileChannel                 channel;
+
+    /** The mapped current segment (guarded by {@code this}) */
+    private MappedByteBuffer            buffer;
+
+    /** The index of the current segment (guarded by {@code this}) */
+    private long                        segmentIndex;
+
+    /** Flag denoting that the journal has been closed */
+    private volatile boolean            closed;
+
+    /**
+     * An update of a feature
+     */
+    public static final class Entry {
+        /** The time of the update in milliseconds since the epoch */
+        public final long    time;
+        /** The ID of the updated feature */
+        public final String  featureID;
+        /** The new state of the feature */
+        public final boolean isEnabled;
+        /** The source which performed the update */
+        public final String  source;
+
+        /**
+         * Constructor
+         *
+         * @param time the time of the update in milliseconds since the epoch
+         * @param featureID the ID of the updated feature
+         * @param isEnabled the new state of the feature
+         * @param source the source which performed the update
+         *
+         * @throws NullPointerException if {@code featureID} or {@code source}
+         *             is {@code null}
+         */
+        public Entry(final long time, final String featureID, final boolean isEnabled, final String source) {
+            this.time      = time;
+            this.featureID = requireNonNull(featureID, "Feature ID cannot be null");
+            this.isEnabled = isEnabled;
+            this.source    = requireNonNull(source, "Source cannot be null");
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(time) + " " + featureID + "=" + isEnabled + " (" + source + ")";
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory of the segments (created if missing)
+     * @param segmentSize the size of a segment in bytes
+     * @param maxSegments the maximum number of segments
+     * @param executor executor to run the commits
+     * @param errorHandler handles the failures of the asynchronous commits
+     *
+     * @throws NullPointerException if {@code directory}, {@code executor} or
+     *             {@code errorHandler} is {@code null}
+     * @throws IllegalArgumentException if {@code segmentSize} is less than
+     *             {@code 1024} or {@code maxSegments} is less than {@code 2}
+     * @throws IOException if the journal cannot be opened
+     */
+    public FeatureJournal(final Path directory, final int segmentSize, final int maxSegments,
+            final Executor executor, final Consumer<IOException> errorHandler) throws IOException {
+        requireNonNull(directory, "Directory cannot be null");
+        checkArgument(segmentSize >= 1024, "Segment size must be at least 1024 bytes");
+        checkArgument(maxSegments >= 2, "At least two segments must be retained");
+
+        this.directory    = directory;
+        this.segmentSize  = segmentSize;
+        this.maxSegments  = maxSegments;
+        this.executor     = requireNonNull(executor, "Executor instance cannot be null");
+        this.errorHandler = requireNonNull(errorHandler, "Error handler cannot be null");
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+        // the zero-padded indices sort lexicographically
+        Collections.sort(segments);
+        if (segments.isEmpty()) {
+            open(0);
+        } else {
+            final Path last = segments.remove(segments.size() - 1);
+            open(indexOf(last));
+            recover();
+        }
+    }
+
+    /**
+     * Appends an update of a feature. The entry is committed asynchronously.
+     *
+     * @param time the time of the update in milliseconds since the epoch
+     * @param featureID the ID of the updated feature
+     * @param isEnabled the new state of the feature
+     * @param source the source which performed the update
+     *
+     * @throws NullPointerException if {@code featureID} or {@code source} is
+     *             {@code null}
+     */
+    public void append(final long time, final String featureID, final boolean isEnabled, final String source) {
+        final Entry entry = new Entry(time, featureID, isEnabled, source);
+        if (closed) {
+            return;
+        }
+        pending.add(entry);
+        if (commitRequested.compareAndSet(false, true)) {
+            executor.execute(this::commit);
+        }
+    }
+
+    /**
+     * Returns the journaled updates in the order they have been appended
+     *
+     * @param featureID the ID of the feature or {@code null} for all features
+     * @param from the earliest time (inclusive) in milliseconds since the epoch
+     * @param to the latest time (exclusive) in milliseconds since the epoch
+     * @return the matching entries (never {@code null})
+     *
+     * @throws IOException if the segments cannot be read
+     */
+    public synchronized List<Entry> query(final String featureID, final long from, final long to)
+            throws IOException {
+        if (!closed) {
+            write();
+        }
+        final List<Entry> entries = new ArrayList<>();
+        for (final Path segment : segments) {
+            read(ByteBuffer.wrap(Files.readAllBytes(segment)), entries);
+        }
+        final ByteBuffer current = buffer.duplicate();
+        current.rewind();
+        read(current, entries);
+        entries.removeIf(e -> featureID != null && !featureID.equals(e.featureID) || e.time < from || e.time >= to);
+        return entries;
+    }
+
+    /**
+     * Returns the number of segments
+     *
+     * @return the number of segments including the current one
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size() + 1;
+    }
+
+    /**
+     * Commits all pending entries synchronously
+     *
+     * @throws IOException if the entries cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed) {
+            write();
+        }
+    }
+
+    /**
+     * Commits all pending entries and closes the journal. Subsequent appends
+     * are ignored.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            write();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void commit() {
+        commitRequested.set(false);
+        try {
+            flush();
+        } catch (final IOException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    /**
+     * Writes the pending entries and forces them to the storage
+     */
+    private void write() throws IOException {
+        boolean isWritten = false;
+        Entry   entry;
+        while ((entry = pending.poll()) != null) {
+            final byte[] record;
+            try {
+                record = encode(entry);
+            } catch (final UTFDataFormatException e) {
+                // identifiers exceeding 64 KiB are not journaled
+                continue;
+            }
+            // a record never spans segments and the next length must fit as end marker
+            if (record.length + Integer.BYTES > segmentSize) {
+                continue;
+            }
+            if (buffer.remaining() < record.length + Integer.BYTES) {
+                buffer.force();
+                roll();
+            }
+            buffer.put(record);
+            isWritten = true;
+        }
+        if (isWritten) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Starts a new segment and compacts the oldest segments if required
+     */
+    private void roll() throws IOException {
+        channel.close();
+        segments.add(pathOf(segmentIndex));
+        open(segmentIndex + 1);
+        if (segments.size() + 1 > maxSegments) {
+            compact();
+        }
+    }
+
+    /**
+     * Compacts the oldest segments into the newest of them, so that the
+     * journal consists of {@code maxSegments} segments again
+     */
+    private void compact() throws IOException {
+        final List<Path>         compacted = new ArrayList<>(segments.subList(0, segments.size() - maxSegments + 2));
+        final Map<String, Entry> last      = new LinkedHashMap<>();
+        for (final Path segment : compacted) {
+            final List<Entry> entries = new ArrayList<>();
+            read(ByteBuffer.wrap(Files.readAllBytes(segment)), entries);
+            for (final Entry entry : entries) {
+                // keeps the entries in the order of their last update
+                last.remove(entry.featureID);
+                last.put(entry.featureID, entry);
+            }
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (final Entry entry : last.values()) {
+            bytes.write(encode(entry));
+        }
+        bytes.write(new byte[Integer.BYTES]);
+
+        final Path target = compacted.get(compacted.size() - 1);
+        final Path temp   = directory.resolve(target.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        for (final Path segment : compacted.subList(0, compacted.size() - 1)) {
+            Files.delete(segment);
+        }
+        segments.removeAll(compacted);
+        segments.add(0, target);
+    }
+
+    /**
+     * Positions the current segment after its last intact record and clears
+     * the remainder
+     */
+    private void recover() {
+        read(buffer, new ArrayList<>());
+        final int position = buffer.position();
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        buffer.position(position);
+    }
+
+    private void open(final long index) throws IOException {
+        segmentIndex = index;
+        channel      = FileChannel.open(pathOf(index), CREATE, READ, WRITE);
+        buffer       = channel.map(READ_WRITE, 0, segmentSize);
+    }
+
+    private Path pathOf(final long index) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static long indexOf(final Path segment) {
+        final String name = segment.getFileName()
+                .toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Encodes the record of the specified entry
+     */
+    private static byte[] encode(final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream      out   = new DataOutputStream(bytes);
+        out.writeLong(entry.time);
+        out.writeBoolean(entry.isEnabled);
+        out.writeUTF(entry.featureID);
+        out.writeUTF(entry.source);
+
+        final byte[] payload = bytes.toByteArray();
+        final CRC32  crc     = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Reads the intact records from the position of the specified buffer and
+     * leaves the buffer positioned after the last of them
+     */
+    private static void read(final ByteBuffer buffer, final List<Entry> entries) {
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int start  = buffer.position();
+            final int length = buffer.getInt();
+            final int check  = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return;
+            }
+            final byte[] payload = new byte[length];
+            buffer.get(payload);
+            final CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != check) {
+                buffer.position(start);
+                return;
+            }
+            try {
+                final DataInputStream in        = new DataInputStream(new ByteArrayInputStream(payload));
+                final long            time      = in.readLong();
+                final boolean         isEnabled = in.readBoolean();
+                entries.add(new Entry(time, in.readUTF(), isEnabled, in.readUTF()));
+            } catch (final IOException e) {
+                buffer.position(start);
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amitinside.featureflags.provider.ManagerHelper.KillSwitchPolicy;
+
+/**
+ * Trips the kill switches of the features whose reported error rates exceed
+ * their policies.
+ *
+ * <p>
+ * The outcomes of a feature are only counted if the feature has a policy. The
+ * error rate is evaluated whenever a failure is reported, so that a kill
+ * switch trips with the failure exceeding the policy. A tripped kill switch
+ * discards the counted outcomes of the feature.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureKillSwitch {
+
+    /**
+     * Gets notified whenever a kill switch trips
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void tripped(String featureID, double errorRate);
+    }
+
+    /** Number of buckets a window is divided into */
+    private static final int                                 BUCKETS            = 10;
+
+    /** Minimum number of outcomes within the window to evaluate the error rate */
+    private final long                                       minimumOutcomes;
+
+    /** Clock to read the time from */
+    private final Clock                                      clock;
+
+    /** Gets notified whenever a kill switch trips */
+    private final Listener                                   listener;
+
+    /** Data container -> Key: Configuration PID Value: Configured policies of the features */
+    private final Map<String, Map<String, KillSwitchPolicy>> configuredPolicies = new HashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Counted outcomes */
+    private final Map<String, Monitor>                       monitors           = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Policy */
+    private volatile Map<String, KillSwitchPolicy>           policies           = Collections.emptyMap();
+
+    private static final class Monitor {
+        private final KillSwitchPolicy policy;
+        private final ErrorRateCounter counter;
+        private final AtomicBoolean    tripping = new AtomicBoolean();
+
+        private Monitor(final KillSwitchPolicy policy) {
+            this.policy  = policy;
+            this.counter = new ErrorRateCounter(policy.window, BUCKETS);
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param minimumOutcomes minimum number of outcomes within the window to
+     *            evaluate the error rate
+     * @param clock clock to read the time from
+     * @param listener gets notified whenever a kill switch trips
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code minimumOutcomes} is not
+     *             positive
+     */
+    public FeatureKillSwitch(final long minimumOutcomes, final Clock clock, final Listener listener) {
+        checkArgument(minimumOutcomes > 0, "Minimum number of outcomes must be positive");
+
+        this.minimumOutcomes = minimumOutcomes;
+        this.clock           = requireNonNull(clock, "Clock instance cannot be null");
+        this.listener        = requireNonNull(listener, "Listener cannot be null");
+    }
+
+    /**
+     * Replaces the policies configured by the specified configuration. If
+     * multiple configurations specify a policy for the same feature, any of
+     * them applies.
+     *
+     * @param configurationPID the configuration PID
+     * @param policies the policies of the configuration
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public void setPolicies(final String configurationPID, final Map<String, KillSwitchPolicy> policies) {
+        requireNonNull(configurationPID, "Configuration PID cannot be null");
+        requireNonNull(policies, "Policies cannot be null");
+
+        synchronized (configuredPolicies) {
+            if (policies.isEmpty()) {
+                configuredPolicies.remove(configurationPID);
+            } else {
+                configuredPolicies.put(configurationPID, policies);
+            }
+            final Map<String, KillSwitchPolicy> merged = new HashMap<>();
+            configuredPolicies.values()
+                    .forEach(p -> p.forEach(merged::putIfAbsent));
+            this.policies = merged;
+            monitors.keySet()
+                    .retainAll(merged.keySet());
+        }
+    }
+
+    /**
+     * Reports an outcome of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param isFailure {@code true} if the outcome is a failure
+     */
+    public void report(final String featureID, final boolean isFailure) {
+        final KillSwitchPolicy policy = policies.get(featureID);
+        if (policy == null) {
+            return;
+        }
+        Monitor monitor = monitors.get(featureID);
+        if (monitor == null || monitor.policy != policy) {
+            monitor = monitors.compute(featureID, (k, m) -> m != null && m.policy == policy ? m : new Monitor(policy));
+        }
+        final long now = clock.millis();
+        monitor.counter.record(isFailure, now);
+        if (!isFailure) {
+            return;
+        }
+        final long total    = monitor.counter.getTotal(now);
+        final long failures = monitor.counter.getFailures(now);
+        if (total < minimumOutcomes || failures * 100.0 / total <= policy.maxErrorRate) {
+            return;
+        }
+        if (monitor.tripping.compareAndSet(false, true)) {
+            try {
+                listener.tripped(featureID, failures * 100.0 / total);
+            } finally {
+                monitor.counter.reset();
+                monitor.tripping.set(false);
+            }
+        }
+    }
+
+}
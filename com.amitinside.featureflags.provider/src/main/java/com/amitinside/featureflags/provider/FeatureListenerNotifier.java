@@ -0,0 +1,96 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.amitinside.featureflags.api.FeatureListener;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+/**
+ * Notifies the registered {@link FeatureListener}s of the published
+ * generations of the feature states.
+ *
+ * <p>
+ * Changes only request a notification which runs asynchronously and notifies
+ * the listeners of the latest generation at that time, so that many changes
+ * in a row result in a single notification. A generation is never notified
+ * twice.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureListenerNotifier {
+
+    /** The listeners to notify */
+    private final Collection<FeatureListener> listeners;
+
+    /** Supplies the currently published snapshot */
+    private final Supplier<FeatureSnapshot>   snapshot;
+
+    /** Executor to run the notifications */
+    private final Executor                    executor;
+
+    /** Flag denoting that a notification has been requested but not yet started */
+    private final AtomicBoolean               notifyRequested = new AtomicBoolean();
+
+    /** The last notified generation (only accessed by the executor) */
+    private long                              lastGeneration  = -1;
+
+    /** Flag denoting that the notifier has been closed */
+    private volatile boolean                  closed;
+
+    /**
+     * Constructor
+     *
+     * @param listeners the listeners to notify (might change concurrently)
+     * @param snapshot supplies the currently published snapshot
+     * @param executor executor to run the notifications
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureListenerNotifier(final Collection<FeatureListener> listeners,
+            final Supplier<FeatureSnapshot> snapshot, final Executor executor) {
+        this.listeners = requireNonNull(listeners, "Listeners cannot be null");
+        this.snapshot  = requireNonNull(snapshot, "Snapshot supplier cannot be null");
+        this.executor  = requireNonNull(executor, "Executor instance cannot be null");
+    }
+
+    /**
+     * Requests a notification of the listeners. Requests made before a pending
+     * notification has started are handled by that notification.
+     */
+    public void requestNotify() {
+        if (!closed && notifyRequested.compareAndSet(false, true)) {
+            executor.execute(this::notifyListeners);
+        }
+    }
+
+    /**
+     * Stops notifying the listeners. Subsequent requests are ignored.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    private void notifyListeners() {
+        notifyRequested.set(false);
+        final FeatureSnapshot current = snapshot.get();
+        if (closed || current.getGeneration() == lastGeneration) {
+            return;
+        }
+        lastGeneration = current.getGeneration();
+        for (final FeatureListener listener : listeners) {
+            try {
+                listener.featuresChanged(current);
+            } catch (final RuntimeException e) {
+                // a failing listener must not prevent the others from being notified
+            }
+        }
+    }
+
+}
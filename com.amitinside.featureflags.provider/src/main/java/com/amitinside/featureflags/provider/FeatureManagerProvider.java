@@ -1,24 +1,67 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODES;
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_AUTO;
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_PLATFORM;
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_VIRTUAL;
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_API;
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_KILL_SWITCH;
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_SCHEDULE;
+import static com.amitinside.featureflags.provider.ManagerHelper.applyConfiguredValue;
 import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.provider.ManagerHelper.getAllConfigured;
 import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredFeatures;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredKillSwitches;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredPrerequisites;
+import static com.amitinside.featureflags.provider.ManagerHelper.getConfiguredSchedules;
+import static com.amitinside.featureflags.provider.ManagerHelper.toConfiguredSchedules;
+import static com.amitinside.featureflags.provider.ManagerHelper.toFeatureDTO;
+import static com.amitinside.featureflags.provider.ManagerHelper.toScheduleEntry;
+import static com.amitinside.featureflags.provider.ManagerHelper.toSchedules;
+import static com.amitinside.featureflags.provider.ManagerHelper.toTenantOverride;
+import static com.amitinside.featureflags.provider.ManagerHelper.withValue;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.felix.utils.log.Logger.LOG_INFO;
+import static org.apache.felix.utils.log.Logger.LOG_WARNING;
 import static org.osgi.service.cm.ConfigurationEvent.CM_UPDATED;
+import static org.osgi.service.component.annotations.FieldOption.UPDATE;
+import static org.osgi.service.component.annotations.ReferenceCardinality.MULTIPLE;
+import static org.osgi.service.component.annotations.ReferenceCardinality.OPTIONAL;
+import static org.osgi.service.component.annotations.ReferencePolicy.DYNAMIC;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import org.apache.felix.utils.log.Logger;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationEvent;
@@ -28,48 +71,560 @@ import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.osgi.service.metatype.annotations.Option;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
 
 import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureListener;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureMonitor;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.api.exposure.ExposureMetricsDTO;
+import com.amitinside.featureflags.api.exposure.ExposureRecorder;
+import com.amitinside.featureflags.api.exposure.ExposureSink;
+import com.amitinside.featureflags.api.replication.ReplicationTransport;
+import com.amitinside.featureflags.provider.FeatureManagerProvider.Config;
+import com.amitinside.featureflags.provider.ManagerHelper.ConfiguredState;
 import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.ManagerHelper.Schedule;
+import com.amitinside.featureflags.provider.ManagerHelper.TenantOverride;
 
 /**
- * This implements the {@link FeatureManager}.
+ * This implements the {@link FeatureManager}, the {@link FeatureMonitor} and the
+ * {@link ExposureRecorder}.
  */
 @ProvideFeatureCapability
 @Component(name = "FeatureManager")
-public final class FeatureManagerProvider implements FeatureManager, ConfigurationListener {
+@Designate(ocd = Config.class)
+public final class FeatureManagerProvider implements FeatureManager, FeatureMonitor, ExposureRecorder,
+        ConfigurationListener {
+
+    @ObjectClassDefinition(name = "Feature Manager Configuration")
+    @interface Config {
+        @AttributeDefinition(name = "Write Debounce Window", description = "Time window in milliseconds in which "
+                + "rapid updates of the same feature are coalesced into a single configuration update "
+                + "(0 to disable)", min = "0")
+        long debounce_window() default 0L;
+
+        @AttributeDefinition(name = "Schedule Tick", description = "Resolution in milliseconds at which "
+                + "scheduled updates of the features are applied", min = "1")
+        long schedule_tick() default DEFAULT_SCHEDULE_TICK;
+
+        @AttributeDefinition(name = "Kill Switch Minimum Outcomes", description = "Minimum number of reported "
+                + "outcomes within the window of a kill switch policy before the error rate is evaluated", min = "1")
+        long killswitch_minimum_outcomes() default DEFAULT_MIN_OUTCOMES;
+
+        @AttributeDefinition(name = "Shared Table Path", description = "Path of the memory-mapped file to which "
+                + "the effective feature states are exported for co-located processes (empty to disable)")
+        String shared_table_path() default "";
+
+        @AttributeDefinition(name = "Shared Table Capacity", description = "Maximum number of features exported "
+                + "to the shared table", min = "1")
+        int shared_table_capacity() default DEFAULT_TABLE_CAPACITY;
+
+        @AttributeDefinition(name = "Journal Path", description = "Path of the directory of the journal "
+                + "recording the updates of the features (empty to disable)")
+        String journal_path() default "";
+
+        @AttributeDefinition(name = "Journal Segment Size", description = "Size in bytes of a segment file "
+                + "of the journal", min = "1024")
+        int journal_segment_size() default DEFAULT_SEGMENT_SIZE;
+
+        @AttributeDefinition(name = "Journal Maximum Segments", description = "Maximum number of segment files "
+                + "of the journal before the oldest ones are compacted", min = "2")
+        int journal_max_segments() default DEFAULT_MAX_SEGMENTS;
+
+        @AttributeDefinition(name = "Exposure Recording", description = "Whether the exposures of tenants "
+                + "to the features are recorded for the registered exposure sinks")
+        boolean exposure_enabled() default false;
+
+        @AttributeDefinition(name = "Exposure Tenant Checks", description = "Whether every check of a feature "
+                + "for a tenant is recorded as exposure of the tenant (requires exposure recording)")
+        boolean exposure_tenant_checks() default false;
+
+        @AttributeDefinition(name = "Exposure File Path", description = "Path of the file to which the "
+                + "recorded exposures are appended (empty to disable)")
+        String exposure_file_path() default "";
+
+        @AttributeDefinition(name = "Exposure Queue Capacity", description = "Maximum number of recorded "
+                + "exposures waiting to be delivered before further exposures are dropped", min = "1")
+        int exposure_queue_capacity() default DEFAULT_QUEUE_CAPACITY;
+
+        @AttributeDefinition(name = "Exposure Deduplication Capacity", description = "Number of recently "
+                + "recorded exposures retained to drop repeated exposures", min = "1")
+        int exposure_dedup_capacity() default DEFAULT_DEDUP_CAPACITY;
+
+        @AttributeDefinition(name = "Exposure Drain Interval", description = "Interval in milliseconds at "
+                + "which the recorded exposures are delivered to the exposure sinks", min = "1")
+        long exposure_drain_interval() default DEFAULT_DRAIN_INTERVAL;
+
+        @AttributeDefinition(name = "File Source Path", description = "Path of a properties or JSON file whose "
+                + "feature values take precedence over the configured ones and are applied as soon as the file "
+                + "changes (empty to disable)")
+        String file_source_path() default "";
+
+        @AttributeDefinition(name = "Trace Capacity", description = "Number of the most recent sampled "
+                + "feature evaluations retained for debugging", min = "1")
+        int trace_capacity() default DEFAULT_TRACE_CAPACITY;
+
+        @AttributeDefinition(name = "Executor Mode", description = "Threads running the background work such as "
+                + "the listener notifications, the configuration writes and the bundle scans (auto uses virtual "
+                + "threads on Java 21 or later and platform threads otherwise)", options = {
+                        @Option(label = "Auto", value = MODE_AUTO),
+                        @Option(label = "Virtual", value = MODE_VIRTUAL),
+                        @Option(label = "Platform", value = MODE_PLATFORM) })
+        String executor_mode() default MODE_AUTO;
+
+        @AttributeDefinition(name = "Executor Pool Size", description = "Maximum number of bundles scanned "
+                + "concurrently if platform threads are used", min = "1")
+        int executor_pool_size() default DEFAULT_POOL_SIZE;
+    }
+
+    /** Maximum number of localized object class definitions whose feature texts are cached */
+    private static final int                            MAX_CACHED_TEXTS        = 256;
+
+    /** Grace period in milliseconds to let a stopped bundle get restarted (update or refresh) */
+    private static final long                           RETIREMENT_DELAY        = 5000L;
+
+    /** Period in milliseconds in which restored feature states are served until their bundles get scanned */
+    private static final long                           RESTORE_PERIOD          = 60000L;
+
+    /** Name of the file in the data area of the bundle to which the feature states are saved */
+    private static final String                         SNAPSHOT_FILE           = "features.snapshot";
+
+    /** Default resolution in milliseconds of the scheduled updates */
+    static final long                                   DEFAULT_SCHEDULE_TICK   = 1000L;
+
+    /** Default minimum number of outcomes to evaluate the error rate of a kill switch policy */
+    static final long                                   DEFAULT_MIN_OUTCOMES    = 20L;
+
+    /** Default maximum number of features exported to the shared table */
+    static final int                                    DEFAULT_TABLE_CAPACITY  = 4096;
+
+    /** Default size in bytes of a segment file of the journal */
+    static final int                                    DEFAULT_SEGMENT_SIZE    = 1 << 20;
+
+    /** Default maximum number of segment files of the journal */
+    static final int                                    DEFAULT_MAX_SEGMENTS    = 16;
+
+    /** Default maximum number of queued exposures */
+    static final int                                    DEFAULT_QUEUE_CAPACITY  = 8192;
+
+    /** Default number of recently recorded exposures retained for deduplication */
+    static final int                                    DEFAULT_DEDUP_CAPACITY  = 1 << 16;
+
+    /** Default interval in milliseconds to deliver the recorded exposures */
+    static final long                                   DEFAULT_DRAIN_INTERVAL  = 1000L;
+
+    /** Default number of retained traces of the sampled feature evaluations */
+    static final int                                    DEFAULT_TRACE_CAPACITY  = 1024;
+
+    /** Default number of bundles scanned concurrently by platform threads */
+    static final int                                    DEFAULT_POOL_SIZE       = 3;
 
     /** Data container -> Key: Configuration PID Value: Feature DTOs */
-    private final Map<String, List<Feature>> allFeatures = new HashMap<>();
+    private final Map<String, List<Feature>>            allFeatures             = new ConcurrentHashMap<>();
 
     /** Data container -> Key: Bundle Instance Value: Configuration PID(s) */
-    private final Map<Bundle, List<String>>  bundlePIDs  = new HashMap<>();
+    private final Map<Bundle, List<String>>             bundlePIDs              = new HashMap<>();
+
+    /** Data container -> Key: Configuration PID Value: Configured feature states */
+    private final Map<String, Map<String, Object>>      configuredFeatures      = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Configuration PID Value: Configured prerequisites of the features */
+    private final Map<String, Map<String, Set<String>>> configuredPrerequisites = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Configuration PID Value: Overrides of a tenant */
+    private final Map<String, TenantOverride>           tenantOverrides         = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Configuration PID Value: Restored feature states of the PIDs not registered yet */
+    private final Map<String, List<Feature>>            restoredFeatures        = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Applied scheduled updates to be removed from the configurations */
+    private final Map<String, Set<String>>              appliedSchedules        = new ConcurrentHashMap<>();
+
+    /** Data container -> Key: Configuration PID Value: Lock of the writes of the configuration */
+    private final Map<String, Object>                   configurationLocks      = new ConcurrentHashMap<>();
+
+    /** Maintains the effective states of the features (guarded by {@code allFeatures}) */
+    private final PrerequisiteGraph                     graph                   = new PrerequisiteGraph();
+
+    /** Version of the last write that has been applied optimistically */
+    private final AtomicLong                            writeVersion            = new AtomicLong();
+
+    /** Replicates the feature updates across the nodes of the cluster */
+    private final FeatureReplicator                     replicator              = new FeatureReplicator(
+            UUID.randomUUID().toString(), Clock.systemUTC(), this::write);
+
+    /** The currently published generation of the feature states */
+    private volatile RegistrySnapshot            snapshot          = RegistrySnapshot.EMPTY;
+
+    /** The features with the values of the file source applied (written under {@code allFeatures}) */
+    private volatile Map<String, List<Feature>>  effectiveFeatures = allFeatures;
+
+    /** The registered lists the file source has been applied to (guarded by {@code allFeatures}) */
+    private final Map<String, List<Feature>>     fileSourceBase    = new HashMap<>();
+
+    /** The IDs of the features changed by the file source since then (guarded by {@code allFeatures}) */
+    private final Set<String>                    fileSourceChanges = new HashSet<>();
+
+    /** The effective features together with the restored ones (written under {@code allFeatures}) */
+    private volatile Map<String, List<Feature>>  publishedFeatures = allFeatures;
+
+    /** The configured features together with the restored ones, as saved (written under {@code allFeatures}) */
+    private volatile Map<String, List<Feature>>  savedFeatures     = allFeatures;
 
     /** Logger Instance */
-    private Logger                           logger;
+    private Logger                               logger;
 
     /** Metatype Extender Instance Reference */
-    private MetaTypeExtender                 extender;
+    private MetaTypeExtender                     extender;
+
+    /** Creates the executors of the background work */
+    private BackgroundExecutors                  executors;
+
+    /** Executor to perform the debounced writes */
+    private ScheduledExecutorService             debounceExecutor;
+
+    /** Coalesces rapid updates of the same feature ({@code null} if disabled) */
+    private UpdateDebouncer                      debouncer;
+
+    /** Executor to advance the scheduled updates */
+    private ScheduledExecutorService             scheduleExecutor;
+
+    /** Applies the scheduled updates of the features */
+    private FeatureScheduler                     scheduler;
+
+    /** Disables the features whose error rates exceed their policies */
+    private FeatureKillSwitch                    killSwitch;
+
+    /** Executor to disable the features whose kill switches tripped */
+    private ExecutorService                      killSwitchExecutor;
+
+    /** Publishes the tripped kill switches ({@code null} if Event Admin is not available) */
+    private volatile KillSwitchEvents            killSwitchEvents;
+
+    /** Exports the feature states to co-located processes ({@code null} if disabled) */
+    private SharedFeatureTableWriter             sharedTable;
+
+    /** Executor to commit the journal */
+    private ExecutorService                      journalExecutor;
+
+    /** Records the updates of the features ({@code null} if disabled) */
+    private FeatureJournal                       journal;
+
+    /** Registration of the journal to be queried by the Gogo commands */
+    private ServiceRegistration<FeatureJournal>  journalRegistration;
+
+    /** Executor to synchronize the feature conditions */
+    private ExecutorService                      conditionExecutor;
+
+    /** Registers the conditions of the enabled features */
+    private FeatureConditionRegistrar            conditions;
+
+    /** Executor to notify the feature listeners */
+    private ExecutorService                      listenerExecutor;
+
+    /** Notifies the feature listeners of the published generations */
+    private FeatureListenerNotifier              notifier;
+
+    /** Executor to deliver the recorded exposures */
+    private ScheduledExecutorService             exposureExecutor;
+
+    /** Records the exposures to the features ({@code null} if disabled) */
+    private ExposurePipeline                     exposures;
+
+    /** Records the checks of the features for tenants ({@code null} if disabled) */
+    private ExposurePipeline                     tenantCheckExposures;
+
+    /** Appends the recorded exposures to a file ({@code null} if disabled) */
+    private FileExposureSink                     exposureFile;
+
+    /** Registration of the file sink to be bound as any other exposure sink */
+    private ServiceRegistration<ExposureSink>    exposureFileRegistration;
+
+    /** Executor to watch the file source */
+    private ExecutorService                      fileSourceExecutor;
+
+    /** The feature values taking precedence over the configured ones ({@code null} if disabled) */
+    private FileFeatureSource                    fileSource;
+
+    /** Executor to save the feature states */
+    private ExecutorService                      snapshotExecutor;
+
+    /** Saves and restores the feature states ({@code null} if the framework has no file system support) */
+    private SnapshotStore                        snapshotStore;
+
+    /** Samples the evaluations of the features */
+    private FeatureTracer                        tracer;
+
+    /** Registration of the tracer to be controlled by the Gogo commands */
+    private ServiceRegistration<FeatureTracer>   tracerRegistration;
+
+    /** Registration of the exports and imports of the features to be run by the Gogo commands */
+    private ServiceRegistration<FeatureTransfer> transferRegistration;
+
+    /** Lazily loaded feature names and descriptions */
+    private FeatureTextCache                     textCache;
 
     /** Metatype Service Instance Reference */
     @Reference
-    private MetaTypeService                  metaTypeService;
+    private MetaTypeService                      metaTypeService;
 
     /** Configuration Admin Service Instance Reference */
     @Reference
-    private ConfigurationAdmin               configurationAdmin;
+    private ConfigurationAdmin                   configurationAdmin;
+
+    /** Feature Listener Service Instance References */
+    @Reference(cardinality = MULTIPLE, policy = DYNAMIC, fieldOption = UPDATE)
+    private final List<FeatureListener>          listeners         = new CopyOnWriteArrayList<>();
+
+    /** The sinks of the recorded exposures */
+    @Reference(cardinality = MULTIPLE, policy = DYNAMIC, fieldOption = UPDATE)
+    private final List<ExposureSink>             exposureSinks     = new CopyOnWriteArrayList<>();
 
     @Activate
-    protected void activate(final BundleContext bundleContext) throws Exception {
-        logger   = new Logger(bundleContext);
-        extender = new MetaTypeExtender(metaTypeService, logger, bundlePIDs, allFeatures);
+    protected void activate(final BundleContext bundleContext, final Config config) throws Exception {
+        final String executorMode     = config.executor_mode();
+        final int    executorPoolSize = config.executor_pool_size();
+        executors = new BackgroundExecutors(MODES.contains(executorMode) ? executorMode : MODE_AUTO,
+                executorPoolSize > 0 ? executorPoolSize : DEFAULT_POOL_SIZE);
+        final long debounceWindow = config.debounce_window();
+        if (debounceWindow > 0) {
+            debounceExecutor = executors.newScheduledExecutor();
+            debouncer        = new UpdateDebouncer(debounceWindow, debounceExecutor, this::persist);
+        }
+        final long scheduleTick    = config.schedule_tick();
+        final long minimumOutcomes = config.killswitch_minimum_outcomes();
+        scheduleExecutor   = executors.newScheduledExecutor();
+        scheduler          = new FeatureScheduler(scheduleTick > 0 ? scheduleTick : DEFAULT_SCHEDULE_TICK,
+                Clock.systemUTC(), scheduleExecutor, this::applySchedule);
+        killSwitchExecutor = executors.newSerialExecutor();
+        killSwitch         = new FeatureKillSwitch(minimumOutcomes > 0 ? minimumOutcomes : DEFAULT_MIN_OUTCOMES,
+                Clock.systemUTC(), this::killSwitchTripped);
+        conditionExecutor  = executors.newSerialExecutor();
+        conditions         = new FeatureConditionRegistrar(bundleContext,
+                () -> snapshot.getEnabledFeatureIDs(), conditionExecutor);
+        listenerExecutor   = executors.newSerialExecutor();
+        notifier           = new FeatureListenerNotifier(listeners, () -> snapshot, listenerExecutor);
+        logger             = new Logger(bundleContext);
+        if (MODE_VIRTUAL.equals(executorMode) && !executors.isVirtual()) {
+            logger.log(LOG_WARNING, "Virtual threads are not supported by the runtime, platform threads are used");
+        }
+        openSharedTable(config);
+        openJournal(bundleContext, config);
+        openExposures(bundleContext, config);
+        openFileSource(config);
+        final int traceCapacity = config.trace_capacity();
+        tracer             = new FeatureTracer(traceCapacity > 0 ? traceCapacity : DEFAULT_TRACE_CAPACITY);
+        tracerRegistration = bundleContext.registerService(FeatureTracer.class, tracer, null);
+        // evaluations are traced even before the first features get published
+        snapshot           = RegistrySnapshot.of(0, Collections.emptyList(), null, Collections.emptyList(), null,
+                tracer);
+        textCache          = new FeatureTextCache(metaTypeService, MAX_CACHED_TEXTS);
+        extender           = new MetaTypeExtender(metaTypeService, logger, bundlePIDs, allFeatures,
+                configuredFeatures, textCache, RETIREMENT_DELAY, this::featuresChanged, executors);
+        // hydrate all configured feature states at once before any bundle gets scanned
+        final ConfiguredState configured = getAllConfigured(configurationAdmin);
+        configuredFeatures.putAll(configured.features);
+        configuredPrerequisites.putAll(configured.prerequisites);
+        tenantOverrides.putAll(configured.tenantOverrides);
+        configured.schedules.forEach((pid, schedules) -> scheduler.sync(pid, flatten(schedules)));
+        configured.killSwitches.forEach(killSwitch::setPolicies);
+        openSnapshotStore(bundleContext);
+        transferRegistration = bundleContext.registerService(FeatureTransfer.class,
+                new FeatureTransfer(allFeatures::values, configurationAdmin), null);
         extender.start(bundleContext);
+        scheduler.start();
+        replicator.open();
     }
 
     @Deactivate
     protected void deactivate(final BundleContext bundleContext) throws Exception {
+        replicator.close();
+        scheduler.close();
+        scheduleExecutor.shutdownNow();
+        killSwitchExecutor.shutdownNow();
+        if (debouncer != null) {
+            debouncer.flush();
+            debounceExecutor.shutdownNow();
+        }
+        if (snapshotStore != null) {
+            // the features removed while stopping must not be saved
+            snapshotStore.close();
+            snapshotExecutor.shutdownNow();
+        }
         extender.stop(bundleContext);
+        conditions.close();
+        conditionExecutor.shutdownNow();
+        notifier.close();
+        listenerExecutor.shutdownNow();
+        if (sharedTable != null) {
+            sharedTable.close();
+        }
+        if (journal != null) {
+            journalRegistration.unregister();
+            journal.close();
+            journalExecutor.shutdownNow();
+        }
+        if (fileSource != null) {
+            fileSource.close();
+            fileSourceExecutor.shutdownNow();
+        }
+        if (exposures != null) {
+            exposures.close();
+            exposureExecutor.shutdownNow();
+        }
+        if (exposureFile != null) {
+            exposureFileRegistration.unregister();
+            exposureFile.close();
+        }
+        tracerRegistration.unregister();
+        transferRegistration.unregister();
+    }
+
+    @Reference(cardinality = OPTIONAL, policy = DYNAMIC)
+    protected void bindTransport(final ReplicationTransport transport) {
+        replicator.setTransport(transport);
+    }
+
+    protected void unbindTransport(final ReplicationTransport transport) {
+        replicator.unsetTransport(transport);
+    }
+
+    /**
+     * Binds the publisher of the tripped kill switches which is only available
+     * while an Event Admin service is
+     */
+    @Reference(cardinality = OPTIONAL, policy = DYNAMIC)
+    protected void bindKillSwitchEvents(final KillSwitchEvents publisher) {
+        killSwitchEvents = publisher;
+    }
+
+    protected void unbindKillSwitchEvents(final KillSwitchEvents publisher) {
+        if (killSwitchEvents == publisher) {
+            killSwitchEvents = null;
+        }
+    }
+
+    private void openSharedTable(final Config config) {
+        final String path     = config.shared_table_path();
+        final int    capacity = config.shared_table_capacity();
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        try {
+            sharedTable = new SharedFeatureTableWriter(Paths.get(path),
+                    capacity > 0 ? capacity : DEFAULT_TABLE_CAPACITY);
+        } catch (final IOException e) {
+            logger.log(LOG_WARNING, String.format("Cannot export the features to the shared table [%s]", path), e);
+        }
+    }
+
+    private void openJournal(final BundleContext bundleContext, final Config config) {
+        final String path        = config.journal_path();
+        final int    segmentSize = config.journal_segment_size();
+        final int    maxSegments = config.journal_max_segments();
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        journalExecutor = executors.newSerialExecutor();
+        try {
+            journal = new FeatureJournal(Paths.get(path), segmentSize > 0 ? segmentSize : DEFAULT_SEGMENT_SIZE,
+                    maxSegments > 0 ? maxSegments : DEFAULT_MAX_SEGMENTS, journalExecutor,
+                    e -> logger.log(LOG_WARNING, String.format("Cannot write the journal [%s]", path), e));
+        } catch (final IOException e) {
+            logger.log(LOG_WARNING, String.format("Cannot open the journal [%s]", path), e);
+            journalExecutor.shutdownNow();
+            return;
+        }
+        journalRegistration = bundleContext.registerService(FeatureJournal.class, journal, null);
+    }
+
+    private void openExposures(final BundleContext bundleContext, final Config config) {
+        if (!config.exposure_enabled()) {
+            return;
+        }
+        final String path          = config.exposure_file_path();
+        final int    capacity      = config.exposure_queue_capacity();
+        final int    dedupCapacity = config.exposure_dedup_capacity();
+        final long   drainInterval = config.exposure_drain_interval();
+        exposureExecutor = executors.newScheduledExecutor();
+        exposures        = new ExposurePipeline(capacity > 0 ? capacity : DEFAULT_QUEUE_CAPACITY,
+                dedupCapacity > 0 ? dedupCapacity : DEFAULT_DEDUP_CAPACITY, exposureSinks, Clock.systemUTC(),
+                exposureExecutor, drainInterval > 0 ? drainInterval : DEFAULT_DRAIN_INTERVAL,
+                e -> logger.log(LOG_WARNING, "Cannot deliver the recorded exposures", e));
+        exposures.start();
+        if (config.exposure_tenant_checks()) {
+            tenantCheckExposures = exposures;
+        }
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        try {
+            exposureFile = new FileExposureSink(Paths.get(path));
+        } catch (final IOException e) {
+            logger.log(LOG_WARNING, String.format("Cannot open the exposure file [%s]", path), e);
+            return;
+        }
+        exposureFileRegistration = bundleContext.registerService(ExposureSink.class, exposureFile, null);
+    }
+
+    private void openFileSource(final Config config) {
+        final String path = config.file_source_path();
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        fileSourceExecutor = executors.newSerialExecutor();
+        fileSource         = new FileFeatureSource(Paths.get(path), fileSourceExecutor, featureIDs -> {
+            logger.log(LOG_INFO, String.format("Updated features %s from the file source [%s]", featureIDs, path));
+            synchronized (allFeatures) {
+                fileSourceChanges.addAll(featureIDs);
+            }
+            featuresChanged();
+        }, e -> logger.log(LOG_WARNING, String.format("Cannot read the file source [%s]", path), e));
+        try {
+            fileSource.start();
+        } catch (final IOException e) {
+            logger.log(LOG_WARNING, String.format("Cannot watch the file source [%s]", path), e);
+            fileSource = null;
+            fileSourceExecutor.shutdownNow();
+        }
+    }
+
+    private void openSnapshotStore(final BundleContext bundleContext) {
+        final File file = bundleContext.getDataFile(SNAPSHOT_FILE);
+        if (file == null) {
+            return;
+        }
+        snapshotExecutor = executors.newSerialExecutor();
+        snapshotStore    = new SnapshotStore(file.toPath(), () -> savedFeatures.values(), () -> snapshot,
+                snapshotExecutor,
+                e -> logger.log(LOG_WARNING, String.format("Cannot save the feature states [%s]", file), e));
+        try {
+            restoredFeatures.putAll(snapshotStore.load());
+        } catch (final IOException e) {
+            logger.log(LOG_WARNING, String.format("Cannot restore the feature states [%s]", file), e);
+        }
+        if (!restoredFeatures.isEmpty()) {
+            logger.log(LOG_INFO, String.format("Restored the feature states of %s", restoredFeatures.keySet()));
+            featuresChanged();
+            // bundles which have not been scanned within the period are not expected to declare them anymore
+            scheduleExecutor.schedule(this::discardRestoredFeatures, RESTORE_PERIOD, MILLISECONDS);
+        }
+    }
+
+    private void discardRestoredFeatures() {
+        if (!restoredFeatures.isEmpty()) {
+            logger.log(LOG_INFO, String.format("Discarded the restored feature states of %s",
+                    restoredFeatures.keySet()));
+            restoredFeatures.clear();
+            featuresChanged();
+        }
     }
 
     /**
@@ -80,74 +635,663 @@ public final class FeatureManagerProvider implements FeatureManager, Configurati
         return extender;
     }
 
+    /**
+     * Returns the features with the values of the file source applied. This is
+     * required for unit testing purposes.
+     */
+    protected Map<String, List<Feature>> getEffectiveFeatures() {
+        return effectiveFeatures;
+    }
+
+    /**
+     * Returns the PIDs of the scanned bundles which must only be accessed
+     * while holding its monitor. This is required for unit testing purposes.
+     */
+    protected Map<Bundle, List<String>> getBundlePIDs() {
+        return bundlePIDs;
+    }
+
     @Override
     public Stream<FeatureDTO> getFeatures() {
-        return allFeatures.values()
+        return getLocalizedFeatures(null);
+    }
+
+    @Override
+    public Stream<FeatureDTO> getFeatures(final String featureID) {
+        return getLocalizedFeatures(featureID, null);
+    }
+
+    @Override
+    public Stream<FeatureDTO> getLocalizedFeatures(final String locale) {
+        final RegistrySnapshot current = snapshot;
+        return publishedFeatures.values()
                 .stream()
                 .flatMap(List::stream)
-                .map(ManagerHelper::toFeatureDTO);
+                .map(f -> toFeatureDTO(f, textCache.get(f, locale), current));
     }
 
     @Override
-    public Stream<FeatureDTO> getFeatures(final String featureID) {
+    public Stream<FeatureDTO> getLocalizedFeatures(final String featureID, final String locale) {
         requireNonNull(featureID, "Feature ID cannot be null");
         checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
 
-        return allFeatures.values()
+        final RegistrySnapshot current = snapshot;
+        return publishedFeatures.values()
                 .stream()
                 .flatMap(List::stream)
                 .filter(f -> f.id.equals(featureID))
-                .map(ManagerHelper::toFeatureDTO);
+                .map(f -> toFeatureDTO(f, textCache.get(f, locale), current));
+    }
+
+    @Override
+    public FeatureSnapshot snapshot() {
+        return snapshot;
     }
 
     @Override
     public void updateFeature(final String featureID, final boolean isEnabled) {
+        // the caller does not get to know about a failed write, hence it is logged
+        updateFeatureAsync(featureID, isEnabled).onFailure(e -> logFailedUpdate(featureID, e));
+    }
+
+    @Override
+    public Promise<Void> updateFeatureAsync(final String featureID, final boolean isEnabled) {
+        return updateFeatureAsync(featureID, isEnabled, SOURCE_API);
+    }
+
+    private Promise<Void> updateFeatureAsync(final String featureID, final boolean isEnabled, final String source) {
         requireNonNull(featureID, "Feature ID cannot be null");
         checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
 
+        return replicator.update(featureID, isEnabled, source);
+    }
+
+    private void logFailedUpdate(final String featureID, final Throwable failure) {
+        logger.log(LOG_WARNING, String.format("Cannot update feature [%s]", featureID), failure);
+    }
+
+    /**
+     * Writes a local or a replicated update of the specified feature
+     */
+    private Promise<Void> write(final String featureID, final boolean isEnabled, final String source) {
         logger.log(LOG_INFO, String.format("Updating feature [%s] to [%b]", featureID, isEnabled));
 
+        final long version = writeVersion.incrementAndGet();
+        getFeaturesByPID(featureID).values()
+                .forEach(l -> l.forEach(f -> applyOptimistically(f, isEnabled, version)));
+        featuresChanged();
+
+        if (debouncer != null) {
+            return debouncer.submit(featureID, isEnabled, version, source);
+        }
         try {
-            final List<String> configurations = allFeatures.entrySet()
-                    .stream()
-                    .filter(e -> e.getValue()
-                            .stream()
-                            .anyMatch(f -> f.id.equals(featureID)))
-                    .map(Entry::getKey)
-                    .collect(Collectors.toList());
-            for (final String configurationPID : configurations) {
-                final Configuration configuration = configurationAdmin.getConfiguration(configurationPID, "?");
-                if (configuration != null) {
+            persist(featureID, isEnabled, version, source);
+            return Promises.resolved(null);
+        } catch (final Exception e) {
+            return Promises.failed(e);
+        }
+    }
+
+    @Override
+    public void scheduleFeature(final String featureID, final boolean isEnabled, final Instant time) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(time, "Time cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        logger.log(LOG_INFO, String.format("Scheduling update of feature [%s] to [%b] at [%s]", featureID,
+                isEnabled, time));
+
+        final Schedule schedule = new Schedule();
+        schedule.featureID = featureID;
+        schedule.isEnabled = isEnabled;
+        schedule.time      = time.toEpochMilli();
+        updateSchedules(featureID, schedules -> {
+            final List<String> entries = new ArrayList<>(schedules);
+            entries.add(toScheduleEntry(schedule));
+            return entries;
+        });
+    }
+
+    @Override
+    public void cancelSchedules(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        logger.log(LOG_INFO, String.format("Cancelling scheduled updates of feature [%s]", featureID));
+
+        updateSchedules(featureID, schedules -> Collections.emptyList());
+    }
+
+    /**
+     * Updates the scheduled updates of the specified feature in the
+     * configurations of all PIDs declaring it
+     *
+     * @param change computes the new scheduled updates from the persisted ones
+     *
+     * @throws IllegalArgumentException if the feature is not known
+     * @throws IllegalStateException if any configuration cannot be persisted
+     */
+    private void updateSchedules(final String featureID, final UnaryOperator<List<String>> change) {
+        final Set<String> configurationPIDs = getFeaturesByPID(featureID).keySet();
+        checkArgument(!configurationPIDs.isEmpty(), "Feature [" + featureID + "] is not known");
+
+        final String key = SCHEDULE_ID_PREFIX + featureID;
+        for (final String configurationPID : configurationPIDs) {
+            try {
+                final Configuration       configuration = configurationAdmin.getConfiguration(configurationPID, "?");
+                final Map<String, Object> properties    = ManagerHelper.asMap(configuration.getProperties());
+                final List<String>        schedules     = change.apply(getScheduleEntries(properties, featureID));
+                if (schedules.isEmpty()) {
+                    properties.remove(key);
+                } else {
+                    properties.put(key, schedules.toArray(new String[0]));
+                }
+                final Dictionary<String, Object> newProps = new Hashtable<>(properties);
+                configuration.updateIfDifferent(newProps);
+                // reflect the change before the configuration event gets delivered
+                scheduler.sync(configurationPID, flatten(toConfiguredSchedules(newProps)));
+            } catch (final IOException e) {
+                throw new IllegalStateException(
+                        "Scheduled updates of configuration [" + configurationPID + "] cannot be persisted", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the valid scheduled updates of the specified feature in the
+     * persisted format
+     */
+    private static List<String> getScheduleEntries(final Map<String, Object> properties, final String featureID) {
+        return toSchedules(featureID, properties.get(SCHEDULE_ID_PREFIX + featureID))
+                .stream()
+                .map(ManagerHelper::toScheduleEntry)
+                .collect(toList());
+    }
+
+    /**
+     * Applies the specified scheduled update
+     *
+     * @return {@code false} if the feature is not known (yet), otherwise
+     *         {@code true}
+     */
+    private boolean applySchedule(final Schedule schedule) {
+        if (getFeaturesByPID(schedule.featureID).isEmpty()) {
+            return false;
+        }
+        logger.log(LOG_INFO, String.format("Applying scheduled update of feature [%s] to [%b]", schedule.featureID,
+                schedule.isEnabled));
+        // the applied update is removed from the configurations by the write it causes
+        appliedSchedules.computeIfAbsent(schedule.featureID, k -> ConcurrentHashMap.newKeySet())
+                .add(toScheduleEntry(schedule));
+        updateFeatureAsync(schedule.featureID, schedule.isEnabled, SOURCE_SCHEDULE);
+        return true;
+    }
+
+    private static List<Schedule> flatten(final Map<String, List<Schedule>> schedules) {
+        return schedules.values()
+                .stream()
+                .flatMap(List::stream)
+                .collect(toList());
+    }
+
+    @Override
+    public void overrideFeature(final String tenantID, final String featureID, final Boolean isEnabled) {
+        requireNonNull(tenantID, "Tenant ID cannot be null");
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(!tenantID.isEmpty(), "Tenant ID cannot be empty");
+        checkArgument(!featureID.isEmpty(), "Feature ID cannot be empty");
+
+        logger.log(LOG_INFO,
+                String.format("Overriding feature [%s] for tenant [%s] to [%s]", featureID, tenantID, isEnabled));
+
+        synchronized (tenantOverrides) {
+            try {
+                final Configuration configuration = getTenantConfiguration(tenantID, isEnabled != null);
+                if (configuration == null) {
+                    // nothing to remove
+                    return;
+                }
+                final Map<String, Object> properties = ManagerHelper.asMap(configuration.getProperties());
+                properties.put(TENANT_ID_PROPERTY, tenantID);
+                if (isEnabled != null) {
+                    properties.put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
+                } else {
+                    properties.remove(METATYPE_FEATURE_ID_PREFIX + featureID);
+                }
+                final Dictionary<String, Object> newProps = new Hashtable<>(properties);
+                final TenantOverride             override = toTenantOverride(newProps);
+                if (override.features.isEmpty()) {
+                    configuration.delete();
+                    tenantOverrides.remove(configuration.getPid());
+                } else {
+                    configuration.updateIfDifferent(newProps);
+                    tenantOverrides.put(configuration.getPid(), override);
+                }
+            } catch (final IOException e) {
+                throw new IllegalStateException("Override of tenant [" + tenantID + "] cannot be persisted", e);
+            }
+        }
+        featuresChanged();
+    }
+
+    /**
+     * Returns the configuration persisting the overrides of the specified
+     * tenant
+     *
+     * @param create {@code true} to create the configuration if it does not
+     *            exist
+     * @return the configuration or {@code null} if it does not exist and is
+     *         not to be created
+     */
+    private Configuration getTenantConfiguration(final String tenantID, final boolean create) throws IOException {
+        for (final Entry<String, TenantOverride> entry : tenantOverrides.entrySet()) {
+            if (entry.getValue().tenantID.equals(tenantID)) {
+                return configurationAdmin.getConfiguration(entry.getKey(), "?");
+            }
+        }
+        return create ? configurationAdmin.createFactoryConfiguration(TENANT_FACTORY_PID, "?") : null;
+    }
+
+    /**
+     * Persists the state of the specified feature in the configurations of all
+     * PIDs declaring it. The features of a configuration that cannot be
+     * persisted are rolled back. Only an update which has been persisted in
+     * all configurations is appended to the journal.
+     *
+     * @throws Exception the first failure if any configuration cannot be
+     *             persisted
+     */
+    private void persist(final String featureID, final boolean isEnabled, final long version, final String source)
+            throws Exception {
+        final Map<String, List<Feature>> featuresByPID = getFeaturesByPID(featureID);
+        final Set<String>                applied       = new HashSet<>(
+                appliedSchedules.getOrDefault(featureID, Collections.emptySet()));
+        Exception                        failure       = null;
+        for (final Entry<String, List<Feature>> entry : featuresByPID.entrySet()) {
+            final String        configurationPID = entry.getKey();
+            final List<Feature> features         = entry.getValue();
+            try {
+                // the features of a configuration are written concurrently, so its properties are updated in turn
+                synchronized (configurationLocks.computeIfAbsent(configurationPID, k -> new Object())) {
+                    final Configuration configuration = configurationAdmin.getConfiguration(configurationPID, "?");
+                    if (configuration == null) {
+                        throw new IllegalStateException("Configuration [" + configurationPID + "] is not available");
+                    }
                     final Dictionary<String, Object> existingProps = configuration.getProperties();
                     final Map<String, Object>        newProps      = ManagerHelper.asMap(existingProps);
                     newProps.put(METATYPE_FEATURE_ID_PREFIX + featureID, isEnabled);
-                    configuration.updateIfDifferent(new Hashtable<>(newProps));
+                    if (!applied.isEmpty()) {
+                        final List<String> schedules = getScheduleEntries(newProps, featureID);
+                        if (schedules.removeAll(applied)) {
+                            if (schedules.isEmpty()) {
+                                newProps.remove(SCHEDULE_ID_PREFIX + featureID);
+                            } else {
+                                newProps.put(SCHEDULE_ID_PREFIX + featureID, schedules.toArray(new String[0]));
+                            }
+                        }
+                    }
+                    if (!configuration.updateIfDifferent(new Hashtable<>(newProps))) {
+                        // no configuration event will be delivered for an unchanged configuration
+                        features.forEach(f -> reconcile(f, isEnabled));
+                    }
+                }
+            } catch (final Exception e) {
+                rollback(features, version);
+                if (failure == null) {
+                    failure = e;
                 }
             }
-        } catch (final Exception e) {
-            // never occur since configuration location check has been ignored
+        }
+        if (failure != null) {
+            featuresChanged();
+            throw failure;
+        }
+        // updates of unknown features have no effect and are not journaled
+        if (journal != null && !featuresByPID.isEmpty()) {
+            journal.append(Clock.systemUTC()
+                    .millis(), featureID, isEnabled, source);
+        }
+        if (!applied.isEmpty()) {
+            appliedSchedules.computeIfPresent(featureID, (k, v) -> {
+                v.removeAll(applied);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    @Override
+    public void reportSuccess(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        if (snapshot.isEffectivelyEnabled(featureID)) {
+            killSwitch.report(featureID, false);
+        }
+    }
+
+    @Override
+    public void reportFailure(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        if (snapshot.isEffectivelyEnabled(featureID)) {
+            killSwitch.report(featureID, true);
+        }
+    }
+
+    @Override
+    public void record(final String featureID, final String subjectID, final Object value) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(subjectID, "Subject ID cannot be null");
+        requireNonNull(value, "Value cannot be null");
+
+        if (exposures != null) {
+            exposures.record(featureID, subjectID, value);
+        }
+    }
+
+    @Override
+    public ExposureMetricsDTO getMetrics() {
+        return exposures == null ? new ExposureMetricsDTO() : exposures.getMetrics();
+    }
+
+    private void killSwitchTripped(final String featureID, final double errorRate) {
+        // the feature is disabled in the background, so that the reporting thread is not blocked
+        killSwitchExecutor.execute(() -> disableTrippedFeature(featureID, errorRate));
+    }
+
+    private void disableTrippedFeature(final String featureID, final double errorRate) {
+        logger.log(LOG_WARNING,
+                String.format("Kill switch of feature [%s] tripped at error rate [%.2f%%]", featureID, errorRate));
+        updateFeatureAsync(featureID, false, SOURCE_KILL_SWITCH).onFailure(e -> logFailedUpdate(featureID, e));
+        final KillSwitchEvents publisher = killSwitchEvents;
+        if (publisher != null) {
+            publisher.publish(featureID, errorRate);
         }
     }
 
+    private Map<String, List<Feature>> getFeaturesByPID(final String featureID) {
+        final Map<String, List<Feature>> features = new HashMap<>();
+        allFeatures.forEach((pid, f) -> f.stream()
+                .filter(feature -> feature.id.equals(featureID) && feature.type == BOOLEAN)
+                .forEach(feature -> features.computeIfAbsent(pid, p -> new ArrayList<>())
+                        .add(feature)));
+        return features;
+    }
+
     @Override
     public void configurationEvent(final ConfigurationEvent event) {
         final int    type = event.getType();
         final String pid  = event.getPid();
+        if (TENANT_FACTORY_PID.equals(event.getFactoryPid())) {
+            updateTenantOverride(type, pid);
+            return;
+        }
         if (type == CM_UPDATED) {
-            final Map<String, Boolean> configuredFeatures = getConfiguredFeatures(pid, configurationAdmin);
-            for (final Entry<String, Boolean> entry : configuredFeatures.entrySet()) {
-                final String              featureID = entry.getKey();
-                final boolean             isEnabled = entry.getValue();
-                final Collection<Feature> features  = allFeatures.get(pid);
-                features.stream()
-                        .filter(f -> f.id.equalsIgnoreCase(featureID))
-                        .peek(f -> logger.log(LOG_INFO,
-                                String.format("Updated feature [%s] to [%b]", f.toString(), isEnabled)))
-                        .forEach(f -> f.isEnabled = isEnabled);
+            final Map<String, Object>      configured    = getConfiguredFeatures(pid, configurationAdmin);
+            final Map<String, Set<String>> prerequisites = getConfiguredPrerequisites(pid, configurationAdmin);
+            scheduler.sync(pid, flatten(getConfiguredSchedules(pid, configurationAdmin)));
+            killSwitch.setPolicies(pid, getConfiguredKillSwitches(pid, configurationAdmin));
+            if (prerequisites.isEmpty()) {
+                configuredPrerequisites.remove(pid);
+            } else {
+                configuredPrerequisites.put(pid, prerequisites);
+            }
+            // a bundle being scanned must either hydrate its features with the
+            // new values or register them before they get reconciled
+            synchronized (bundlePIDs) {
+                configuredFeatures.put(pid, configured);
+                final Collection<Feature> features = allFeatures.get(pid);
+                // otherwise features will be hydrated as soon as the bundle gets scanned
+                if (features != null) {
+                    for (final Entry<String, Object> entry : configured.entrySet()) {
+                        final String featureID = entry.getKey();
+                        final Object value     = entry.getValue();
+                        features.stream()
+                                .filter(f -> f.id.equalsIgnoreCase(featureID))
+                                .peek(f -> logger.log(LOG_INFO,
+                                        String.format("Updated feature [%s] to [%s]", f.toString(), value)))
+                                .forEach(f -> reconcile(f, value));
+                    }
+                }
             }
         } else {
+            scheduler.sync(pid, Collections.emptyList());
+            killSwitch.setPolicies(pid, Collections.emptyMap());
+            configuredFeatures.remove(pid);
+            configuredPrerequisites.remove(pid);
+            restoredFeatures.remove(pid);
             allFeatures.remove(pid);
+            textCache.invalidate(pid);
+        }
+        featuresChanged();
+    }
+
+    private void updateTenantOverride(final int type, final String pid) {
+        TenantOverride override = null;
+        if (type == CM_UPDATED) {
+            try {
+                override = toTenantOverride(configurationAdmin.getConfiguration(pid, "?")
+                        .getProperties());
+            } catch (final IOException e) {
+                // never occur since configuration location check has been ignored
+            }
+        }
+        if (override == null) {
+            tenantOverrides.remove(pid);
+        } else {
+            tenantOverrides.put(pid, override);
+        }
+        featuresChanged();
+    }
+
+    /**
+     * Publishes a new generation of the feature states, exports it to the
+     * shared table (if enabled) and propagates the change of the registered
+     * features or their states to the conditions, the listeners and the saved
+     * states
+     */
+    private void featuresChanged() {
+        synchronized (allFeatures) {
+            if (!restoredFeatures.isEmpty()) {
+                restoredFeatures.keySet()
+                        .removeAll(allFeatures.keySet());
+            }
+            final Map<String, Object> values = fileSource == null ? Collections.emptyMap() : fileSource.getValues();
+            effectiveFeatures = applyFileSource(values);
+            publishedFeatures = withRestoredFeatures(effectiveFeatures, values);
+            savedFeatures     = withRestoredFeatures(allFeatures, Collections.emptyMap());
+            updateGraph();
+            snapshot = RegistrySnapshot.of(snapshot.getGeneration() + 1, publishedFeatures.values(), graph,
+                    tenantOverrides.values(), tenantCheckExposures, tracer);
+            if (sharedTable != null) {
+                final int skipped = sharedTable.write(snapshot);
+                if (skipped > 0) {
+                    logger.log(LOG_WARNING,
+                            String.format("[%d] features have not been exported to the shared table", skipped));
+                }
+            }
+        }
+        conditions.requestSync();
+        notifier.requestNotify();
+        if (snapshotStore != null) {
+            snapshotStore.requestSave();
+        }
+    }
+
+    /**
+     * Returns the features with the values of the file source taking
+     * precedence over the configured ones. The values are applied to copies,
+     * so that the configured states are restored as soon as a value is
+     * removed from the file. The view is maintained incrementally: only the
+     * PIDs whose registered list has been replaced since the last call or
+     * which contain a feature changed by the file source are re-applied, so
+     * that events which do not concern the file source reuse the view as is.
+     */
+    private Map<String, List<Feature>> applyFileSource(final Map<String, Object> values) {
+        if (values.isEmpty()) {
+            fileSourceBase.clear();
+            fileSourceChanges.clear();
+            return allFeatures;
+        }
+        if (effectiveFeatures == allFeatures) {
+            fileSourceBase.clear();
+        }
+        final Set<String> stale = new HashSet<>();
+        fileSourceBase.keySet()
+                .stream()
+                .filter(pid -> !allFeatures.containsKey(pid))
+                .forEach(stale::add);
+        allFeatures.forEach((pid, list) -> {
+            if (fileSourceBase.get(pid) != list || !fileSourceChanges.isEmpty()
+                    && list.stream().anyMatch(f -> fileSourceChanges.contains(f.id))) {
+                stale.add(pid);
+            }
+        });
+        fileSourceChanges.clear();
+        if (stale.isEmpty() && effectiveFeatures != allFeatures) {
+            return effectiveFeatures;
+        }
+        final Map<String, List<Feature>> features = effectiveFeatures == allFeatures ? new HashMap<>()
+                : new HashMap<>(effectiveFeatures);
+        for (final String pid : stale) {
+            final List<Feature> list = allFeatures.get(pid);
+            if (list == null) {
+                fileSourceBase.remove(pid);
+                features.remove(pid);
+            } else {
+                fileSourceBase.put(pid, list);
+                features.put(pid, withFileValues(list, values));
+            }
+        }
+        return features;
+    }
+
+    private static List<Feature> withFileValues(final List<Feature> list, final Map<String, Object> values) {
+        List<Feature> applied = list;
+        for (int i = 0; i < list.size(); i++) {
+            final Object value = values.get(list.get(i).id);
+            if (value != null) {
+                if (applied == list) {
+                    applied = new ArrayList<>(list);
+                }
+                applied.set(i, withValue(list.get(i), value));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the given features together with the restored features whose
+     * IDs are not registered (yet). The restored states of a PID are discarded
+     * as soon as a bundle declaring the PID gets scanned, so that its features
+     * are reconciled against the configured states from then on. The given
+     * values of the file source are applied to the restored features as well.
+     */
+    private Map<String, List<Feature>> withRestoredFeatures(final Map<String, List<Feature>> registered,
+            final Map<String, Object> values) {
+        if (restoredFeatures.isEmpty()) {
+            return registered;
+        }
+        final Set<String>                featureIDs = registered.values()
+                .stream()
+                .flatMap(List::stream)
+                .map(f -> f.id)
+                .collect(toSet());
+        final Map<String, List<Feature>> features   = new HashMap<>(registered);
+        restoredFeatures.forEach((pid, list) -> {
+            final List<Feature> unregistered = list.stream()
+                    .filter(f -> !featureIDs.contains(f.id))
+                    .map(f -> values.containsKey(f.id) ? withValue(f, values.get(f.id)) : f)
+                    .collect(toList());
+            if (!unregistered.isEmpty()) {
+                features.put(pid, unregistered);
+            }
+        });
+        return features;
+    }
+
+    /**
+     * Updates the prerequisite graph with the current enablement and
+     * prerequisites of the features. Only the features whose enablement or
+     * prerequisites changed are re-evaluated by the graph.
+     */
+    private void updateGraph() {
+        final Map<String, Boolean>     states        = new HashMap<>();
+        final Map<String, Set<String>> prerequisites = new HashMap<>();
+        publishedFeatures.forEach((pid, features) -> {
+            final Map<String, Set<String>> configured = configuredPrerequisites.getOrDefault(pid,
+                    Collections.emptyMap());
+            for (final Feature feature : features) {
+                states.merge(feature.id, feature.isEnabled, Boolean::logicalOr);
+                prerequisites.putIfAbsent(feature.id, configured.getOrDefault(feature.id, feature.prerequisites));
+            }
+        });
+        graph.retain(states.keySet());
+        prerequisites.forEach((featureID, featureIDs) -> {
+            try {
+                graph.setPrerequisites(featureID, featureIDs);
+            } catch (final IllegalArgumentException e) {
+                logger.log(LOG_WARNING, String.format("Ignoring the prerequisites of feature [%s]", featureID), e);
+            }
+        });
+        states.forEach(graph::setEnabled);
+    }
+
+    /**
+     * Reflects a write locally before Configuration Admin confirms it so that
+     * the written state can be read immediately
+     */
+    private static void applyOptimistically(final Feature feature, final boolean isEnabled, final long version) {
+        synchronized (feature) {
+            feature.isEnabled      = isEnabled;
+            feature.pendingVersion = version;
+        }
+    }
+
+    /**
+     * Reconciles the state confirmed by Configuration Admin. A pending write
+     * that is not yet reflected by the confirmed state is retained since its
+     * own configuration event has not been delivered yet.
+     */
+    private static void reconcile(final Feature feature, final boolean isEnabled) {
+        synchronized (feature) {
+            feature.lastConfirmed = isEnabled;
+            if (feature.pendingVersion == 0 || feature.isEnabled == isEnabled) {
+                feature.isEnabled      = isEnabled;
+                feature.pendingVersion = 0;
+            }
+        }
+    }
+
+    /**
+     * Reconciles the value confirmed by Configuration Admin. The values of
+     * typed variants are applied as they are never written optimistically.
+     */
+    private static void reconcile(final Feature feature, final Object value) {
+        if (feature.type == BOOLEAN) {
+            if (value instanceof Boolean) {
+                reconcile(feature, ((Boolean) value).booleanValue());
+            }
+            return;
+        }
+        synchronized (feature) {
+            applyConfiguredValue(feature, value);
+        }
+    }
+
+    /**
+     * Restores the last confirmed state of the features unless a later write
+     * has been applied in the meantime
+     */
+    private void rollback(final List<Feature> features, final long version) {
+        for (final Feature feature : features) {
+            synchronized (feature) {
+                if (feature.pendingVersion == version) {
+                    feature.isEnabled      = feature.lastConfirmed;
+                    feature.pendingVersion = 0;
+                    logger.log(LOG_WARNING, String.format(
+                            "Rolled back feature [%s] to [%b] as it could not be persisted", feature.id,
+                            feature.isEnabled));
+                }
+            }
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.Promises;
+
+import com.amitinside.featureflags.api.replication.FeatureDeltaDTO;
+import com.amitinside.featureflags.api.replication.ReplicationTransport;
+
+/**
+ * Replicates the updates of the features across the nodes of a cluster.
+ *
+ * <p>
+ * Every local update is versioned by a Lamport clock and broadcast through
+ * the connected {@link ReplicationTransport}. The clock is advanced by every
+ * received delta, so that a local update always supersedes all updates this
+ * node has seen before. The clock never falls behind the wall clock, so that
+ * the updates of a restarted node are not superseded by the updates it has
+ * not seen yet. A received delta is only applied if it supersedes the
+ * last known update of its feature (last writer wins, ties are broken by the
+ * node IDs), so that all nodes converge to the same states regardless of the
+ * order or the repetition of the deliveries.
+ * </p>
+ *
+ * <p>
+ * Only the versions are assigned and the deltas recorded while holding the
+ * lock of the replicator, so that the updates of different features are not
+ * serialized behind each other's writes. The updates of the same feature are
+ * written while holding a lock of the feature, and an update is skipped if a
+ * newer one has been recorded in the meantime, so that a superseded update
+ * can never overwrite a newer one. The deltas are broadcast outside of the
+ * locks.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureReplicator {
+
+    /**
+     * Writes an update of a feature
+     */
+    @FunctionalInterface
+    public interface Writer {
+        Promise<Void> write(String featureID, boolean isEnabled, String source);
+    }
+
+    /** The prefix of the source of the updates received from the node with the appended ID */
+    public static final String                 REMOTE_SOURCE_PREFIX = "node:";
+
+    /** The identifier of this node */
+    private final String                       nodeID;
+
+    /** The wall clock the Lamport clock never falls behind */
+    private final Clock                        wallClock;
+
+    /** Writes the local and the received updates */
+    private final Writer                       writer;
+
+    /** Data container -> Key: Feature ID Value: Last known update */
+    private final Map<String, FeatureDeltaDTO> lastDeltas           = new HashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Lock ordering the writes of the feature */
+    private final Map<String, Object>          writeLocks           = new ConcurrentHashMap<>();
+
+    /** Lamport clock (guarded by {@code lastDeltas}) */
+    private long                               clock;
+
+    /** The transport to replicate through (guarded by {@code lastDeltas}) */
+    private ReplicationTransport               transport;
+
+    /** Whether the deltas are received (guarded by {@code lastDeltas}) */
+    private boolean                            isOpen;
+
+    /**
+     * Constructor
+     *
+     * @param nodeID the identifier of this node
+     * @param wallClock the wall clock the Lamport clock never falls behind
+     * @param writer writes the local and the received updates
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureReplicator(final String nodeID, final Clock wallClock, final Writer writer) {
+        this.nodeID    = requireNonNull(nodeID, "Node ID cannot be null");
+        this.wallClock = requireNonNull(wallClock, "Clock instance cannot be null");
+        this.writer    = requireNonNull(writer, "Writer instance cannot be null");
+    }
+
+    /**
+     * Returns the identifier of this node
+     *
+     * @return the node ID
+     */
+    public String getNodeID() {
+        return nodeID;
+    }
+
+    /**
+     * Starts receiving the deltas of the other nodes
+     */
+    public void open() {
+        synchronized (lastDeltas) {
+            isOpen = true;
+            if (transport != null) {
+                transport.connect(nodeID, this::receive);
+            }
+        }
+    }
+
+    /**
+     * Stops receiving the deltas of the other nodes
+     */
+    public void close() {
+        synchronized (lastDeltas) {
+            isOpen = false;
+            if (transport != null) {
+                transport.disconnect(nodeID);
+            }
+        }
+    }
+
+    /**
+     * Sets the transport to replicate through
+     *
+     * @param transport the transport
+     *
+     * @throws NullPointerException if {@code transport} is {@code null}
+     */
+    public void setTransport(final ReplicationTransport transport) {
+        requireNonNull(transport, "Transport cannot be null");
+
+        synchronized (lastDeltas) {
+            if (isOpen && this.transport != null) {
+                this.transport.disconnect(nodeID);
+            }
+            this.transport = transport;
+            if (isOpen) {
+                transport.connect(nodeID, this::receive);
+            }
+        }
+    }
+
+    /**
+     * Unsets the specified transport if it is the current one
+     *
+     * @param transport the transport
+     */
+    public void unsetTransport(final ReplicationTransport transport) {
+        synchronized (lastDeltas) {
+            if (this.transport != transport) {
+                return;
+            }
+            if (isOpen) {
+                transport.disconnect(nodeID);
+            }
+            this.transport = null;
+        }
+    }
+
+    /**
+     * Writes a local update and broadcasts it to the other nodes
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the new state of the feature
+     * @param source the source which performed the update
+     * @return the outcome of the local write (resolved at once if the update
+     *         has been superseded before it could be written)
+     */
+    public Promise<Void> update(final String featureID, final boolean isEnabled, final String source) {
+        final FeatureDeltaDTO      delta = new FeatureDeltaDTO();
+        final ReplicationTransport current;
+        synchronized (lastDeltas) {
+            delta.featureID = featureID;
+            delta.isEnabled = isEnabled;
+            delta.version   = clock = Math.max(clock + 1, wallClock.millis());
+            delta.nodeID    = nodeID;
+            lastDeltas.put(featureID, delta);
+            current = transport;
+        }
+        final Promise<Void> outcome = write(delta, source);
+        if (current != null) {
+            try {
+                current.broadcast(delta);
+            } catch (final RuntimeException e) {
+                // the delivery is the concern of the transport and must not fail the local update
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Applies a delta received from another node if it supersedes the last
+     * known update of its feature
+     *
+     * @param delta the received delta
+     * @return {@code true} if the delta has been applied
+     *
+     * @throws NullPointerException if {@code delta} is {@code null}
+     */
+    public boolean receive(final FeatureDeltaDTO delta) {
+        requireNonNull(delta, "Delta cannot be null");
+
+        if (delta.featureID == null || delta.nodeID == null || nodeID.equals(delta.nodeID)) {
+            return false;
+        }
+        synchronized (lastDeltas) {
+            clock = Math.max(clock, delta.version);
+            final FeatureDeltaDTO last = lastDeltas.get(delta.featureID);
+            if (last != null && !supersedes(delta, last)) {
+                return false;
+            }
+            lastDeltas.put(delta.featureID, delta);
+        }
+        write(delta, REMOTE_SOURCE_PREFIX + delta.nodeID);
+        return true;
+    }
+
+    /**
+     * Writes the specified delta unless a newer update of its feature has
+     * been recorded in the meantime
+     */
+    private Promise<Void> write(final FeatureDeltaDTO delta, final String source) {
+        synchronized (writeLocks.computeIfAbsent(delta.featureID, k -> new Object())) {
+            synchronized (lastDeltas) {
+                if (lastDeltas.get(delta.featureID) != delta) {
+                    // the newer update is written instead
+                    return Promises.resolved(null);
+                }
+            }
+            return writer.write(delta.featureID, delta.isEnabled, source);
+        }
+    }
+
+    private static boolean supersedes(final FeatureDeltaDTO delta, final FeatureDeltaDTO other) {
+        if (delta.version != other.version) {
+            return delta.version > other.version;
+        }
+        return delta.nodeID.compareTo(other.nodeID) > 0;
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Predicate;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Schedule;
+import com.amitinside.featureflags.provider.TimerWheel.Timeout;
+
+/**
+ * Applies the scheduled updates of the features when their time has come.
+ *
+ * <p>
+ * The scheduled updates are kept in a {@link TimerWheel} which is advanced by
+ * the specified executor once per tick, so that tens of thousands of pending
+ * updates cost no more than a few. The updates are grouped by the
+ * configuration PIDs persisting them and are always replaced as a whole per
+ * PID. An update which cannot be applied yet (for example as its feature has
+ * not been scanned yet) is retried after {@value #RETRY_DELAY} milliseconds.
+ * </p>
+ *
+ * <p>
+ * The time is read from the specified {@link Clock} so that the scheduler can
+ * be driven by any clock.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureScheduler {
+
+    /** Delay in milliseconds to retry an update which could not be applied */
+    public static final long                                         RETRY_DELAY = 60_000L;
+
+    /** Length of a tick in milliseconds */
+    private final long                                               tickMillis;
+
+    /** Clock to read the time from */
+    private final Clock                                              clock;
+
+    /** Executor to advance the wheel */
+    private final ScheduledExecutorService                           executor;
+
+    /** Applies an update and returns whether it has been applied */
+    private final Predicate<Schedule>                                action;
+
+    /** Pending updates (guarded by {@code timeouts}) */
+    private final TimerWheel<PendingUpdate>                          wheel;
+
+    /** Data container -> Key: Configuration PID Value: Timeouts of the pending updates */
+    private final Map<String, Map<Schedule, Timeout<PendingUpdate>>> timeouts    = new HashMap<>();
+
+    /** The periodic advancement of the wheel ({@code null} if not started) */
+    private ScheduledFuture<?>                                       ticker;
+
+    private static final class PendingUpdate {
+        private final String   configurationPID;
+        private final Schedule schedule;
+
+        private PendingUpdate(final String configurationPID, final Schedule schedule) {
+            this.configurationPID = configurationPID;
+            this.schedule         = schedule;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tickMillis length of a tick in milliseconds
+     * @param clock clock to read the time from
+     * @param executor executor to advance the wheel
+     * @param action applies an update and returns {@code false} if it
+     *            cannot be applied yet
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code tickMillis} is not positive
+     */
+    public FeatureScheduler(final long tickMillis, final Clock clock, final ScheduledExecutorService executor,
+            final Predicate<Schedule> action) {
+        checkArgument(tickMillis > 0, "Tick length must be positive");
+
+        this.tickMillis = tickMillis;
+        this.clock      = requireNonNull(clock, "Clock instance cannot be null");
+        this.executor   = requireNonNull(executor, "Executor instance cannot be null");
+        this.action     = requireNonNull(action, "Action cannot be null");
+        this.wheel      = new TimerWheel<>(tickMillis, clock.millis());
+    }
+
+    /**
+     * Starts advancing the wheel once per tick
+     */
+    public void start() {
+        synchronized (timeouts) {
+            if (ticker == null) {
+                ticker = executor.scheduleWithFixedDelay(this::advance, tickMillis, tickMillis, MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops advancing the wheel and drops all pending updates
+     */
+    public void close() {
+        synchronized (timeouts) {
+            if (ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+            timeouts.values()
+                    .forEach(t -> t.values()
+                            .forEach(wheel::cancel));
+            timeouts.clear();
+        }
+    }
+
+    /**
+     * Replaces the pending updates persisted by the specified configuration
+     *
+     * @param configurationPID the configuration PID
+     * @param schedules the scheduled updates of the configuration
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public void sync(final String configurationPID, final Collection<Schedule> schedules) {
+        requireNonNull(configurationPID, "Configuration PID cannot be null");
+        requireNonNull(schedules, "Schedules cannot be null");
+
+        // updates expiring in the same tick are applied in the order of their time
+        final List<Schedule> sorted = new ArrayList<>(schedules);
+        sorted.sort(Comparator.comparingLong(s -> s.time));
+        synchronized (timeouts) {
+            final Map<Schedule, Timeout<PendingUpdate>> existing = timeouts.remove(configurationPID);
+            if (existing != null) {
+                existing.values()
+                        .forEach(wheel::cancel);
+            }
+            if (sorted.isEmpty()) {
+                return;
+            }
+            final Map<Schedule, Timeout<PendingUpdate>> pending = new HashMap<>();
+            sorted.forEach(s -> pending.put(s, wheel.schedule(new PendingUpdate(configurationPID, s), s.time)));
+            timeouts.put(configurationPID, pending);
+        }
+    }
+
+    /**
+     * Returns the number of pending updates
+     *
+     * @return the number of pending updates
+     */
+    public int size() {
+        synchronized (timeouts) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * Applies all updates whose time has come. This is invoked once per tick
+     * and is not intended to be invoked otherwise except for testing purposes.
+     */
+    public void advance() {
+        final List<PendingUpdate> expired = new ArrayList<>();
+        synchronized (timeouts) {
+            wheel.advance(clock.millis(), expired::add);
+        }
+        for (final PendingUpdate update : expired) {
+            boolean isApplied;
+            try {
+                isApplied = action.test(update.schedule);
+            } catch (final RuntimeException e) {
+                isApplied = false;
+            }
+            synchronized (timeouts) {
+                final Map<Schedule, Timeout<PendingUpdate>> pending = timeouts.get(update.configurationPID);
+                if (pending == null || !pending.containsKey(update.schedule)) {
+                    // replaced in the meantime
+                    continue;
+                }
+                if (isApplied) {
+                    pending.remove(update.schedule);
+                    if (pending.isEmpty()) {
+                        timeouts.remove(update.configurationPID);
+                    }
+                } else {
+                    pending.put(update.schedule, wheel.schedule(update, clock.millis() + RETRY_DELAY));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static com.amitinside.featureflags.provider.ManagerHelper.getAttributeDefinitions;
+import static com.amitinside.featureflags.provider.ManagerHelper.getFeatureID;
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeService;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Bounded cache of feature names and descriptions per object class definition
+ * and locale.
+ *
+ * <p>
+ * The texts are only required by administrative clients and are therefore not
+ * kept resident with the features. They are loaded lazily from the
+ * {@link MetaTypeService} using the localization of the requested locale. A
+ * single lookup loads the texts of all features of the concerned object class
+ * definition which are then cached as a whole, so that a definition declaring
+ * many features never evicts its own texts. The number of cached definitions
+ * is bounded and the least recently used ones are evicted first.
+ * </p>
+ *
+ * <p>
+ * Lookups never hold a lock while the {@link MetaTypeService} is queried, so
+ * that concurrent lookups of other definitions or locales are not blocked by
+ * it. If the metatype information is not available, the feature ID is
+ * returned as name without caching it.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureTextCache {
+
+    /** Key of the default locale in the cache */
+    private static final String             DEFAULT_LOCALE = "";
+
+    /** Metatype Service Instance Reference */
+    private final MetaTypeService           metaTypeService;
+
+    /** Maximum number of cached object class definitions */
+    private final int                       maxEntries;
+
+    /** Data container -> Key: PID and Locale Value: Texts of the features of the definition */
+    private final Map<TextKey, CachedTexts> entries        = new ConcurrentHashMap<>();
+
+    /** Logical clock ordering the accesses of the cached definitions */
+    private final AtomicLong                accesses       = new AtomicLong();
+
+    /** Number of invalidations to discard the texts loaded concurrently to an invalidation */
+    private final AtomicLong                invalidations  = new AtomicLong();
+
+    /**
+     * Immutable holder of the localized name and description of a feature
+     */
+    public static final class FeatureText {
+        public final String name;
+        public final String description;
+
+        public FeatureText(final String name, final String description) {
+            this.name        = name;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Key of the texts of an object class definition in a locale
+     */
+    private static final class TextKey {
+        private final String pid;
+        private final String locale;
+
+        private TextKey(final String pid, final String locale) {
+            this.pid    = pid;
+            this.locale = locale;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TextKey)) {
+                return false;
+            }
+            final TextKey other = (TextKey) obj;
+            return pid.equals(other.pid) && locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * pid.hashCode() + locale.hashCode();
+        }
+    }
+
+    /**
+     * Texts of the features of an object class definition in a locale
+     */
+    private static final class CachedTexts {
+        /** Data container -> Key: Feature ID Value: Text */
+        private final Map<String, FeatureText> texts;
+        /** The logical time of the last access */
+        private volatile long                  lastAccess;
+
+        private CachedTexts(final Map<String, FeatureText> texts) {
+            this.texts = texts;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param metaTypeService {@link MetaTypeService} instance
+     * @param maxEntries maximum number of object class definitions whose
+     *            texts are retained in any locale
+     *
+     * @throws NullPointerException if {@code metaTypeService} is {@code null}
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public FeatureTextCache(final MetaTypeService metaTypeService, final int maxEntries) {
+        checkArgument(maxEntries > 0, "Maximum number of entries must be positive");
+
+        this.metaTypeService = requireNonNull(metaTypeService, "MetaTypeService instance cannot be null");
+        this.maxEntries      = maxEntries;
+    }
+
+    /**
+     * Returns the text of the specified feature in the specified locale. If the
+     * text is not cached, the texts of all the features belonging to the same
+     * object class definition are loaded from the {@link MetaTypeService}.
+     *
+     * @param feature the feature
+     * @param locale the locale or {@code null} for the default locale
+     * @return the text (never {@code null})
+     *
+     * @throws NullPointerException if {@code feature} is {@code null}
+     */
+    public FeatureText get(final Feature feature, final String locale) {
+        requireNonNull(feature, "Feature cannot be null");
+
+        if (feature.bundle == null || feature.pid == null) {
+            return new FeatureText(feature.id, null);
+        }
+        final TextKey key    = new TextKey(feature.pid, locale == null ? DEFAULT_LOCALE : locale);
+        CachedTexts   cached = entries.get(key);
+        if (cached == null) {
+            final long                     invalidation = invalidations.get();
+            final Map<String, FeatureText> texts        = load(feature, locale);
+            if (texts == null) {
+                // not cached, so that the texts are loaded as soon as the metatype information is available
+                return new FeatureText(feature.id, null);
+            }
+            cached            = new CachedTexts(texts);
+            cached.lastAccess = accesses.incrementAndGet();
+            final CachedTexts existing = entries.putIfAbsent(key, cached);
+            if (existing != null) {
+                cached = existing;
+            } else if (invalidations.get() != invalidation) {
+                // the loaded texts might be outdated already
+                entries.remove(key, cached);
+            } else {
+                evict();
+            }
+        }
+        cached.lastAccess = accesses.incrementAndGet();
+        final FeatureText text = cached.texts.get(feature.id);
+        return text != null ? text : new FeatureText(feature.id, null);
+    }
+
+    /**
+     * Discards all the cached texts of the specified configuration PID in every
+     * locale
+     *
+     * @param pid the configuration PID
+     */
+    public void invalidate(final String pid) {
+        invalidations.incrementAndGet();
+        entries.keySet()
+                .removeIf(k -> k.pid.equals(pid));
+    }
+
+    /**
+     * Returns the texts of the features of the object class definition of the
+     * specified feature or {@code null} if the metatype information is not
+     * available
+     */
+    private Map<String, FeatureText> load(final Feature feature, final String locale) {
+        final Map<String, FeatureText> texts = new HashMap<>();
+        try {
+            for (final AttributeDefinition ad : getAttributeDefinitions(feature.bundle, feature.pid, locale,
+                    metaTypeService)) {
+                final String adID = ad.getID();
+                if (adID.startsWith(METATYPE_FEATURE_ID_PREFIX)) {
+                    final String id   = getFeatureID(adID);
+                    final String name = ad.getName();
+                    texts.put(id, new FeatureText(name != null ? name : id, ad.getDescription()));
+                }
+            }
+        } catch (final Exception e) {
+            // metatype information is not available anymore (bundle uninstalled)
+            return null;
+        }
+        return texts;
+    }
+
+    /**
+     * Evicts the least recently used definitions exceeding the bound
+     */
+    private void evict() {
+        while (entries.size() > maxEntries) {
+            Entry<TextKey, CachedTexts> eldest = null;
+            for (final Entry<TextKey, CachedTexts> entry : entries.entrySet()) {
+                if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            entries.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+}
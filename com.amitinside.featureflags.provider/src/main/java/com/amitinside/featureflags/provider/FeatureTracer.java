@@ -0,0 +1,206 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Samples the evaluations of the features for debugging purposes.
+ *
+ * <p>
+ * Every feature has its own sampling rate between {@code 0} (never traced)
+ * and {@code 1} (always traced) which can be changed at any time. A sampled
+ * evaluation is recorded together with the code location which performed it
+ * into a ring of fixed size, so that only the most recent traces are
+ * retained. As long as no feature is sampled, the evaluations only check a
+ * single flag, so that tracing costs nothing in production.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureTracer {
+
+    /** The classes of the evaluation path whose frames are skipped to find the caller */
+    private static final Set<String>          SKIPPED_CLASSES = new HashSet<>(
+            Arrays.asList(FeatureTracer.class.getName(), RegistrySnapshot.class.getName()));
+
+    /** Data container -> Key: Feature ID Value: Sampling rate */
+    private final Map<String, Double>         samplingRates   = new ConcurrentHashMap<>();
+
+    /** The traces indexed by their sequences modulo the capacity */
+    private final AtomicReferenceArray<Trace> traces;
+
+    /** The sequence of the next trace */
+    private final AtomicLong                  sequence        = new AtomicLong();
+
+    /** Flag denoting that any feature is sampled */
+    private volatile boolean                  isActive;
+
+    /**
+     * A sampled evaluation of a feature
+     */
+    public static final class Trace {
+        /** The sequence of the trace */
+        public final long   sequence;
+        /** The time of the evaluation in milliseconds since the epoch */
+        public final long   time;
+        /** The evaluated feature */
+        public final String featureID;
+        /** The tenant the feature has been evaluated for or {@code null} */
+        public final String tenantID;
+        /** The result of the evaluation */
+        public final Object result;
+        /** The name of the evaluating thread */
+        public final String thread;
+        /** The code location which performed the evaluation */
+        public final String caller;
+
+        private Trace(final long sequence, final String featureID, final String tenantID, final Object result,
+                final String caller) {
+            this.sequence  = sequence;
+            this.time      = System.currentTimeMillis();
+            this.featureID = featureID;
+            this.tenantID  = tenantID;
+            this.result    = result;
+            this.thread    = Thread.currentThread()
+                    .getName();
+            this.caller    = caller;
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(time) + " " + featureID + (tenantID == null ? "" : "@" + tenantID) + " = "
+                    + result + " [" + thread + "] " + caller;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity the number of traces to retain
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public FeatureTracer(final int capacity) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        traces = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Checks whether any feature is sampled. This is the only check performed
+     * on the evaluation path as long as tracing is not used.
+     *
+     * @return {@code true} if any feature is sampled, otherwise {@code false}
+     */
+    public boolean isActive() {
+        return isActive;
+    }
+
+    /**
+     * Sets the sampling rate of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param rate the fraction of the evaluations to trace between {@code 0}
+     *            (disables the tracing) and {@code 1}
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     * @throws IllegalArgumentException if {@code rate} is not between
+     *             {@code 0} and {@code 1}
+     */
+    public void setSamplingRate(final String featureID, final double rate) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        checkArgument(rate >= 0 && rate <= 1, "Sampling rate must be between 0 and 1");
+
+        synchronized (samplingRates) {
+            if (rate == 0) {
+                samplingRates.remove(featureID);
+            } else {
+                samplingRates.put(featureID, rate);
+            }
+            isActive = !samplingRates.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the sampling rates of the features
+     *
+     * @return the sampling rates keyed by the feature IDs (never {@code null})
+     */
+    public Map<String, Double> getSamplingRates() {
+        return Collections.unmodifiableMap(samplingRates);
+    }
+
+    /**
+     * Records the specified evaluation if it gets sampled. Must only be
+     * invoked if the tracer {@link #isActive() is active}.
+     *
+     * @param featureID the evaluated feature
+     * @param tenantID the tenant the feature has been evaluated for or
+     *            {@code null}
+     * @param result the result of the evaluation
+     */
+    public void sample(final String featureID, final String tenantID, final Object result) {
+        final Double rate = samplingRates.get(featureID);
+        if (rate == null || rate < 1 && ThreadLocalRandom.current()
+                .nextDouble() >= rate) {
+            return;
+        }
+        final long next = sequence.getAndIncrement();
+        traces.set((int) (next % traces.length()), new Trace(next, featureID, tenantID, result, findCaller()));
+    }
+
+    /**
+     * Returns the retained traces in the order of their evaluations
+     *
+     * @param featureID the feature ID or {@code null} for the traces of all
+     *            features
+     * @return the traces (never {@code null})
+     */
+    public List<Trace> getTraces(final String featureID) {
+        final List<Trace> retained = new ArrayList<>();
+        for (int i = 0; i < traces.length(); i++) {
+            final Trace trace = traces.get(i);
+            if (trace != null && (featureID == null || featureID.equals(trace.featureID))) {
+                retained.add(trace);
+            }
+        }
+        retained.sort(comparingLong(t -> t.sequence));
+        return retained;
+    }
+
+    /**
+     * Discards all retained traces
+     */
+    public void clear() {
+        for (int i = 0; i < traces.length(); i++) {
+            traces.set(i, null);
+        }
+    }
+
+    /**
+     * Returns the first frame of the current stack outside of the evaluation
+     * path
+     */
+    private static String findCaller() {
+        for (final StackTraceElement frame : new Throwable().getStackTrace()) {
+            if (!SKIPPED_CLASSES.contains(frame.getClassName())) {
+                return frame.toString();
+            }
+        }
+        return "unknown";
+    }
+
+}
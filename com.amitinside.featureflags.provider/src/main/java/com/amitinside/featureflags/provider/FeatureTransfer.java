@@ -0,0 +1,161 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static java.util.Objects.requireNonNull;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import com.amitinside.featureflags.provider.FeatureCodec.Encoder;
+import com.amitinside.featureflags.provider.FeatureCodec.FeatureValue;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Exports and imports the values of the features in the formats of the
+ * {@link FeatureCodec}.
+ *
+ * <p>
+ * An export streams the values of all registered features (or of the features
+ * whose IDs match a filter) PID after PID. Typed variants without a value are
+ * skipped. An import collects the values per PID first and then updates every
+ * configuration once, so that importing many features of the same PID results
+ * in a single configuration update. The values of features which are not
+ * registered (yet) are configured as well and applied as soon as the bundles
+ * declaring them get scanned.
+ * </p>
+ *
+ * <p>
+ * Filters are glob patterns of the feature IDs in which {@code *} matches
+ * any number of characters and {@code ?} a single character.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureTransfer {
+
+    /** Supplies the registered features grouped per PID */
+    private final Supplier<Collection<List<Feature>>> features;
+
+    /** Configuration Admin Service Instance Reference */
+    private final ConfigurationAdmin                  configurationAdmin;
+
+    /**
+     * Constructor
+     *
+     * @param features supplies the registered features grouped per PID
+     * @param configurationAdmin Configuration Admin to write the imported
+     *            values to
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FeatureTransfer(final Supplier<Collection<List<Feature>>> features,
+            final ConfigurationAdmin configurationAdmin) {
+        this.features           = requireNonNull(features, "Features supplier cannot be null");
+        this.configurationAdmin = requireNonNull(configurationAdmin, "ConfigurationAdmin instance cannot be null");
+    }
+
+    /**
+     * Writes the values of the registered features to the specified channel
+     *
+     * @param channel the channel to write to (not closed)
+     * @param format the format to write
+     * @param filter glob pattern of the IDs of the features to export
+     *            ({@code null} to export all)
+     * @return the number of exported features
+     * @throws IOException if the channel cannot be written
+     * @throws NullPointerException if {@code channel} or {@code format} is
+     *             {@code null}
+     */
+    public int exportFeatures(final WritableByteChannel channel, final Format format, final String filter)
+            throws IOException {
+        final Predicate<String> matcher = toMatcher(filter);
+        try (Encoder encoder = new Encoder(channel, format)) {
+            for (final List<Feature> list : features.get()) {
+                for (final Feature feature : list) {
+                    final Object value = feature.type == BOOLEAN ? (Object) feature.isEnabled : feature.value;
+                    if (value != null && matcher.test(feature.id)) {
+                        encoder.write(new FeatureValue(feature.pid, feature.id, value));
+                    }
+                }
+            }
+            return encoder.getCount();
+        }
+    }
+
+    /**
+     * Reads the values of features from the specified channel and writes
+     * them to the configurations of their PIDs
+     *
+     * @param channel the channel to read from (not closed)
+     * @param format the format to read
+     * @param filter glob pattern of the IDs of the features to import
+     *            ({@code null} to import all)
+     * @return the number of imported features
+     * @throws IOException if the channel cannot be read, its content is
+     *             malformed or a configuration cannot be updated
+     * @throws NullPointerException if {@code channel} or {@code format} is
+     *             {@code null}
+     */
+    public int importFeatures(final ReadableByteChannel channel, final Format format, final String filter)
+            throws IOException {
+        final Predicate<String>                matcher = toMatcher(filter);
+        final Map<String, Map<String, Object>> values  = new LinkedHashMap<>();
+        FeatureCodec.decode(channel, format, v -> {
+            if (matcher.test(v.featureID)) {
+                values.computeIfAbsent(v.pid, p -> new LinkedHashMap<>())
+                        .put(v.featureID, v.value);
+            }
+        });
+        int imported = 0;
+        for (final Map.Entry<String, Map<String, Object>> entry : values.entrySet()) {
+            final Configuration       configuration = configurationAdmin.getConfiguration(entry.getKey(), "?");
+            final Map<String, Object> properties    = ManagerHelper.asMap(configuration.getProperties());
+            entry.getValue()
+                    .forEach((featureID, value) -> properties.put(METATYPE_FEATURE_ID_PREFIX + featureID, value));
+            configuration.updateIfDifferent(new Hashtable<>(properties));
+            imported += entry.getValue()
+                    .size();
+        }
+        return imported;
+    }
+
+    /**
+     * Returns the matcher of the specified glob pattern
+     */
+    static Predicate<String> toMatcher(final String filter) {
+        if (filter == null || "*".equals(filter)) {
+            return featureID -> true;
+        }
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder chunk = new StringBuilder();
+        for (final char c : filter.toCharArray()) {
+            if (c == '*' || c == '?') {
+                regex.append(Pattern.quote(chunk.toString()))
+                        .append(c == '*' ? ".*" : ".");
+                chunk.setLength(0);
+            } else {
+                chunk.append(c);
+            }
+        }
+        regex.append(Pattern.quote(chunk.toString()));
+        final Pattern pattern = Pattern.compile(regex.toString());
+        return featureID -> pattern.matcher(featureID)
+                .matches();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.amitinside.featureflags.api.exposure.ExposureDTO;
+import com.amitinside.featureflags.api.exposure.ExposureSink;
+
+/**
+ * Appends the exposures to a local file.
+ *
+ * <p>
+ * Every exposure is written as a line of tab-separated values: the time in
+ * milliseconds since the epoch, the feature ID, the subject ID and the value.
+ * Backslashes, tabs and line breaks within the values are escaped by a
+ * backslash. Every batch is flushed at once.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FileExposureSink implements ExposureSink, Closeable {
+
+    /** The writer of the file */
+    private final BufferedWriter writer;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to append to which is created if it does not
+     *            exist
+     *
+     * @throws NullPointerException if {@code file} is {@code null}
+     * @throws IOException if the file cannot be opened
+     */
+    public FileExposureSink(final Path file) throws IOException {
+        requireNonNull(file, "File cannot be null");
+
+        final Path parent = file.toAbsolutePath()
+                .getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(file, UTF_8, CREATE, WRITE, APPEND);
+    }
+
+    @Override
+    public synchronized void consume(final List<ExposureDTO> exposures) throws IOException {
+        for (final ExposureDTO exposure : exposures) {
+            writer.write(Long.toString(exposure.time));
+            writer.write('\t');
+            writeEscaped(exposure.featureID);
+            writer.write('\t');
+            writeEscaped(exposure.subjectID);
+            writer.write('\t');
+            writeEscaped(String.valueOf(exposure.value));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                default:
+                    writer.write(c);
+                    break;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Source of feature values backed by a file which is watched for changes.
+ *
+ * <p>
+ * The file is either a properties file or, if its name ends with
+ * {@value #JSON_SUFFIX}, a flat JSON object. Every key is a feature ID and
+ * every value either {@code true} or {@code false} for a boolean feature or
+ * the value of a typed variant. The file is watched through a
+ * {@link WatchService} on its directory, so that also files replaced by a
+ * rename are detected. On every change the file is parsed again and
+ * compared with the previous values, and only the keys whose values have
+ * changed are reported. The file is read once no further event has occurred
+ * for {@value #SETTLE_DELAY} milliseconds, but writers should still replace
+ * the file by a rename to never expose a partially written file. A file
+ * which cannot be parsed (for example as it is
+ * being written) is reported to the error handler and the previous values
+ * are retained until the next change. A deleted file has no values.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FileFeatureSource implements Closeable {
+
+    /** The suffix of the names of JSON files */
+    public static final String           JSON_SUFFIX  = ".json";
+
+    /** Time in milliseconds without any further event before the file is read */
+    public static final long             SETTLE_DELAY = 50L;
+
+    /** The watched file */
+    private final Path                   file;
+
+    /** Executor to run the watch loop */
+    private final Executor               executor;
+
+    /** Notified of the feature IDs whose values have changed */
+    private final Consumer<Set<String>>  changeListener;
+
+    /** Handles the files which cannot be read or parsed */
+    private final Consumer<Exception>    errorHandler;
+
+    /** The current values of the file (guarded by {@code this} for writing) */
+    private volatile Map<String, Object> values       = Collections.emptyMap();
+
+    /** The watch service of the directory ({@code null} if not started) */
+    private WatchService                 watchService;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to watch
+     * @param executor executor to run the watch loop on one of its threads
+     * @param changeListener notified of the feature IDs whose values have
+     *            changed
+     * @param errorHandler handles the files which cannot be read or parsed
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public FileFeatureSource(final Path file, final Executor executor,
+            final Consumer<Set<String>> changeListener, final Consumer<Exception> errorHandler) {
+        this.file           = requireNonNull(file, "File cannot be null").toAbsolutePath();
+        this.executor       = requireNonNull(executor, "Executor instance cannot be null");
+        this.changeListener = requireNonNull(changeListener, "Change listener cannot be null");
+        this.errorHandler   = requireNonNull(errorHandler, "Error handler cannot be null");
+    }
+
+    /**
+     * Loads the file and starts watching it for changes
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        final Path directory = file.getParent();
+        Files.createDirectories(directory);
+        watchService = directory.getFileSystem()
+                .newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        reload();
+        final WatchService service = watchService;
+        executor.execute(() -> watch(service));
+    }
+
+    /**
+     * Stops watching the file
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (final IOException e) {
+                // nothing to release anymore
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Returns the current values of the file
+     *
+     * @return the values keyed by the feature IDs (never {@code null})
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Parses the file again and reports the feature IDs whose values have
+     * changed
+     */
+    synchronized void reload() {
+        final Map<String, Object> parsed;
+        try {
+            parsed = parse(file);
+        } catch (final IOException | RuntimeException e) {
+            errorHandler.accept(e);
+            return;
+        }
+        final Map<String, Object> previous = values;
+        final Set<String>         changed  = new HashSet<>();
+        parsed.forEach((featureID, value) -> {
+            if (!Objects.equals(previous.get(featureID), value)) {
+                changed.add(featureID);
+            }
+        });
+        previous.keySet()
+                .stream()
+                .filter(featureID -> !parsed.containsKey(featureID))
+                .forEach(changed::add);
+        if (!changed.isEmpty()) {
+            values = Collections.unmodifiableMap(parsed);
+            changeListener.accept(Collections.unmodifiableSet(changed));
+        }
+    }
+
+    private void watch(final WatchService service) {
+        final Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key       = service.take();
+                boolean  isChanged = false;
+                // the events of a single write are awaited to not read a truncated file
+                while (key != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        // an overflow might have hidden an event of the file
+                        isChanged |= event.context() == null || name.equals(event.context());
+                    }
+                    key.reset();
+                    key = service.poll(SETTLE_DELAY, MILLISECONDS);
+                }
+                if (isChanged) {
+                    reload();
+                }
+            }
+        } catch (final ClosedWatchServiceException e) {
+            // stopped
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    /**
+     * Parses the values of the specified file
+     *
+     * @return the values keyed by the feature IDs (empty if the file does
+     *         not exist)
+     */
+    static Map<String, Object> parse(final Path file) throws IOException {
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(file), UTF_8);
+        } catch (final NoSuchFileException e) {
+            return new HashMap<>();
+        }
+        if (file.getFileName()
+                .toString()
+                .endsWith(JSON_SUFFIX)) {
+            return new JsonObjectParser(content).parse();
+        }
+        final Properties properties = new Properties();
+        try (Reader reader = new StringReader(content)) {
+            properties.load(reader);
+        }
+        final Map<String, Object> parsed = new HashMap<>();
+        for (final String featureID : properties.stringPropertyNames()) {
+            final String value = properties.getProperty(featureID)
+                    .trim();
+            if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                parsed.put(featureID, Boolean.valueOf(value));
+            } else {
+                parsed.put(featureID, value);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Parser of a JSON object whose values are booleans, numbers, strings or
+     * {@code null} (ignored)
+     */
+    private static final class JsonObjectParser {
+        private final String text;
+        private int          position;
+
+        private JsonObjectParser(final String text) {
+            this.text = text;
+        }
+
+        private Map<String, Object> parse() throws IOException {
+            final Map<String, Object> parsed = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    final String featureID = readString();
+                    expect(':');
+                    final Object value = readValue();
+                    if (value != null) {
+                        parsed.put(featureID, value);
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw error("Unexpected content after the object");
+            }
+            return parsed;
+        }
+
+        private Object readValue() throws IOException {
+            final char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            final int start = position;
+            while (position < text.length() && "+-.eE0123456789".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            final String number = text.substring(start, position);
+            try {
+                // integral numbers are kept exact for the INTEGER and LONG variants
+                return number.matches("-?\\d+") ? (Object) Long.valueOf(number) : (Object) Double.valueOf(number);
+            } catch (final NumberFormatException e) {
+                throw error("Unsupported value");
+            }
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            final StringBuilder builder = new StringBuilder();
+            while (position < text.length()) {
+                final char c = text.charAt(position++);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                final char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Incomplete escape sequence");
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (final NumberFormatException e) {
+                            throw error("Invalid escape sequence");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        builder.append(escaped);
+                        break;
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void expect(final char c) throws IOException {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private boolean consume(final char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips the whitespace and returns the next character or {@code 0}
+         * at the end of the text
+         */
+        private char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private IOException error(final String message) {
+            return new IOException(message + " at position " + position);
+        }
+    }
+
+}
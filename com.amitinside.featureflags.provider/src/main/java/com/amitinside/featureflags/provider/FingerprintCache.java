@@ -0,0 +1,118 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free cache of the recently seen exposures.
+ *
+ * <p>
+ * Every exposure is reduced to a 64-bit fingerprint of its feature, subject
+ * and value which is kept in a direct-mapped table of fixed size. A new
+ * fingerprint replaces the one in its slot, so that the memory stays bounded
+ * regardless of the number of subjects and an evicted exposure is just seen
+ * again. Concurrent callers adding the same exposure can both see it as new,
+ * which is acceptable for deduplicating exposures.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FingerprintCache {
+
+    /** Offset basis of the FNV-1a hash */
+    private static final long     FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** Prime of the FNV-1a hash */
+    private static final long     FNV_PRIME  = 0x100000001b3L;
+
+    /** The fingerprints indexed by their slots ({@code 0} if empty) */
+    private final AtomicLongArray fingerprints;
+
+    /** The mask to map a fingerprint to its slot */
+    private final int             mask;
+
+    /**
+     * Constructor
+     *
+     * @param capacity the minimum number of fingerprints to hold which is
+     *            rounded up to the next power of two
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive or
+     *             exceeds {@value MpscRingBuffer#MAX_CAPACITY}
+     */
+    public FingerprintCache(final int capacity) {
+        checkArgument(capacity > 0 && capacity <= MpscRingBuffer.MAX_CAPACITY,
+                "Capacity must be between 1 and " + MpscRingBuffer.MAX_CAPACITY);
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        fingerprints = new AtomicLongArray(size);
+        mask         = size - 1;
+    }
+
+    /**
+     * Adds the specified exposure unless it has been seen recently
+     *
+     * @param featureID the feature ID
+     * @param subjectID the subject ID
+     * @param value the value the subject has been exposed to
+     * @return {@code true} if the exposure has not been seen recently,
+     *         otherwise {@code false}
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public boolean add(final String featureID, final String subjectID, final Object value) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(subjectID, "Subject ID cannot be null");
+        requireNonNull(value, "Value cannot be null");
+
+        final long fingerprint = fingerprint(featureID, subjectID, value);
+        final int  slot        = (int) (fingerprint ^ fingerprint >>> 32) & mask;
+        if (fingerprints.get(slot) == fingerprint) {
+            return false;
+        }
+        fingerprints.lazySet(slot, fingerprint);
+        return true;
+    }
+
+    /**
+     * Forgets all fingerprints
+     */
+    public void clear() {
+        for (int i = 0; i < fingerprints.length(); i++) {
+            fingerprints.set(i, 0);
+        }
+    }
+
+    /**
+     * Returns the non-zero fingerprint of the specified exposure
+     */
+    private static long fingerprint(final String featureID, final String subjectID, final Object value) {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, featureID);
+        hash = hash(hash, subjectID);
+        // the string representations of booleans and strings are not allocated
+        hash = hash(hash, value.toString());
+        // finalizer of MurmurHash3 to spread the bits over the slots
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long hash(long hash, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // the length separates the strings from each other
+        return (hash ^ value.length()) * FNV_PRIME;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import com.amitinside.featureflags.api.FeatureMonitor;
+
+/**
+ * Posts an event to the {@link FeatureMonitor#KILL_SWITCH_TOPIC} topic
+ * whenever the kill switch of a feature trips.
+ *
+ * <p>
+ * This is the only class referring to the Event Admin package which is
+ * imported optionally. The component is only satisfied while an Event Admin
+ * service is available, so that this class is not loaded otherwise and the
+ * feature manager runs without Event Admin.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+@Component(service = KillSwitchEvents.class)
+public final class KillSwitchEvents {
+
+    /** Event Admin Service Instance Reference */
+    @Reference
+    private EventAdmin eventAdmin;
+
+    /**
+     * Posts the event of a tripped kill switch asynchronously
+     *
+     * @param featureID the feature whose kill switch tripped
+     * @param errorRate the error rate in percent the kill switch tripped at
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public void publish(final String featureID, final double errorRate) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(FeatureMonitor.FEATURE_ID, featureID);
+        properties.put(FeatureMonitor.ERROR_RATE, errorRate);
+        eventAdmin.postEvent(new Event(FeatureMonitor.KILL_SWITCH_TOPIC, properties));
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.amitinside.featureflags.api.replication.FeatureDeltaDTO;
+import com.amitinside.featureflags.api.replication.ReplicationTransport;
+
+/**
+ * In-JVM {@link ReplicationTransport} which delivers every delta
+ * synchronously to the receivers of all other connected nodes.
+ *
+ * <p>
+ * This is intended to test the convergence of multiple feature managers
+ * locally, for example of multiple frameworks running in the same JVM.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class LoopbackTransport implements ReplicationTransport {
+
+    /** Data container -> Key: Node ID Value: Receiver of the node */
+    private final Map<String, Consumer<FeatureDeltaDTO>> receivers = new ConcurrentHashMap<>();
+
+    @Override
+    public void connect(final String nodeID, final Consumer<FeatureDeltaDTO> receiver) {
+        requireNonNull(nodeID, "Node ID cannot be null");
+        requireNonNull(receiver, "Receiver cannot be null");
+
+        receivers.put(nodeID, receiver);
+    }
+
+    @Override
+    public void disconnect(final String nodeID) {
+        requireNonNull(nodeID, "Node ID cannot be null");
+
+        receivers.remove(nodeID);
+    }
+
+    @Override
+    public void broadcast(final FeatureDeltaDTO delta) {
+        requireNonNull(delta, "Delta cannot be null");
+
+        receivers.forEach((nodeID, receiver) -> {
+            if (!nodeID.equals(delta.nodeID)) {
+                receiver.accept(delta);
+            }
+        });
+    }
+
+}
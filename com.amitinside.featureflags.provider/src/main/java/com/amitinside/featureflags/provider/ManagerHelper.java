@@ -1,17 +1,35 @@
 package com.amitinside.featureflags.provider;
 
+import static com.amitinside.featureflags.api.FeatureManager.KILL_SWITCH_ID_PREFIX;
 import static com.amitinside.featureflags.api.FeatureManager.METATYPE_FEATURE_ID_PREFIX;
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_PREREQUISITE_ID_PREFIX;
+import static com.amitinside.featureflags.api.FeatureManager.SCHEDULE_ID_PREFIX;
+import static com.amitinside.featureflags.api.FeatureManager.TENANT_FACTORY_PID;
+import static com.amitinside.featureflags.api.FeatureManager.TENANT_ID_PROPERTY;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toMap;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+import static org.osgi.service.metatype.AttributeDefinition.DOUBLE;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
 import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 
 import org.apache.felix.utils.collections.DictionaryAsMap;
@@ -24,6 +42,8 @@ import org.osgi.service.metatype.MetaTypeService;
 import org.osgi.service.metatype.ObjectClassDefinition;
 
 import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.provider.FeatureTextCache.FeatureText;
 
 /**
  * Feature Manager Helper class
@@ -43,13 +63,93 @@ public final class ManagerHelper {
 
     /**
      * Placeholder for Feature DTO. Used for internal purposes.
+     *
+     * <p>
+     * Only the identity and the state of a feature are kept resident. The name
+     * and description are loaded lazily through {@link FeatureTextCache}.
+     * </p>
+     *
+     * <p>
+     * A write is applied to {@code isEnabled} before Configuration Admin
+     * confirms it. Until then, {@code pendingVersion} denotes the version of
+     * the pending write and {@code lastConfirmed} the state to roll back to.
+     * </p>
+     *
+     * <p>
+     * A feature declared by an attribute definition of type
+     * {@link AttributeDefinition#INTEGER INTEGER},
+     * {@link AttributeDefinition#LONG LONG},
+     * {@link AttributeDefinition#DOUBLE DOUBLE} or
+     * {@link AttributeDefinition#STRING STRING} is a typed variant. Its
+     * {@code value} is only changed through configuration and
+     * {@code isEnabled} denotes whether it has a value. The option values of a
+     * {@code STRING} variant restrict the permitted values (enum-like variant).
+     * </p>
+     *
+     * <p>
+     * {@code prerequisites} denotes the IDs of the prerequisite features
+     * declared by the default value of the {@code osgi.prerequisite.X}
+     * attribute definition.
+     * </p>
      */
     public static class Feature {
-        public String  id;
-        public long    bundleId;
-        public String  name;
-        public String  description;
+        public String      id;
+        public String      pid;
+        public Bundle      bundle;
+        public long        bundleId;
+        public int         type          = BOOLEAN;
+        public String[]    options;
+        public Object      defaultValue;
+        public Object      value;
+        public Set<String> prerequisites = Collections.emptySet();
+        public boolean     isEnabled;
+        public boolean     lastConfirmed;
+        public long        pendingVersion;
+    }
+
+    /**
+     * Overrides of the features for a tenant as persisted in a factory
+     * configuration of {@link FeatureManager#TENANT_FACTORY_PID}. Used for
+     * internal purposes.
+     */
+    public static class TenantOverride {
+        public String               tenantID;
+        public Map<String, Boolean> features;
+    }
+
+    /**
+     * Scheduled update of a feature as persisted in a {@code osgi.schedule.X}
+     * configuration property. Used for internal purposes.
+     */
+    public static class Schedule {
+        public String  featureID;
         public boolean isEnabled;
+        public long    time;
+    }
+
+    /**
+     * Kill switch policy of a feature as specified by a
+     * {@code osgi.killswitch.X} configuration property. Used for internal
+     * purposes.
+     */
+    public static class KillSwitchPolicy {
+        public String featureID;
+        public double maxErrorRate;
+        public long   window;
+    }
+
+    /**
+     * Configured states of the features together with their prerequisites,
+     * scheduled updates, kill switch policies and the tenant overrides as read
+     * from all configurations at once. The configured properties are keyed by
+     * configuration PID. Used for internal purposes.
+     */
+    public static class ConfiguredState {
+        public final Map<String, Map<String, Object>>           features        = new HashMap<>();
+        public final Map<String, Map<String, Set<String>>>      prerequisites   = new HashMap<>();
+        public final Map<String, Map<String, List<Schedule>>>   schedules       = new HashMap<>();
+        public final Map<String, Map<String, KillSwitchPolicy>> killSwitches    = new HashMap<>();
+        public final Map<String, TenantOverride>                tenantOverrides = new HashMap<>();
     }
 
     public static String getFeatureID(final String id) {
@@ -57,35 +157,127 @@ public final class ManagerHelper {
         return id.substring(METATYPE_FEATURE_ID_PREFIX.length(), id.length());
     }
 
-    public static FeatureDTO toFeatureDTO(final Feature f) {
+    public static FeatureDTO toFeatureDTO(final Feature f, final FeatureText text, final RegistrySnapshot snapshot) {
         requireNonNull(f, "Feature cannot be null");
+        requireNonNull(text, "Feature text cannot be null");
+        requireNonNull(snapshot, "Snapshot cannot be null");
         final FeatureDTO feature = new FeatureDTO();
-        feature.id          = f.id;
-        feature.bundleId    = f.bundleId;
-        feature.name        = f.name;
-        feature.description = f.description;
-        feature.isEnabled   = f.isEnabled;
+        feature.id                   = f.id;
+        feature.bundleId             = f.bundleId;
+        feature.name                 = text.name;
+        feature.description          = text.description;
+        feature.isEnabled            = f.isEnabled;
+        feature.isEffectivelyEnabled = f.isEnabled && snapshot.isEffectivelyEnabled(f.id);
+        feature.prerequisites        = snapshot.getPrerequisites(f.id);
+        feature.value                = f.value;
         return feature;
     }
 
-    public static Feature toFeature(final AttributeDefinition ad, final long bundleId) {
+    public static Feature toFeature(final AttributeDefinition ad, final String pid, final Bundle bundle) {
         requireNonNull(ad, "Attribute Definition cannot be null");
+        requireNonNull(bundle, "Bundle Instance cannot be null");
 
         final Feature feature = new Feature();
         feature.id = getFeatureID(ad.getID());
 
-        final String name = ad.getName();
-        feature.name        = name != null ? name : feature.id;
-
-        feature.description = ad.getDescription();
-
         final String[] defaultValue = ad.getDefaultValue();
-        feature.isEnabled = defaultValue == null ? false : Boolean.valueOf(defaultValue[0]);
+        if (isVariantType(ad.getType())) {
+            feature.type      = ad.getType();
+            feature.options   = ad.getOptionValues();
+            feature.value     = defaultValue == null ? null : toVariantValue(feature, defaultValue[0]);
+            feature.isEnabled = feature.value != null;
+        } else {
+            feature.isEnabled = defaultValue == null ? false : Boolean.valueOf(defaultValue[0]);
+        }
+        feature.defaultValue  = feature.type == BOOLEAN ? feature.isEnabled : feature.value;
+        feature.lastConfirmed = feature.isEnabled;
 
-        feature.bundleId  = bundleId;
+        feature.pid      = pid;
+        feature.bundle   = bundle;
+        feature.bundleId = bundle.getBundleId();
         return feature;
     }
 
+    public static boolean isVariantType(final int type) {
+        return type == INTEGER || type == LONG || type == DOUBLE || type == STRING;
+    }
+
+    /**
+     * Converts the specified value to the type of the specified variant
+     *
+     * @return the converted value or {@code null} if the value cannot be
+     *         converted or is not one of the option values of the variant
+     */
+    public static Object toVariantValue(final Feature feature, final Object value) {
+        requireNonNull(feature, "Feature cannot be null");
+        if (value == null || value instanceof Boolean) {
+            return null;
+        }
+        final String text = value.toString();
+        try {
+            switch (feature.type) {
+                case INTEGER:
+                    return value instanceof Integer ? value : Integer.valueOf(text);
+                case LONG:
+                    return value instanceof Long ? value : Long.valueOf(text);
+                case DOUBLE:
+                    return value instanceof Double ? value : Double.valueOf(text);
+                case STRING:
+                    return feature.options == null || asList(feature.options).contains(text) ? text : null;
+                default:
+                    return null;
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the specified configured value to the specified feature. Values
+     * not matching the type of the feature are ignored.
+     */
+    public static void applyConfiguredValue(final Feature feature, final Object value) {
+        if (feature.type == BOOLEAN) {
+            if (value instanceof Boolean) {
+                feature.isEnabled     = (Boolean) value;
+                feature.lastConfirmed = feature.isEnabled;
+            }
+            return;
+        }
+        final Object variantValue = toVariantValue(feature, value);
+        if (variantValue != null) {
+            feature.value         = variantValue;
+            feature.isEnabled     = true;
+            feature.lastConfirmed = true;
+        }
+    }
+
+    /**
+     * Returns a copy of the specified feature with the specified value
+     * applied. Values not matching the type of the feature are ignored.
+     */
+    public static Feature withValue(final Feature feature, final Object value) {
+        requireNonNull(feature, "Feature cannot be null");
+
+        final Feature copy = new Feature();
+        synchronized (feature) {
+            copy.id             = feature.id;
+            copy.pid            = feature.pid;
+            copy.bundle         = feature.bundle;
+            copy.bundleId       = feature.bundleId;
+            copy.type           = feature.type;
+            copy.options        = feature.options;
+            copy.defaultValue   = feature.defaultValue;
+            copy.value          = feature.value;
+            copy.prerequisites  = feature.prerequisites;
+            copy.isEnabled      = feature.isEnabled;
+            copy.lastConfirmed  = feature.lastConfirmed;
+            copy.pendingVersion = feature.pendingVersion;
+        }
+        applyConfiguredValue(copy, value);
+        return copy;
+    }
+
     public static List<String> getPIDs(final Bundle bundle, final MetaTypeService metaTypeService) {
         requireNonNull(bundle, "Bundle Instance cannot be null");
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
@@ -96,12 +288,17 @@ public final class ManagerHelper {
 
     public static List<AttributeDefinition> getAttributeDefinitions(final Bundle bundle, final String pid,
             final MetaTypeService metaTypeService) {
+        return getAttributeDefinitions(bundle, pid, null, metaTypeService);
+    }
+
+    public static List<AttributeDefinition> getAttributeDefinitions(final Bundle bundle, final String pid,
+            final String locale, final MetaTypeService metaTypeService) {
         requireNonNull(bundle, "Bundle Instance cannot be null");
         requireNonNull(pid, "Configuration PID cannot be null");
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
 
         final MetaTypeInformation   metaTypeInformation = metaTypeService.getMetaTypeInformation(bundle);
-        final ObjectClassDefinition ocd                 = metaTypeInformation.getObjectClassDefinition(pid, null);
+        final ObjectClassDefinition ocd                 = metaTypeInformation.getObjectClassDefinition(pid, locale);
         return asList(ocd.getAttributeDefinitions(ALL));
     }
 
@@ -111,35 +308,360 @@ public final class ManagerHelper {
         requireNonNull(pid, "Configuration PID cannot be null");
         requireNonNull(metaTypeService, "MetaType Service Instance cannot be null");
 
-        final Map<String, List<Feature>> allFeatures = new HashMap<>();
+        final Map<String, List<Feature>> allFeatures   = new HashMap<>();
+        final Map<String, Set<String>>   prerequisites = new HashMap<>();
         for (final AttributeDefinition ad : getAttributeDefinitions(bundle, pid, metaTypeService)) {
-            if (ad.getID()
-                    .startsWith(METATYPE_FEATURE_ID_PREFIX)) {
+            final String adID = ad.getID();
+            if (adID.startsWith(METATYPE_FEATURE_ID_PREFIX)) {
                 List<Feature> features = null;
                 features = allFeatures.computeIfAbsent(pid, f -> new ArrayList<>());
-                features.add(toFeature(ad, bundle.getBundleId()));
+                features.add(toFeature(ad, pid, bundle));
+            } else if (adID.startsWith(METATYPE_PREREQUISITE_ID_PREFIX)) {
+                prerequisites.put(adID.substring(METATYPE_PREREQUISITE_ID_PREFIX.length()),
+                        toPrerequisites(ad.getDefaultValue()));
             }
         }
+        allFeatures.getOrDefault(pid, Collections.emptyList())
+                .forEach(f -> f.prerequisites = prerequisites.getOrDefault(f.id, Collections.emptySet()));
         return allFeatures;
     }
 
-    public static Map<String, Boolean> getConfiguredFeatures(final String configurationPID,
+    public static Map<String, Object> getConfiguredFeatures(final String configurationPID,
+            final ConfigurationAdmin configurationAdmin) {
+        return getConfigured(configurationPID, configurationAdmin, ManagerHelper::toConfiguredFeatures);
+    }
+
+    public static Map<String, Set<String>> getConfiguredPrerequisites(final String configurationPID,
+            final ConfigurationAdmin configurationAdmin) {
+        return getConfigured(configurationPID, configurationAdmin, ManagerHelper::toConfiguredPrerequisites);
+    }
+
+    public static Map<String, List<Schedule>> getConfiguredSchedules(final String configurationPID,
+            final ConfigurationAdmin configurationAdmin) {
+        return getConfigured(configurationPID, configurationAdmin, ManagerHelper::toConfiguredSchedules);
+    }
+
+    public static Map<String, KillSwitchPolicy> getConfiguredKillSwitches(final String configurationPID,
             final ConfigurationAdmin configurationAdmin) {
+        return getConfigured(configurationPID, configurationAdmin, ManagerHelper::toConfiguredKillSwitches);
+    }
+
+    private static <T> Map<String, T> getConfigured(final String configurationPID,
+            final ConfigurationAdmin configurationAdmin,
+            final Function<Dictionary<String, Object>, Map<String, T>> extractor) {
         try {
-            final Configuration       configuration = configurationAdmin.getConfiguration(configurationPID, "?");
-            final Map<String, Object> properties    = new DictionaryAsMap<>(configuration.getProperties());
-            return properties.entrySet()
-                    .stream()
-                    .filter(e -> e.getKey()
-                            .startsWith(METATYPE_FEATURE_ID_PREFIX))
-                    .filter(e -> e.getValue() instanceof Boolean)
-                    .collect(toMap(e -> getFeatureID(e.getKey()), e -> (Boolean) e.getValue()));
+            final Configuration configuration = configurationAdmin.getConfiguration(configurationPID, "?");
+            return extractor.apply(configuration.getProperties());
         } catch (final Exception e) {
             // never occur since configuration location check has been ignored
         }
         return Collections.emptyMap();
     }
 
+    /**
+     * Reads the configured states of all configurations in a single pass, so
+     * that Configuration Admin is only asked once to list its configurations
+     *
+     * @return the configured state (never {@code null})
+     */
+    public static ConfiguredState getAllConfigured(final ConfigurationAdmin configurationAdmin) {
+        requireNonNull(configurationAdmin, "Configuration Admin Service Instance cannot be null");
+
+        final ConfiguredState state = new ConfiguredState();
+        try {
+            final Configuration[] configurations = configurationAdmin.listConfigurations(null);
+            for (final Configuration configuration : asList(configurations)) {
+                final String                     pid        = configuration.getPid();
+                final Dictionary<String, Object> properties = configuration.getProperties();
+                if (TENANT_FACTORY_PID.equals(configuration.getFactoryPid())) {
+                    // tenant overrides are not configured features
+                    final TenantOverride override = toTenantOverride(properties);
+                    if (override != null) {
+                        state.tenantOverrides.put(pid, override);
+                    }
+                    continue;
+                }
+                putIfNotEmpty(state.features, pid, toConfiguredFeatures(properties));
+                putIfNotEmpty(state.prerequisites, pid, toConfiguredPrerequisites(properties));
+                putIfNotEmpty(state.schedules, pid, toConfiguredSchedules(properties));
+                putIfNotEmpty(state.killSwitches, pid, toConfiguredKillSwitches(properties));
+            }
+        } catch (final Exception e) {
+            // never occur since the filter is not specified
+        }
+        return state;
+    }
+
+    private static <T> void putIfNotEmpty(final Map<String, Map<String, T>> allConfigured, final String pid,
+            final Map<String, T> configured) {
+        if (!configured.isEmpty()) {
+            allConfigured.put(pid, configured);
+        }
+    }
+
+    /**
+     * Extracts the tenant override from the specified configuration properties
+     *
+     * @return the tenant override or {@code null} if no tenant is specified
+     */
+    public static TenantOverride toTenantOverride(final Dictionary<String, Object> properties) {
+        if (properties == null) {
+            return null;
+        }
+        final Object tenantID = properties.get(TENANT_ID_PROPERTY);
+        if (!(tenantID instanceof String) || ((String) tenantID).isEmpty()) {
+            return null;
+        }
+        final TenantOverride override = new TenantOverride();
+        override.tenantID = (String) tenantID;
+        override.features = new HashMap<>();
+        toConfiguredFeatures(properties).forEach((id, value) -> {
+            if (value instanceof Boolean) {
+                override.features.put(id, (Boolean) value);
+            }
+        });
+        return override;
+    }
+
+    public static Map<String, Set<String>> toConfiguredPrerequisites(final Dictionary<String, Object> properties) {
+        if (properties == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Set<String>> prerequisites = new HashMap<>();
+        for (final Entry<String, Object> entry : new DictionaryAsMap<>(properties).entrySet()) {
+            final String key   = entry.getKey();
+            final Object value = entry.getValue();
+            if (key.startsWith(METATYPE_PREREQUISITE_ID_PREFIX)) {
+                prerequisites.put(key.substring(METATYPE_PREREQUISITE_ID_PREFIX.length()),
+                        toPrerequisites(toStrings(value)));
+            }
+        }
+        return prerequisites;
+    }
+
+    public static Map<String, List<Schedule>> toConfiguredSchedules(final Dictionary<String, Object> properties) {
+        if (properties == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, List<Schedule>> schedules = new HashMap<>();
+        for (final Entry<String, Object> entry : new DictionaryAsMap<>(properties).entrySet()) {
+            final String key = entry.getKey();
+            if (key.startsWith(SCHEDULE_ID_PREFIX)) {
+                final String         featureID = key.substring(SCHEDULE_ID_PREFIX.length());
+                final List<Schedule> schedule  = toSchedules(featureID, entry.getValue());
+                if (!schedule.isEmpty()) {
+                    schedules.put(featureID, schedule);
+                }
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * Parses the specified scheduled updates of the specified feature. The
+     * value of a {@code osgi.schedule.X} configuration property can either be
+     * a single update, an array or a collection of updates. Malformed updates
+     * are ignored.
+     *
+     * @return the scheduled updates (never {@code null})
+     */
+    public static List<Schedule> toSchedules(final String featureID, final Object values) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        final List<Schedule> schedules = new ArrayList<>();
+        for (final String value : toStrings(values)) {
+            final int separator = value.indexOf('@');
+            if (separator < 0) {
+                continue;
+            }
+            final String state = value.substring(0, separator)
+                    .trim();
+            final String time  = value.substring(separator + 1)
+                    .trim();
+            if (!"true".equalsIgnoreCase(state) && !"false".equalsIgnoreCase(state)) {
+                continue;
+            }
+            try {
+                final Schedule schedule = new Schedule();
+                schedule.featureID = featureID;
+                schedule.isEnabled = Boolean.parseBoolean(state);
+                schedule.time      = Instant.parse(time)
+                        .toEpochMilli();
+                schedules.add(schedule);
+            } catch (final DateTimeParseException e) {
+                // malformed schedules are ignored
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * Formats the specified scheduled update as persisted in a
+     * {@code osgi.schedule.X} configuration property
+     */
+    public static String toScheduleEntry(final Schedule schedule) {
+        requireNonNull(schedule, "Schedule cannot be null");
+        return schedule.isEnabled + "@" + Instant.ofEpochMilli(schedule.time);
+    }
+
+    public static Map<String, KillSwitchPolicy> toConfiguredKillSwitches(final Dictionary<String, Object> properties) {
+        if (properties == null) {
+            return Collections.emptyMap();
+        }
+        final Map<String, KillSwitchPolicy> policies = new HashMap<>();
+        for (final Entry<String, Object> entry : new DictionaryAsMap<>(properties).entrySet()) {
+            final String key = entry.getKey();
+            if (key.startsWith(KILL_SWITCH_ID_PREFIX)) {
+                final String           featureID = key.substring(KILL_SWITCH_ID_PREFIX.length());
+                final KillSwitchPolicy policy    = toKillSwitchPolicy(featureID, String.valueOf(entry.getValue()));
+                if (policy != null) {
+                    policies.put(featureID, policy);
+                }
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * Parses the specified kill switch policy, for example {@code 5%/PT30S}
+     *
+     * @return the policy or {@code null} if the policy is malformed
+     */
+    public static KillSwitchPolicy toKillSwitchPolicy(final String featureID, final String value) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(value, "Policy cannot be null");
+
+        final int separator = value.indexOf('/');
+        if (separator < 0) {
+            return null;
+        }
+        final String rate   = value.substring(0, separator)
+                .replace("%", "")
+                .trim();
+        final String window = value.substring(separator + 1)
+                .trim();
+        try {
+            final KillSwitchPolicy policy = new KillSwitchPolicy();
+            policy.featureID    = featureID;
+            policy.maxErrorRate = Double.parseDouble(rate);
+            policy.window       = Duration.parse(window)
+                    .toMillis();
+            return policy.maxErrorRate >= 0 && policy.window > 0 ? policy : null;
+        } catch (final NumberFormatException | DateTimeParseException e) {
+            // malformed policies are ignored
+            return null;
+        }
+    }
+
+    private static String[] toStrings(final Object value) {
+        if (value instanceof String[]) {
+            return (String[]) value;
+        }
+        if (value instanceof Collection<?>) {
+            return ((Collection<?>) value).stream()
+                    .map(String::valueOf)
+                    .toArray(String[]::new);
+        }
+        return new String[] { String.valueOf(value) };
+    }
+
+    /**
+     * Parses the specified prerequisites. Every element can specify multiple
+     * comma separated feature IDs.
+     *
+     * @return the prerequisite feature IDs (never {@code null})
+     */
+    public static Set<String> toPrerequisites(final String[] values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        final Set<String> featureIDs = new HashSet<>();
+        for (final String value : values) {
+            for (final String featureID : value.split(",")) {
+                final String id = featureID.trim();
+                if (!id.isEmpty()) {
+                    featureIDs.add(id);
+                }
+            }
+        }
+        return featureIDs;
+    }
+
+    public static Map<String, Object> toConfiguredFeatures(final Dictionary<String, Object> properties) {
+        if (properties == null) {
+            return Collections.emptyMap();
+        }
+        return new DictionaryAsMap<>(properties).entrySet()
+                .stream()
+                .filter(e -> e.getKey()
+                        .startsWith(METATYPE_FEATURE_ID_PREFIX))
+                .filter(e -> e.getValue() instanceof Boolean || e.getValue() instanceof Number
+                        || e.getValue() instanceof String)
+                .collect(toMap(e -> getFeatureID(e.getKey()), Entry::getValue));
+    }
+
+    public static void hydrate(final List<Feature> features, final Map<String, Object> configuredFeatures) {
+        if (configuredFeatures == null || configuredFeatures.isEmpty()) {
+            return;
+        }
+        for (final Feature feature : features) {
+            final Object value = configuredFeatures.get(feature.id);
+            if (value != null) {
+                applyConfiguredValue(feature, value);
+            }
+        }
+    }
+
+    /**
+     * Merges the features scanned from a bundle's metatype with the already
+     * registered features of the same configuration PID. Registered features
+     * that are still declared with the same type, options and default value
+     * are retained together with their enablement state (their declared
+     * prerequisites are updated), newly declared features and features whose
+     * declaration changed are hydrated with the configured states and
+     * features that are not declared anymore are dropped.
+     *
+     * @return the {@code existing} list if neither the declared features nor
+     *         their prerequisites changed, otherwise the merged list
+     */
+    public static List<Feature> mergeFeatures(final List<Feature> existing, final List<Feature> scanned,
+            final Map<String, Object> configuredFeatures) {
+        requireNonNull(existing, "Existing features cannot be null");
+        requireNonNull(scanned, "Scanned features cannot be null");
+
+        final Map<String, Feature> registered = new HashMap<>();
+        existing.forEach(f -> registered.putIfAbsent(f.id, f));
+
+        final List<Feature> merged  = new ArrayList<>(scanned.size());
+        final List<Feature> added   = new ArrayList<>();
+        boolean             changed = false;
+        for (final Feature feature : scanned) {
+            final Feature retained = registered.get(feature.id);
+            if (retained != null && isSameDeclaration(retained, feature)) {
+                synchronized (retained) {
+                    changed |= !retained.prerequisites.equals(feature.prerequisites);
+                    retained.prerequisites = feature.prerequisites;
+                }
+                merged.add(retained);
+            } else {
+                merged.add(feature);
+                added.add(feature);
+            }
+        }
+        if (added.isEmpty() && !changed && existing.size() == merged.size()) {
+            return existing;
+        }
+        hydrate(added, configuredFeatures);
+        return merged;
+    }
+
+    private static boolean isSameDeclaration(final Feature feature, final Feature other) {
+        return feature.type == other.type && Arrays.equals(feature.options, other.options)
+                && Objects.equals(feature.defaultValue, other.defaultValue);
+    }
+
     public static Map<String, Object> asMap(final Dictionary<String, Object> dictionary) {
         if (dictionary == null) {
             return new HashMap<>();
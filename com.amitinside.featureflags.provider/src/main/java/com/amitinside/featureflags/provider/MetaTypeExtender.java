@@ -2,21 +2,33 @@ package com.amitinside.featureflags.provider;
 
 import static com.amitinside.featureflags.provider.ManagerHelper.getFeaturesFromAttributeDefinitions;
 import static com.amitinside.featureflags.provider.ManagerHelper.getPIDs;
+import static com.amitinside.featureflags.provider.ManagerHelper.hydrate;
+import static com.amitinside.featureflags.provider.ManagerHelper.mergeFeatures;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.felix.utils.log.Logger.LOG_DEBUG;
 import static org.apache.felix.utils.log.Logger.LOG_ERROR;
 import static org.apache.felix.utils.log.Logger.LOG_WARNING;
+import static org.osgi.framework.BundleEvent.UNINSTALLED;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.felix.utils.extender.AbstractExtender;
 import org.apache.felix.utils.extender.Extension;
 import org.apache.felix.utils.extender.SimpleExtension;
 import org.apache.felix.utils.log.Logger;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.service.metatype.MetaTypeService;
 
 import com.amitinside.featureflags.provider.ManagerHelper.Feature;
@@ -31,20 +43,49 @@ import com.amitinside.featureflags.provider.ManagerHelper.Feature;
  * The extender guarantee that all extensions will be stopped synchronously with
  * the STOPPING event of a given bundle and that all extensions will be stopped
  * before the extender bundle is stopped.
+ *
+ * The features of a stopped bundle are removed immediately unless the bundle
+ * has been stopped transiently, as it happens when a bundle gets updated or
+ * refreshed. In that case the features are retired after a grace period (or
+ * as soon as the bundle gets uninstalled). If the bundle is started again
+ * within the grace period, the scanned features are diffed against the
+ * registered ones per PID so that unchanged features stay registered with
+ * their current enablement state.
  */
 public final class MetaTypeExtender extends AbstractExtender {
 
     /** Logger Instance */
-    private final Logger                     logger;
+    private final Logger                           logger;
 
     /** Metatype Service Instance Reference */
-    private final MetaTypeService            metaTypeService;
+    private final MetaTypeService                  metaTypeService;
 
     /** Data container -> Key: Bundle Instance Value: Configuration PID(s) */
-    private final Map<Bundle, List<String>>  bundlePIDs;
+    private final Map<Bundle, List<String>>        bundlePIDs;
 
     /** Data container -> Key: Configuration PID Value: Feature DTOs */
-    private final Map<String, List<Feature>> allFeatures;
+    private final Map<String, List<Feature>>       allFeatures;
+
+    /** Data container -> Key: Configuration PID Value: Configured feature states */
+    private final Map<String, Map<String, Object>> configuredFeatures;
+
+    /** Lazily loaded feature names and descriptions */
+    private final FeatureTextCache                 textCache;
+
+    /** Grace period in milliseconds before the features of a stopped bundle are retired */
+    private final long                             retirementDelay;
+
+    /** Data container -> Key: Bundle Instance Value: Scheduled retirement of its features */
+    private final Map<Bundle, Future<?>>           retirements = new ConcurrentHashMap<>();
+
+    /** Notified whenever features have been added, changed or removed */
+    private final Runnable                         changeListener;
+
+    /** Creates the executors of the extensions and the scheduled retirements */
+    private final BackgroundExecutors              executors;
+
+    /** Executor to run the scheduled retirements */
+    private ScheduledExecutorService               retirementExecutor;
 
     /**
      * Constructor
@@ -54,16 +95,60 @@ public final class MetaTypeExtender extends AbstractExtender {
      *            in a bundle's metatype
      * @param allFeatures container to store all configuration PIDs in the
      *            runtime
+     * @param configuredFeatures container of the configured feature states
+     *            used to hydrate the features of a bundle when it gets scanned
+     * @param textCache cache of the feature names and descriptions to be
+     *            invalidated when the features of a bundle are removed
+     * @param retirementDelay grace period in milliseconds before the features
+     *            of a transiently stopped bundle are removed ({@code 0} to
+     *            remove them immediately)
+     * @param changeListener notified whenever features have been added,
+     *            changed or removed
+     * @param executors creates the executors to scan the bundles and to
+     *            retire their features
      *
      * @throws NullPointerException if any of the specified arguments is
      *             {@code null}
      */
     public MetaTypeExtender(final MetaTypeService metaTypeService, final Logger logger,
-            final Map<Bundle, List<String>> bundlePIDs, final Map<String, List<Feature>> allFeatures) {
-        this.logger          = requireNonNull(logger, "Logger instance cannot be null");
-        this.metaTypeService = requireNonNull(metaTypeService, "MetaTypeService instance cannot be null");
-        this.bundlePIDs      = requireNonNull(bundlePIDs, "Bundle PIDs map instance cannot be null");
-        this.allFeatures     = requireNonNull(allFeatures, "All features map instance cannot be null");
+            final Map<Bundle, List<String>> bundlePIDs, final Map<String, List<Feature>> allFeatures,
+            final Map<String, Map<String, Object>> configuredFeatures, final FeatureTextCache textCache,
+            final long retirementDelay, final Runnable changeListener, final BackgroundExecutors executors) {
+        this.logger             = requireNonNull(logger, "Logger instance cannot be null");
+        this.metaTypeService    = requireNonNull(metaTypeService, "MetaTypeService instance cannot be null");
+        this.bundlePIDs         = requireNonNull(bundlePIDs, "Bundle PIDs map instance cannot be null");
+        this.allFeatures        = requireNonNull(allFeatures, "All features map instance cannot be null");
+        this.configuredFeatures = requireNonNull(configuredFeatures, "Configured features map cannot be null");
+        this.textCache          = requireNonNull(textCache, "Feature text cache instance cannot be null");
+        this.retirementDelay    = retirementDelay;
+        this.changeListener     = requireNonNull(changeListener, "Change listener cannot be null");
+        this.executors          = requireNonNull(executors, "Executors instance cannot be null");
+    }
+
+    @Override
+    protected ExecutorService createExecutor() {
+        retirementExecutor = executors.newScheduledExecutor();
+        return executors.newExecutor();
+    }
+
+    @Override
+    public void stop(final BundleContext context) throws Exception {
+        // the features of all extensions are removed immediately while stopping
+        super.stop(context);
+        retirementExecutor.shutdownNow();
+    }
+
+    @Override
+    public void bundleChanged(final BundleEvent event) {
+        super.bundleChanged(event);
+        if (event.getType() == UNINSTALLED) {
+            final Bundle    bundle     = event.getBundle();
+            final Future<?> retirement = retirements.remove(bundle);
+            if (retirement != null) {
+                retirement.cancel(false);
+                removeFeatures(bundle);
+            }
+        }
     }
 
     @Override
@@ -96,21 +181,86 @@ public final class MetaTypeExtender extends AbstractExtender {
 
         @Override
         protected void doStart() throws Exception {
-            for (final String pid : getPIDs(bundle, metaTypeService)) {
-                final Map<String, List<Feature>> featuresFromADs = getFeaturesFromAttributeDefinitions(bundle, pid,
-                        metaTypeService);
-                allFeatures.putAll(featuresFromADs);
-                bundlePIDs.computeIfAbsent(bundle, p -> new ArrayList<>())
-                        .add(pid);
+            synchronized (bundlePIDs) {
+                final Future<?> retirement = retirements.remove(bundle);
+                if (retirement != null) {
+                    retirement.cancel(false);
+                }
+                final List<String> previousPIDs = bundlePIDs.getOrDefault(bundle, Collections.emptyList());
+                final List<String> pids         = new ArrayList<>();
+                for (final String pid : getPIDs(bundle, metaTypeService)) {
+                    final List<Feature> scanned  = getFeaturesFromAttributeDefinitions(bundle, pid, metaTypeService)
+                            .get(pid);
+                    final List<Feature> existing = previousPIDs.contains(pid) ? allFeatures.get(pid) : null;
+                    pids.add(pid);
+                    if (scanned == null) {
+                        if (existing != null) {
+                            allFeatures.remove(pid);
+                        }
+                    } else if (existing == null) {
+                        hydrate(scanned, configuredFeatures.get(pid));
+                        allFeatures.put(pid, scanned);
+                    } else {
+                        final List<Feature> merged = mergeFeatures(existing, scanned, configuredFeatures.get(pid));
+                        if (merged != existing) {
+                            allFeatures.put(pid, merged);
+                        }
+                    }
+                    if (existing != null) {
+                        textCache.invalidate(pid);
+                    }
+                }
+                for (final String pid : previousPIDs) {
+                    if (!pids.contains(pid)) {
+                        allFeatures.remove(pid);
+                        textCache.invalidate(pid);
+                    }
+                }
+                bundlePIDs.put(bundle, pids);
             }
+            changeListener.run();
         }
 
         @Override
         protected void doDestroy() throws Exception {
-            final Collection<String> pids = bundlePIDs.get(bundle);
-            pids.forEach(allFeatures::remove);
-            bundlePIDs.remove(bundle);
+            if (isStopping() || retirementDelay <= 0 || !isPersistentlyStarted(bundle)) {
+                removeFeatures(bundle);
+                return;
+            }
+            final Runnable retirement = () -> {
+                if (retirements.remove(bundle) != null) {
+                    removeFeatures(bundle);
+                }
+            };
+            final Future<?> previous = retirements.put(bundle,
+                    retirementExecutor.schedule(retirement, retirementDelay, MILLISECONDS));
+            if (previous != null) {
+                // the bundle has been stopped again before its previous retirement
+                previous.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the specified bundle is still marked to be started. An
+     * update or a refresh stops the bundle transiently and restarts it
+     * afterwards, whereas stopping the bundle itself clears its autostart
+     * setting before the bundle is stopped.
+     */
+    private static boolean isPersistentlyStarted(final Bundle bundle) {
+        final BundleStartLevel startLevel = bundle.adapt(BundleStartLevel.class);
+        return startLevel != null && startLevel.isPersistentlyStarted();
+    }
+
+    private void removeFeatures(final Bundle bundle) {
+        synchronized (bundlePIDs) {
+            final Collection<String> pids = bundlePIDs.remove(bundle);
+            if (pids != null) {
+                pids.forEach(allFeatures::remove);
+                pids.forEach(textCache::invalidate);
+            }
         }
+        changeListener.run();
     }
 
 }
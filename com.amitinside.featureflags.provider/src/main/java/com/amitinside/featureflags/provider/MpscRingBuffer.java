@@ -0,0 +1,140 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for multiple producers and a single consumer.
+ *
+ * <p>
+ * The elements are kept in a ring of slots whose number is a power of two.
+ * A producer claims the next slot by a compare-and-set of the tail sequence
+ * and publishes its element into the claimed slot afterwards. The consumer
+ * takes the elements in the order of their sequences, clears their slots and
+ * advances the head sequence. A slot which has been claimed but not been
+ * published yet stops the consumer until the next drain. Producers never
+ * block: an element is rejected if the ring is full.
+ * </p>
+ *
+ * <p>
+ * Only a single thread at a time may drain the queue.
+ * </p>
+ *
+ * @param <E> the type of the elements
+ *
+ * @ThreadSafe
+ */
+public final class MpscRingBuffer<E> {
+
+    /** The maximum capacity of the ring */
+    public static final int               MAX_CAPACITY = 1 << 30;
+
+    /** The slots of the ring */
+    private final AtomicReferenceArray<E> slots;
+
+    /** The mask to map a sequence to its slot */
+    private final int                     mask;
+
+    /** The sequence of the next slot to claim */
+    private final AtomicLong              tail         = new AtomicLong();
+
+    /** The sequence of the next slot to consume */
+    private final AtomicLong              head         = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param capacity the minimum number of elements to hold which is rounded
+     *            up to the next power of two
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive or
+     *             exceeds {@value #MAX_CAPACITY}
+     */
+    public MpscRingBuffer(final int capacity) {
+        checkArgument(capacity > 0 && capacity <= MAX_CAPACITY, "Capacity must be between 1 and " + MAX_CAPACITY);
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask  = size - 1;
+    }
+
+    /**
+     * Appends the specified element unless the ring is full
+     *
+     * @param element the element to append
+     * @return {@code true} if the element has been appended, otherwise
+     *         {@code false}
+     *
+     * @throws NullPointerException if {@code element} is {@code null}
+     */
+    public boolean offer(final E element) {
+        requireNonNull(element, "Element cannot be null");
+
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * Takes the published elements in their order. Must not be invoked
+     * concurrently.
+     *
+     * @param consumer the consumer of the elements
+     * @param limit the maximum number of elements to take
+     * @return the number of elements taken
+     *
+     * @throws NullPointerException if {@code consumer} is {@code null}
+     */
+    public int drain(final Consumer<? super E> consumer, final int limit) {
+        requireNonNull(consumer, "Consumer cannot be null");
+
+        long sequence = head.get();
+        int  count    = 0;
+        while (count < limit) {
+            final int index   = (int) sequence & mask;
+            final E   element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            // the slot is cleared before it can be claimed again by advancing the head
+            slots.lazySet(index, null);
+            head.lazySet(++sequence);
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of claimed slots
+     *
+     * @return the number of elements in the ring
+     */
+    public int size() {
+        final long consumed = head.get();
+        return (int) Math.max(0, Math.min(tail.get() - consumed, capacity()));
+    }
+
+    /**
+     * Returns the capacity of the ring
+     *
+     * @return the maximum number of elements in the ring
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+}
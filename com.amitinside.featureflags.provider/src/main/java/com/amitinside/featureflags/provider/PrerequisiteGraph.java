@@ -0,0 +1,184 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Directed acyclic graph of the prerequisites of the features.
+ *
+ * <p>
+ * A feature is effectively enabled if it is enabled and all its prerequisites
+ * are effectively enabled. A prerequisite which is not known is never
+ * effectively enabled. The effective states are maintained incrementally:
+ * changing the enablement or the prerequisites of a feature only re-evaluates
+ * the feature and, as long as its effective state changes, the features
+ * depending on it.
+ * </p>
+ *
+ * <p>
+ * Prerequisites introducing a cycle are rejected, so that the graph always
+ * stays acyclic.
+ * </p>
+ *
+ * @NotThreadSafe
+ */
+public final class PrerequisiteGraph {
+
+    /** Data container -> Key: Feature ID Value: Prerequisite feature IDs */
+    private final Map<String, Set<String>> prerequisites = new HashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Dependent feature IDs */
+    private final Map<String, Set<String>> dependents    = new HashMap<>();
+
+    /** Data container -> Key: Feature ID Value: Rejected prerequisite feature IDs */
+    private final Map<String, Set<String>> rejected      = new HashMap<>();
+
+    /** IDs of the enabled features */
+    private final Set<String>              enabled       = new HashSet<>();
+
+    /** IDs of the effectively enabled features */
+    private final Set<String>              effective     = new HashSet<>();
+
+    /**
+     * Checks whether the specified feature is effectively enabled
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if the feature and all its prerequisites are
+     *         effectively enabled, otherwise {@code false}
+     */
+    public boolean isEffective(final String featureID) {
+        return effective.contains(featureID);
+    }
+
+    /**
+     * Returns the prerequisites of the specified feature
+     *
+     * @param featureID the feature ID
+     * @return the prerequisite feature IDs (never {@code null})
+     */
+    public Set<String> getPrerequisites(final String featureID) {
+        return Collections.unmodifiableSet(prerequisites.getOrDefault(featureID, Collections.emptySet()));
+    }
+
+    /**
+     * Sets the enablement of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the value for the enablement of the feature
+     *
+     * @throws NullPointerException if {@code featureID} is {@code null}
+     */
+    public void setEnabled(final String featureID, final boolean isEnabled) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        if (isEnabled ? enabled.add(featureID) : enabled.remove(featureID)) {
+            propagate(featureID);
+        }
+    }
+
+    /**
+     * Sets the prerequisites of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param featureIDs the prerequisite feature IDs
+     * @return {@code true} if the prerequisites have been changed, otherwise
+     *         {@code false}
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if the prerequisites introduce a cycle.
+     *             The prerequisites of the feature are left unchanged and
+     *             subsequent attempts to set the same prerequisites are
+     *             ignored.
+     */
+    public boolean setPrerequisites(final String featureID, final Set<String> featureIDs) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+        requireNonNull(featureIDs, "Prerequisite feature IDs cannot be null");
+
+        final Set<String> current = prerequisites.getOrDefault(featureID, Collections.emptySet());
+        if (current.equals(featureIDs) || featureIDs.equals(rejected.get(featureID))) {
+            return false;
+        }
+        if (introducesCycle(featureID, featureIDs)) {
+            rejected.put(featureID, new HashSet<>(featureIDs));
+            throw new IllegalArgumentException(
+                    "Prerequisites " + featureIDs + " of feature [" + featureID + "] introduce a cycle");
+        }
+        rejected.remove(featureID);
+        for (final String prerequisite : current) {
+            final Set<String> ids = dependents.get(prerequisite);
+            ids.remove(featureID);
+            if (ids.isEmpty()) {
+                dependents.remove(prerequisite);
+            }
+        }
+        if (featureIDs.isEmpty()) {
+            prerequisites.remove(featureID);
+        } else {
+            prerequisites.put(featureID, new HashSet<>(featureIDs));
+            featureIDs.forEach(p -> dependents.computeIfAbsent(p, k -> new HashSet<>())
+                    .add(featureID));
+        }
+        propagate(featureID);
+        return true;
+    }
+
+    /**
+     * Removes all features except the specified ones. The features depending
+     * on a removed feature are not effectively enabled anymore.
+     *
+     * @param featureIDs the IDs of the features to retain
+     *
+     * @throws NullPointerException if {@code featureIDs} is {@code null}
+     */
+    public void retain(final Set<String> featureIDs) {
+        requireNonNull(featureIDs, "Feature IDs cannot be null");
+
+        final Set<String> known = new HashSet<>(enabled);
+        known.addAll(prerequisites.keySet());
+        known.addAll(rejected.keySet());
+        known.removeAll(featureIDs);
+        for (final String featureID : known) {
+            rejected.remove(featureID);
+            setPrerequisites(featureID, Collections.emptySet());
+            setEnabled(featureID, false);
+        }
+    }
+
+    private boolean introducesCycle(final String featureID, final Set<String> featureIDs) {
+        final Deque<String> pending = new ArrayDeque<>(featureIDs);
+        final Set<String>   visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            final String id = pending.pop();
+            if (id.equals(featureID)) {
+                return true;
+            }
+            if (visited.add(id)) {
+                pending.addAll(prerequisites.getOrDefault(id, Collections.emptySet()));
+            }
+        }
+        return false;
+    }
+
+    private void propagate(final String featureID) {
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.add(featureID);
+        while (!pending.isEmpty()) {
+            final String  id          = pending.poll();
+            final boolean isEffective = enabled.contains(id) && prerequisites.getOrDefault(id, Collections.emptySet())
+                    .stream()
+                    .allMatch(effective::contains);
+            if (isEffective ? effective.add(id) : effective.remove(id)) {
+                pending.addAll(dependents.getOrDefault(id, Collections.emptySet()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,461 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.Objects.requireNonNull;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+import static org.osgi.service.metatype.AttributeDefinition.DOUBLE;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.ManagerHelper.TenantOverride;
+
+/**
+ * Immutable generation of the feature states.
+ *
+ * <p>
+ * Every feature ID is assigned a slot whose state is kept in an array. A new
+ * generation is built from the features whenever they change and published
+ * as a whole, so that acquiring a snapshot only requires reading the currently
+ * published generation.
+ * </p>
+ *
+ * <p>
+ * The values of typed variants are kept in arrays specialized by type next to
+ * the enablement flags, so that they are read without boxing. If there exists
+ * multiple features with the same identifier, the type and the value of the
+ * first one are retained.
+ * </p>
+ *
+ * <p>
+ * The enablement flags of boolean features denote their effective states as
+ * maintained by the {@link PrerequisiteGraph}.
+ * </p>
+ *
+ * <p>
+ * The overrides of every tenant are kept in a sparse layer holding only the
+ * slots of the overridden features. A tenant without any override has no
+ * layer and is resolved against the enablement flags directly.
+ * </p>
+ *
+ * <p>
+ * If an {@link ExposurePipeline} is specified, every check of a known
+ * feature for a tenant is recorded as exposure of the tenant to the
+ * enablement of the feature.
+ * </p>
+ *
+ * <p>
+ * Every read is passed to the {@link FeatureTracer} if it is active, which
+ * is a single check of a flag as long as no feature is sampled.
+ * </p>
+ *
+ * @Immutable
+ */
+public final class RegistrySnapshot implements FeatureSnapshot {
+
+    /** The tracer of the snapshots built without any tracer which never becomes active */
+    private static final FeatureTracer     NO_TRACER = new FeatureTracer(1);
+
+    /** The generation without any feature */
+    public static final RegistrySnapshot   EMPTY     = new RegistrySnapshot(0, Collections.emptyMap(),
+            Collections.emptyMap(), null, null, 0);
+
+    /** The generation of this snapshot */
+    private final long                     generation;
+
+    /** Data container -> Key: Feature ID Value: Slot */
+    private final Map<String, Integer>     slots;
+
+    /** Enablement flags of the features indexed by their slots */
+    private final boolean[]                enabled;
+
+    /** Attribute definition types of the features indexed by their slots */
+    private final int[]                    types;
+
+    /** Values of the {@code INTEGER} variants indexed by their slots */
+    private final int[]                    ints;
+
+    /** Values of the {@code LONG} variants indexed by their slots */
+    private final long[]                   longs;
+
+    /** Values of the {@code DOUBLE} variants indexed by their slots */
+    private final double[]                 doubles;
+
+    /** Values of the {@code STRING} variants indexed by their slots */
+    private final String[]                 strings;
+
+    /** Prerequisite feature IDs indexed by their slots */
+    private final String[][]               prerequisites;
+
+    /** Data container -> Key: Tenant ID Value: Overrides of the tenant */
+    private final Map<String, TenantLayer> tenants;
+
+    /** The pipeline to record the exposures to or {@code null} */
+    private final ExposurePipeline         exposures;
+
+    /** The tracer to pass the reads to while it is active */
+    private final FeatureTracer            tracer;
+
+    /**
+     * Sparse overrides of a tenant sorted by the slots of the features
+     */
+    private static final class TenantLayer {
+        private final int[]     slots;
+        private final boolean[] values;
+
+        private TenantLayer(final Map<Integer, Boolean> overrides) {
+            slots  = overrides.keySet()
+                    .stream()
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+            values = new boolean[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                values[i] = overrides.get(slots[i]);
+            }
+        }
+    }
+
+    private RegistrySnapshot(final long generation, final Map<String, Integer> slots,
+            final Map<String, TenantLayer> tenants, final ExposurePipeline exposures, final FeatureTracer tracer,
+            final int size) {
+        this.generation    = generation;
+        this.slots         = slots;
+        this.tenants       = tenants;
+        this.exposures     = exposures;
+        this.tracer        = tracer == null ? NO_TRACER : tracer;
+        this.enabled       = new boolean[size];
+        this.types         = new int[size];
+        this.ints          = new int[size];
+        this.longs         = new long[size];
+        this.doubles       = new double[size];
+        this.strings       = new String[size];
+        this.prerequisites = new String[size][];
+    }
+
+    /**
+     * Builds a snapshot of the specified features without any prerequisites
+     *
+     * @param generation the generation of the snapshot
+     * @param features the features grouped by their configuration PIDs
+     * @return the snapshot (never {@code null})
+     *
+     * @throws NullPointerException if {@code features} is {@code null}
+     */
+    public static RegistrySnapshot of(final long generation, final Collection<List<Feature>> features) {
+        return of(generation, features, null, Collections.emptyList());
+    }
+
+    /**
+     * Builds a snapshot of the specified features
+     *
+     * @param generation the generation of the snapshot
+     * @param features the features grouped by their configuration PIDs
+     * @param graph the graph maintaining the effective states of the features
+     *            or {@code null} if there are no prerequisites
+     * @param overrides the overrides of the tenants
+     * @return the snapshot (never {@code null})
+     *
+     * @throws NullPointerException if {@code features} or {@code overrides} is
+     *             {@code null}
+     */
+    public static RegistrySnapshot of(final long generation, final Collection<List<Feature>> features,
+            final PrerequisiteGraph graph, final Collection<TenantOverride> overrides) {
+        return of(generation, features, graph, overrides, null, null);
+    }
+
+    /**
+     * Builds a snapshot of the specified features which records the checks
+     * for tenants as exposures and passes the reads to the specified tracer
+     *
+     * @param generation the generation of the snapshot
+     * @param features the features grouped by their configuration PIDs
+     * @param graph the graph maintaining the effective states of the features
+     *            or {@code null} if there are no prerequisites
+     * @param overrides the overrides of the tenants
+     * @param exposures the pipeline to record the exposures to or
+     *            {@code null} if exposures are not recorded
+     * @param tracer the tracer to pass the reads to or {@code null} if the
+     *            reads are never traced
+     * @return the snapshot (never {@code null})
+     *
+     * @throws NullPointerException if {@code features} or {@code overrides} is
+     *             {@code null}
+     */
+    public static RegistrySnapshot of(final long generation, final Collection<List<Feature>> features,
+            final PrerequisiteGraph graph, final Collection<TenantOverride> overrides,
+            final ExposurePipeline exposures, final FeatureTracer tracer) {
+        requireNonNull(features, "Features cannot be null");
+        requireNonNull(overrides, "Tenant overrides cannot be null");
+
+        final int                  size     = features.stream()
+                .mapToInt(List::size)
+                .sum();
+        final Map<String, Integer> slots    = new HashMap<>();
+        final RegistrySnapshot     snapshot = new RegistrySnapshot(generation, slots, new HashMap<>(),
+                exposures, tracer, size);
+        for (final List<Feature> list : features) {
+            for (final Feature feature : list) {
+                Integer slot = slots.get(feature.id);
+                if (slot == null) {
+                    slot = slots.size();
+                    slots.put(feature.id, slot);
+                    snapshot.assign(slot, feature);
+                } else if (snapshot.types[slot] == BOOLEAN) {
+                    snapshot.enabled[slot] |= feature.isEnabled;
+                }
+            }
+        }
+        if (graph != null) {
+            slots.forEach((id, slot) -> {
+                if (snapshot.types[slot] == BOOLEAN) {
+                    snapshot.enabled[slot] = graph.isEffective(id);
+                }
+                snapshot.prerequisites[slot] = graph.getPrerequisites(id)
+                        .toArray(new String[0]);
+            });
+        }
+        final Map<String, Map<Integer, Boolean>> layers = new HashMap<>();
+        for (final TenantOverride override : overrides) {
+            override.features.forEach((id, isEnabled) -> {
+                final Integer slot = slots.get(id);
+                if (slot != null) {
+                    layers.computeIfAbsent(override.tenantID, t -> new HashMap<>())
+                            .put(slot, isEnabled);
+                }
+            });
+        }
+        layers.forEach((tenantID, layer) -> snapshot.tenants.put(tenantID, new TenantLayer(layer)));
+        return snapshot;
+    }
+
+    private void assign(final int slot, final Feature feature) {
+        types[slot]   = feature.type;
+        enabled[slot] = feature.isEnabled;
+        if (feature.value == null) {
+            return;
+        }
+        switch (feature.type) {
+            case INTEGER:
+                ints[slot] = (Integer) feature.value;
+                break;
+            case LONG:
+                longs[slot] = (Long) feature.value;
+                break;
+            case DOUBLE:
+                doubles[slot] = (Double) feature.value;
+                break;
+            case STRING:
+                strings[slot] = (String) feature.value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public boolean isEnabled(final String featureID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        final Integer slot      = slots.get(featureID);
+        final boolean isEnabled = slot != null && enabled[slot];
+        if (tracer.isActive()) {
+            tracer.sample(featureID, null, isEnabled);
+        }
+        return isEnabled;
+    }
+
+    @Override
+    public boolean isEnabled(final String featureID, final String tenantID) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        final Integer slot = slots.get(featureID);
+        if (slot == null) {
+            if (tracer.isActive()) {
+                tracer.sample(featureID, tenantID, false);
+            }
+            return false;
+        }
+        boolean isEnabled = enabled[slot];
+        if (tenantID != null && !tenants.isEmpty()) {
+            final TenantLayer layer = tenants.get(tenantID);
+            if (layer != null) {
+                final int index = Arrays.binarySearch(layer.slots, slot);
+                if (index >= 0) {
+                    isEnabled = layer.values[index];
+                }
+            }
+        }
+        if (tenantID != null && exposures != null) {
+            exposures.record(featureID, tenantID, isEnabled);
+        }
+        if (tracer.isActive()) {
+            tracer.sample(featureID, tenantID, isEnabled);
+        }
+        return isEnabled;
+    }
+
+    @Override
+    public int getInt(final String featureID, final int defaultValue) {
+        final int slot  = slotOf(featureID, INTEGER);
+        final int value = slot < 0 ? defaultValue : ints[slot];
+        if (tracer.isActive()) {
+            tracer.sample(featureID, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public long getLong(final String featureID, final long defaultValue) {
+        final int  slot  = slotOf(featureID, LONG);
+        final long value = slot < 0 ? defaultValue : longs[slot];
+        if (tracer.isActive()) {
+            tracer.sample(featureID, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public double getDouble(final String featureID, final double defaultValue) {
+        final int    slot  = slotOf(featureID, DOUBLE);
+        final double value = slot < 0 ? defaultValue : doubles[slot];
+        if (tracer.isActive()) {
+            tracer.sample(featureID, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String getString(final String featureID, final String defaultValue) {
+        final int    slot  = slotOf(featureID, STRING);
+        final String value = slot < 0 ? defaultValue : strings[slot];
+        if (tracer.isActive()) {
+            tracer.sample(featureID, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public <E extends Enum<E>> E getEnum(final String featureID, final E defaultValue) {
+        requireNonNull(defaultValue, "Default value cannot be null");
+
+        final String value = getString(featureID, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value);
+        } catch (final IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the slot of the specified variant if it has a value of the
+     * specified type, otherwise {@code -1}
+     */
+    private int slotOf(final String featureID, final int type) {
+        requireNonNull(featureID, "Feature ID cannot be null");
+
+        final Integer slot = slots.get(featureID);
+        return slot != null && types[slot] == type && enabled[slot] ? slot : -1;
+    }
+
+    /**
+     * Checks whether the specified feature is effectively enabled without
+     * tracing the read, so that internal and administrative reads do not show
+     * up as evaluations
+     *
+     * @param featureID the feature ID
+     * @return {@code true} if the feature is known and enabled, otherwise
+     *         {@code false}
+     */
+    public boolean isEffectivelyEnabled(final String featureID) {
+        final Integer slot = slots.get(featureID);
+        return slot != null && enabled[slot];
+    }
+
+    /**
+     * Returns the effective state of the specified boolean feature or the
+     * value of the specified variant. The read is not traced.
+     *
+     * @param featureID the feature ID
+     * @return the {@code Boolean} state or the value of the variant or
+     *         {@code null} if the feature is not known or the variant has no
+     *         value
+     */
+    public Object getValue(final String featureID) {
+        final Integer slot = slots.get(featureID);
+        if (slot == null) {
+            return null;
+        }
+        if (types[slot] == BOOLEAN) {
+            return enabled[slot];
+        }
+        if (!enabled[slot]) {
+            return null;
+        }
+        switch (types[slot]) {
+            case INTEGER:
+                return ints[slot];
+            case LONG:
+                return longs[slot];
+            case DOUBLE:
+                return doubles[slot];
+            default:
+                return strings[slot];
+        }
+    }
+
+    /**
+     * Returns the prerequisites of the specified feature
+     *
+     * @param featureID the feature ID
+     * @return the prerequisite feature IDs (never {@code null})
+     */
+    public String[] getPrerequisites(final String featureID) {
+        final Integer  slot       = slots.get(featureID);
+        final String[] featureIDs = slot == null ? null : prerequisites[slot];
+        return featureIDs == null ? new String[0] : featureIDs.clone();
+    }
+
+    /**
+     * Returns the identifiers of all features
+     *
+     * @return the identifiers of the features (never {@code null})
+     */
+    public Set<String> getFeatureIDs() {
+        return Collections.unmodifiableSet(slots.keySet());
+    }
+
+    /**
+     * Returns the identifiers of all enabled features
+     *
+     * @return the identifiers of the enabled features (never {@code null})
+     */
+    public Set<String> getEnabledFeatureIDs() {
+        final Set<String> featureIDs = new HashSet<>();
+        slots.forEach((id, slot) -> {
+            if (enabled[slot]) {
+                featureIDs.add(id);
+            }
+        });
+        return featureIDs;
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.CAPACITY_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.COUNT_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.GENERATION_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.HEADER_SIZE;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.ID_LENGTH_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.ID_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.LAYOUT_VERSION;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.LAYOUT_VERSION_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAGIC;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAGIC_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.MAX_ID_LENGTH;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.SEQUENCE_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.STALE_SEQUENCE;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.STATE_OFFSET;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.offsetOf;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.sizeOf;
+import static com.amitinside.featureflags.api.shared.SharedFeatureTable.storeFence;
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.amitinside.featureflags.api.shared.SharedFeatureTable;
+import com.amitinside.featureflags.api.shared.SharedFeatureTableReader;
+
+/**
+ * Exports the effective states of the features to a
+ * {@link SharedFeatureTable} in a memory-mapped file, so that co-located
+ * processes can read them through a {@link SharedFeatureTableReader}.
+ *
+ * <p>
+ * Every write replaces the whole table under the sequence lock of the table.
+ * Features whose identifiers exceed the maximum length of a slot and the
+ * features exceeding the capacity of the table are not exported.
+ * </p>
+ *
+ * <p>
+ * An existing table of the same capacity is taken over and keeps its
+ * sequence. An existing file of any other size is marked as stale and then
+ * replaced by a new file, so that processes still mapping the old file are
+ * not affected by the changed size but map the new file instead.
+ * </p>
+ *
+ * @NotThreadSafe
+ */
+public final class SharedFeatureTableWriter implements Closeable {
+
+    /** Number of slots of the table */
+    private final int              capacity;
+
+    /** Channel of the mapped file */
+    private final FileChannel      channel;
+
+    /** The mapped table */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Constructor
+     *
+     * @param path the path of the file
+     * @param capacity the number of slots
+     *
+     * @throws NullPointerException if {@code path} is {@code null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     * @throws IOException if the file cannot be mapped
+     */
+    public SharedFeatureTableWriter(final Path path, final int capacity) throws IOException {
+        requireNonNull(path, "Path cannot be null");
+        checkArgument(capacity > 0, "Capacity must be positive");
+
+        final long size = sizeOf(capacity);
+        if (Files.exists(path) && Files.size(path) != size) {
+            markStale(path);
+            Files.delete(path);
+        }
+        this.capacity = capacity;
+        channel       = FileChannel.open(path, CREATE, READ, WRITE);
+        try {
+            buffer = channel.map(READ_WRITE, 0, size);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        final long current  = buffer.getInt(MAGIC_OFFSET) == MAGIC ? buffer.getLong(SEQUENCE_OFFSET) : 0;
+        final long sequence = current == STALE_SEQUENCE ? 1 : current | 1;
+        buffer.putLong(SEQUENCE_OFFSET, sequence);
+        storeFence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(LAYOUT_VERSION_OFFSET, LAYOUT_VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        storeFence();
+        buffer.putLong(SEQUENCE_OFFSET, sequence + 1);
+    }
+
+    /**
+     * Writes the effective states of the features of the specified snapshot
+     *
+     * @param snapshot the snapshot to export
+     * @return the number of features which have not been exported
+     *
+     * @throws NullPointerException if {@code snapshot} is {@code null}
+     */
+    public int write(final RegistrySnapshot snapshot) {
+        requireNonNull(snapshot, "Snapshot cannot be null");
+
+        final List<Entry<byte[], Boolean>> entries = new ArrayList<>();
+        int                                skipped = 0;
+        for (final String featureID : snapshot.getFeatureIDs()) {
+            final byte[] encoded = featureID.getBytes(UTF_8);
+            if (encoded.length > MAX_ID_LENGTH) {
+                skipped++;
+            } else {
+                entries.add(new SimpleImmutableEntry<>(encoded, snapshot.isEffectivelyEnabled(featureID)));
+            }
+        }
+        // readers look up the features by binary search
+        entries.sort((e1, e2) -> compare(e1.getKey(), e2.getKey()));
+        final int count = Math.min(entries.size(), capacity);
+
+        final long sequence = buffer.getLong(SEQUENCE_OFFSET) + 1;
+        buffer.putLong(SEQUENCE_OFFSET, sequence);
+        storeFence();
+        buffer.putLong(GENERATION_OFFSET, snapshot.getGeneration());
+        buffer.putInt(COUNT_OFFSET, count);
+        for (int i = 0; i < count; i++) {
+            final Entry<byte[], Boolean> entry  = entries.get(i);
+            final byte[]                 id     = entry.getKey();
+            final int                    offset = offsetOf(i);
+            buffer.put(offset + STATE_OFFSET, (byte) (entry.getValue() ? 1 : 0));
+            buffer.put(offset + ID_LENGTH_OFFSET, (byte) id.length);
+            for (int j = 0; j < id.length; j++) {
+                buffer.put(offset + ID_OFFSET + j, id[j]);
+            }
+        }
+        storeFence();
+        buffer.putLong(SEQUENCE_OFFSET, sequence + 1);
+        return skipped + entries.size() - count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Marks the table of the specified file as stale before the file gets
+     * replaced, so that the readers still mapping it map the new file
+     */
+    private static void markStale(final Path path) throws IOException {
+        try (FileChannel stale = FileChannel.open(path, READ, WRITE)) {
+            if (stale.size() < HEADER_SIZE) {
+                return;
+            }
+            final MappedByteBuffer header = stale.map(READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(MAGIC_OFFSET) == MAGIC) {
+                header.putLong(SEQUENCE_OFFSET, STALE_SEQUENCE);
+            }
+        }
+    }
+
+    private static int compare(final byte[] id1, final byte[] id2) {
+        final int common = Math.min(id1.length, id2.length);
+        for (int i = 0; i < common; i++) {
+            final int result = (id1[i] & 0xFF) - (id2[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return id1.length - id2.length;
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.api.FeatureManager.METATYPE_PREREQUISITE_ID_PREFIX;
+import static com.amitinside.featureflags.provider.ManagerHelper.toPrerequisites;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+import static org.osgi.service.metatype.AttributeDefinition.DOUBLE;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.amitinside.featureflags.provider.FeatureCodec.Encoder;
+import com.amitinside.featureflags.provider.FeatureCodec.FeatureValue;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+/**
+ * Persists the last known states of the features to a file, so that they can
+ * be restored right after a restart before the bundles declaring the features
+ * have been scanned.
+ *
+ * <p>
+ * The file is in the {@link Format#BINARY BINARY} format of the
+ * {@link FeatureCodec} and holds the configured state of every boolean
+ * feature and the value of every variant having a value. The prerequisites of
+ * a feature {@code X} are held as comma separated feature IDs in the value
+ * {@code osgi.prerequisite.X} of the same PID, just like in a configuration,
+ * so that the restored features are gated by their prerequisites as before.
+ * The file is read through a memory mapping, thus restoring the states does
+ * not copy the file into a buffer first.
+ * </p>
+ *
+ * <p>
+ * Changes only request a save which runs asynchronously and saves the latest
+ * generation at that time, so that many changes in a row result in a single
+ * write. The states are written to a temporary file which then atomically
+ * replaces the previous one, so that a crash never leaves a partially written
+ * file behind.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class SnapshotStore {
+
+    /** The file of the saved states */
+    private final Path                                file;
+
+    /** The temporary file the states are written to before replacing the saved ones */
+    private final Path                                tempFile;
+
+    /** Supplies the features grouped per PID whose states are saved */
+    private final Supplier<Collection<List<Feature>>> features;
+
+    /** Supplies the currently published snapshot holding the prerequisites in effect */
+    private final Supplier<RegistrySnapshot>          snapshot;
+
+    /** Executor to run the saves */
+    private final Executor                            executor;
+
+    /** Handles the failures of the saves */
+    private final Consumer<IOException>               errorHandler;
+
+    /** Flag denoting that a save has been requested but not yet started */
+    private final AtomicBoolean                       saveRequested  = new AtomicBoolean();
+
+    /** The last saved generation (guarded by {@code this}) */
+    private long                                      lastGeneration = -1;
+
+    /** Flag denoting that the store has been closed (guarded by {@code this}) */
+    private boolean                                   closed;
+
+    /**
+     * Constructor
+     *
+     * @param file the file of the saved states
+     * @param features supplies the features grouped per PID whose states are
+     *            saved
+     * @param snapshot supplies the currently published snapshot holding the
+     *            prerequisites in effect
+     * @param executor executor to run the saves
+     * @param errorHandler handles the failures of the saves
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     */
+    public SnapshotStore(final Path file, final Supplier<Collection<List<Feature>>> features,
+            final Supplier<RegistrySnapshot> snapshot, final Executor executor,
+            final Consumer<IOException> errorHandler) {
+        this.file         = requireNonNull(file, "File cannot be null");
+        this.features     = requireNonNull(features, "Features supplier cannot be null");
+        this.snapshot     = requireNonNull(snapshot, "Snapshot supplier cannot be null");
+        this.executor     = requireNonNull(executor, "Executor instance cannot be null");
+        this.errorHandler = requireNonNull(errorHandler, "Error handler cannot be null");
+        tempFile          = file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Restores the saved states of the features. A restored boolean feature
+     * is enabled if it has been configured to be enabled and a restored
+     * variant has the saved value. Both have the saved prerequisites.
+     *
+     * @return the restored features grouped per PID (empty if no states have
+     *         been saved yet)
+     * @throws IOException if the file cannot be read or its content is
+     *             malformed
+     */
+    public Map<String, List<Feature>> load() throws IOException {
+        final Map<String, List<Feature>>            restored      = new LinkedHashMap<>();
+        final Map<String, Map<String, Set<String>>> prerequisites = new HashMap<>();
+        if (!Files.exists(file)) {
+            return restored;
+        }
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            FeatureCodec.decode(channel.map(READ_ONLY, 0, channel.size()), v -> {
+                if (v.featureID.startsWith(METATYPE_PREREQUISITE_ID_PREFIX)) {
+                    prerequisites.computeIfAbsent(v.pid, p -> new HashMap<>())
+                            .put(v.featureID.substring(METATYPE_PREREQUISITE_ID_PREFIX.length()),
+                                    toPrerequisites(new String[] { String.valueOf(v.value) }));
+                } else {
+                    restored.computeIfAbsent(v.pid, p -> new ArrayList<>())
+                            .add(toFeature(v));
+                }
+            });
+        }
+        prerequisites.forEach((pid, map) -> restored.getOrDefault(pid, Collections.emptyList())
+                .forEach(f -> f.prerequisites = map.getOrDefault(f.id, f.prerequisites)));
+        return restored;
+    }
+
+    /**
+     * Requests a save of the states. Requests made before a pending save has
+     * started are handled by that save.
+     */
+    public void requestSave() {
+        if (saveRequested.compareAndSet(false, true)) {
+            executor.execute(this::save);
+        }
+    }
+
+    /**
+     * Saves the latest generation unless it has been saved already and stops
+     * saving the states. Subsequent requests are ignored, so that the saved
+     * states are not affected by the features removed while stopping.
+     */
+    public synchronized void close() {
+        save();
+        closed = true;
+    }
+
+    private synchronized void save() {
+        saveRequested.set(false);
+        final RegistrySnapshot current = snapshot.get();
+        if (closed || current.getGeneration() == lastGeneration) {
+            return;
+        }
+        lastGeneration = current.getGeneration();
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                try (Encoder encoder = new Encoder(channel, Format.BINARY)) {
+                    for (final List<Feature> list : features.get()) {
+                        for (final Feature feature : list) {
+                            write(encoder, feature, current.getPrerequisites(feature.id));
+                        }
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            // the next change saves the states again
+            lastGeneration = -1;
+            errorHandler.accept(e);
+        }
+    }
+
+    private static void write(final Encoder encoder, final Feature feature, final String[] prerequisites)
+            throws IOException {
+        final Object value = feature.type == BOOLEAN ? (Object) feature.isEnabled : feature.value;
+        if (value == null) {
+            return;
+        }
+        encoder.write(new FeatureValue(feature.pid, feature.id, value));
+        if (prerequisites.length > 0) {
+            encoder.write(new FeatureValue(feature.pid, METATYPE_PREREQUISITE_ID_PREFIX + feature.id,
+                    String.join(",", prerequisites)));
+        }
+    }
+
+    private static Feature toFeature(final FeatureValue value) {
+        final Feature feature = new Feature();
+        feature.id  = value.featureID;
+        feature.pid = value.pid;
+        if (value.value instanceof Boolean) {
+            feature.isEnabled = (Boolean) value.value;
+        } else {
+            feature.type      = toType(value.value);
+            feature.value     = value.value;
+            feature.isEnabled = true;
+        }
+        feature.lastConfirmed = feature.isEnabled;
+        return feature;
+    }
+
+    private static int toType(final Object value) {
+        if (value instanceof Integer) {
+            return INTEGER;
+        }
+        if (value instanceof Long) {
+            return LONG;
+        }
+        return value instanceof Double ? DOUBLE : STRING;
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel to keep track of a large number of deadlines.
+ *
+ * <p>
+ * The time is divided into ticks of a fixed length. The wheel consists of
+ * {@value #LEVELS} levels of {@value #SLOTS} slots each. A slot of the lowest
+ * level holds the timeouts expiring in a single tick whereas a slot of a
+ * higher level holds the timeouts of {@value #SLOTS} times as many ticks as a
+ * slot of the level below. Whenever the lowest level completes a revolution,
+ * the next slot of the higher levels is cascaded down. Scheduling and
+ * cancelling a timeout is therefore done in constant time, regardless of the
+ * number of pending timeouts. Deadlines beyond the range of the highest level
+ * are parked in its farthest slot and re-evaluated when it is cascaded.
+ * </p>
+ *
+ * <p>
+ * A timeout never expires before its deadline. Timeouts expiring in the same
+ * tick expire in the order they have been scheduled.
+ * </p>
+ *
+ * @param <T> the type of the tasks
+ *
+ * @NotThreadSafe
+ */
+public final class TimerWheel<T> {
+
+    /** Number of bits addressing a slot of a level */
+    private static final int   BITS   = 6;
+
+    /** Number of slots per level */
+    private static final int   SLOTS  = 1 << BITS;
+
+    /** Mask to address a slot of a level */
+    private static final int   MASK   = SLOTS - 1;
+
+    /** Number of levels */
+    private static final int   LEVELS = 4;
+
+    /** Number of ticks covered by all levels */
+    private static final long  RANGE  = 1L << BITS * LEVELS;
+
+    /** Length of a tick in milliseconds */
+    private final long         tickMillis;
+
+    /** Sentinels of the slots of all levels */
+    private final Timeout<T>[] slots;
+
+    /** The next tick to be processed */
+    private long               currentTick;
+
+    /** Number of pending timeouts */
+    private int                size;
+
+    /**
+     * A pending timeout which is linked into a slot of the wheel
+     *
+     * @param <T> the type of the task
+     */
+    public static final class Timeout<T> {
+        private final T    task;
+        private long       tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(final T task, final long tick) {
+            this.task = task;
+            this.tick = tick;
+        }
+
+        /**
+         * Returns the task of this timeout
+         *
+         * @return the task
+         */
+        public T getTask() {
+            return task;
+        }
+
+        /**
+         * Checks whether this timeout is still pending
+         *
+         * @return {@code true} if this timeout has neither expired nor been
+         *         cancelled, otherwise {@code false}
+         */
+        public boolean isPending() {
+            return next != null;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tickMillis the length of a tick in milliseconds
+     * @param now the current time in milliseconds
+     *
+     * @throws IllegalArgumentException if {@code tickMillis} is not positive
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public TimerWheel(final long tickMillis, final long now) {
+        checkArgument(tickMillis > 0, "Tick length must be positive");
+
+        this.tickMillis  = tickMillis;
+        this.currentTick = now / tickMillis;
+        this.slots       = new Timeout[LEVELS * SLOTS];
+        for (int i = 0; i < slots.length; i++) {
+            final Timeout<T> sentinel = new Timeout<>(null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            slots[i]      = sentinel;
+        }
+    }
+
+    /**
+     * Schedules the specified task
+     *
+     * @param task the task
+     * @param deadline the time in milliseconds at which the task expires. A
+     *            deadline in the past expires as soon as the wheel is advanced.
+     * @return the timeout to cancel the task
+     *
+     * @throws NullPointerException if {@code task} is {@code null}
+     */
+    public Timeout<T> schedule(final T task, final long deadline) {
+        requireNonNull(task, "Task cannot be null");
+
+        // round up so that the task never expires before its deadline
+        final long       tick    = deadline / tickMillis + (deadline % tickMillis > 0 ? 1 : 0);
+        final Timeout<T> timeout = new Timeout<>(task, tick);
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels the specified timeout
+     *
+     * @param timeout the timeout
+     * @return {@code true} if the timeout has been pending, otherwise
+     *         {@code false}
+     *
+     * @throws NullPointerException if {@code timeout} is {@code null}
+     */
+    public boolean cancel(final Timeout<T> timeout) {
+        requireNonNull(timeout, "Timeout cannot be null");
+
+        if (!timeout.isPending()) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the specified time and passes the tasks of all
+     * timeouts expired until then to the specified consumer. Tasks scheduled
+     * by the consumer with a deadline in the past expire during the next
+     * advance.
+     *
+     * @param now the current time in milliseconds
+     * @param expired the consumer of the expired tasks
+     *
+     * @throws NullPointerException if {@code expired} is {@code null}
+     */
+    public void advance(final long now, final Consumer<? super T> expired) {
+        requireNonNull(expired, "Consumer cannot be null");
+
+        final long targetTick = now / tickMillis;
+        while (currentTick <= targetTick) {
+            if (size == 0) {
+                // nothing to cascade or to expire
+                currentTick = targetTick + 1;
+                return;
+            }
+            final int index = (int) (currentTick & MASK);
+            if (index == 0) {
+                cascade();
+            }
+            final Timeout<T> sentinel = detach(slots[index]);
+            currentTick++;
+            // the consumer can schedule and cancel timeouts, even of the detached ones
+            while (sentinel.next != sentinel) {
+                final Timeout<T> timeout = sentinel.next;
+                unlink(timeout);
+                size--;
+                expired.accept(timeout.task);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pending timeouts
+     *
+     * @return the number of pending timeouts
+     */
+    public int size() {
+        return size;
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            final int        index    = (int) (currentTick >>> BITS * level & MASK);
+            final Timeout<T> sentinel = slots[level * SLOTS + index];
+            while (sentinel.next != sentinel) {
+                final Timeout<T> timeout = sentinel.next;
+                unlink(timeout);
+                link(timeout);
+            }
+            if (index != 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves all timeouts of the specified slot to a new list so that the slot
+     * can be reused while the timeouts are being processed
+     *
+     * @return the sentinel of the new list
+     */
+    private Timeout<T> detach(final Timeout<T> slot) {
+        final Timeout<T> sentinel = new Timeout<>(null, 0);
+        if (slot.next == slot) {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+        sentinel.prev      = slot.prev;
+        sentinel.next      = slot.next;
+        sentinel.prev.next = sentinel;
+        sentinel.next.prev = sentinel;
+        slot.prev          = slot;
+        slot.next          = slot;
+        return sentinel;
+    }
+
+    private void link(final Timeout<T> timeout) {
+        final long tick  = Math.max(timeout.tick, currentTick);
+        final long delta = tick - currentTick;
+        final int  slot;
+        if (delta >= RANGE) {
+            // park in the farthest slot of the highest level
+            final int shift = BITS * (LEVELS - 1);
+            slot = (LEVELS - 1) * SLOTS + (int) ((currentTick >>> shift) + MASK & MASK);
+        } else {
+            int level = 0;
+            while (delta >= 1L << BITS * (level + 1)) {
+                level++;
+            }
+            slot = level * SLOTS + (int) (tick >>> BITS * level & MASK);
+        }
+        final Timeout<T> sentinel = slots[slot];
+        timeout.prev       = sentinel.prev;
+        timeout.next       = sentinel;
+        sentinel.prev.next = timeout;
+        sentinel.prev      = timeout;
+    }
+
+    private static <T> void unlink(final Timeout<T> timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev      = null;
+        timeout.next      = null;
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.ManagerHelper.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+
+/**
+ * Coalesces rapid updates of the same feature into a single write.
+ *
+ * <p>
+ * The first update of a feature opens a window of the configured length. All
+ * further updates of the same feature within this window replace the pending
+ * value and the feature is written once with the last value (and the source
+ * of the last update) when the window closes. Every submitted update receives
+ * its own {@link Promise} which is resolved (or failed) with the outcome of
+ * the write that covers it.
+ * </p>
+ *
+ * <p>
+ * The writes are performed by the specified executor. A single threaded
+ * executor guarantees that the writes of the same feature are never
+ * reordered.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class UpdateDebouncer {
+
+    /**
+     * Performs the coalesced write of a feature
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(String featureID, boolean isEnabled, long version, String source) throws Exception;
+    }
+
+    /** Length of the window in milliseconds */
+    private final long                       window;
+
+    /** Executor to perform the writes when the windows close */
+    private final ScheduledExecutorService   executor;
+
+    /** Performs the writes */
+    private final Writer                     writer;
+
+    /** Data container -> Key: Feature ID Value: Pending update */
+    private final Map<String, PendingUpdate> pendingUpdates = new HashMap<>();
+
+    private static final class PendingUpdate {
+        private boolean                    isEnabled;
+        private long                       version;
+        private String                     source;
+        private final List<Deferred<Void>> deferreds = new ArrayList<>();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param window length of the window in milliseconds
+     * @param executor executor to perform the writes
+     * @param writer performs the writes
+     *
+     * @throws NullPointerException if any of the specified arguments is
+     *             {@code null}
+     * @throws IllegalArgumentException if {@code window} is not positive
+     */
+    public UpdateDebouncer(final long window, final ScheduledExecutorService executor, final Writer writer) {
+        checkArgument(window > 0, "Debounce window must be positive");
+
+        this.window   = window;
+        this.executor = requireNonNull(executor, "Executor instance cannot be null");
+        this.writer   = requireNonNull(writer, "Writer instance cannot be null");
+    }
+
+    /**
+     * Submits an update of the specified feature
+     *
+     * @param featureID the feature ID
+     * @param isEnabled the value for the enablement of the feature
+     * @param version the version of the update
+     * @param source the source which performed the update
+     * @return the promise resolved as soon as the write covering this update
+     *         has been performed
+     */
+    public Promise<Void> submit(final String featureID, final boolean isEnabled, final long version,
+            final String source) {
+        final Deferred<Void> deferred = new Deferred<>();
+        synchronized (pendingUpdates) {
+            PendingUpdate update = pendingUpdates.get(featureID);
+            if (update == null) {
+                update = new PendingUpdate();
+                pendingUpdates.put(featureID, update);
+                executor.schedule(() -> flush(featureID), window, MILLISECONDS);
+            }
+            update.isEnabled = isEnabled;
+            update.version   = version;
+            update.source    = source;
+            update.deferreds.add(deferred);
+        }
+        return deferred.getPromise();
+    }
+
+    /**
+     * Writes all pending updates immediately
+     */
+    public void flush() {
+        final List<String> featureIDs;
+        synchronized (pendingUpdates) {
+            featureIDs = new ArrayList<>(pendingUpdates.keySet());
+        }
+        featureIDs.forEach(this::flush);
+    }
+
+    private void flush(final String featureID) {
+        final PendingUpdate update;
+        synchronized (pendingUpdates) {
+            update = pendingUpdates.remove(featureID);
+        }
+        if (update == null) {
+            return;
+        }
+        try {
+            writer.write(featureID, update.isEnabled, update.version, update.source);
+            update.deferreds.forEach(d -> d.resolve(null));
+        } catch (final Exception e) {
+            update.deferreds.forEach(d -> d.fail(e));
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_AUTO;
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_PLATFORM;
+import static com.amitinside.featureflags.provider.BackgroundExecutors.MODE_VIRTUAL;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public final class BackgroundExecutorsTest {
+
+    @Test
+    public void testModes() {
+        assertFalse(new BackgroundExecutors(MODE_PLATFORM, 1).isVirtual());
+        assertEquals(BackgroundExecutors.isVirtualThreadSupported(), new BackgroundExecutors(MODE_AUTO, 1)
+                .isVirtual());
+        assertEquals(BackgroundExecutors.isVirtualThreadSupported(), new BackgroundExecutors(MODE_VIRTUAL, 1)
+                .isVirtual());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMode() {
+        new BackgroundExecutors("green", 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPoolSize() {
+        new BackgroundExecutors(MODE_PLATFORM, 0);
+    }
+
+    @Test
+    public void testPlatformExecutorIsBounded() throws Exception {
+        final ExecutorService executor   = new BackgroundExecutors(MODE_PLATFORM, 2).newExecutor();
+        final CountDownLatch  release    = new CountDownLatch(1);
+        final CountDownLatch  done       = new CountDownLatch(4);
+        final AtomicInteger   running    = new AtomicInteger();
+        final AtomicInteger   maxRunning = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread()
+                            .interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        Thread.sleep(200);
+        release.countDown();
+        assertTrue(done.await(5, SECONDS));
+        assertEquals(2, maxRunning.get());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSerialExecutorKeepsSubmissionOrder() throws Exception {
+        final ExecutorService executor = new BackgroundExecutors(MODE_AUTO, 1).newSerialExecutor();
+        final List<Integer>   order    = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int task = i;
+            executor.execute(() -> order.add(task));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, order.get(i)
+                    .intValue());
+        }
+    }
+
+}
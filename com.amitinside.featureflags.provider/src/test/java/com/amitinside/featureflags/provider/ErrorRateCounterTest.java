@@ -0,0 +1,83 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public final class ErrorRateCounterTest {
+
+    @Test
+    public void testCounting() {
+        final ErrorRateCounter counter = new ErrorRateCounter(1000, 10);
+
+        counter.record(false, 0);
+        counter.record(true, 50);
+        counter.record(true, 150);
+
+        assertEquals(2, counter.getFailures(150));
+        assertEquals(3, counter.getTotal(150));
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        final ErrorRateCounter counter = new ErrorRateCounter(1000, 10);
+
+        counter.record(true, 0);
+        counter.record(false, 500);
+        assertEquals(2, counter.getTotal(999));
+
+        // the bucket of the first outcome left the window
+        assertEquals(1, counter.getTotal(1000));
+        assertEquals(0, counter.getFailures(1000));
+
+        // the bucket gets reused for a later period
+        counter.record(true, 1050);
+        assertEquals(1, counter.getFailures(1050));
+        assertEquals(2, counter.getTotal(1050));
+
+        assertEquals(0, counter.getTotal(5000));
+    }
+
+    @Test
+    public void testReset() {
+        final ErrorRateCounter counter = new ErrorRateCounter(1000, 10);
+
+        counter.record(true, 0);
+        counter.reset();
+
+        assertEquals(0, counter.getTotal(0));
+        counter.record(true, 0);
+        assertEquals(1, counter.getFailures(0));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final ErrorRateCounter counter = new ErrorRateCounter(60_000, 10);
+        final List<Thread>     threads = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            final boolean isFailure = i % 2 == 0;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    counter.record(isFailure, 0);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20_000, counter.getFailures(0));
+        assertEquals(40_000, counter.getTotal(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinWindow() {
+        new ErrorRateCounter(0, 10);
+    }
+
+}
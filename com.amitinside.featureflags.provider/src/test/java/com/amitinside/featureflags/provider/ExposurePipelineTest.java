@@ -0,0 +1,171 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.api.exposure.ExposureDTO;
+import com.amitinside.featureflags.api.exposure.ExposureMetricsDTO;
+import com.amitinside.featureflags.api.exposure.ExposureSink;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class ExposurePipelineTest {
+
+    @Mock
+    private ScheduledExecutorService executor;
+    @Mock
+    private ExposureSink             failingSink;
+
+    private final Clock              clock    = Clock.fixed(Instant.ofEpochMilli(42), ZoneOffset.UTC);
+
+    private final List<ExposureDTO>  consumed = new ArrayList<>();
+
+    private final List<Runnable>     tasks    = new ArrayList<>();
+
+    private final List<Exception>    failures = new ArrayList<>();
+
+    private final ExposureSink       sink     = consumed::addAll;
+
+    @Before
+    public void setUp() {
+        doAnswer(i -> tasks.add((Runnable) i.getArguments()[0])).when(executor)
+                .execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testExposuresAreDeliveredPeriodically() throws Exception {
+        final ExposurePipeline pipeline = new ExposurePipeline(64, 64, Collections.singletonList(sink), clock,
+                executor, 1000, failures::add);
+        pipeline.start();
+
+        final ArgumentCaptor<Runnable> drainer = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleWithFixedDelay(drainer.capture(), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+
+        pipeline.record("a", "s1", true);
+        pipeline.record("a", "s1", true);
+        pipeline.record("a", "s2", false);
+        pipeline.record("b", "s1", "blue");
+        assertEquals(3, pipeline.getMetrics().queueDepth);
+        assertTrue(consumed.isEmpty());
+
+        drainer.getValue()
+                .run();
+        assertEquals(3, consumed.size());
+        assertEquals("a", consumed.get(0).featureID);
+        assertEquals("s1", consumed.get(0).subjectID);
+        assertEquals(true, consumed.get(0).value);
+        assertEquals(42, consumed.get(0).time);
+        assertEquals("blue", consumed.get(2).value);
+
+        final ExposureMetricsDTO metrics = pipeline.getMetrics();
+        assertEquals(0, metrics.queueDepth);
+        assertEquals(64, metrics.queueCapacity);
+        assertEquals(3, metrics.recorded);
+        assertEquals(1, metrics.duplicates);
+        assertEquals(0, metrics.dropped);
+        assertEquals(3, metrics.delivered);
+    }
+
+    @Test
+    public void testFullBufferDropsAndRequestsEarlyDrain() {
+        final ExposurePipeline pipeline = new ExposurePipeline(4, 64, Collections.singletonList(sink), clock,
+                executor, 1000, failures::add);
+
+        for (int i = 0; i < 6; i++) {
+            pipeline.record("a", "s" + i, true);
+        }
+        // a single drain is requested as soon as the buffer is half full
+        assertEquals(1, tasks.size());
+        assertEquals(4, pipeline.getMetrics().recorded);
+        assertEquals(2, pipeline.getMetrics().dropped);
+
+        tasks.get(0)
+                .run();
+        assertEquals(4, consumed.size());
+
+        pipeline.record("a", "s6", true);
+        pipeline.record("a", "s7", true);
+        pipeline.record("a", "s8", true);
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    public void testExposuresAreDeliveredInBatches() throws Exception {
+        final List<Integer>    sizes    = new ArrayList<>();
+        final ExposurePipeline pipeline = new ExposurePipeline(2048, 4096,
+                Collections.singletonList(e -> sizes.add(e.size())), clock, executor, 1000, failures::add);
+
+        for (int i = 0; i < 1000; i++) {
+            pipeline.record("a", "s" + i, true);
+        }
+        pipeline.close();
+
+        assertEquals(Arrays.asList(ExposurePipeline.MAX_BATCH_SIZE, 1000 - ExposurePipeline.MAX_BATCH_SIZE),
+                sizes);
+
+        // exposures are ignored once closed
+        pipeline.record("a", "t", true);
+        assertEquals(1000, pipeline.getMetrics().recorded);
+    }
+
+    @Test
+    public void testFailingSinkDoesNotAffectOthers() throws Exception {
+        final IllegalStateException failure  = new IllegalStateException();
+        final ExposurePipeline      pipeline = new ExposurePipeline(64, 64, Arrays.asList(failingSink, sink),
+                clock, executor, 1000, failures::add);
+        doThrow(failure).when(failingSink)
+                .consume(anyListOf(ExposureDTO.class));
+
+        pipeline.record("a", "s1", true);
+        pipeline.close();
+
+        verify(failingSink, times(1)).consume(anyListOf(ExposureDTO.class));
+        assertEquals(1, consumed.size());
+        assertEquals(Collections.singletonList(failure), failures);
+        assertEquals(1, pipeline.getMetrics().sinkFailures);
+        assertEquals(1, pipeline.getMetrics().delivered);
+    }
+
+    @Test
+    public void testFileSink() throws Exception {
+        final Path file = Files.createTempFile("exposures", ".tsv");
+        try (FileExposureSink fileSink = new FileExposureSink(file)) {
+            final ExposurePipeline pipeline = new ExposurePipeline(64, 64, Collections.singletonList(fileSink),
+                    clock, executor, 1000, failures::add);
+
+            pipeline.record("a", "s1", true);
+            pipeline.record("b", "tab\there", "line\nbreak\\");
+            pipeline.close();
+        }
+        assertEquals(Arrays.asList("42\ta\ts1\ttrue", "42\tb\ttab\\there\tline\\nbreak\\\\"),
+                Files.readAllLines(file, UTF_8));
+        Files.delete(file);
+    }
+
+}
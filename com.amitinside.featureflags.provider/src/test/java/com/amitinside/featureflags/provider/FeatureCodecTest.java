@@ -0,0 +1,158 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.FeatureCodec.Encoder;
+import com.amitinside.featureflags.provider.FeatureCodec.FeatureValue;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+
+public final class FeatureCodecTest {
+
+    private static final List<FeatureValue> VALUES = Arrays.asList(new FeatureValue("a", "f1", true),
+            new FeatureValue("a", "f2", false), new FeatureValue("a", "f3", -42),
+            new FeatureValue("b", "f4", Long.MIN_VALUE), new FeatureValue("b", "f5", 1.5),
+            new FeatureValue("b", "f6", "quote \" backslash \\ tab \t umlaut \u00e4 euro \u20ac emoji \ud83d\ude00"),
+            new FeatureValue("c \u00e4", "f7", Double.NaN));
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        final List<FeatureValue> decoded = roundTrip(VALUES, Format.BINARY);
+        assertEquals(VALUES.toString(), decoded.toString());
+        // the binary format keeps the types of the variants
+        assertEquals(Integer.class, decoded.get(2).value.getClass());
+        assertEquals(Long.class, decoded.get(3).value.getClass());
+    }
+
+    @Test
+    public void testJsonRoundTrip() throws Exception {
+        final List<FeatureValue> decoded = roundTrip(VALUES, Format.JSON);
+        assertEquals(VALUES.size(), decoded.size());
+        for (int i = 0; i < VALUES.size(); i++) {
+            assertEquals(VALUES.get(i).pid, decoded.get(i).pid);
+            assertEquals(VALUES.get(i).featureID, decoded.get(i).featureID);
+        }
+        // JSON numbers are decoded as longs or doubles and NaN as string
+        assertEquals(-42L, decoded.get(2).value);
+        assertEquals(Long.MIN_VALUE, decoded.get(3).value);
+        assertEquals(1.5, decoded.get(4).value);
+        assertEquals(VALUES.get(5).value, decoded.get(5).value);
+        assertEquals("NaN", decoded.get(6).value);
+    }
+
+    @Test
+    public void testJsonIsGroupedPerPID() throws Exception {
+        final String json = new String(encode(VALUES.subList(0, 4), Format.JSON), UTF_8);
+        assertEquals("{\"a\":{\"f1\":true,\"f2\":false,\"f3\":-42},\"b\":{\"f4\":-9223372036854775808}}", json);
+    }
+
+    @Test
+    public void testJsonWithWhitespaceAndNulls() throws Exception {
+        final String             json    = " { \"a\" : { \"f1\" : true ,\n \"f2\" : null , \"f3\" : \"\\u00e4\\n\" } ,"
+                + " \"b\" : { } } ";
+        final List<FeatureValue> decoded = decode(json.getBytes(UTF_8), Format.JSON);
+        assertEquals("[a/f1=true, a/f3=\u00e4\n]", decoded.toString());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertTrue(roundTrip(new ArrayList<>(), Format.BINARY).isEmpty());
+        assertTrue(roundTrip(new ArrayList<>(), Format.JSON).isEmpty());
+    }
+
+    @Test
+    public void testLargeExportIsStreamed() throws Exception {
+        final List<FeatureValue> values = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            values.add(new FeatureValue("pid" + i / 100, "feature" + i, i % 2 == 0));
+        }
+        for (final Format format : Format.values()) {
+            final byte[] encoded = encode(values, format);
+            assertTrue(encoded.length > FeatureCodec.BUFFER_SIZE);
+            assertEquals(values.toString(), decode(encoded, format).toString());
+        }
+    }
+
+    @Test
+    public void testBinaryFromBuffer() throws Exception {
+        final byte[]     encoded = encode(VALUES, Format.BINARY);
+        final ByteBuffer buffer  = ByteBuffer.allocateDirect(encoded.length + 1);
+        buffer.put((byte) 0)
+                .put(encoded)
+                .position(1);
+        final List<FeatureValue> decoded = new ArrayList<>();
+        FeatureCodec.decode(buffer, decoded::add);
+        assertEquals(VALUES.toString(), decoded.toString());
+        // the position of the buffer is not changed
+        assertEquals(1, buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBinaryBuffer() throws Exception {
+        final byte[] encoded = encode(VALUES, Format.BINARY);
+        FeatureCodec.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 1), new ArrayList<FeatureValue>()::add);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBinary() throws Exception {
+        final byte[] encoded = encode(VALUES, Format.BINARY);
+        decode(Arrays.copyOf(encoded, encoded.length - 1), Format.BINARY);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedJson() throws Exception {
+        decode("{\"a\":{\"f1\":tru}}".getBytes(UTF_8), Format.JSON);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnExport() throws Exception {
+        decode("{}".getBytes(UTF_8), Format.BINARY);
+    }
+
+    @Test
+    public void testFormatOfFile() {
+        assertEquals(Format.JSON, Format.of(Paths.get("flags.json")));
+        assertEquals(Format.BINARY, Format.of(Paths.get("flags.bin")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedValue() {
+        new FeatureValue("a", "f1", new Object());
+    }
+
+    private static List<FeatureValue> roundTrip(final List<FeatureValue> values, final Format format)
+            throws IOException {
+        return decode(encode(values, format), format);
+    }
+
+    private static byte[] encode(final List<FeatureValue> values, final Format format) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Encoder encoder = new Encoder(Channels.newChannel(out), format)) {
+            for (final FeatureValue value : values) {
+                encoder.write(value);
+            }
+            assertEquals(values.size(), encoder.getCount());
+        }
+        return out.toByteArray();
+    }
+
+    private static List<FeatureValue> decode(final byte[] encoded, final Format format) throws IOException {
+        final List<FeatureValue> decoded = new ArrayList<>();
+        FeatureCodec.decode(Channels.newChannel(new ByteArrayInputStream(encoded)), format, decoded::add);
+        return decoded;
+    }
+
+}
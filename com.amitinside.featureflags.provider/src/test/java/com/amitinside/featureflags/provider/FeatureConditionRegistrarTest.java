@@ -0,0 +1,86 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import com.amitinside.featureflags.api.FeatureCondition;
+
+@SuppressWarnings({ "unchecked", "rawtypes" })
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureConditionRegistrarTest {
+
+    @Mock
+    private BundleContext       bundleContext;
+    @Mock
+    private ServiceRegistration registration;
+
+    @Test
+    public void testSyncRegistersAndUnregisters() {
+        final Set<String>               enabled   = new HashSet<>();
+        final FeatureConditionRegistrar registrar = new FeatureConditionRegistrar(bundleContext, () -> enabled,
+                Runnable::run);
+        when(bundleContext.registerService(eq(FeatureCondition.class), any(FeatureCondition.class),
+                any(Dictionary.class))).thenReturn(registration);
+
+        enabled.add("a");
+        registrar.requestSync();
+        registrar.requestSync();
+
+        verify(bundleContext, times(1)).registerService(eq(FeatureCondition.class), any(FeatureCondition.class),
+                any(Dictionary.class));
+
+        enabled.remove("a");
+        registrar.requestSync();
+
+        verify(registration).unregister();
+    }
+
+    @Test
+    public void testPendingRequestsAreCoalesced() {
+        final List<Runnable>            tasks     = new CopyOnWriteArrayList<>();
+        final Executor                  executor  = tasks::add;
+        final FeatureConditionRegistrar registrar = new FeatureConditionRegistrar(bundleContext,
+                () -> new HashSet<>(), executor);
+
+        registrar.requestSync();
+        registrar.requestSync();
+        registrar.requestSync();
+
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testCloseUnregistersAll() {
+        final Set<String>               enabled   = new HashSet<>();
+        final FeatureConditionRegistrar registrar = new FeatureConditionRegistrar(bundleContext, () -> enabled,
+                Runnable::run);
+        when(bundleContext.registerService(eq(FeatureCondition.class), any(FeatureCondition.class),
+                any(Dictionary.class))).thenReturn(registration);
+
+        enabled.add("a");
+        registrar.requestSync();
+        registrar.close();
+        registrar.requestSync();
+
+        verify(registration).unregister();
+    }
+
+}
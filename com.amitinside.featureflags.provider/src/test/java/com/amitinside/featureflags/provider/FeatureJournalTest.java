@@ -0,0 +1,180 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_API;
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_SCHEDULE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amitinside.featureflags.provider.FeatureJournal.Entry;
+
+public final class FeatureJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQueryByFeatureAndTime() throws IOException {
+        try (FeatureJournal journal = open(4096, 2, Runnable::run)) {
+            journal.append(1000, "a", true, SOURCE_API);
+            journal.append(2000, "b", false, SOURCE_SCHEDULE);
+            journal.append(3000, "a", false, "node:x");
+
+            assertEquals(Arrays.asList("a=true@1000/api", "b=false@2000/schedule", "a=false@3000/node:x"),
+                    format(journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE)));
+            assertEquals(Arrays.asList("a=true@1000/api", "a=false@3000/node:x"),
+                    format(journal.query("a", Long.MIN_VALUE, Long.MAX_VALUE)));
+            assertEquals(Arrays.asList("b=false@2000/schedule", "a=false@3000/node:x"),
+                    format(journal.query(null, 2000, 4000)));
+            assertEquals(Arrays.asList("a=true@1000/api"), format(journal.query("a", 0, 3000)));
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException {
+        final List<Runnable> tasks    = new ArrayList<>();
+        final Executor       executor = tasks::add;
+        try (FeatureJournal journal = open(4096, 2, executor)) {
+            for (int i = 0; i < 50; i++) {
+                journal.append(i, "a", i % 2 == 0, SOURCE_API);
+            }
+            // all entries are committed at once
+            assertEquals(1, tasks.size());
+            tasks.get(0)
+                    .run();
+
+            journal.append(50, "a", true, SOURCE_API);
+            assertEquals(2, tasks.size());
+        }
+        try (FeatureJournal journal = open(4096, 2, executor)) {
+            assertEquals(51, journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE)
+                    .size());
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        try (FeatureJournal journal = open(4096, 2, Runnable::run)) {
+            journal.append(1000, "a", true, SOURCE_API);
+        }
+        try (FeatureJournal journal = open(4096, 2, Runnable::run)) {
+            journal.append(2000, "\u00e4", false, SOURCE_API);
+
+            assertEquals(Arrays.asList("a=true@1000/api", "\u00e4=false@2000/api"),
+                    format(journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        try (FeatureJournal journal = open(4096, 2, Runnable::run)) {
+            journal.append(1000, "a", true, SOURCE_API);
+            journal.append(2000, "b", true, SOURCE_API);
+        }
+        final Path segment = folder.getRoot()
+                .toPath()
+                .resolve(String.format("journal-%020d.log", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // the first record takes 8 bytes of header and 17 bytes of payload
+            file.seek(25 + 8);
+            file.write(0xFF);
+        }
+        try (FeatureJournal journal = open(4096, 2, Runnable::run)) {
+            journal.append(3000, "c", true, SOURCE_API);
+
+            assertEquals(Arrays.asList("a=true@1000/api", "c=true@3000/api"),
+                    format(journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    public void testSegmentsAreRolled() throws IOException {
+        try (FeatureJournal journal = open(1024, 100, Runnable::run)) {
+            for (int i = 0; i < 200; i++) {
+                journal.append(i, "feature" + i % 3, i % 2 == 0, SOURCE_API);
+            }
+            assertTrue(journal.getSegmentCount() > 5);
+
+            final List<Entry> entries = journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(200, entries.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, entries.get(i).time);
+            }
+        }
+    }
+
+    @Test
+    public void testOldestSegmentsAreCompacted() throws IOException {
+        try (FeatureJournal journal = open(1024, 3, Runnable::run)) {
+            for (int i = 0; i < 500; i++) {
+                journal.append(i, "feature" + i % 5, i % 2 == 0, SOURCE_API);
+            }
+            assertEquals(3, journal.getSegmentCount());
+
+            final List<Entry> entries = journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertTrue(entries.size() < 500);
+            for (int i = 1; i < entries.size(); i++) {
+                assertTrue(entries.get(i - 1).time < entries.get(i).time);
+            }
+            assertEquals(499, entries.get(entries.size() - 1).time);
+            // the state of every feature is retained
+            for (int i = 0; i < 5; i++) {
+                assertTrue(journal.query("feature" + i, Long.MIN_VALUE, Long.MAX_VALUE)
+                        .size() > 0);
+            }
+        }
+        try (FeatureJournal journal = open(1024, 3, Runnable::run)) {
+            assertEquals(3, journal.getSegmentCount());
+            assertEquals(499, journal.query(null, 499, 500)
+                    .get(0).time);
+        }
+    }
+
+    @Test
+    public void testAppendAfterClose() throws IOException {
+        final FeatureJournal journal = open(4096, 2, Runnable::run);
+        journal.close();
+        journal.append(1000, "a", true, SOURCE_API);
+
+        assertTrue(journal.query(null, Long.MIN_VALUE, Long.MAX_VALUE)
+                .isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinSegmentSize() throws IOException {
+        open(512, 2, Runnable::run);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinMaxSegments() throws IOException {
+        open(4096, 1, Runnable::run);
+    }
+
+    private FeatureJournal open(final int segmentSize, final int maxSegments, final Executor executor)
+            throws IOException {
+        return new FeatureJournal(folder.getRoot()
+                .toPath(), segmentSize, maxSegments, executor, e -> {
+                    throw new AssertionError(e);
+                });
+    }
+
+    private static List<String> format(final List<Entry> entries) {
+        final List<String> formatted = new ArrayList<>();
+        for (final Entry entry : entries) {
+            formatted.add(entry.featureID + "=" + entry.isEnabled + "@" + entry.time + "/" + entry.source);
+        }
+        return formatted;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.ManagerHelper.KillSwitchPolicy;
+
+public final class FeatureKillSwitchTest {
+
+    private final Clock        clock   = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    private final List<String> tripped = new ArrayList<>();
+
+    @Test
+    public void testTripsOnExceedingErrorRate() {
+        final FeatureKillSwitch killSwitch = new FeatureKillSwitch(4, clock, (f, r) -> tripped.add(f + "=" + r));
+        killSwitch.setPolicies("pid", policy("a", "50%/PT30S"));
+
+        killSwitch.report("a", false);
+        killSwitch.report("a", false);
+        killSwitch.report("a", true);
+        // below the minimum number of outcomes
+        killSwitch.report("a", true);
+        assertTrue(tripped.isEmpty());
+
+        killSwitch.report("a", true);
+        assertEquals(Collections.singletonList("a=60.0"), tripped);
+
+        // the counted outcomes have been discarded
+        killSwitch.report("a", true);
+        assertEquals(1, tripped.size());
+    }
+
+    @Test
+    public void testSuccessesNeverTrip() {
+        final FeatureKillSwitch killSwitch = new FeatureKillSwitch(1, clock, (f, r) -> tripped.add(f));
+        killSwitch.setPolicies("pid", policy("a", "0%/PT30S"));
+
+        killSwitch.report("a", false);
+        assertTrue(tripped.isEmpty());
+    }
+
+    @Test
+    public void testFeatureWithoutPolicy() {
+        final FeatureKillSwitch killSwitch = new FeatureKillSwitch(1, clock, (f, r) -> tripped.add(f));
+        killSwitch.setPolicies("pid", policy("a", "0%/PT30S"));
+
+        killSwitch.report("b", true);
+        assertTrue(tripped.isEmpty());
+
+        killSwitch.setPolicies("pid", Collections.emptyMap());
+        killSwitch.report("a", true);
+        assertTrue(tripped.isEmpty());
+    }
+
+    @Test
+    public void testPoliciesOfMultipleConfigurations() {
+        final FeatureKillSwitch killSwitch = new FeatureKillSwitch(1, clock, (f, r) -> tripped.add(f));
+
+        killSwitch.setPolicies("pid1", policy("a", "0%/PT30S"));
+        killSwitch.setPolicies("pid2", policy("b", "0%/PT30S"));
+
+        killSwitch.report("a", true);
+        killSwitch.report("b", true);
+        killSwitch.setPolicies("pid1", Collections.emptyMap());
+        killSwitch.report("a", true);
+
+        assertEquals(2, tripped.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinMinimumOutcomes() {
+        new FeatureKillSwitch(0, clock, (f, r) -> tripped.add(f));
+    }
+
+    private static Map<String, KillSwitchPolicy> policy(final String featureID, final String value) {
+        return Collections.singletonMap(featureID, ManagerHelper.toKillSwitchPolicy(featureID, value));
+    }
+
+}
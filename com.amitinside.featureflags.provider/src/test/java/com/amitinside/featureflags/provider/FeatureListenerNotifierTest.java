@@ -0,0 +1,100 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.api.FeatureListener;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureListenerNotifierTest {
+
+    @Mock
+    private FeatureListener listener1;
+    @Mock
+    private FeatureListener listener2;
+    @Mock
+    private FeatureSnapshot snapshot;
+
+    @Test
+    public void testGenerationIsNotifiedOnce() {
+        final FeatureListenerNotifier notifier = new FeatureListenerNotifier(Arrays.asList(listener1, listener2),
+                () -> snapshot, Runnable::run);
+        when(snapshot.getGeneration()).thenReturn(1L);
+
+        notifier.requestNotify();
+        notifier.requestNotify();
+
+        verify(listener1, times(1)).featuresChanged(snapshot);
+        verify(listener2, times(1)).featuresChanged(snapshot);
+
+        when(snapshot.getGeneration()).thenReturn(2L);
+        notifier.requestNotify();
+
+        verify(listener1, times(2)).featuresChanged(snapshot);
+    }
+
+    @Test
+    public void testPendingRequestsAreCoalesced() {
+        final List<Runnable>          tasks    = new CopyOnWriteArrayList<>();
+        final Executor                executor = tasks::add;
+        final FeatureListenerNotifier notifier = new FeatureListenerNotifier(Collections.singletonList(listener1),
+                () -> snapshot, executor);
+
+        notifier.requestNotify();
+        notifier.requestNotify();
+        notifier.requestNotify();
+        assertEquals(1, tasks.size());
+
+        tasks.get(0)
+                .run();
+        verify(listener1, times(1)).featuresChanged(snapshot);
+
+        notifier.requestNotify();
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotAffectOthers() {
+        final FeatureListenerNotifier notifier = new FeatureListenerNotifier(Arrays.asList(listener1, listener2),
+                () -> snapshot, Runnable::run);
+        doThrow(new IllegalStateException()).when(listener1)
+                .featuresChanged(snapshot);
+
+        notifier.requestNotify();
+
+        verify(listener2).featuresChanged(snapshot);
+    }
+
+    @Test
+    public void testClose() {
+        final FeatureListenerNotifier notifier = new FeatureListenerNotifier(Collections.singletonList(listener1),
+                () -> snapshot, Runnable::run);
+
+        notifier.close();
+        notifier.requestNotify();
+
+        verify(listener1, never()).featuresChanged(snapshot);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNPEinListeners() {
+        new FeatureListenerNotifier(null, () -> snapshot, Runnable::run);
+    }
+
+}
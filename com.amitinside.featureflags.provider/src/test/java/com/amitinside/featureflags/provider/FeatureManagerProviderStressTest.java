@@ -0,0 +1,545 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.osgi.framework.Bundle.ACTIVE;
+import static org.osgi.framework.Bundle.RESOLVED;
+import static org.osgi.framework.Bundle.UNINSTALLED;
+import static org.osgi.service.cm.ConfigurationEvent.CM_UPDATED;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.provider.FeatureManagerProvider.Config;
+
+/**
+ * Stresses the shared state of the provider by interleaving bundle starts,
+ * stops and uninstalls, configuration events and feature updates with many
+ * readers. Every thread performs a fixed sequence of operations derived from
+ * its own seed, so that only the interleaving varies between the runs. Once
+ * all threads are done, the provider must converge to the state implied by
+ * the last operation on every feature, configuration and bundle.
+ *
+ * <p>
+ * The test takes a while and is therefore skipped unless the system property
+ * {@value #ENABLED_PROPERTY} is {@code true}, e.g. with
+ * {@code ./gradlew :com.amitinside.featureflags.provider:test -Pstress}. The
+ * measured throughput of every run is appended as a CSV record to the file
+ * denoted by the system property {@value #REPORT_PROPERTY}.
+ * </p>
+ */
+@RunWith(Parameterized.class)
+public final class FeatureManagerProviderStressTest {
+
+    /** Bundles which are never stopped and declare the features updated through the API */
+    private static final int                             STABLE_BUNDLES           = 4;
+
+    /** Features declared by every stable bundle */
+    private static final int                             SHARED_FEATURES          = 16;
+
+    /** Bundles started, stopped and uninstalled by every churn thread */
+    private static final int                             CHURN_BUNDLES_PER_THREAD = 4;
+
+    /** Features declared by every churned bundle (and only by it) */
+    private static final int                             CHURN_FEATURES           = 4;
+
+    private static final int                             UPDATES_PER_THREAD       = 400;
+    private static final int                             CHURNS_PER_THREAD        = 200;
+    private static final int                             EDITS_PER_THREAD         = 200;
+
+    /** Time in milliseconds for the provider to converge once all threads are done */
+    private static final long                            CONVERGENCE_TIMEOUT      = 30_000L;
+
+    /** System property enabling the stress test */
+    private static final String                          ENABLED_PROPERTY         = "featureflags.stress";
+
+    /** System property denoting the file the measured throughput is appended to */
+    private static final String                          REPORT_PROPERTY          = "featureflags.stress.report";
+
+    /** Header of the CSV records of the measured throughput */
+    private static final String                          REPORT_HEADER            = "threads,seconds,updates_per_s,"
+            + "bundle_changes_per_s,configuration_edits_per_s,reads_per_s";
+
+    private static final String                          SHARED_PID_PREFIX        = "stable";
+    private static final String                          CHURN_PID_PREFIX         = "churn";
+
+    @Parameter
+    public int                                           threads;
+
+    private FeatureManagerProvider                       manager;
+    private BundleContext                                bundleContext;
+    private MetaTypeExtender                             extender;
+    private final Map<String, Hashtable<String, Object>> configurations           = new HashMap<>();
+    private final Map<String, Configuration>             handles                  = new ConcurrentHashMap<>();
+    private final Map<Bundle, MetaTypeInformation>       metaTypes                = new ConcurrentHashMap<>();
+    private final List<TestBundle>                       stableBundles            = new ArrayList<>();
+    private final List<TestBundle>                       churnBundles             = new ArrayList<>();
+    private final List<Throwable>                        failures                 = new CopyOnWriteArrayList<>();
+    private ExecutorService                              eventExecutor;
+
+    /**
+     * A bundle declaring the features of a single PID
+     */
+    private final class TestBundle {
+        private final Bundle        bundle;
+        private final String        pid;
+        private final List<String>  featureIDs = new ArrayList<>();
+        private final AtomicInteger state      = new AtomicInteger(RESOLVED);
+
+        private TestBundle(final long id, final String pid, final Collection<String> featureIDs) {
+            this.pid = pid;
+            this.featureIDs.addAll(featureIDs);
+            bundle = mock(Bundle.class, withSettings().stubOnly());
+            when(bundle.getBundleId()).thenReturn(id);
+            when(bundle.getSymbolicName()).thenReturn(pid);
+            when(bundle.getBundleContext()).thenReturn(bundleContext);
+            when(bundle.getHeaders(anyString())).thenReturn(new Hashtable<>());
+            when(bundle.getState()).thenAnswer(i -> state.get());
+
+            final AttributeDefinition[] ads = new AttributeDefinition[featureIDs.size()];
+            for (int i = 0; i < ads.length; i++) {
+                ads[i] = mock(AttributeDefinition.class, withSettings().stubOnly());
+                when(ads[i].getID()).thenReturn("osgi.feature." + this.featureIDs.get(i));
+                when(ads[i].getName()).thenReturn(this.featureIDs.get(i));
+                when(ads[i].getType()).thenReturn(BOOLEAN);
+                when(ads[i].getDefaultValue()).thenReturn(new String[] { "false" });
+            }
+            final ObjectClassDefinition ocd = mock(ObjectClassDefinition.class, withSettings().stubOnly());
+            when(ocd.getAttributeDefinitions(ALL)).thenReturn(ads);
+            final MetaTypeInformation info = mock(MetaTypeInformation.class, withSettings().stubOnly());
+            when(info.getPids()).thenReturn(new String[] { pid });
+            when(info.getObjectClassDefinition(any(), any())).thenReturn(ocd);
+            metaTypes.put(bundle, info);
+        }
+
+        private boolean isStarted() {
+            return state.get() == ACTIVE;
+        }
+
+        private void start() {
+            state.set(ACTIVE);
+            extender.addingBundle(bundle, new BundleEvent(BundleEvent.STARTED, bundle));
+        }
+
+        private void stop() {
+            state.set(RESOLVED);
+            extender.removedBundle(bundle, new BundleEvent(BundleEvent.STOPPED, bundle), bundle);
+        }
+
+        private void uninstall() {
+            final boolean wasStarted = isStarted();
+            state.set(UNINSTALLED);
+            if (wasStarted) {
+                extender.removedBundle(bundle, new BundleEvent(BundleEvent.STOPPED, bundle), bundle);
+            }
+            extender.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+            // a reinstalled bundle is resolved again
+            state.set(RESOLVED);
+        }
+    }
+
+    @Parameters(name = "{0} threads")
+    public static Collection<Object[]> threadCounts() {
+        return Arrays.asList(new Object[][] { { 1 }, { 2 }, { 4 }, { 8 } });
+    }
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        assumeTrue("Stress test is disabled", Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception {
+        eventExecutor = Executors.newSingleThreadExecutor();
+        bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundle(0)).thenReturn(mock(Bundle.class));
+        when(bundleContext.registerService(eq(FeatureTracer.class), any(FeatureTracer.class), any(Dictionary.class)))
+                .thenReturn(mock(ServiceRegistration.class));
+        when(bundleContext.registerService(eq(FeatureTransfer.class), any(FeatureTransfer.class),
+                any(Dictionary.class))).thenReturn(mock(ServiceRegistration.class));
+
+        final ConfigurationAdmin configurationAdmin = mock(ConfigurationAdmin.class, withSettings().stubOnly());
+        when(configurationAdmin.getConfiguration(anyString(), anyString()))
+                .thenAnswer(i -> configuration((String) i.getArguments()[0]));
+        final MetaTypeService metaTypeService = mock(MetaTypeService.class, withSettings().stubOnly());
+        when(metaTypeService.getMetaTypeInformation(any(Bundle.class)))
+                .thenAnswer(i -> metaTypes.get(i.getArguments()[0]));
+
+        manager = new FeatureManagerProvider();
+        inject("configurationAdmin", configurationAdmin);
+        inject("metaTypeService", metaTypeService);
+        manager.activate(bundleContext, mock(Config.class));
+        extender = manager.getExtender();
+
+        final List<String> sharedFeatureIDs = new ArrayList<>();
+        for (int i = 0; i < SHARED_FEATURES; i++) {
+            sharedFeatureIDs.add(sharedFeatureID(i));
+        }
+        long id = 1;
+        for (int i = 0; i < STABLE_BUNDLES; i++) {
+            stableBundles.add(new TestBundle(id++, SHARED_PID_PREFIX + i, sharedFeatureIDs));
+        }
+        for (int i = 0; i < threads * CHURN_BUNDLES_PER_THREAD; i++) {
+            final List<String> featureIDs = new ArrayList<>();
+            for (int j = 0; j < CHURN_FEATURES; j++) {
+                featureIDs.add(churnFeatureID(i, j));
+            }
+            churnBundles.add(new TestBundle(id++, CHURN_PID_PREFIX + i, featureIDs));
+        }
+        stableBundles.forEach(TestBundle::start);
+        awaitConvergence(() -> manager.getFeatures()
+                .count() == STABLE_BUNDLES * SHARED_FEATURES ? null : "Stable bundles have not been scanned");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.deactivate(bundleContext);
+        eventExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConvergesUnderConcurrentReadsAndWrites() throws Exception {
+        final Boolean[]      expectedShared = new Boolean[SHARED_FEATURES];
+        final List<Thread>   mutators       = new ArrayList<>();
+        final List<Thread>   readers        = new ArrayList<>();
+        final CountDownLatch start          = new CountDownLatch(1);
+        final AtomicBoolean  isDone         = new AtomicBoolean();
+        final AtomicLong     reads          = new AtomicLong();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            // writers own disjoint features, so that the last update of every feature is well defined
+            mutators.add(worker(start, () -> {
+                final Random random = new Random(thread);
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    final int     feature   = thread + threads * random.nextInt(SHARED_FEATURES / threads + 1);
+                    final boolean isEnabled = random.nextBoolean();
+                    if (feature < SHARED_FEATURES) {
+                        manager.updateFeature(sharedFeatureID(feature), isEnabled);
+                        expectedShared[feature] = isEnabled;
+                    }
+                }
+            }));
+            // churners own disjoint bundles and leave every other one uninstalled
+            mutators.add(worker(start, () -> {
+                final Random           random  = new Random(1000 + thread);
+                final List<TestBundle> bundles = churnBundles.subList(thread * CHURN_BUNDLES_PER_THREAD,
+                        (thread + 1) * CHURN_BUNDLES_PER_THREAD);
+                for (int i = 0; i < CHURNS_PER_THREAD; i++) {
+                    final TestBundle bundle = bundles.get(random.nextInt(bundles.size()));
+                    final int        action = random.nextInt(3);
+                    if (!bundle.isStarted()) {
+                        bundle.start();
+                    } else if (action == 0) {
+                        bundle.stop();
+                    } else if (action == 1) {
+                        bundle.uninstall();
+                    }
+                }
+                for (int i = 0; i < bundles.size(); i++) {
+                    final TestBundle bundle = bundles.get(i);
+                    if (i % 2 == 0 && !bundle.isStarted()) {
+                        bundle.start();
+                    } else if (i % 2 == 1) {
+                        bundle.uninstall();
+                    }
+                }
+            }));
+            // editors configure the bundles churned by another thread
+            mutators.add(worker(start, () -> {
+                final Random random = new Random(2000 + thread);
+                final int    owner  = (thread + 1) % threads;
+                for (int i = 0; i < EDITS_PER_THREAD; i++) {
+                    final int bundle = owner * CHURN_BUNDLES_PER_THREAD + random.nextInt(CHURN_BUNDLES_PER_THREAD);
+                    edit(CHURN_PID_PREFIX + bundle, churnFeatureID(bundle, random.nextInt(CHURN_FEATURES)),
+                            random.nextBoolean());
+                }
+            }));
+            readers.add(worker(start, () -> {
+                final Random random     = new Random(3000 + thread);
+                long         generation = 0;
+                while (!isDone.get()) {
+                    final FeatureSnapshot snapshot = manager.snapshot();
+                    if (snapshot.getGeneration() < generation) {
+                        throw new AssertionError("Generation went back from " + generation + " to "
+                                + snapshot.getGeneration());
+                    }
+                    generation = snapshot.getGeneration();
+                    snapshot.isEnabled(sharedFeatureID(random.nextInt(SHARED_FEATURES)));
+                    if (random.nextInt(100) == 0) {
+                        manager.getFeatures()
+                                .count();
+                    }
+                    reads.incrementAndGet();
+                }
+            }));
+        }
+
+        final long begin = System.nanoTime();
+        start.countDown();
+        for (final Thread mutator : mutators) {
+            mutator.join();
+        }
+        final long elapsed = System.nanoTime() - begin;
+        isDone.set(true);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Operation failed", failures.get(0));
+        }
+
+        awaitConvergence(() -> checkInvariants(expectedShared));
+
+        report(elapsed / (double) TimeUnit.SECONDS.toNanos(1), reads.get());
+    }
+
+    /**
+     * Appends the throughput of the run to the report file (if configured)
+     */
+    private void report(final double seconds, final long reads) throws IOException {
+        final String path = System.getProperty(REPORT_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        final Path         file    = Paths.get(path).toAbsolutePath();
+        final List<String> records = new ArrayList<>();
+        Files.createDirectories(file.getParent());
+        if (!Files.exists(file)) {
+            records.add(REPORT_HEADER);
+        }
+        records.add(String.format(Locale.ROOT, "%d,%.3f,%.0f,%.0f,%.0f,%.0f", threads, seconds,
+                threads * UPDATES_PER_THREAD / seconds, threads * CHURNS_PER_THREAD / seconds,
+                threads * EDITS_PER_THREAD / seconds, reads / seconds));
+        Files.write(file, records, UTF_8, CREATE, APPEND);
+    }
+
+    /**
+     * Returns the first violated invariant or {@code null} if the provider
+     * reflects the last operation on every feature, configuration and bundle
+     */
+    private String checkInvariants(final Boolean[] expectedShared) {
+        final FeatureSnapshot    snapshot = manager.snapshot();
+        final Map<Long, Integer> counts   = new HashMap<>();
+        final List<FeatureDTO>   features = new ArrayList<>();
+        manager.getFeatures()
+                .forEach(features::add);
+        features.forEach(f -> counts.merge(f.bundleId, 1, Integer::sum));
+
+        // no lost updates
+        for (int i = 0; i < SHARED_FEATURES; i++) {
+            final boolean expected = Boolean.TRUE.equals(expectedShared[i]);
+            if (snapshot.isEnabled(sharedFeatureID(i)) != expected) {
+                return "Lost update of feature " + sharedFeatureID(i);
+            }
+            for (final TestBundle bundle : stableBundles) {
+                if (configured(bundle.pid, sharedFeatureID(i)) != expected) {
+                    return "Update of feature " + sharedFeatureID(i) + " not persisted for " + bundle.pid;
+                }
+            }
+        }
+        // no orphaned PIDs
+        final Map<Bundle, List<String>> bundlePIDs;
+        synchronized (manager.getBundlePIDs()) {
+            bundlePIDs = new HashMap<>(manager.getBundlePIDs());
+        }
+        final Set<Long> scanned = new HashSet<>();
+        bundlePIDs.keySet()
+                .forEach(b -> scanned.add(b.getBundleId()));
+        for (final FeatureDTO feature : features) {
+            if (!scanned.contains(feature.bundleId)) {
+                return "Feature " + feature.id + " of unknown bundle " + feature.bundleId;
+            }
+        }
+        for (int i = 0; i < churnBundles.size(); i++) {
+            final TestBundle bundle      = churnBundles.get(i);
+            final long       id          = bundle.bundle.getBundleId();
+            final boolean    isInstalled = i % 2 == 0;
+            if (isInstalled != bundlePIDs.containsKey(bundle.bundle)) {
+                return "PIDs of " + bundle.pid + (isInstalled ? " missing" : " orphaned");
+            }
+            if (counts.getOrDefault(id, 0) != (isInstalled ? CHURN_FEATURES : 0)) {
+                return "Features of " + bundle.pid + (isInstalled ? " missing" : " orphaned");
+            }
+            // no lost configuration events
+            for (int j = 0; isInstalled && j < CHURN_FEATURES; j++) {
+                final String featureID = churnFeatureID(i, j);
+                if (snapshot.isEnabled(featureID) != configured(bundle.pid, featureID)) {
+                    return "Lost configuration of feature " + featureID;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Thread worker(final CountDownLatch start, final ThrowingRunnable task) {
+        final Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            } catch (final Throwable e) {
+                failures.add(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private void awaitConvergence(final Supplier<String> violation) throws Exception {
+        final long deadline = System.currentTimeMillis() + CONVERGENCE_TIMEOUT;
+        String     last;
+        while ((last = violation.get()) != null) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(last);
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(failures.isEmpty());
+    }
+
+    /**
+     * Returns the in-memory configuration of the specified PID which delivers
+     * its configuration events asynchronously and in order as Configuration
+     * Admin does
+     */
+    private Configuration configuration(final String pid) {
+        return handles.computeIfAbsent(pid, p -> {
+            final Configuration configuration = mock(Configuration.class, withSettings().stubOnly());
+            when(configuration.getPid()).thenReturn(pid);
+            when(configuration.getProperties()).thenAnswer(i -> {
+                synchronized (configurations) {
+                    final Hashtable<String, Object> properties = configurations.get(pid);
+                    return properties == null ? null : new Hashtable<>(properties);
+                }
+            });
+            try {
+                when(configuration.updateIfDifferent(any())).thenAnswer(i -> {
+                    @SuppressWarnings("unchecked")
+                    final Dictionary<String, Object> properties = (Dictionary<String, Object>) i.getArguments()[0];
+                    final Hashtable<String, Object>  updated    = new Hashtable<>();
+                    for (final String key : Collections.list(properties.keys())) {
+                        updated.put(key, properties.get(key));
+                    }
+                    synchronized (configurations) {
+                        if (updated.equals(configurations.get(pid))) {
+                            return false;
+                        }
+                        configurations.put(pid, updated);
+                        fireUpdated(pid);
+                        return true;
+                    }
+                });
+            } catch (final Exception e) {
+                throw new AssertionError(e);
+            }
+            return configuration;
+        });
+    }
+
+    /**
+     * Changes a configuration outside of the provider as an administrator does
+     */
+    private void edit(final String pid, final String featureID, final boolean isEnabled) {
+        synchronized (configurations) {
+            configurations.computeIfAbsent(pid, p -> new Hashtable<>())
+                    .put("osgi.feature." + featureID, isEnabled);
+            fireUpdated(pid);
+        }
+    }
+
+    private boolean configured(final String pid, final String featureID) {
+        synchronized (configurations) {
+            final Hashtable<String, Object> properties = configurations.get(pid);
+            return properties != null && Boolean.TRUE.equals(properties.get("osgi.feature." + featureID));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fireUpdated(final String pid) {
+        final ConfigurationEvent event = new ConfigurationEvent(mock(ServiceReference.class), CM_UPDATED, null,
+                pid);
+        eventExecutor.execute(() -> manager.configurationEvent(event));
+    }
+
+    private void inject(final String name, final Object value) throws Exception {
+        final Field field = FeatureManagerProvider.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(manager, value);
+    }
+
+    private static String sharedFeatureID(final int feature) {
+        return "shared" + feature;
+    }
+
+    private static String churnFeatureID(final int bundle, final int feature) {
+        return "churn" + bundle + "_" + feature;
+    }
+
+}
@@ -1,21 +1,43 @@
 package com.amitinside.featureflags.provider;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.osgi.framework.Bundle.ACTIVE;
+import static org.osgi.service.cm.ConfigurationEvent.CM_DELETED;
 import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Dictionary;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.felix.utils.collections.MapToDictionary;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -23,16 +45,33 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
 import org.osgi.service.metatype.AttributeDefinition;
 import org.osgi.service.metatype.MetaTypeInformation;
 import org.osgi.service.metatype.MetaTypeService;
 import org.osgi.service.metatype.ObjectClassDefinition;
+import org.osgi.util.promise.Promise;
 
+import com.amitinside.featureflags.api.FeatureCondition;
 import com.amitinside.featureflags.api.FeatureDTO;
 import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureMonitor;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.api.exposure.ExposureMetricsDTO;
+import com.amitinside.featureflags.api.exposure.ExposureSink;
+import com.amitinside.featureflags.api.replication.FeatureDeltaDTO;
+import com.amitinside.featureflags.api.shared.SharedFeatureTableReader;
+import com.amitinside.featureflags.provider.FeatureCodec.Encoder;
+import com.amitinside.featureflags.provider.FeatureCodec.FeatureValue;
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+import com.amitinside.featureflags.provider.FeatureManagerProvider.Config;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
 
 @RunWith(MockitoJUnitRunner.class)
 public final class FeatureManagerProviderTest {
@@ -52,6 +91,8 @@ public final class FeatureManagerProviderTest {
     @Mock
     private Bundle                 systemBundle;
     @Mock
+    private BundleStartLevel       startLevel;
+    @Mock
     private BundleContext          bundleContext2;
     @Mock
     private MetaTypeInformation    metaTypeInfo;
@@ -60,17 +101,45 @@ public final class FeatureManagerProviderTest {
     @Mock
     private AttributeDefinition    ad;
     @Mock
+    private AttributeDefinition    ad2;
+    @Mock
+    private AttributeDefinition    ad3;
+    @Mock
     private Configuration          configuration;
     @SuppressWarnings("rawtypes")
     @Mock
     private ServiceReference       reference;
+    @Mock
+    private Config                 config;
+    @Mock
+    private EventAdmin             eventAdmin;
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private ServiceRegistration    registration;
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private ServiceRegistration    tracerRegistration;
+    @SuppressWarnings("rawtypes")
+    @Mock
+    private ServiceRegistration    transferRegistration;
 
     @InjectMocks
     private FeatureManagerProvider manager;
+    @InjectMocks
+    private KillSwitchEvents       killSwitchEvents;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        when(bundleContext1.registerService(eq(FeatureTracer.class), any(FeatureTracer.class),
+                any(Dictionary.class))).thenReturn(tracerRegistration);
+        when(bundleContext1.registerService(eq(FeatureTransfer.class), any(FeatureTransfer.class),
+                any(Dictionary.class))).thenReturn(transferRegistration);
+    }
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutDefaultValue() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -110,7 +179,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithDefaultValue() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -150,7 +219,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutName() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -193,7 +262,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithDefaultValueAndProperties() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -233,7 +302,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testGetFeaturesFromMetatypeXMLDescriptorWithoutAnySpecifiedFeatures() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -255,10 +324,254 @@ public final class FeatureManagerProviderTest {
         assertTrue(list.isEmpty());
     }
 
+    @Test
+    public void testGetLocalizedFeatures() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(metaTypeInfo.getObjectClassDefinition("a", "de")).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        // scan the bundle in this thread instead of waiting for the executor
+        extender.setSynchronous(true);
+        extender.addingBundle(bundle, bundleEvent);
+
+        verify(metaTypeInfo, never()).getObjectClassDefinition("a", "de");
+
+        final FeatureDTO feature = manager.getLocalizedFeatures(FEATURE_ID, "de").findFirst().get();
+
+        assertEquals(FEATURE_ID, feature.id);
+        assertEquals(FEATURE_NAME, feature.name);
+        assertEquals(FEATURE_DESC, feature.description);
+        assertTrue(feature.isEnabled);
+        verify(metaTypeInfo).getObjectClassDefinition("a", "de");
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetFeaturesHydratedFromConfigurationAdmin() throws Exception {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(configurationAdmin.listConfigurations(null)).thenReturn(new Configuration[] { configuration });
+        when(configuration.getPid()).thenReturn("a");
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final FeatureDTO feature = manager.getFeatures(FEATURE_ID).findFirst().get();
+
+        assertEquals(FEATURE_ID, feature.id);
+        assertTrue(feature.isEnabled);
+        verify(configurationAdmin, never()).getConfiguration("a", "?");
+        // all property families are read by a single listing of the configurations
+        verify(configurationAdmin, times(1)).listConfigurations(any(String.class));
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testConfigurationEventUpdatedBeforeBundleScanned() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+
+        final ConfigurationEvent configEvent = new ConfigurationEvent(reference, 1, null, "a");
+        manager.configurationEvent(configEvent);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final FeatureDTO feature = manager.getFeatures(FEATURE_ID).findFirst().get();
+
+        assertTrue(feature.isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testBundleRefreshRetainsFeatures() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        // updates and refreshes stop the bundle transiently
+        when(bundle.adapt(BundleStartLevel.class)).thenReturn(startLevel);
+        when(startLevel.isPersistentlyStarted()).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        extender.removedBundle(bundle, bundleEvent, null);
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findFirst().get().isEnabled);
+
+        when(ad2.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + "myfeature2");
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad, ad2 });
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertEquals(2, manager.getFeatures().count());
+        assertFalse(manager.getFeatures(FEATURE_ID).findFirst().get().isEnabled);
+        assertTrue(manager.getFeatures("myfeature2").findFirst().isPresent());
+
+        // a changed declaration replaces the registered feature
+        extender.removedBundle(bundle, bundleEvent, null);
+        when(ad.getDefaultValue()).thenReturn(new String[] { "true" });
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertTrue(manager.getFeatures(FEATURE_ID).findFirst().get().isEnabled);
+
+        extender.removedBundle(bundle, bundleEvent, null);
+        when(ad.getType()).thenReturn(AttributeDefinition.INTEGER);
+        when(ad.getDefaultValue()).thenReturn(new String[] { "5" });
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertEquals(5, manager.getFeatures(FEATURE_ID).findFirst().get().value);
+
+        extender.removedBundle(bundle, bundleEvent, null);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad2 });
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertEquals(1, manager.getFeatures().count());
+        assertFalse(manager.getFeatures(FEATURE_ID).findFirst().isPresent());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testBundleUninstallRemovesFeatures() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        // updates and refreshes stop the bundle transiently
+        when(bundle.adapt(BundleStartLevel.class)).thenReturn(startLevel);
+        when(startLevel.isPersistentlyStarted()).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        extender.removedBundle(bundle, bundleEvent, null);
+
+        assertEquals(1, manager.getFeatures().count());
+
+        extender.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+
+        assertEquals(0, manager.getFeatures().count());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testBundleStopRemovesFeatures() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(bundle.adapt(BundleStartLevel.class)).thenReturn(startLevel);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertEquals(1, manager.getFeatures().count());
+
+        // stopping the bundle itself clears its autostart setting
+        when(startLevel.isPersistentlyStarted()).thenReturn(false);
+        extender.removedBundle(bundle, bundleEvent, null);
+
+        assertEquals(0, manager.getFeatures().count());
+
+        manager.deactivate(bundleContext1);
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testConfigurationEventUpdated() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -309,7 +622,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testConfigurationEventDeleted() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -356,7 +669,7 @@ public final class FeatureManagerProviderTest {
     @SuppressWarnings("unchecked")
     @Test
     public void testConfigurationEventUpdatedButIOException() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -403,7 +716,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testUpdateFeature1() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -445,12 +758,14 @@ public final class FeatureManagerProviderTest {
             assertFalse(true);
         }
 
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
         manager.deactivate(bundleContext1);
     }
 
     @Test
     public void testUpdateFeature2() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -492,13 +807,15 @@ public final class FeatureManagerProviderTest {
             assertFalse(true);
         }
 
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
         manager.deactivate(bundleContext1);
     }
 
     @SuppressWarnings("unchecked")
     @Test
     public void testUpdateFeature3() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender    = manager.getExtender();
         final String[]         pids        = new String[] { "a" };
@@ -540,12 +857,837 @@ public final class FeatureManagerProviderTest {
             assertFalse(true);
         }
 
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUpdateFeatureReadYourWrites() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        manager.updateFeature(FEATURE_ID, false);
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        // event of a former write which has been delivered late
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", true);
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        // event of the pending write
+        properties.put("osgi.feature.myfeature", false);
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        // write by another party after the pending write has been confirmed
+        properties.put("osgi.feature.myfeature", true);
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertTrue(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testUpdateFeatureDebounced() throws Exception {
+        when(config.debounce_window()).thenReturn(200L);
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final Promise<Void> p1 = manager.updateFeatureAsync(FEATURE_ID, false);
+        final Promise<Void> p2 = manager.updateFeatureAsync(FEATURE_ID, true);
+        final Promise<Void> p3 = manager.updateFeatureAsync(FEATURE_ID, false);
+
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+
+        p1.getValue();
+        p2.getValue();
+        p3.getValue();
+
+        verify(configuration, times(1)).updateIfDifferent(any());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        final FeatureSnapshot initial = manager.snapshot();
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final FeatureSnapshot before = manager.snapshot();
+
+        assertFalse(initial.isEnabled(FEATURE_ID));
+        assertTrue(before.isEnabled(FEATURE_ID));
+        assertTrue(before.getGeneration() > initial.getGeneration());
+
+        manager.updateFeature(FEATURE_ID, false);
+
+        final FeatureSnapshot after = manager.snapshot();
+
+        assertTrue(before.isEnabled(FEATURE_ID));
+        assertFalse(after.isEnabled(FEATURE_ID));
+        assertTrue(after.getGeneration() > before.getGeneration());
+        assertSame(after, manager.snapshot());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTypedVariant() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        when(ad.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + FEATURE_ID);
+        when(ad.getType()).thenReturn(AttributeDefinition.INTEGER);
+        when(ad.getDefaultValue()).thenReturn(new String[] { "10" });
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertEquals(10, manager.snapshot()
+                .getInt(FEATURE_ID, -1));
+        assertEquals(10, manager.getFeatures(FEATURE_ID)
+                .findAny()
+                .get().value);
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", 20);
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertEquals(20, manager.snapshot()
+                .getInt(FEATURE_ID, -1));
+
+        // variants are not updated by the enablement flag
+        manager.updateFeature(FEATURE_ID, false);
+
+        assertEquals(20, manager.snapshot()
+                .getInt(FEATURE_ID, -1));
+        verify(configuration, never()).updateIfDifferent(any());
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFeaturePrerequisites() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad, ad2, ad3 });
+        mockADWithDefaultValue();
+        when(ad2.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + "dependent");
+        when(ad2.getDefaultValue()).thenReturn(new String[] { "true" });
+        when(ad3.getID()).thenReturn(FeatureManager.METATYPE_PREREQUISITE_ID_PREFIX + "dependent");
+        when(ad3.getDefaultValue()).thenReturn(new String[] { FEATURE_ID });
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        FeatureDTO dependent = manager.getFeatures("dependent").findAny().get();
+
+        assertTrue(dependent.isEnabled);
+        assertTrue(dependent.isEffectivelyEnabled);
+        assertEquals(FEATURE_ID, dependent.prerequisites[0]);
+        assertTrue(manager.snapshot()
+                .isEnabled("dependent"));
+
+        manager.updateFeature(FEATURE_ID, false);
+        dependent = manager.getFeatures("dependent").findAny().get();
+
+        assertTrue(dependent.isEnabled);
+        assertFalse(dependent.isEffectivelyEnabled);
+        assertFalse(manager.snapshot()
+                .isEnabled("dependent"));
+
+        // configured prerequisites take precedence over the declared ones
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("osgi.feature.myfeature", false);
+        properties.put("osgi.prerequisite.dependent", new String[0]);
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(properties));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertTrue(manager.snapshot()
+                .isEnabled("dependent"));
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testFeatureConditionRegistration() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+        when(bundleContext1.registerService(eq(FeatureCondition.class), any(FeatureCondition.class),
+                any(Dictionary.class))).thenReturn(registration);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        verify(bundleContext1).registerService(eq(FeatureCondition.class), any(FeatureCondition.class),
+                properties.capture());
+        assertEquals("osgi.feature." + FEATURE_ID, properties.getValue().get(FeatureCondition.CONDITION_ID));
+
+        manager.updateFeature(FEATURE_ID, false);
+
+        Thread.sleep(500);
+        verify(registration).unregister();
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testScheduleFeature() throws Exception {
+        when(config.schedule_tick()).thenReturn(10L);
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        manager.scheduleFeature(FEATURE_ID, false, Instant.parse("2100-01-01T00:00:00Z"));
+
+        final ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        verify(configuration).updateIfDifferent(properties.capture());
+        assertEquals("false@2100-01-01T00:00:00Z",
+                ((String[]) properties.getValue().get("osgi.schedule." + FEATURE_ID))[0]);
+
+        manager.cancelSchedules(FEATURE_ID);
+
+        verify(configuration, times(2)).updateIfDifferent(properties.capture());
+        assertEquals(null, properties.getValue().get("osgi.schedule." + FEATURE_ID));
+
+        // an elapsed schedule is applied and removed by the same write
+        final Map<String, Object> props = new HashMap<>();
+        props.put("osgi.schedule." + FEATURE_ID, new String[] { "false@2000-01-01T00:00:00Z" });
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(props));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        Thread.sleep(500);
+        assertFalse(manager.getFeatures(FEATURE_ID).findAny().get().isEnabled);
+        verify(configuration, times(3)).updateIfDifferent(properties.capture());
+        assertEquals(false, properties.getValue().get("osgi.feature." + FEATURE_ID));
+        assertEquals(null, properties.getValue().get("osgi.schedule." + FEATURE_ID));
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScheduleUnknownFeature() throws Exception {
+        manager.activate(bundleContext1, config);
+        manager.scheduleFeature(FEATURE_ID, true, Instant.now());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testKillSwitch() throws Exception {
+        when(config.killswitch_minimum_outcomes()).thenReturn(3L);
+        manager.bindKillSwitchEvents(killSwitchEvents);
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final Map<String, Object> props = new HashMap<>();
+        props.put("osgi.killswitch." + FEATURE_ID, "50%/PT1H");
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(props));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        manager.reportSuccess(FEATURE_ID);
+        manager.reportFailure(FEATURE_ID);
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        verify(eventAdmin, never()).postEvent(any(Event.class));
+
+        manager.reportFailure(FEATURE_ID);
+
+        // the feature is disabled in the background before the event gets posted
+        final ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+        verify(eventAdmin, timeout(1000)).postEvent(event.capture());
+        assertFalse(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertEquals(FeatureMonitor.KILL_SWITCH_TOPIC, event.getValue()
+                .getTopic());
+        assertEquals(FEATURE_ID, event.getValue()
+                .getProperty(FeatureMonitor.FEATURE_ID));
+
+        // a disabled feature is not monitored
+        manager.reportFailure(FEATURE_ID);
+        verify(eventAdmin).postEvent(any(Event.class));
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSharedTable() throws Exception {
+        final Path table = Files.createTempFile("features", ".table");
+        when(config.shared_table_path()).thenReturn(table.toString());
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+        assertTrue(reader.isEnabled(FEATURE_ID));
+
+        final Map<String, Object> props = new HashMap<>();
+        props.put("osgi.feature." + FEATURE_ID, false);
+        when(configuration.getProperties()).thenReturn(new MapToDictionary(props));
+        manager.configurationEvent(new ConfigurationEvent(reference, 1, null, "a"));
+
+        assertFalse(reader.isEnabled(FEATURE_ID));
+        assertEquals(manager.snapshot()
+                .getGeneration(), reader.getGeneration());
+
+        manager.deactivate(bundleContext1);
+        Files.delete(table);
+    }
+
+    @Test
+    public void testReplication() throws Exception {
+        final LoopbackTransport     transport = new LoopbackTransport();
+        final List<FeatureDeltaDTO> deltas    = new ArrayList<>();
+        transport.connect("remote", deltas::add);
+        manager.bindTransport(transport);
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        manager.updateFeature(FEATURE_ID, false);
+
+        assertEquals(1, deltas.size());
+        assertEquals(FEATURE_ID, deltas.get(0).featureID);
+        assertFalse(deltas.get(0).isEnabled);
+
+        // a remote update is written but not broadcast again
+        final FeatureDeltaDTO delta = new FeatureDeltaDTO();
+        delta.featureID = FEATURE_ID;
+        delta.isEnabled = true;
+        delta.version   = deltas.get(0).version + 1;
+        delta.nodeID    = "remote";
+        transport.broadcast(delta);
+
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertEquals(1, deltas.size());
+        verify(configuration, times(2)).updateIfDifferent(any());
+
+        manager.deactivate(bundleContext1);
+        manager.unbindTransport(transport);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testJournal() throws Exception {
+        final Path directory = Files.createTempDirectory("journal");
+        when(config.journal_path()).thenReturn(directory.toString());
+        when(bundleContext1.registerService(eq(FeatureJournal.class), any(FeatureJournal.class),
+                any(Dictionary.class))).thenReturn(registration);
+        manager.activate(bundleContext1, config);
+
+        final ArgumentCaptor<FeatureJournal> journal = ArgumentCaptor.forClass(FeatureJournal.class);
+        verify(bundleContext1).registerService(eq(FeatureJournal.class), journal.capture(), any(Dictionary.class));
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configuration);
+        when(configuration.updateIfDifferent(any())).thenReturn(true);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        manager.updateFeature(FEATURE_ID, true);
+        manager.updateFeature(FEATURE_ID, false);
+
+        // neither updates of unknown features nor failed writes are journaled
+        manager.updateFeature("unknown", true);
+        when(configurationAdmin.getConfiguration("a", "?")).thenThrow(IOException.class);
+        assertTrue(manager.updateFeatureAsync(FEATURE_ID, true)
+                .getFailure() instanceof IOException);
+
+        final List<FeatureJournal.Entry> entries = journal.getValue()
+                .query(FEATURE_ID, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(2, entries.size());
+        assertFalse(entries.get(1).isEnabled);
+        assertEquals(FeatureJournal.SOURCE_API, entries.get(1).source);
+        assertTrue(journal.getValue()
+                .query("unknown", Long.MIN_VALUE, Long.MAX_VALUE)
+                .isEmpty());
+
+        manager.deactivate(bundleContext1);
+        verify(registration).unregister();
+        for (final File file : directory.toFile()
+                .listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTracer() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final ArgumentCaptor<FeatureTracer> tracer = ArgumentCaptor.forClass(FeatureTracer.class);
+        verify(bundleContext1).registerService(eq(FeatureTracer.class), tracer.capture(), any(Dictionary.class));
+        tracer.getValue()
+                .setSamplingRate(FEATURE_ID, 1);
+
+        manager.snapshot()
+                .isEnabled(FEATURE_ID);
+        manager.snapshot()
+                .isEnabled(FEATURE_ID, "t1");
+
+        final List<FeatureTracer.Trace> traces = tracer.getValue()
+                .getTraces(FEATURE_ID);
+        assertEquals(2, traces.size());
+        assertFalse((Boolean) traces.get(0).result);
+        assertEquals("t1", traces.get(1).tenantID);
+        assertTrue(traces.get(1).caller.startsWith(FeatureManagerProviderTest.class.getName()));
+
+        manager.deactivate(bundleContext1);
+        verify(tracerRegistration).unregister();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExposures() throws Exception {
+        final Path file = Files.createTempFile("exposures", ".tsv");
+        when(config.exposure_enabled()).thenReturn(true);
+        when(config.exposure_file_path()).thenReturn(file.toString());
+        when(bundleContext1.registerService(eq(ExposureSink.class), any(ExposureSink.class),
+                any(Dictionary.class))).thenReturn(registration);
+        manager.activate(bundleContext1, config);
+
+        verify(bundleContext1).registerService(eq(ExposureSink.class), any(FileExposureSink.class),
+                any(Dictionary.class));
+
+        manager.record(FEATURE_ID, "s1", "blue");
+        manager.record(FEATURE_ID, "s1", "blue");
+        manager.record(FEATURE_ID, "s2", "red");
+
+        final ExposureMetricsDTO metrics = manager.getMetrics();
+        assertEquals(2, metrics.recorded);
+        assertEquals(1, metrics.duplicates);
+        assertEquals(FeatureManagerProvider.DEFAULT_QUEUE_CAPACITY, metrics.queueCapacity);
+
+        manager.deactivate(bundleContext1);
+        verify(registration).unregister();
+        Files.delete(file);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFileSourceTakesPrecedence() throws Exception {
+        final Path file = Files.createTempFile("features", ".properties");
+        Files.write(file, (FEATURE_ID + "=false\n").getBytes(StandardCharsets.UTF_8));
+        when(config.file_source_path()).thenReturn(file.toString());
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.addingBundle(bundle, bundleEvent);
+        Thread.sleep(1000);
+
+        // the default value of the metatype is overridden by the file
+        assertFalse(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertFalse(manager.getFeatures(FEATURE_ID)
+                .findFirst()
+                .get().isEnabled);
+
+        // events which do not concern the file source reuse the applied values
+        final Map<String, List<Feature>> view = manager.getEffectiveFeatures();
+        manager.configurationEvent(new ConfigurationEvent(reference, CM_DELETED, null, "b"));
+        assertSame(view, manager.getEffectiveFeatures());
+
+        // only the features changed by the file source get re-applied
+        final long generation = manager.snapshot()
+                .getGeneration();
+        Files.write(file, (FEATURE_ID + "=false\nother=true\n").getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 100 && manager.snapshot()
+                .getGeneration() == generation; i++) {
+            Thread.sleep(100);
+        }
+        assertNotEquals(generation, manager.snapshot()
+                .getGeneration());
+        assertSame(view, manager.getEffectiveFeatures());
+
+        Files.write(file, "other=true\n".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 100 && !manager.snapshot()
+                .isEnabled(FEATURE_ID); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertTrue(manager.getFeatures(FEATURE_ID)
+                .findFirst()
+                .get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+        Files.delete(file);
+    }
+
+    @Test
+    public void testRestoredFeatureStates() throws Exception {
+        final Path directory = Files.createTempDirectory("data");
+        final Path file      = directory.resolve("features.snapshot");
+        try (WritableByteChannel channel = Files.newByteChannel(file, CREATE, WRITE);
+                Encoder encoder = new Encoder(channel, Format.BINARY)) {
+            encoder.write(new FeatureValue("a", FEATURE_ID, true));
+            encoder.write(new FeatureValue("b", "othervariant", 42));
+            encoder.write(new FeatureValue("b", "prereq", false));
+            encoder.write(new FeatureValue("b", "gated", true));
+            encoder.write(new FeatureValue("b", "osgi.prerequisite.gated", "prereq"));
+        }
+        final Path source = directory.resolve("features.properties");
+        Files.write(source, "prereq=true\n".getBytes(StandardCharsets.UTF_8));
+        when(bundleContext1.getDataFile("features.snapshot")).thenReturn(file.toFile());
+        when(config.file_source_path()).thenReturn(source.toString());
+        manager.activate(bundleContext1, config);
+
+        // the restored states are served before any bundle gets scanned
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertEquals(42, manager.snapshot()
+                .getInt("othervariant", 0));
+        assertEquals(4, manager.getFeatures()
+                .count());
+        assertTrue(manager.getFeatures(FEATURE_ID)
+                .findFirst()
+                .get().isEnabled);
+        // a restored feature is gated by its restored prerequisites which are overridden by the file
+        assertTrue(manager.snapshot()
+                .isEnabled("gated"));
+        assertTrue(manager.getFeatures("prereq")
+                .findFirst()
+                .get().isEnabled);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithoutDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.addingBundle(bundle, bundleEvent);
+        Thread.sleep(1000);
+
+        // the scanned feature replaces the restored state
+        assertFalse(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        assertEquals(42, manager.snapshot()
+                .getInt("othervariant", 0));
+        assertFalse(manager.getFeatures(FEATURE_ID)
+                .findFirst()
+                .get().isEnabled);
+
+        manager.deactivate(bundleContext1);
+
+        // the values of the file source are not saved as configured states
+
+        final List<FeatureValue> saved = new ArrayList<>();
+        try (ReadableByteChannel channel = Files.newByteChannel(file)) {
+            FeatureCodec.decode(channel, Format.BINARY, saved::add);
+        }
+        assertEquals("[a/myfeature=false, b/othervariant=42, b/prereq=false, b/gated=true, "
+                + "b/osgi.prerequisite.gated=prereq]", saved.stream()
+                .sorted((v1, v2) -> v1.pid.compareTo(v2.pid))
+                .collect(Collectors.toList())
+                .toString());
+        Files.delete(file);
+        Files.delete(source);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testTenantCheckExposures() throws Exception {
+        when(config.exposure_enabled()).thenReturn(true);
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        // the checks for tenants are not recorded unless configured
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID, "t1"));
+        assertEquals(0, manager.getMetrics().recorded);
+        manager.deactivate(bundleContext1);
+
+        when(config.exposure_tenant_checks()).thenReturn(true);
+        manager.activate(bundleContext1, config);
+        manager.getExtender()
+                .addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID, "t1"));
+        assertEquals(1, manager.getMetrics().recorded);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test
+    public void testExposuresDisabled() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        manager.record(FEATURE_ID, "s1", true);
+        assertEquals(0, manager.getMetrics().recorded);
+
+        manager.deactivate(bundleContext1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNPEinReportFailure() throws Exception {
+        manager.activate(bundleContext1, config);
+        manager.reportFailure(null);
+    }
+
+    @Test
+    public void testTenantOverride() throws Exception {
+        manager.activate(bundleContext1, config);
+
+        final MetaTypeExtender extender    = manager.getExtender();
+        final String[]         pids        = new String[] { "a" };
+        final BundleEvent      bundleEvent = new BundleEvent(BundleEvent.STARTED, bundle);
+
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getPids()).thenReturn(pids);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocd);
+        when(ocd.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { ad });
+        mockADWithDefaultValue();
+        when(bundleContext1.getBundle(0)).thenReturn(systemBundle);
+        when(bundle.getState()).thenReturn(ACTIVE);
+        when(bundle.getBundleContext()).thenReturn(bundleContext1);
+        when(configurationAdmin.createFactoryConfiguration(FeatureManager.TENANT_FACTORY_PID, "?"))
+                .thenReturn(configuration);
+        when(configurationAdmin.getConfiguration("tenant", "?")).thenReturn(configuration);
+        when(configuration.getPid()).thenReturn("tenant");
+
+        extender.addingBundle(bundle, bundleEvent);
+
+        Thread.sleep(1000);
+        manager.overrideFeature("t1", FEATURE_ID, false);
+
+        assertFalse(manager.snapshot()
+                .isEnabled(FEATURE_ID, "t1"));
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID, "t2"));
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID));
+        verify(configuration).updateIfDifferent(any());
+
+        manager.overrideFeature("t1", FEATURE_ID, null);
+
+        assertTrue(manager.snapshot()
+                .isEnabled(FEATURE_ID, "t1"));
+        verify(configuration).delete();
+
         manager.deactivate(bundleContext1);
     }
 
     @Test
     public void testPreemptiveShutdown1() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender = manager.getExtender();
         extender.error(">>>>ERROR<<<<<", new RuntimeException());
@@ -553,7 +1695,7 @@ public final class FeatureManagerProviderTest {
 
     @Test
     public void testPreemptiveShutdown2() throws Exception {
-        manager.activate(bundleContext1);
+        manager.activate(bundleContext1, config);
 
         final MetaTypeExtender extender = manager.getExtender();
         extender.warn(bundle, ">>>>WARNING<<<<<", new RuntimeException());
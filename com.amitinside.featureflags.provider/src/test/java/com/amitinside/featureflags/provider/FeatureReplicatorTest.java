@@ -0,0 +1,235 @@
+package com.amitinside.featureflags.provider;
+
+import static com.amitinside.featureflags.provider.FeatureJournal.SOURCE_API;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.osgi.util.promise.Promises;
+
+import com.amitinside.featureflags.api.replication.FeatureDeltaDTO;
+
+public final class FeatureReplicatorTest {
+
+    private final Clock clock = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+
+    /**
+     * Node whose feature states are kept in a map
+     */
+    private final class Node {
+        private final Map<String, Boolean> states  = new ConcurrentHashMap<>();
+        private final Map<String, String>  sources = new ConcurrentHashMap<>();
+        private final FeatureReplicator    replicator;
+
+        private Node(final String nodeID) {
+            replicator = new FeatureReplicator(nodeID, clock, (f, e, s) -> {
+                states.put(f, e);
+                sources.put(f, s);
+                return Promises.resolved(null);
+            });
+        }
+    }
+
+    @Test
+    public void testUpdatesAreReplicated() {
+        final LoopbackTransport transport = new LoopbackTransport();
+        final Node              node1     = connect(new Node("node1"), transport);
+        final Node              node2     = connect(new Node("node2"), transport);
+
+        node1.replicator.update("a", true, SOURCE_API);
+        node2.replicator.update("b", false, SOURCE_API);
+
+        assertEquals(node1.states, node2.states);
+        assertTrue(node2.states.get("a"));
+        assertFalse(node1.states.get("b"));
+        assertEquals(SOURCE_API, node1.sources.get("a"));
+        assertEquals("node:node1", node2.sources.get("a"));
+    }
+
+    @Test
+    public void testLastWriterWins() {
+        final Node            node    = new Node("node1");
+        final FeatureDeltaDTO delta1  = delta("a", true, 5, "node2");
+        final FeatureDeltaDTO delta2  = delta("a", false, 4, "node3");
+        final FeatureDeltaDTO delta3  = delta("a", false, 5, "node3");
+        final FeatureDeltaDTO ownNode = delta("a", true, 9, "node1");
+
+        assertTrue(node.replicator.receive(delta1));
+        // an older version is superseded
+        assertFalse(node.replicator.receive(delta2));
+        // equal versions are ordered by the node IDs
+        assertTrue(node.replicator.receive(delta3));
+        assertFalse(node.replicator.receive(delta1));
+        assertFalse(node.replicator.receive(ownNode));
+        assertFalse(node.states.get("a"));
+
+        // a local update supersedes all updates seen before
+        node.replicator.update("a", true, SOURCE_API);
+        assertFalse(node.replicator.receive(delta("a", false, 5, "node9")));
+        assertTrue(node.states.get("a"));
+    }
+
+    @Test
+    public void testConvergenceRegardlessOfDeliveryOrder() {
+        final LoopbackTransport     transport = new LoopbackTransport();
+        final Random                random    = new Random(42);
+        final List<FeatureDeltaDTO> deltas    = new ArrayList<>();
+        final List<Node>            nodes     = new ArrayList<>();
+        final List<Node>            writers   = new ArrayList<>();
+
+        // the writers are not opened and only record their deltas
+        transport.connect("recorder", deltas::add);
+        for (int i = 0; i < 3; i++) {
+            final Node writer = new Node("writer" + i);
+            writer.replicator.setTransport(transport);
+            writers.add(writer);
+        }
+        for (int i = 0; i < 300; i++) {
+            final Node writer = writers.get(random.nextInt(writers.size()));
+            // writers see some of the updates of the others
+            if (!deltas.isEmpty()) {
+                writer.replicator.receive(deltas.get(random.nextInt(deltas.size())));
+            }
+            writer.replicator.update("f" + random.nextInt(5), random.nextBoolean(), SOURCE_API);
+        }
+        for (int i = 0; i < 5; i++) {
+            final List<FeatureDeltaDTO> shuffled = new ArrayList<>(deltas);
+            shuffled.addAll(deltas.subList(0, 50));
+            Collections.shuffle(shuffled, random);
+            final Node node = new Node("reader" + i);
+            shuffled.forEach(node.replicator::receive);
+            nodes.add(node);
+        }
+        for (final Node node : nodes) {
+            assertEquals(nodes.get(0).states, node.states);
+        }
+        assertEquals(5, nodes.get(0).states.size());
+    }
+
+    @Test
+    public void testConcurrentUpdatesConverge() throws InterruptedException {
+        final LoopbackTransport transport = new LoopbackTransport();
+        final List<Node>        nodes     = new ArrayList<>();
+        final List<Thread>      threads   = new ArrayList<>();
+        final CountDownLatch    start     = new CountDownLatch(1);
+
+        for (int i = 0; i < 4; i++) {
+            final Node node = connect(new Node("node" + i), transport);
+            nodes.add(node);
+            final Random random = new Random(i);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    node.replicator.update("f" + random.nextInt(10), random.nextBoolean(), SOURCE_API);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        for (final Node node : nodes) {
+            assertEquals(nodes.get(0).states, node.states);
+        }
+    }
+
+    @Test
+    public void testSlowWriteDoesNotBlockOtherFeatures() throws Exception {
+        final CountDownLatch    writing    = new CountDownLatch(1);
+        final CountDownLatch    release    = new CountDownLatch(1);
+        final List<String>      writes     = Collections.synchronizedList(new ArrayList<>());
+        final FeatureReplicator replicator = new FeatureReplicator("node1", clock, (f, e, s) -> {
+            if ("a".equals(f)) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread()
+                            .interrupt();
+                }
+            }
+            writes.add(f + "=" + e);
+            return Promises.resolved(null);
+        });
+        final Thread slow = new Thread(() -> replicator.update("a", true, SOURCE_API));
+        slow.start();
+        writing.await();
+
+        replicator.update("b", true, SOURCE_API);
+        assertTrue(replicator.receive(delta("c", true, 5, "node2")));
+        assertEquals(Arrays.asList("b=true", "c=true"), writes);
+
+        release.countDown();
+        slow.join();
+        assertEquals("a=true", writes.get(2));
+    }
+
+    @Test
+    public void testTransportLifecycle() {
+        final LoopbackTransport transport = new LoopbackTransport();
+        final Node              node1     = connect(new Node("node1"), transport);
+        final Node              node2     = new Node("node2");
+
+        node2.replicator.setTransport(transport);
+        node1.replicator.update("a", true, SOURCE_API);
+        // not yet opened
+        assertTrue(node2.states.isEmpty());
+
+        node2.replicator.open();
+        node1.replicator.update("a", false, SOURCE_API);
+        assertFalse(node2.states.get("a"));
+
+        node2.replicator.unsetTransport(new LoopbackTransport());
+        node1.replicator.update("a", true, SOURCE_API);
+        assertTrue(node2.states.get("a"));
+
+        node2.replicator.unsetTransport(transport);
+        node1.replicator.update("a", false, SOURCE_API);
+        assertTrue(node2.states.get("a"));
+
+        // local updates are still written
+        node2.replicator.update("b", true, SOURCE_API);
+        assertTrue(node2.states.get("b"));
+        assertFalse(node1.states.containsKey("b"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNPEinReceive() {
+        new Node("node1").replicator.receive(null);
+    }
+
+    private static Node connect(final Node node, final LoopbackTransport transport) {
+        node.replicator.setTransport(transport);
+        node.replicator.open();
+        return node;
+    }
+
+    private static FeatureDeltaDTO delta(final String featureID, final boolean isEnabled, final long version,
+            final String nodeID) {
+        final FeatureDeltaDTO delta = new FeatureDeltaDTO();
+        delta.featureID = featureID;
+        delta.isEnabled = isEnabled;
+        delta.version   = version;
+        delta.nodeID    = nodeID;
+        return delta;
+    }
+
+}
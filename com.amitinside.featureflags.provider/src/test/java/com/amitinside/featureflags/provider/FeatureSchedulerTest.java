@@ -0,0 +1,176 @@
+package com.amitinside.featureflags.provider;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Schedule;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureSchedulerTest {
+
+    @Mock
+    private ScheduledExecutorService executor;
+
+    /**
+     * Clock whose time is only changed by the test
+     */
+    private static final class ManualClock extends Clock {
+        private long millis;
+
+        private ManualClock(final long millis) {
+            this.millis = millis;
+        }
+
+        private void advance(final long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+
+    @Test
+    public void testScheduledUpdatesAreApplied() {
+        final ManualClock      clock     = new ManualClock(0);
+        final List<String>     applied   = new ArrayList<>();
+        final FeatureScheduler scheduler = new FeatureScheduler(100, clock, executor, s -> applied.add(toString(s)));
+
+        scheduler.sync("pid", Arrays.asList(schedule("b", false, 2000), schedule("a", true, 1000)));
+        assertEquals(2, scheduler.size());
+
+        clock.advance(999);
+        scheduler.advance();
+        assertTrue(applied.isEmpty());
+
+        clock.advance(1);
+        scheduler.advance();
+        assertEquals(Collections.singletonList("a=true"), applied);
+
+        clock.advance(5000);
+        scheduler.advance();
+        assertEquals(Arrays.asList("a=true", "b=false"), applied);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testElapsedUpdatesAreAppliedInOrder() {
+        final ManualClock      clock     = new ManualClock(10_000);
+        final List<String>     applied   = new ArrayList<>();
+        final FeatureScheduler scheduler = new FeatureScheduler(100, clock, executor, s -> applied.add(toString(s)));
+
+        scheduler.sync("pid", Arrays.asList(schedule("a", false, 2000), schedule("a", true, 1000)));
+        scheduler.advance();
+
+        assertEquals(Arrays.asList("a=true", "a=false"), applied);
+    }
+
+    @Test
+    public void testSyncReplacesUpdates() {
+        final ManualClock      clock     = new ManualClock(0);
+        final List<String>     applied   = new ArrayList<>();
+        final FeatureScheduler scheduler = new FeatureScheduler(100, clock, executor, s -> applied.add(toString(s)));
+
+        scheduler.sync("pid1", Arrays.asList(schedule("a", true, 1000)));
+        scheduler.sync("pid2", Arrays.asList(schedule("b", true, 1000)));
+        scheduler.sync("pid1", Arrays.asList(schedule("c", true, 1000)));
+        scheduler.sync("pid2", Collections.emptyList());
+        assertEquals(1, scheduler.size());
+
+        clock.advance(1000);
+        scheduler.advance();
+
+        assertEquals(Collections.singletonList("c=true"), applied);
+    }
+
+    @Test
+    public void testUpdateIsRetried() {
+        final ManualClock      clock     = new ManualClock(0);
+        final List<String>     applied   = new ArrayList<>();
+        final boolean[]        isKnown   = new boolean[1];
+        final FeatureScheduler scheduler = new FeatureScheduler(100, clock, executor,
+                s -> isKnown[0] && applied.add(toString(s)));
+
+        scheduler.sync("pid", Arrays.asList(schedule("a", true, 1000)));
+        clock.advance(1000);
+        scheduler.advance();
+        assertTrue(applied.isEmpty());
+        assertEquals(1, scheduler.size());
+
+        isKnown[0] = true;
+        clock.advance(FeatureScheduler.RETRY_DELAY - 1);
+        scheduler.advance();
+        assertTrue(applied.isEmpty());
+
+        clock.advance(1);
+        scheduler.advance();
+        assertEquals(Collections.singletonList("a=true"), applied);
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testStartAndClose() {
+        final FeatureScheduler scheduler = new FeatureScheduler(100, new ManualClock(0), executor, s -> true);
+
+        scheduler.start();
+        verify(executor).scheduleWithFixedDelay(any(Runnable.class), anyLong(), eq(100L), eq(MILLISECONDS));
+
+        scheduler.sync("pid", Arrays.asList(schedule("a", true, 1000)));
+        scheduler.close();
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinTickLength() {
+        new FeatureScheduler(0, new ManualClock(0), executor, s -> true);
+    }
+
+    private static Schedule schedule(final String featureID, final boolean isEnabled, final long time) {
+        final Schedule schedule = new Schedule();
+        schedule.featureID = featureID;
+        schedule.isEnabled = isEnabled;
+        schedule.time      = time;
+        return schedule;
+    }
+
+    private static String toString(final Schedule schedule) {
+        return schedule.featureID + "=" + schedule.isEnabled;
+    }
+
+}
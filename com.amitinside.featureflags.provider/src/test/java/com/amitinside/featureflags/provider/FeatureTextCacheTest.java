@@ -0,0 +1,150 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.osgi.service.metatype.ObjectClassDefinition.ALL;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.Bundle;
+import org.osgi.service.metatype.AttributeDefinition;
+import org.osgi.service.metatype.MetaTypeInformation;
+import org.osgi.service.metatype.MetaTypeService;
+import org.osgi.service.metatype.ObjectClassDefinition;
+
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.provider.FeatureTextCache.FeatureText;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureTextCacheTest {
+
+    @Mock
+    private MetaTypeService       metaTypeService;
+    @Mock
+    private MetaTypeInformation   metaTypeInfo;
+    @Mock
+    private ObjectClassDefinition ocdDefault;
+    @Mock
+    private ObjectClassDefinition ocdGerman;
+    @Mock
+    private AttributeDefinition   adDefault;
+    @Mock
+    private AttributeDefinition   adGerman;
+    @Mock
+    private Bundle                bundle;
+
+    private Feature               feature;
+
+    @Before
+    public void setUp() {
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        when(metaTypeInfo.getObjectClassDefinition("a", null)).thenReturn(ocdDefault);
+        when(metaTypeInfo.getObjectClassDefinition("a", "de")).thenReturn(ocdGerman);
+        when(ocdDefault.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { adDefault });
+        when(ocdGerman.getAttributeDefinitions(ALL)).thenReturn(new AttributeDefinition[] { adGerman });
+        when(adDefault.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + "myfeature");
+        when(adDefault.getName()).thenReturn("My Feature");
+        when(adDefault.getDescription()).thenReturn("My Description");
+        when(adGerman.getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + "myfeature");
+        when(adGerman.getName()).thenReturn("Meine Funktion");
+        when(adGerman.getDescription()).thenReturn("Meine Beschreibung");
+
+        feature        = new Feature();
+        feature.id     = "myfeature";
+        feature.pid    = "a";
+        feature.bundle = bundle;
+    }
+
+    @Test
+    public void testLocalizedTexts() {
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 10);
+
+        final FeatureText defaultText = cache.get(feature, null);
+        final FeatureText germanText  = cache.get(feature, "de");
+
+        assertEquals("My Feature", defaultText.name);
+        assertEquals("My Description", defaultText.description);
+        assertEquals("Meine Funktion", germanText.name);
+        assertEquals("Meine Beschreibung", germanText.description);
+    }
+
+    @Test
+    public void testTextsAreCached() {
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 10);
+
+        cache.get(feature, "de");
+        cache.get(feature, "de");
+        cache.get(feature, "de");
+
+        verify(metaTypeInfo, times(1)).getObjectClassDefinition("a", "de");
+    }
+
+    @Test
+    public void testEviction() {
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 1);
+
+        cache.get(feature, "de");
+        cache.get(feature, null);
+        cache.get(feature, "de");
+
+        verify(metaTypeInfo, times(2)).getObjectClassDefinition("a", "de");
+    }
+
+    @Test
+    public void testInvalidation() {
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 10);
+
+        cache.get(feature, null);
+        cache.invalidate("a");
+        cache.get(feature, null);
+
+        verify(metaTypeInfo, times(2)).getObjectClassDefinition("a", null);
+    }
+
+    @Test
+    public void testMissingMetatypeFallsBackToID() {
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 10);
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(null);
+
+        final FeatureText text = cache.get(feature, null);
+
+        assertEquals("myfeature", text.name);
+        assertNull(text.description);
+
+        // the fallback is not cached
+        when(metaTypeService.getMetaTypeInformation(bundle)).thenReturn(metaTypeInfo);
+        assertEquals("My Feature", cache.get(feature, null).name);
+    }
+
+    @Test
+    public void testDefinitionLargerThanBound() {
+        final AttributeDefinition[] ads = new AttributeDefinition[3];
+        for (int i = 0; i < ads.length; i++) {
+            ads[i] = mock(AttributeDefinition.class);
+            when(ads[i].getID()).thenReturn(FeatureManager.METATYPE_FEATURE_ID_PREFIX + "feature" + i);
+            when(ads[i].getName()).thenReturn("Feature " + i);
+        }
+        when(ocdDefault.getAttributeDefinitions(ALL)).thenReturn(ads);
+        final FeatureTextCache cache = new FeatureTextCache(metaTypeService, 1);
+
+        for (int i = 0; i < ads.length; i++) {
+            feature.id = "feature" + i;
+            assertEquals("Feature " + i, cache.get(feature, null).name);
+        }
+        verify(metaTypeInfo, times(1)).getObjectClassDefinition("a", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new FeatureTextCache(metaTypeService, 0);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.FeatureTracer.Trace;
+
+public final class FeatureTracerTest {
+
+    @Test
+    public void testInactiveWithoutSamplingRates() {
+        final FeatureTracer tracer = new FeatureTracer(4);
+        assertFalse(tracer.isActive());
+
+        tracer.setSamplingRate("a", 0.5);
+        assertTrue(tracer.isActive());
+        assertEquals(Collections.singletonMap("a", 0.5), tracer.getSamplingRates());
+
+        tracer.setSamplingRate("a", 0);
+        assertFalse(tracer.isActive());
+        assertTrue(tracer.getSamplingRates()
+                .isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSamplingRate() {
+        new FeatureTracer(4).setSamplingRate("a", 1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new FeatureTracer(0);
+    }
+
+    @Test
+    public void testOnlySampledFeaturesAreTraced() {
+        final FeatureTracer tracer = new FeatureTracer(4);
+        tracer.setSamplingRate("a", 1);
+
+        tracer.sample("a", null, true);
+        tracer.sample("b", "t1", false);
+
+        final List<Trace> traces = tracer.getTraces(null);
+        assertEquals(1, traces.size());
+        final Trace trace = traces.get(0);
+        assertEquals("a", trace.featureID);
+        assertNull(trace.tenantID);
+        assertEquals(true, trace.result);
+        assertEquals(Thread.currentThread()
+                .getName(), trace.thread);
+        assertTrue(trace.caller.startsWith(FeatureTracerTest.class.getName() + ".testOnlySampledFeaturesAreTraced"));
+    }
+
+    @Test
+    public void testSamplingRateIsApproximated() {
+        final FeatureTracer tracer = new FeatureTracer(10_000);
+        tracer.setSamplingRate("a", 0.1);
+
+        for (int i = 0; i < 10_000; i++) {
+            tracer.sample("a", null, true);
+        }
+        final int sampled = tracer.getTraces("a")
+                .size();
+        assertTrue(sampled > 700 && sampled < 1300);
+    }
+
+    @Test
+    public void testOnlyMostRecentTracesAreRetained() {
+        final FeatureTracer tracer = new FeatureTracer(3);
+        tracer.setSamplingRate("a", 1);
+        tracer.setSamplingRate("b", 1);
+
+        for (int i = 0; i < 5; i++) {
+            tracer.sample(i % 2 == 0 ? "a" : "b", null, i);
+        }
+
+        final List<Trace> traces = tracer.getTraces(null);
+        assertEquals(3, traces.size());
+        assertEquals(2, traces.get(0).result);
+        assertEquals(3, traces.get(1).result);
+        assertEquals(4, traces.get(2).result);
+        assertEquals(2, tracer.getTraces("a")
+                .size());
+
+        tracer.clear();
+        assertTrue(tracer.getTraces(null)
+                .isEmpty());
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import com.amitinside.featureflags.provider.FeatureCodec.Format;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+public final class FeatureTransferTest {
+
+    @Test
+    public void testExportSkipsVariantsWithoutValue() throws Exception {
+        final List<List<Feature>>   features = Arrays.asList(
+                Arrays.asList(feature("a", "f1", true), variant("a", "v1", 42), variant("a", "v2", null)),
+                Collections.singletonList(feature("b", "f2", false)));
+        final FeatureTransfer       transfer = new FeatureTransfer(() -> features, mock(ConfigurationAdmin.class));
+        final ByteArrayOutputStream out      = new ByteArrayOutputStream();
+
+        assertEquals(3, transfer.exportFeatures(Channels.newChannel(out), Format.JSON, null));
+        assertEquals("{\"a\":{\"f1\":true,\"v1\":42},\"b\":{\"f2\":false}}", new String(out.toByteArray(), UTF_8));
+
+        out.reset();
+        assertEquals(2, transfer.exportFeatures(Channels.newChannel(out), Format.JSON, "f?"));
+        assertEquals("{\"a\":{\"f1\":true},\"b\":{\"f2\":false}}", new String(out.toByteArray(), UTF_8));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testImportWritesEveryConfigurationOnce() throws Exception {
+        final ConfigurationAdmin        configurationAdmin = mock(ConfigurationAdmin.class);
+        final Configuration             configurationA     = mock(Configuration.class);
+        final Configuration             configurationB     = mock(Configuration.class);
+        final Hashtable<String, Object> existing           = new Hashtable<>();
+        existing.put("other", "value");
+        existing.put("osgi.feature.f1", false);
+        when(configurationA.getProperties()).thenReturn(existing);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(configurationA);
+        when(configurationAdmin.getConfiguration("b", "?")).thenReturn(configurationB);
+
+        final FeatureTransfer transfer = new FeatureTransfer(Collections::emptyList, configurationAdmin);
+        final String          json     = "{\"a\":{\"f1\":true,\"f2\":true,\"x1\":1},\"b\":{\"f3\":\"on\"}}";
+        assertEquals(3, transfer.importFeatures(Channels.newChannel(new ByteArrayInputStream(json.getBytes(UTF_8))),
+                Format.JSON, "f*"));
+
+        final ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        verify(configurationA, times(1)).updateIfDifferent(properties.capture());
+        assertEquals("value", properties.getValue()
+                .get("other"));
+        assertEquals(true, properties.getValue()
+                .get("osgi.feature.f1"));
+        assertEquals(true, properties.getValue()
+                .get("osgi.feature.f2"));
+        assertEquals(null, properties.getValue()
+                .get("osgi.feature.x1"));
+        verify(configurationB, times(1)).updateIfDifferent(any(Dictionary.class));
+    }
+
+    @Test
+    public void testGlobMatcher() {
+        final Predicate<String> matcher = FeatureTransfer.toMatcher("pay.*ment?");
+        assertTrue(matcher.test("pay.new.payment1"));
+        assertFalse(matcher.test("payXnewpayment1"));
+        assertFalse(matcher.test("pay.payment"));
+        assertTrue(FeatureTransfer.toMatcher(null)
+                .test("any"));
+    }
+
+    private static Feature feature(final String pid, final String id, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.pid       = pid;
+        feature.id        = id;
+        feature.isEnabled = isEnabled;
+        return feature;
+    }
+
+    private static Feature variant(final String pid, final String id, final Object value) {
+        final Feature feature = feature(pid, id, value != null);
+        feature.type  = INTEGER;
+        feature.value = value;
+        return feature;
+    }
+
+}
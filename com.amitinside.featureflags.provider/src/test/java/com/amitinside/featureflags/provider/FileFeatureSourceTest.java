@@ -0,0 +1,148 @@
+package com.amitinside.featureflags.provider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class FileFeatureSourceTest {
+
+    private final BlockingQueue<Set<String>> changes  = new LinkedBlockingQueue<>();
+
+    private final List<Exception>            failures = new CopyOnWriteArrayList<>();
+
+    private ExecutorService                  executor;
+
+    private Path                             directory;
+
+    @Before
+    public void setUp() throws IOException {
+        executor  = Executors.newSingleThreadExecutor();
+        directory = Files.createTempDirectory("source");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        for (final Path file : Files.newDirectoryStream(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testOnlyChangedKeysAreReported() throws Exception {
+        final Path              file   = write("features.properties", "a=true\nb = FALSE\nc=blue\n");
+        final FileFeatureSource source = new FileFeatureSource(file, Runnable::run, changes::add, failures::add);
+        source.reload();
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), changes.poll());
+        assertEquals(values("a", true, "b", false, "c", "blue"), source.getValues());
+
+        write("features.properties", "a=true\nb=true\nd=1\n");
+        source.reload();
+        assertEquals(new HashSet<>(Arrays.asList("b", "c", "d")), changes.poll());
+        assertEquals(values("a", true, "b", true, "d", "1"), source.getValues());
+
+        // rewriting the same values does not report anything
+        write("features.properties", "d=1\nb=true\na=true\n");
+        source.reload();
+        assertTrue(changes.isEmpty());
+
+        Files.delete(file);
+        source.reload();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "d")), changes.poll());
+        assertTrue(source.getValues()
+                .isEmpty());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final Path file = write("features.json", "{ \"a\": true, \"b\" : false, \"c\": \"bl\\u0075e\\n\", "
+                + "\"d\": 42, \"e\": -1.5e3, \"f\": null }");
+
+        assertEquals(values("a", true, "b", false, "c", "blue\n", "d", 42L, "e", -1500.0),
+                FileFeatureSource.parse(file));
+        assertEquals(Collections.emptyMap(), FileFeatureSource.parse(write("empty.json", " {} ")));
+    }
+
+    @Test
+    public void testMalformedFileRetainsValues() throws Exception {
+        final Path              file   = write("features.json", "{\"a\": true}");
+        final FileFeatureSource source = new FileFeatureSource(file, Runnable::run, changes::add, failures::add);
+        source.reload();
+        changes.clear();
+
+        for (final String content : Arrays.asList("{\"a\": false", "{\"a\": [false]}", "{\"a\": false} x",
+                "{a: false}", "{\"a\": \"\\u00\"}")) {
+            write("features.json", content);
+            source.reload();
+        }
+        assertEquals(5, failures.size());
+        assertTrue(changes.isEmpty());
+        assertEquals(values("a", true), source.getValues());
+    }
+
+    @Test
+    public void testChangesAreWatched() throws Exception {
+        final Path              file   = write("features.properties", "a=true\n");
+        final FileFeatureSource source = new FileFeatureSource(file, executor, changes::add, failures::add);
+        try {
+            source.start();
+            assertEquals(Collections.singleton("a"), changes.poll());
+
+            write("features.properties", "a=false\n");
+            awaitValues(source, values("a", false));
+
+            // files replaced by a rename are detected as well
+            final Path replacement = write("features.tmp", "a=false\nb=true\n");
+            Files.move(replacement, file, ATOMIC_MOVE);
+            awaitValues(source, values("a", false, "b", true));
+            assertTrue(changes.contains(Collections.singleton("b")));
+        } finally {
+            source.close();
+        }
+    }
+
+    private static void awaitValues(final FileFeatureSource source, final Map<String, Object> expected)
+            throws InterruptedException {
+        for (int i = 0; i < 100 && !expected.equals(source.getValues()); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(expected, source.getValues());
+    }
+
+    private Path write(final String name, final String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(UTF_8));
+    }
+
+    private static Map<String, Object> values(final Object... keysAndValues) {
+        final Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            values.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return values;
+    }
+
+}
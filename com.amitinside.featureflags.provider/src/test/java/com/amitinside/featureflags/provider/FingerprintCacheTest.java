@@ -0,0 +1,52 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class FingerprintCacheTest {
+
+    @Test
+    public void testDuplicatesAreDropped() {
+        final FingerprintCache cache = new FingerprintCache(1024);
+
+        assertTrue(cache.add("feature", "subject", true));
+        assertFalse(cache.add("feature", "subject", true));
+
+        // another subject, feature or value is not a duplicate
+        assertTrue(cache.add("feature", "other", true));
+        assertTrue(cache.add("other", "subject", true));
+        assertTrue(cache.add("feature", "subject", false));
+
+        // the concatenation of the identifiers is not ambiguous
+        assertTrue(cache.add("ab", "c", true));
+        assertTrue(cache.add("a", "bc", true));
+
+        cache.clear();
+        assertTrue(cache.add("feature", "subject", false));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        final FingerprintCache cache = new FingerprintCache(16);
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.add("feature", "subject" + i, true);
+        }
+        // the first exposures have been evicted by the later ones
+        int seenAgain = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.add("feature", "subject" + i, true)) {
+                seenAgain++;
+            }
+        }
+        assertTrue(seenAgain > 90);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNPEinAdd() {
+        new FingerprintCache(16).add("feature", null, true);
+    }
+
+}
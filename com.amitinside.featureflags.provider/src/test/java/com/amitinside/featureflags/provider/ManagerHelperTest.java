@@ -1,15 +1,35 @@
 package com.amitinside.featureflags.provider;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.osgi.service.metatype.AttributeDefinition.DOUBLE;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.ManagerHelper.KillSwitchPolicy;
+import com.amitinside.featureflags.provider.ManagerHelper.Schedule;
+import com.amitinside.featureflags.provider.ManagerHelper.TenantOverride;
+
 public final class ManagerHelperTest {
 
     @Test(expected = InvocationTargetException.class)
@@ -33,4 +53,205 @@ public final class ManagerHelperTest {
         assertEquals("a", list2.get(0));
     }
 
+    @Test
+    public void testToVariantValue() {
+        final Feature feature = new Feature();
+        feature.type = INTEGER;
+
+        assertEquals(5, ManagerHelper.toVariantValue(feature, "5"));
+        assertEquals(7, ManagerHelper.toVariantValue(feature, 7));
+        assertNull(ManagerHelper.toVariantValue(feature, "x"));
+        assertNull(ManagerHelper.toVariantValue(feature, true));
+
+        feature.type    = STRING;
+        feature.options = new String[] { "RED", "GREEN" };
+
+        assertEquals("RED", ManagerHelper.toVariantValue(feature, "RED"));
+        assertNull(ManagerHelper.toVariantValue(feature, "BLUE"));
+    }
+
+    @Test
+    public void testApplyConfiguredValue() {
+        final Feature feature = new Feature();
+        feature.type = DOUBLE;
+
+        ManagerHelper.applyConfiguredValue(feature, false);
+
+        assertFalse(feature.isEnabled);
+        assertNull(feature.value);
+
+        ManagerHelper.applyConfiguredValue(feature, 0.5D);
+
+        assertTrue(feature.isEnabled);
+        assertEquals(0.5D, feature.value);
+    }
+
+    @Test
+    public void testMergeFeatures() {
+        final Feature registered = feature("a", INTEGER, 5);
+        final Feature removed    = feature("b", INTEGER, 1);
+        final Feature declared   = feature("a", INTEGER, 5);
+        declared.prerequisites = Collections.singleton("c");
+        final List<Feature> existing = Arrays.asList(registered, removed);
+
+        List<Feature> merged = ManagerHelper.mergeFeatures(existing, Arrays.asList(declared), null);
+
+        assertEquals(1, merged.size());
+        assertSame(registered, merged.get(0));
+        assertEquals(Collections.singleton("c"), registered.prerequisites);
+
+        // the registered list is kept as long as neither the declaration nor the prerequisites change
+        final Feature redeclared = feature("a", INTEGER, 5);
+        redeclared.prerequisites = Collections.singleton("c");
+        assertSame(merged, ManagerHelper.mergeFeatures(merged, Arrays.asList(redeclared), null));
+        redeclared.prerequisites = Collections.singleton("d");
+        assertNotSame(merged, ManagerHelper.mergeFeatures(merged, Arrays.asList(redeclared), null));
+
+        // a changed type, option or default value replaces the registered feature
+        final Feature retyped = feature("a", LONG, 5L);
+        merged = ManagerHelper.mergeFeatures(Arrays.asList(registered), Arrays.asList(retyped),
+                Collections.singletonMap("a", 7));
+        assertSame(retyped, merged.get(0));
+        assertEquals(7L, retyped.value);
+
+        final Feature withOptions = feature("a", INTEGER, 5);
+        withOptions.options = new String[] { "5" };
+        merged              = ManagerHelper.mergeFeatures(Arrays.asList(registered), Arrays.asList(withOptions), null);
+        assertSame(withOptions, merged.get(0));
+
+        final Feature withDefault = feature("a", INTEGER, 6);
+        merged = ManagerHelper.mergeFeatures(Arrays.asList(registered), Arrays.asList(withDefault), null);
+        assertSame(withDefault, merged.get(0));
+    }
+
+    @Test
+    public void testToPrerequisites() {
+        final Set<String> featureIDs = ManagerHelper.toPrerequisites(new String[] { "a, b", "c", " " });
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), featureIDs);
+        assertTrue(ManagerHelper.toPrerequisites(null)
+                .isEmpty());
+    }
+
+    @Test
+    public void testToConfiguredPrerequisites() {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put("osgi.prerequisite.a", "b,c");
+        properties.put("osgi.prerequisite.d", new String[] { "e" });
+        properties.put("osgi.feature.a", true);
+
+        final Map<String, Set<String>> prerequisites = ManagerHelper.toConfiguredPrerequisites(properties);
+
+        assertEquals(2, prerequisites.size());
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), prerequisites.get("a"));
+        assertEquals(Collections.singleton("e"), prerequisites.get("d"));
+    }
+
+    @Test
+    public void testToSchedules() {
+        final List<Schedule> schedules = ManagerHelper.toSchedules("a", new String[] { "true@2018-01-01T00:00:00Z",
+                " FALSE @ 2018-01-02T00:00:00Z ", "true", "maybe@2018-01-01T00:00:00Z", "true@tomorrow" });
+
+        assertEquals(2, schedules.size());
+        assertTrue(schedules.get(0).isEnabled);
+        assertEquals(1514764800000L, schedules.get(0).time);
+        assertFalse(schedules.get(1).isEnabled);
+        assertEquals("false@2018-01-02T00:00:00Z", ManagerHelper.toScheduleEntry(schedules.get(1)));
+        assertEquals(1, ManagerHelper.toSchedules("a", "true@2018-01-01T00:00:00Z")
+                .size());
+        assertTrue(ManagerHelper.toSchedules("a", null)
+                .isEmpty());
+    }
+
+    @Test
+    public void testToConfiguredSchedules() {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put("osgi.schedule.a", Arrays.asList("true@2018-01-01T00:00:00Z", "false@2018-01-02T00:00:00Z"));
+        properties.put("osgi.schedule.b", "invalid");
+        properties.put("osgi.feature.a", true);
+
+        final Map<String, List<Schedule>> schedules = ManagerHelper.toConfiguredSchedules(properties);
+
+        assertEquals(1, schedules.size());
+        assertEquals(2, schedules.get("a")
+                .size());
+        assertEquals("a", schedules.get("a")
+                .get(0).featureID);
+    }
+
+    @Test
+    public void testToKillSwitchPolicy() {
+        final KillSwitchPolicy policy = ManagerHelper.toKillSwitchPolicy("a", " 5.5% / PT30S ");
+
+        assertEquals("a", policy.featureID);
+        assertEquals(5.5, policy.maxErrorRate, 0);
+        assertEquals(30_000L, policy.window);
+        assertEquals(10, ManagerHelper.toKillSwitchPolicy("a", "10/PT1M").maxErrorRate, 0);
+        assertNull(ManagerHelper.toKillSwitchPolicy("a", "5%"));
+        assertNull(ManagerHelper.toKillSwitchPolicy("a", "five%/PT30S"));
+        assertNull(ManagerHelper.toKillSwitchPolicy("a", "5%/30s"));
+        assertNull(ManagerHelper.toKillSwitchPolicy("a", "-1%/PT30S"));
+        assertNull(ManagerHelper.toKillSwitchPolicy("a", "5%/PT0S"));
+    }
+
+    @Test
+    public void testToConfiguredKillSwitches() {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put("osgi.killswitch.a", "5%/PT30S");
+        properties.put("osgi.killswitch.b", "invalid");
+        properties.put("osgi.killswitch.c", 5);
+        properties.put("osgi.feature.a", true);
+
+        final Map<String, KillSwitchPolicy> policies = ManagerHelper.toConfiguredKillSwitches(properties);
+
+        assertEquals(1, policies.size());
+        assertEquals(30_000L, policies.get("a").window);
+    }
+
+    @Test
+    public void testToTenantOverride() {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put("tenant.id", "t1");
+        properties.put("osgi.feature.a", true);
+        properties.put("osgi.feature.b", false);
+        properties.put("osgi.feature.c", 5);
+
+        final TenantOverride override = ManagerHelper.toTenantOverride(properties);
+
+        assertEquals("t1", override.tenantID);
+        assertEquals(2, override.features.size());
+        assertTrue(override.features.get("a"));
+        assertFalse(override.features.get("b"));
+
+        properties.remove("tenant.id");
+        assertNull(ManagerHelper.toTenantOverride(properties));
+        assertNull(ManagerHelper.toTenantOverride(null));
+    }
+
+    @Test
+    public void testToConfiguredFeatures() {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put("osgi.feature.a", true);
+        properties.put("osgi.feature.b", 5);
+        properties.put("osgi.feature.c", "RED");
+        properties.put("osgi.feature.d", new Object());
+        properties.put("e", true);
+
+        final Map<String, Object> configured = ManagerHelper.toConfiguredFeatures(properties);
+
+        assertEquals(3, configured.size());
+        assertEquals(true, configured.get("a"));
+        assertEquals(5, configured.get("b"));
+        assertEquals("RED", configured.get("c"));
+    }
+
+    private static Feature feature(final String id, final int type, final Object defaultValue) {
+        final Feature feature = new Feature();
+        feature.id           = id;
+        feature.type         = type;
+        feature.defaultValue = defaultValue;
+        feature.value        = defaultValue;
+        return feature;
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public final class MpscRingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedUp() {
+        assertEquals(1, new MpscRingBuffer<>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<>(8).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new MpscRingBuffer<>(0);
+    }
+
+    @Test
+    public void testOfferAndDrainInOrder() {
+        final MpscRingBuffer<Integer> buffer  = new MpscRingBuffer<>(4);
+        final List<Integer>           drained = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(3, buffer.drain(drained::add, 3));
+        assertEquals(1, buffer.size());
+
+        // the drained slots are reused
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        assertEquals(3, buffer.drain(drained::add, 10));
+        assertEquals(0, buffer.drain(drained::add, 10));
+        assertEquals(0, buffer.size());
+
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, drained);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNPEinOffer() {
+        new MpscRingBuffer<>(4).offer(null);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int                    producers = 4;
+        final int                    count     = 100_000;
+        final MpscRingBuffer<long[]> buffer    = new MpscRingBuffer<>(1024);
+        final ExecutorService        executor  = Executors.newFixedThreadPool(producers);
+        final CountDownLatch         start     = new CountDownLatch(1);
+        final List<Future<Integer>>  futures   = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long producer = p;
+            futures.add(executor.submit(() -> {
+                start.await();
+                int rejected = 0;
+                for (long i = 0; i < count; i++) {
+                    while (!buffer.offer(new long[] { producer, i })) {
+                        rejected++;
+                        Thread.yield();
+                    }
+                }
+                return rejected;
+            }));
+        }
+        start.countDown();
+
+        // the elements of every producer are consumed in the order they have been offered
+        final long[] next  = new long[producers];
+        int          total = 0;
+        while (total < producers * count) {
+            total += buffer.drain(e -> assertEquals(next[(int) e[0]]++, e[1]), 256);
+        }
+        for (final Future<Integer> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        for (final long n : next) {
+            assertEquals(count, n);
+        }
+        assertEquals(0, buffer.size());
+    }
+
+}
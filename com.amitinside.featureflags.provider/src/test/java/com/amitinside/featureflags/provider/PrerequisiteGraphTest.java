@@ -0,0 +1,106 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public final class PrerequisiteGraphTest {
+
+    @Test
+    public void testEffectiveStatePropagation() {
+        final PrerequisiteGraph graph = new PrerequisiteGraph();
+        graph.setPrerequisites("b", set("a"));
+        graph.setPrerequisites("c", set("b"));
+        graph.setEnabled("b", true);
+        graph.setEnabled("c", true);
+
+        assertFalse(graph.isEffective("b"));
+        assertFalse(graph.isEffective("c"));
+
+        graph.setEnabled("a", true);
+
+        assertTrue(graph.isEffective("a"));
+        assertTrue(graph.isEffective("b"));
+        assertTrue(graph.isEffective("c"));
+
+        graph.setEnabled("a", false);
+
+        assertFalse(graph.isEffective("b"));
+        assertFalse(graph.isEffective("c"));
+    }
+
+    @Test
+    public void testPrerequisitesChange() {
+        final PrerequisiteGraph graph = new PrerequisiteGraph();
+        graph.setEnabled("a", true);
+        graph.setEnabled("b", true);
+        graph.setPrerequisites("b", set("x"));
+
+        assertFalse(graph.isEffective("b"));
+
+        graph.setPrerequisites("b", set("a"));
+
+        assertTrue(graph.isEffective("b"));
+
+        graph.setPrerequisites("b", Collections.emptySet());
+        graph.setEnabled("a", false);
+
+        assertTrue(graph.isEffective("b"));
+        assertTrue(graph.getPrerequisites("b").isEmpty());
+    }
+
+    @Test
+    public void testCycleIsRejected() {
+        final PrerequisiteGraph graph = new PrerequisiteGraph();
+        graph.setPrerequisites("b", set("a"));
+        graph.setPrerequisites("c", set("b"));
+        graph.setEnabled("a", true);
+        graph.setEnabled("b", true);
+        graph.setEnabled("c", true);
+
+        try {
+            graph.setPrerequisites("a", set("c"));
+            assertTrue(false);
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+        assertTrue(graph.isEffective("a"));
+        assertTrue(graph.getPrerequisites("a").isEmpty());
+        // the same rejected prerequisites are ignored subsequently
+        assertFalse(graph.setPrerequisites("a", set("c")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelfPrerequisiteIsRejected() {
+        new PrerequisiteGraph().setPrerequisites("a", set("a"));
+    }
+
+    @Test
+    public void testRetain() {
+        final PrerequisiteGraph graph = new PrerequisiteGraph();
+        graph.setPrerequisites("b", set("a"));
+        graph.setEnabled("a", true);
+        graph.setEnabled("b", true);
+
+        assertTrue(graph.isEffective("b"));
+
+        graph.retain(set("b"));
+
+        assertFalse(graph.isEffective("a"));
+        assertFalse(graph.isEffective("b"));
+        assertTrue(graph.getPrerequisites("b")
+                .contains("a"));
+    }
+
+    private static Set<String> set(final String... featureIDs) {
+        return new HashSet<>(Arrays.asList(featureIDs));
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.osgi.service.metatype.AttributeDefinition.DOUBLE;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.LONG;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.api.exposure.ExposureDTO;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+import com.amitinside.featureflags.provider.ManagerHelper.TenantOverride;
+
+public final class RegistrySnapshotTest {
+
+    private enum Color {
+        RED,
+        GREEN
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        assertEquals(0, RegistrySnapshot.EMPTY.getGeneration());
+        assertFalse(RegistrySnapshot.EMPTY.isEnabled("a"));
+        assertTrue(RegistrySnapshot.EMPTY.getEnabledFeatureIDs().isEmpty());
+    }
+
+    @Test
+    public void testSnapshotOfFeatures() {
+        final Map<String, List<Feature>> features = new HashMap<>();
+        features.put("pid1", Arrays.asList(feature("a", true), feature("b", false)));
+        features.put("pid2", Arrays.asList(feature("b", true), feature("c", false)));
+
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(5, features.values());
+
+        assertEquals(5, snapshot.getGeneration());
+        assertTrue(snapshot.isEnabled("a"));
+        assertTrue(snapshot.isEnabled("b"));
+        assertFalse(snapshot.isEnabled("c"));
+        assertFalse(snapshot.isEnabled("d"));
+        assertEquals(2, snapshot.getEnabledFeatureIDs().size());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterUpdates() {
+        final Feature          feature  = feature("a", true);
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1, Collections.singletonList(Arrays.asList(feature)));
+
+        feature.isEnabled = false;
+
+        assertTrue(snapshot.isEnabled("a"));
+    }
+
+    @Test
+    public void testTypedVariants() {
+        final Feature intVariant    = variant("i", INTEGER, 42);
+        final Feature longVariant   = variant("l", LONG, 42L);
+        final Feature doubleVariant = variant("d", DOUBLE, 4.2D);
+        final Feature stringVariant = variant("s", STRING, "GREEN");
+        final Feature unsetVariant  = variant("u", INTEGER, null);
+
+        final List<Feature>    features = Arrays.asList(intVariant, longVariant, doubleVariant, stringVariant,
+                unsetVariant, feature("b", true));
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1, Collections.singletonList(features));
+
+        assertEquals(42, snapshot.getInt("i", 0));
+        assertEquals(42L, snapshot.getLong("l", 0L));
+        assertEquals(4.2D, snapshot.getDouble("d", 0D), 0D);
+        assertEquals("GREEN", snapshot.getString("s", null));
+        assertEquals(Color.GREEN, snapshot.getEnum("s", Color.RED));
+        assertTrue(snapshot.isEnabled("i"));
+
+        // unknown, unset or of a different type
+        assertEquals(-1, snapshot.getInt("x", -1));
+        assertEquals(-1, snapshot.getInt("u", -1));
+        assertFalse(snapshot.isEnabled("u"));
+        assertEquals(-1, snapshot.getInt("l", -1));
+        assertEquals(-1L, snapshot.getLong("b", -1L));
+        assertEquals(Color.RED, snapshot.getEnum("i", Color.RED));
+
+        assertEquals(42, snapshot.getValue("i"));
+        assertEquals("GREEN", snapshot.getValue("s"));
+        assertEquals(true, snapshot.getValue("b"));
+        assertEquals(null, snapshot.getValue("u"));
+        assertEquals(null, snapshot.getValue("x"));
+    }
+
+    @Test
+    public void testEnumVariantWithUnknownConstant() {
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1,
+                Collections.singletonList(Arrays.asList(variant("s", STRING, "BLUE"))));
+
+        assertEquals(Color.RED, snapshot.getEnum("s", Color.RED));
+    }
+
+    @Test
+    public void testTenantOverrides() {
+        final List<Feature>  features = Arrays.asList(feature("a", true), feature("b", false), feature("c", true));
+        final TenantOverride override = tenant("t1");
+        override.features.put("a", false);
+        override.features.put("b", true);
+        override.features.put("x", true);
+
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1, Collections.singletonList(features), null,
+                Collections.singletonList(override));
+
+        assertFalse(snapshot.isEnabled("a", "t1"));
+        assertTrue(snapshot.isEnabled("b", "t1"));
+        assertTrue(snapshot.isEnabled("c", "t1"));
+        assertFalse(snapshot.isEnabled("x", "t1"));
+        assertTrue(snapshot.isEnabled("a", "t2"));
+        assertFalse(snapshot.isEnabled("b", "t2"));
+        assertTrue(snapshot.isEnabled("a", null));
+        assertTrue(snapshot.isEnabled("a"));
+    }
+
+    @Test
+    public void testTenantWithoutOverrides() {
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1,
+                Collections.singletonList(Arrays.asList(feature("a", true))));
+
+        assertTrue(snapshot.isEnabled("a", "t1"));
+        assertFalse(snapshot.isEnabled("b", "t1"));
+    }
+
+    @Test
+    public void testTenantChecksAreRecordedAsExposures() {
+        final List<ExposureDTO> exposures = new ArrayList<>();
+        final ExposurePipeline  pipeline  = new ExposurePipeline(16, 16, Collections.singletonList(exposures::addAll),
+                Clock.systemUTC(), mock(ScheduledExecutorService.class), 1000, e -> {
+                });
+        final TenantOverride    override  = tenant("t1");
+        override.features.put("a", false);
+
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1,
+                Collections.singletonList(Arrays.asList(feature("a", true))), null,
+                Collections.singletonList(override), pipeline, null);
+        snapshot.isEnabled("a", "t1");
+        snapshot.isEnabled("a", "t2");
+        snapshot.isEnabled("a", null);
+        snapshot.isEnabled("a");
+        snapshot.isEnabled("x", "t1");
+        pipeline.close();
+
+        assertEquals(2, exposures.size());
+        assertEquals("t1", exposures.get(0).subjectID);
+        assertEquals(false, exposures.get(0).value);
+        assertEquals("t2", exposures.get(1).subjectID);
+        assertEquals(true, exposures.get(1).value);
+    }
+
+    @Test
+    public void testReadsArePassedToActiveTracer() {
+        final FeatureTracer    tracer   = new FeatureTracer(16);
+        final List<Feature>    features = Arrays.asList(feature("a", true), variant("i", INTEGER, 7),
+                variant("s", STRING, "blue"));
+        final RegistrySnapshot snapshot = RegistrySnapshot.of(1, Collections.singletonList(features), null,
+                Collections.emptyList(), null, tracer);
+
+        snapshot.isEnabled("a");
+        assertTrue(tracer.getTraces(null)
+                .isEmpty());
+
+        tracer.setSamplingRate("a", 1);
+        tracer.setSamplingRate("i", 1);
+        tracer.setSamplingRate("s", 1);
+        snapshot.isEnabled("a");
+        snapshot.isEnabled("a", "t1");
+        snapshot.getInt("i", 0);
+        snapshot.getEnum("s", Color.RED);
+        snapshot.isEnabled("b");
+        // internal and administrative reads are not traced
+        assertTrue(snapshot.isEffectivelyEnabled("a"));
+        assertEquals(7, snapshot.getValue("i"));
+
+        final List<FeatureTracer.Trace> traces = tracer.getTraces(null);
+        assertEquals(4, traces.size());
+        assertEquals(true, traces.get(0).result);
+        assertEquals("t1", traces.get(1).tenantID);
+        assertEquals(7, traces.get(2).result);
+        assertEquals("blue", traces.get(3).result);
+        // the caller is the code evaluating the feature
+        assertTrue(traces.get(0).caller.startsWith(RegistrySnapshotTest.class.getName()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullFeatureID() {
+        RegistrySnapshot.EMPTY.isEnabled(null);
+    }
+
+    private static Feature variant(final String id, final int type, final Object value) {
+        final Feature feature = new Feature();
+        feature.id        = id;
+        feature.type      = type;
+        feature.value     = value;
+        feature.isEnabled = value != null;
+        return feature;
+    }
+
+    private static TenantOverride tenant(final String tenantID) {
+        final TenantOverride override = new TenantOverride();
+        override.tenantID = tenantID;
+        override.features = new HashMap<>();
+        return override;
+    }
+
+    private static Feature feature(final String id, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.id        = id;
+        feature.isEnabled = isEnabled;
+        return feature;
+    }
+
+}
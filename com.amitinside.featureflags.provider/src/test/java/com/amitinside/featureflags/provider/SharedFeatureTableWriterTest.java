@@ -0,0 +1,179 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amitinside.featureflags.api.shared.SharedFeatureTable;
+import com.amitinside.featureflags.api.shared.SharedFeatureTableReader;
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+public final class SharedFeatureTableWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadWrittenStates() throws IOException {
+        final Path table = folder.getRoot()
+                .toPath()
+                .resolve("features");
+
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 16)) {
+            final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+            assertFalse(reader.contains("a"));
+
+            assertEquals(0,
+                    writer.write(snapshot(3, feature("b", false), feature("a", true), feature("\u00e4", true))));
+
+            assertEquals(3, reader.getGeneration());
+            assertTrue(reader.isEnabled("a"));
+            assertFalse(reader.isEnabled("b"));
+            assertTrue(reader.contains("b"));
+            assertTrue(reader.isEnabled("\u00e4"));
+            assertFalse(reader.contains("c"));
+
+            writer.write(snapshot(4, feature("b", true)));
+
+            assertEquals(4, reader.getGeneration());
+            assertFalse(reader.contains("a"));
+            assertTrue(reader.isEnabled("b"));
+        }
+    }
+
+    @Test
+    public void testLookupAmongManyFeatures() throws IOException {
+        final Path          table    = folder.newFile()
+                .toPath();
+        final List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            features.add(feature("feature" + i, i % 3 == 0));
+        }
+
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 1000)) {
+            writer.write(RegistrySnapshot.of(1, Collections.singletonList(features)));
+        }
+        final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 == 0, reader.isEnabled("feature" + i));
+            assertTrue(reader.contains("feature" + i));
+        }
+        assertFalse(reader.contains("feature1000"));
+    }
+
+    @Test
+    public void testFeaturesNotExported() throws IOException {
+        final Path   table  = folder.newFile()
+                .toPath();
+        final char[] longID = new char[SharedFeatureTable.MAX_ID_LENGTH + 1];
+        Arrays.fill(longID, 'x');
+
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 2)) {
+            assertEquals(2, writer.write(snapshot(1, feature("a", true), feature("b", true), feature("c", true),
+                    feature(new String(longID), true))));
+        }
+        final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+        assertTrue(reader.isEnabled("a"));
+        assertTrue(reader.isEnabled("b"));
+        assertFalse(reader.contains("c"));
+        assertFalse(reader.contains(new String(longID)));
+    }
+
+    @Test
+    public void testExistingTableIsTakenOver() throws IOException {
+        final Path table = folder.newFile()
+                .toPath();
+
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 4)) {
+            writer.write(snapshot(1, feature("a", true)));
+        }
+        final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 4)) {
+            // the states are retained until the next write
+            assertTrue(reader.isEnabled("a"));
+            writer.write(snapshot(1, feature("a", false)));
+            assertFalse(reader.isEnabled("a"));
+        }
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 8)) {
+            assertEquals(SharedFeatureTable.sizeOf(8), Files.size(table));
+            assertFalse(SharedFeatureTableReader.open(table)
+                    .contains("a"));
+
+            // a reader of the replaced table maps the new one
+            assertFalse(reader.contains("a"));
+            writer.write(snapshot(2, feature("a", true), feature("b", true)));
+            assertTrue(reader.isEnabled("b"));
+            assertEquals(2, reader.getGeneration());
+        }
+    }
+
+    @Test
+    public void testConsistentReadsWhileWriting() throws Exception {
+        final Path          table   = folder.newFile()
+                .toPath();
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        try (SharedFeatureTableWriter writer = new SharedFeatureTableWriter(table, 4)) {
+            writer.write(snapshot(0, feature("a", true), feature("b", true)));
+            final Thread thread = new Thread(() -> {
+                for (int i = 1; running.get(); i++) {
+                    // both features are always written with the same state
+                    final boolean isEnabled = i % 2 == 0;
+                    writer.write(snapshot(i, feature("a", isEnabled), feature("b", isEnabled), feature("c", true)));
+                    writer.write(snapshot(i, feature("b", isEnabled), feature("a", isEnabled)));
+                }
+            });
+            thread.start();
+            try {
+                final SharedFeatureTableReader reader = SharedFeatureTableReader.open(table);
+                for (int i = 0; i < 100_000; i++) {
+                    assertTrue(reader.contains("a"));
+                    assertTrue(reader.contains("b"));
+                }
+            } finally {
+                running.set(false);
+                thread.join();
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenInvalidTable() throws IOException {
+        final Path table = folder.newFile()
+                .toPath();
+        Files.write(table, new byte[SharedFeatureTable.HEADER_SIZE]);
+
+        SharedFeatureTableReader.open(table);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinCapacity() throws IOException {
+        new SharedFeatureTableWriter(folder.newFile()
+                .toPath(), 0);
+    }
+
+    private static RegistrySnapshot snapshot(final long generation, final Feature... features) {
+        return RegistrySnapshot.of(generation, Collections.singletonList(Arrays.asList(features)));
+    }
+
+    private static Feature feature(final String id, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.id        = id;
+        feature.isEnabled = isEnabled;
+        return feature;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.osgi.service.metatype.AttributeDefinition.BOOLEAN;
+import static org.osgi.service.metatype.AttributeDefinition.INTEGER;
+import static org.osgi.service.metatype.AttributeDefinition.STRING;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amitinside.featureflags.provider.ManagerHelper.Feature;
+
+public final class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        final Path                file     = folder.getRoot()
+                .toPath()
+                .resolve("features.snapshot");
+        final Feature             prereq   = feature("a", "prereq", false);
+        final Feature             gated    = feature("a", "gated", true);
+        final Feature             variant  = variant("b", "color", STRING, "GREEN");
+        final Feature             unset    = variant("b", "limit", INTEGER, null);
+        final List<List<Feature>> features = Arrays.asList(Arrays.asList(prereq, gated),
+                Arrays.asList(variant, unset));
+        final PrerequisiteGraph   graph    = new PrerequisiteGraph();
+        graph.setPrerequisites("gated", Collections.singleton("prereq"));
+        graph.setEnabled("prereq", false);
+        graph.setEnabled("gated", true);
+        final RegistrySnapshot  snapshot = RegistrySnapshot.of(1, features, graph, Collections.emptyList());
+        final List<IOException> failures = new ArrayList<>();
+        final SnapshotStore     store    = new SnapshotStore(file, () -> features, () -> snapshot, Runnable::run,
+                failures::add);
+
+        assertTrue(store.load()
+                .isEmpty());
+        store.requestSave();
+        assertTrue(failures.isEmpty());
+
+        final Map<String, List<Feature>> restored = new SnapshotStore(file, Collections::emptyList,
+                () -> RegistrySnapshot.EMPTY, Runnable::run, failures::add).load();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(restored.keySet()));
+        // the configured state is restored together with the prerequisites
+        assertEquals(2, restored.get("a")
+                .size());
+        assertFalse(restored.get("a")
+                .get(0).isEnabled);
+        assertTrue(restored.get("a")
+                .get(0).prerequisites.isEmpty());
+        assertTrue(restored.get("a")
+                .get(1).isEnabled);
+        assertEquals(BOOLEAN, restored.get("a")
+                .get(1).type);
+        assertEquals(Collections.singleton("prereq"), restored.get("a")
+                .get(1).prerequisites);
+        // the variant without a value is skipped
+        assertEquals(1, restored.get("b")
+                .size());
+        assertEquals(STRING, restored.get("b")
+                .get(0).type);
+        assertEquals("GREEN", restored.get("b")
+                .get(0).value);
+        assertTrue(restored.get("b")
+                .get(0).isEnabled);
+    }
+
+    @Test
+    public void testPendingSavesAreCoalesced() throws Exception {
+        final Path                              file     = folder.getRoot()
+                .toPath()
+                .resolve("features.snapshot");
+        final List<Runnable>                    tasks    = new CopyOnWriteArrayList<>();
+        final List<List<Feature>>               features = new CopyOnWriteArrayList<>();
+        final AtomicReference<RegistrySnapshot> snapshot = new AtomicReference<>(RegistrySnapshot.EMPTY);
+        final SnapshotStore                     store    = new SnapshotStore(file, () -> features, snapshot::get,
+                tasks::add, SnapshotStoreTest::fail);
+
+        store.requestSave();
+        store.requestSave();
+        assertEquals(1, tasks.size());
+
+        features.add(Collections.singletonList(feature("a", "f1", true)));
+        snapshot.set(RegistrySnapshot.of(1, features));
+        tasks.get(0)
+                .run();
+        assertEquals(1, store.load()
+                .size());
+
+        // the features removed after closing are not saved
+        store.close();
+        features.clear();
+        snapshot.set(RegistrySnapshot.of(2, features));
+        store.requestSave();
+        tasks.get(tasks.size() - 1)
+                .run();
+        assertEquals(1, store.load()
+                .size());
+    }
+
+    @Test
+    public void testCloseSavesLatestGeneration() throws Exception {
+        final Path                      file     = folder.getRoot()
+                .toPath()
+                .resolve("features.snapshot");
+        final Collection<List<Feature>> features = Collections.singletonList(
+                Collections.singletonList(feature("a", "f1", true)));
+        final SnapshotStore             store    = new SnapshotStore(file, () -> features,
+                () -> RegistrySnapshot.of(1, features), r -> {
+                    // the requested save never runs
+                }, SnapshotStoreTest::fail);
+
+        store.requestSave();
+        assertFalse(Files.exists(file));
+        store.close();
+        assertTrue(store.load()
+                .get("a")
+                .get(0).isEnabled);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedFile() throws Exception {
+        final Path file = folder.newFile("features.snapshot")
+                .toPath();
+        Files.write(file, new byte[] { 'F', 'F', 'X', 1, 42 });
+        new SnapshotStore(file, Collections::emptyList, () -> RegistrySnapshot.EMPTY, Runnable::run,
+                SnapshotStoreTest::fail).load();
+    }
+
+    private static void fail(final IOException e) {
+        throw new AssertionError(e);
+    }
+
+    private static Feature feature(final String pid, final String id, final boolean isEnabled) {
+        final Feature feature = new Feature();
+        feature.pid       = pid;
+        feature.id        = id;
+        feature.isEnabled = isEnabled;
+        return feature;
+    }
+
+    private static Feature variant(final String pid, final String id, final int type, final Object value) {
+        final Feature feature = feature(pid, id, value != null);
+        feature.type  = type;
+        feature.value = value;
+        return feature;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.provider.TimerWheel.Timeout;
+
+public final class TimerWheelTest {
+
+    @Test
+    public void testExpiry() {
+        final TimerWheel<String> wheel   = new TimerWheel<>(10, 1000);
+        final List<String>       expired = new ArrayList<>();
+
+        wheel.schedule("a", 1050);
+        wheel.schedule("b", 1055);
+        wheel.schedule("c", 2000);
+        assertEquals(3, wheel.size());
+
+        wheel.advance(1050, expired::add);
+        assertEquals(Collections.singletonList("a"), expired);
+
+        // never expires before its deadline
+        wheel.advance(1059, expired::add);
+        assertEquals(Collections.singletonList("a"), expired);
+
+        wheel.advance(1060, expired::add);
+        assertEquals(Arrays.asList("a", "b"), expired);
+
+        wheel.advance(5000, expired::add);
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDeadlineInThePast() {
+        final TimerWheel<String> wheel   = new TimerWheel<>(10, 1000);
+        final List<String>       expired = new ArrayList<>();
+
+        wheel.schedule("a", 0);
+        wheel.advance(1000, expired::add);
+
+        assertEquals(Collections.singletonList("a"), expired);
+    }
+
+    @Test
+    public void testSameTickInScheduleOrder() {
+        final TimerWheel<String> wheel   = new TimerWheel<>(1000, 0);
+        final List<String>       expired = new ArrayList<>();
+
+        wheel.schedule("a", 100_000);
+        wheel.schedule("b", 99_500);
+        wheel.schedule("c", 100_000);
+        wheel.advance(100_000, expired::add);
+
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+    }
+
+    @Test
+    public void testCancel() {
+        final TimerWheel<String> wheel   = new TimerWheel<>(10, 0);
+        final List<String>       expired = new ArrayList<>();
+
+        final Timeout<String> timeout = wheel.schedule("a", 100_000);
+        wheel.schedule("b", 100_000);
+
+        assertTrue(timeout.isPending());
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+        assertFalse(timeout.isPending());
+
+        wheel.advance(100_000, expired::add);
+        assertEquals(Collections.singletonList("b"), expired);
+    }
+
+    @Test
+    public void testDeadlineBeyondRange() {
+        final TimerWheel<String> wheel    = new TimerWheel<>(1, 0);
+        final List<String>       expired  = new ArrayList<>();
+        final long               deadline = 3L << 24;
+
+        wheel.schedule("a", deadline);
+        wheel.advance(deadline - 1, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(deadline, expired::add);
+        assertEquals(Collections.singletonList("a"), expired);
+    }
+
+    @Test
+    public void testConsumerSchedulesTimeouts() {
+        final TimerWheel<String> wheel   = new TimerWheel<>(1, 0);
+        final List<String>       expired = new ArrayList<>();
+
+        wheel.schedule("a", 10);
+        wheel.advance(10, task -> {
+            expired.add(task);
+            // lands in the slot of the expiring tick after a revolution
+            wheel.schedule("b", 74);
+            wheel.schedule("c", 0);
+        });
+        assertEquals(Collections.singletonList("a"), expired);
+
+        wheel.advance(73, expired::add);
+        assertEquals(Arrays.asList("a", "c"), expired);
+
+        wheel.advance(74, expired::add);
+        assertEquals(Arrays.asList("a", "c", "b"), expired);
+    }
+
+    @Test
+    public void testAgainstSortedDeadlines() {
+        final Random              random    = new Random(42);
+        final TimerWheel<Long>    wheel     = new TimerWheel<>(1, 0);
+        final List<Long>          deadlines = new ArrayList<>();
+        final List<Long>          expired   = new ArrayList<>();
+        final List<Timeout<Long>> timeouts  = new ArrayList<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            final long deadline = random.nextInt(1 << 20);
+            deadlines.add(deadline);
+            timeouts.add(wheel.schedule(deadline, deadline));
+        }
+        for (int i = 0; i < 1000; i++) {
+            final Timeout<Long> timeout = timeouts.get(i * 10);
+            wheel.cancel(timeout);
+            deadlines.remove(timeout.getTask());
+        }
+        long now = 0;
+        while (now < 1 << 20) {
+            now += random.nextInt(5000);
+            final long time = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline <= time);
+                expired.add(deadline);
+            });
+            assertEquals(deadlines.stream()
+                    .filter(d -> d <= time)
+                    .count(), expired.size());
+        }
+        Collections.sort(deadlines);
+        assertEquals(deadlines, expired);
+        assertEquals(0, wheel.size());
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.amitinside.featureflags.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.util.promise.Promise;
+
+public final class UpdateDebouncerTest {
+
+    private ScheduledExecutorService executor;
+    private List<String>             writes;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writes   = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRapidUpdatesAreCoalesced() throws Exception {
+        final UpdateDebouncer debouncer = new UpdateDebouncer(200, executor,
+                (id, isEnabled, version, source) -> writes.add(id + "=" + isEnabled + "@" + version + "/" + source));
+
+        final Promise<Void> p1 = debouncer.submit("a", true, 1, "api");
+        final Promise<Void> p2 = debouncer.submit("a", false, 2, "api");
+        final Promise<Void> p3 = debouncer.submit("a", true, 3, "schedule");
+        final Promise<Void> p4 = debouncer.submit("b", false, 4, "api");
+
+        assertFalse(p1.isDone());
+
+        p1.getValue();
+        p2.getValue();
+        p3.getValue();
+        p4.getValue();
+
+        assertEquals(2, writes.size());
+        assertTrue(writes.contains("a=true@3/schedule"));
+        assertTrue(writes.contains("b=false@4/api"));
+    }
+
+    @Test
+    public void testUpdatesAfterWindowAreWrittenSeparately() throws Exception {
+        final UpdateDebouncer debouncer = new UpdateDebouncer(50, executor,
+                (id, isEnabled, version, source) -> writes.add(id + "=" + isEnabled));
+
+        debouncer.submit("a", true, 1, "test")
+                .getValue();
+        debouncer.submit("a", false, 2, "test")
+                .getValue();
+
+        assertEquals(2, writes.size());
+        assertEquals("a=false", writes.get(1));
+    }
+
+    @Test
+    public void testFailedWriteFailsAllCoalescedUpdates() throws Exception {
+        final IOException            failure   = new IOException();
+        final UpdateDebouncer.Writer writer    = (id, isEnabled, version, source) -> {
+                                                   throw failure;
+                                               };
+        final UpdateDebouncer        debouncer = new UpdateDebouncer(100, executor, writer);
+
+        final Promise<Void> p1 = debouncer.submit("a", true, 1, "test");
+        final Promise<Void> p2 = debouncer.submit("a", false, 2, "test");
+
+        assertSame(failure, p1.getFailure());
+        assertSame(failure, p2.getFailure());
+    }
+
+    @Test
+    public void testFlushWritesPendingUpdatesImmediately() throws Exception {
+        final UpdateDebouncer debouncer = new UpdateDebouncer(60000, executor,
+                (id, isEnabled, version, source) -> writes.add(id + "=" + isEnabled));
+
+        final Promise<Void> promise = debouncer.submit("a", true, 1, "test");
+        debouncer.flush();
+
+        assertTrue(promise.isDone());
+        assertEquals(1, writes.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        new UpdateDebouncer(0, executor, (id, isEnabled, version, source) -> writes.add(id));
+    }
+
+}
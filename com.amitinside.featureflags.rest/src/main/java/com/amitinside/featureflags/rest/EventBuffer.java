@@ -0,0 +1,111 @@
+package com.amitinside.featureflags.rest;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of encoded events shared by all subscribers of a stream.
+ *
+ * <p>
+ * Every event is encoded once and appended by a single publisher. The
+ * subscribers do not own any queue but only their sequence of the next event
+ * to read, so that the memory consumption does not grow with the number of
+ * subscribers. Reading does not lock: the slot of an event is reused as soon
+ * as the ring wraps around, which a subscriber lagging behind by more than
+ * the capacity detects by the sequence of the slot.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class EventBuffer {
+
+    /** The slots of the ring */
+    private final AtomicReferenceArray<Event> slots;
+
+    /** The sequence of the next event to publish */
+    private volatile long                     head;
+
+    /**
+     * An encoded event
+     */
+    public static final class Event {
+        /** The sequence of the event in the buffer ({@code -1} if not buffered) */
+        public final long   sequence;
+        /** The generation the event has been encoded at */
+        public final long   generation;
+        /** The encoded event */
+        public final byte[] data;
+
+        /**
+         * Constructor
+         *
+         * @param sequence the sequence of the event in the buffer
+         * @param generation the generation the event has been encoded at
+         * @param data the encoded event
+         *
+         * @throws NullPointerException if {@code data} is {@code null}
+         */
+        public Event(final long sequence, final long generation, final byte[] data) {
+            this.sequence   = sequence;
+            this.generation = generation;
+            this.data       = requireNonNull(data, "Event data cannot be null");
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity the maximum number of buffered events
+     *
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public EventBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Appends an event. Must not be invoked concurrently.
+     *
+     * @param generation the generation the event has been encoded at
+     * @param data the encoded event
+     * @return the appended event
+     *
+     * @throws NullPointerException if {@code data} is {@code null}
+     */
+    public Event publish(final long generation, final byte[] data) {
+        final long  sequence = head;
+        final Event event    = new Event(sequence, generation, data);
+        slots.set((int) (sequence % slots.length()), event);
+        head = sequence + 1;
+        return event;
+    }
+
+    /**
+     * Returns the sequence of the next event to be published
+     *
+     * @return the sequence
+     */
+    public long getHead() {
+        return head;
+    }
+
+    /**
+     * Returns the event with the specified sequence
+     *
+     * @param sequence the sequence of the event
+     * @return the event or {@code null} if the event has not been published yet
+     *         or has already been overwritten
+     */
+    public Event get(final long sequence) {
+        if (sequence < 0 || sequence >= head) {
+            return null;
+        }
+        final Event event = slots.get((int) (sequence % slots.length()));
+        return event != null && event.sequence == sequence ? event : null;
+    }
+
+}
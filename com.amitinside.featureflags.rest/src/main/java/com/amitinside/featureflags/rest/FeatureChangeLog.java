@@ -0,0 +1,193 @@
+package com.amitinside.featureflags.rest;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+
+/**
+ * Keeps track of the generations at which the exposed features changed.
+ *
+ * <p>
+ * The log is synchronized with the {@link FeatureManager} lazily: the
+ * features are only compared to their last known states if the generation of
+ * the registry has advanced since the last synchronization. Every
+ * synchronization which detects changes advances the generation of the log
+ * and records it for all added, updated and removed features, so that the
+ * changes since any generation of the log can be determined. The features are
+ * read after the generation of the registry, so that a change which is missed
+ * by a synchronization always advances the registry generation afterwards.
+ * </p>
+ *
+ * <p>
+ * Removed features are retained as tombstones, so that the history of the
+ * log is always complete.
+ * </p>
+ *
+ * <p>
+ * The generations are only meaningful for the log which issued them, since
+ * every log starts again with the first generation (e.g. after a restart).
+ * The generations are therefore handed out to clients as tokens prefixed with
+ * the random epoch of the log, so that tokens of another log are recognized
+ * instead of being resolved against an unrelated history.
+ * </p>
+ *
+ * @ThreadSafe
+ */
+public final class FeatureChangeLog {
+
+    /** The separator of the epoch and the generation of a token */
+    private static final char        TOKEN_SEPARATOR    = '-';
+
+    /** Data container -> Key: Feature ID Value: Last known state */
+    private final Map<String, Entry> entries            = new HashMap<>();
+
+    /** The epoch distinguishing the generations of the log from those of other logs */
+    private final String             epoch              = Long.toHexString(ThreadLocalRandom.current()
+            .nextLong());
+
+    /** The generation of the log (guarded by {@code entries}) */
+    private long                     generation;
+
+    /** The registry generation of the last synchronization (guarded by {@code entries}) */
+    private long                     registryGeneration = -1;
+
+    private static final class Entry {
+        /** The generation of the last change */
+        private long        generation;
+        /** The distinct states of all features with the same ID ({@code null} if removed) */
+        private Set<Object> state;
+    }
+
+    /**
+     * Synchronizes the log with the specified feature manager
+     *
+     * @param featureManager the feature manager
+     * @return the generation of the log
+     *
+     * @throws NullPointerException if {@code featureManager} is {@code null}
+     */
+    public long sync(final FeatureManager featureManager) {
+        requireNonNull(featureManager, "Feature Manager cannot be null");
+
+        synchronized (entries) {
+            final long current = featureManager.snapshot()
+                    .getGeneration();
+            if (current == registryGeneration) {
+                return generation;
+            }
+            final Map<String, Set<Object>> states = new HashMap<>();
+            featureManager.getFeatures()
+                    .forEach(f -> states.computeIfAbsent(f.id, k -> new HashSet<>())
+                            .add(stateOf(f)));
+            final long next    = generation + 1;
+            boolean    changed = false;
+            for (final Map.Entry<String, Set<Object>> state : states.entrySet()) {
+                final Entry entry = entries.computeIfAbsent(state.getKey(), k -> new Entry());
+                if (!state.getValue()
+                        .equals(entry.state)) {
+                    entry.state      = state.getValue();
+                    entry.generation = next;
+                    changed          = true;
+                }
+            }
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().state != null && !states.containsKey(entry.getKey())) {
+                    entry.getValue().state      = null;
+                    entry.getValue().generation = next;
+                    changed                     = true;
+                }
+            }
+            if (changed) {
+                generation = next;
+            }
+            registryGeneration = current;
+            return generation;
+        }
+    }
+
+    /**
+     * Returns the token of the specified generation of the log
+     *
+     * @param generation the generation of the log
+     * @return the token (never {@code null})
+     */
+    public String toToken(final long generation) {
+        return epoch + TOKEN_SEPARATOR + generation;
+    }
+
+    /**
+     * Returns the generation of the log of the specified token
+     *
+     * @param token the token
+     * @return the generation or {@code -1} if the token has been issued by
+     *         another log or is ahead of the last synchronization
+     *
+     * @throws NullPointerException if {@code token} is {@code null}
+     * @throws NumberFormatException if {@code token} does not end with a
+     *             generation
+     */
+    public long fromToken(final String token) {
+        requireNonNull(token, "Token cannot be null");
+
+        final int  separator = token.lastIndexOf(TOKEN_SEPARATOR);
+        final long parsed    = Long.parseLong(token.substring(separator + 1));
+        if (separator != epoch.length() || !token.startsWith(epoch) || parsed < 0) {
+            return -1;
+        }
+        synchronized (entries) {
+            return parsed <= generation ? parsed : -1;
+        }
+    }
+
+    /**
+     * Returns the identifiers of the features which have been added or updated
+     * after the specified generation of the log
+     *
+     * @param since the generation of the log
+     * @return the feature IDs in ascending order (never {@code null})
+     */
+    public Set<String> getUpdatedSince(final long since) {
+        return collect(since, false);
+    }
+
+    /**
+     * Returns the identifiers of the features which have been removed after
+     * the specified generation of the log
+     *
+     * @param since the generation of the log
+     * @return the feature IDs in ascending order (never {@code null})
+     */
+    public Set<String> getRemovedSince(final long since) {
+        return collect(since, true);
+    }
+
+    private Set<String> collect(final long since, final boolean isRemoved) {
+        final Set<String> featureIDs = new TreeSet<>();
+        synchronized (entries) {
+            entries.forEach((id, entry) -> {
+                if (entry.generation > since && entry.state == null == isRemoved) {
+                    featureIDs.add(id);
+                }
+            });
+        }
+        return featureIDs;
+    }
+
+    private static List<Object> stateOf(final FeatureDTO feature) {
+        final List<String> prerequisites = feature.prerequisites == null ? null
+                : Arrays.asList(feature.prerequisites);
+        return Arrays.asList(feature.bundleId, feature.name, feature.description, feature.isEnabled,
+                feature.isEffectivelyEnabled, prerequisites, feature.value);
+    }
+
+}
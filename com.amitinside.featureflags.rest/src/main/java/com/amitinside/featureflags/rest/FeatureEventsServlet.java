@@ -0,0 +1,333 @@
+package com.amitinside.featureflags.rest;
+
+import static com.amitinside.featureflags.rest.FeatureJson.writeChanges;
+import static com.amitinside.featureflags.rest.FeatureJson.writeFeatures;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Servlet;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.http.whiteboard.annotations.RequireHttpWhiteboard;
+import org.osgi.service.http.whiteboard.propertytypes.HttpWhiteboardServletAsyncSupported;
+import org.osgi.service.http.whiteboard.propertytypes.HttpWhiteboardServletPattern;
+
+import com.amitinside.featureflags.api.FeatureListener;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+import com.amitinside.featureflags.rest.EventBuffer.Event;
+
+/**
+ * Streams the changes of the features as Server-Sent Events.
+ *
+ * <p>
+ * {@code GET /feature-events} opens a stream of {@code features} events whose
+ * data has the same JSON format as the responses of the
+ * {@link FeatureFlagsServlet}. The first event carries the states of all
+ * features and every subsequent event the changes since the previous one. The
+ * identifier of every event is the token of the generation of the
+ * {@link FeatureChangeLog}, so that a reconnecting client sending the
+ * identifier of the last received event as {@code Last-Event-ID} header
+ * resumes with the changes it missed. Identifiers which have not been issued
+ * by the current change log (e.g. before a restart) cannot be resumed and
+ * receive all features instead.
+ * </p>
+ *
+ * <p>
+ * The servlet is registered as {@link FeatureListener} and encodes every
+ * change exactly once into an {@link EventBuffer} shared by all subscribers.
+ * The subscribers are written to with non-blocking I/O, so that slow clients
+ * neither block the notifications nor the other subscribers. A subscriber
+ * lagging behind by more than the capacity of the buffer receives the changes
+ * it missed as a single event instead.
+ * </p>
+ */
+@RequireHttpWhiteboard
+@HttpWhiteboardServletAsyncSupported
+@HttpWhiteboardServletPattern(FeatureEventsServlet.PATTERN)
+@Component(service = { Servlet.class, FeatureListener.class })
+public final class FeatureEventsServlet extends HttpServlet implements FeatureListener {
+
+    /** The URL pattern of the servlet */
+    static final String              PATTERN              = "/feature-events";
+
+    /** The header of the identifier of the last event received by a reconnecting client */
+    static final String              LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /** The name of the events */
+    static final String              EVENT_NAME           = "features";
+
+    /** The number of buffered events */
+    static final int                 BUFFER_CAPACITY      = 1024;
+
+    /** The content type of the responses */
+    private static final String      CONTENT_TYPE         = "text/event-stream";
+
+    private static final long        serialVersionUID     = 1L;
+
+    /** The change log of the streamed features */
+    private final FeatureChangeLog   changeLog            = new FeatureChangeLog();
+
+    /** The encoded events shared by all subscribers */
+    private final EventBuffer        buffer               = new EventBuffer(BUFFER_CAPACITY);
+
+    /** The connected subscribers */
+    private final Set<Subscriber>    subscribers          = ConcurrentHashMap.newKeySet();
+
+    /** The generation of the last published event (guarded by {@code buffer}) */
+    private long                     lastGeneration;
+
+    /** Feature Manager Service Instance Reference */
+    @Reference
+    private transient FeatureManager featureManager;
+
+    @Activate
+    protected void activate() {
+        synchronized (buffer) {
+            lastGeneration = changeLog.sync(featureManager);
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        subscribers.forEach(Subscriber::close);
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        // the head is read before the log is synchronized, so that no subsequent event is missed
+        final long   next       = buffer.getHead();
+        final long   generation = changeLog.sync(featureManager);
+        final String header     = request.getHeader(LAST_EVENT_ID_HEADER);
+        long         since      = -1;
+        try {
+            if (header != null) {
+                since = changeLog.fromToken(header.trim());
+            }
+        } catch (final NumberFormatException e) {
+            // the client cannot be resumed and receives all features instead
+        }
+        final Event initial = since == generation ? null : new Event(-1, generation, encode(generation, since));
+
+        final AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        final ServletOutputStream out        = response.getOutputStream();
+        final Subscriber          subscriber = new Subscriber(context, out, next, generation, initial);
+        subscribers.add(subscriber);
+        context.addListener(subscriber);
+        out.setWriteListener(subscriber);
+    }
+
+    @Override
+    public void featuresChanged(final FeatureSnapshot snapshot) {
+        synchronized (buffer) {
+            final long generation = changeLog.sync(featureManager);
+            if (generation > lastGeneration) {
+                buffer.publish(generation, encode(generation, lastGeneration));
+                lastGeneration = generation;
+            }
+        }
+        subscribers.forEach(Subscriber::drain);
+    }
+
+    /**
+     * Returns the number of connected subscribers
+     *
+     * @return the number of subscribers
+     */
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Encodes an event of the specified generation
+     *
+     * @param generation the generation of the log
+     * @param since the generation of the log to encode the changes since or
+     *            {@code -1} to encode all features
+     * @return the encoded event
+     */
+    private byte[] encode(final long generation, final long since) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final Writer writer = new OutputStreamWriter(bytes, UTF_8);
+            final String token = changeLog.toToken(generation);
+            writer.write("id: " + token + "\nevent: " + EVENT_NAME + "\ndata: ");
+            // the JSON never contains line breaks and thus fits into a single data field
+            final JsonWriter json = new JsonWriter(writer);
+            json.beginObject()
+                    .name("generation")
+                    .value(token);
+            if (since < 0) {
+                json.name("features");
+                writeFeatures(json, featureManager.getFeatures()
+                        .iterator());
+            } else {
+                json.name("since")
+                        .value(changeLog.toToken(since));
+                writeChanges(json, featureManager, changeLog.getUpdatedSince(since),
+                        changeLog.getRemovedSince(since));
+            }
+            json.endObject();
+            writer.write("\n\n");
+            writer.flush();
+        } catch (final IOException e) {
+            // cannot happen as the event is written to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A connected client which reads the buffered events with its own cursor
+     */
+    private final class Subscriber implements WriteListener, AsyncListener {
+
+        /** The asynchronous context of the request */
+        private final AsyncContext        context;
+
+        /** The output stream of the response */
+        private final ServletOutputStream out;
+
+        /** The sequence of the next buffered event to write (guarded by {@code this}) */
+        private long                      next;
+
+        /** The generation of the last written event (guarded by {@code this}) */
+        private long                      generation;
+
+        /** The event which has to be written next (guarded by {@code this}) */
+        private Event                     pending;
+
+        /** Whether events have been written since the last flush (guarded by {@code this}) */
+        private boolean                   isDirty;
+
+        /** Whether the subscriber has been disconnected */
+        private volatile boolean          isClosed;
+
+        private Subscriber(final AsyncContext context, final ServletOutputStream out, final long next,
+                final long generation, final Event initial) {
+            this.context    = context;
+            this.out        = out;
+            this.next       = next;
+            this.generation = generation;
+            pending         = initial;
+        }
+
+        /**
+         * Writes the pending events as long as the output stream does not
+         * block
+         */
+        private synchronized void drain() {
+            try {
+                while (!isClosed && out.isReady()) {
+                    if (pending == null) {
+                        pending = poll();
+                    }
+                    if (pending == null) {
+                        if (isDirty) {
+                            isDirty = false;
+                            out.flush();
+                        }
+                        return;
+                    }
+                    out.write(pending.data);
+                    pending = null;
+                    isDirty = true;
+                }
+            } catch (final IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Returns the next event to write or {@code null} if the subscriber
+         * has caught up
+         */
+        private Event poll() {
+            while (next < buffer.getHead()) {
+                final Event event = buffer.get(next);
+                if (event == null) {
+                    // overrun by the publisher, resume with the missed changes at once
+                    next = buffer.getHead();
+                    final long current = changeLog.sync(featureManager);
+                    if (current > generation) {
+                        final Event missed = new Event(-1, current, encode(current, generation));
+                        generation = current;
+                        return missed;
+                    }
+                    continue;
+                }
+                next++;
+                if (event.generation > generation) {
+                    generation = event.generation;
+                    return event;
+                }
+            }
+            return null;
+        }
+
+        private void close() {
+            isClosed = true;
+            subscribers.remove(this);
+            try {
+                context.complete();
+            } catch (final IllegalStateException e) {
+                // already completed by the container
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            isClosed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // not restarted
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.amitinside.featureflags.rest;
+
+import static com.amitinside.featureflags.rest.FeatureJson.writeChanges;
+import static com.amitinside.featureflags.rest.FeatureJson.writeFeatures;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.http.whiteboard.annotations.RequireHttpWhiteboard;
+import org.osgi.service.http.whiteboard.propertytypes.HttpWhiteboardServletPattern;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+
+/**
+ * Exposes the features of the {@link FeatureManager} as JSON.
+ *
+ * <p>
+ * {@code GET /features} returns all features and {@code GET /features/X}
+ * returns the features with the identifier {@code X}. Every response carries
+ * the token of the generation of the {@link FeatureChangeLog} as
+ * {@code ETag}, so that polling clients sending it back as
+ * {@code If-None-Match} receive {@code 304 Not Modified} as long as nothing
+ * has changed. With the {@code since} query parameter, only the features
+ * changed after the generation of the specified token are returned together
+ * with the identifiers of the removed features. Tokens which have not been
+ * issued by the current change log (e.g. before a restart) never match and
+ * are answered with all features instead.
+ * </p>
+ *
+ * <p>
+ * The JSON is streamed to the response while the features are traversed.
+ * </p>
+ */
+@RequireHttpWhiteboard
+@Component(service = Servlet.class)
+@HttpWhiteboardServletPattern(FeatureFlagsServlet.PATTERN)
+public final class FeatureFlagsServlet extends HttpServlet {
+
+    /** The URL pattern of the servlet */
+    static final String              PATTERN          = "/features/*";
+
+    /** The query parameter of the generation to return the changes since */
+    static final String              SINCE_PARAMETER  = "since";
+
+    /** The content type of the responses */
+    private static final String      CONTENT_TYPE     = "application/json";
+
+    private static final long        serialVersionUID = 1L;
+
+    /** The change log of the exposed features */
+    private final FeatureChangeLog   changeLog        = new FeatureChangeLog();
+
+    /** Feature Manager Service Instance Reference */
+    @Reference
+    private transient FeatureManager featureManager;
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String path      = request.getPathInfo();
+        final String featureID = path == null || path.length() <= 1 ? null : path.substring(1);
+        final String since     = request.getParameter(SINCE_PARAMETER);
+
+        final long generation      = changeLog.sync(featureManager);
+        long       sinceGeneration = -1;
+        if (since != null) {
+            try {
+                sinceGeneration = changeLog.fromToken(since);
+            } catch (final NumberFormatException e) {
+                response.sendError(SC_BAD_REQUEST, "Invalid generation: " + since);
+                return;
+            }
+        }
+        final String etag = "\"" + changeLog.toToken(generation) + "\"";
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            return;
+        }
+        // removed features are reported as part of the changes
+        final boolean isDelta = sinceGeneration >= 0;
+        if (featureID != null && !isDelta && !featureManager.getFeatures(featureID)
+                .findAny()
+                .isPresent()) {
+            response.sendError(SC_NOT_FOUND, "Feature not found: " + featureID);
+            return;
+        }
+        response.setHeader("ETag", etag);
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+
+        final JsonWriter json = new JsonWriter(response.getWriter());
+        json.beginObject()
+                .name("generation")
+                .value(changeLog.toToken(generation));
+        if (!isDelta) {
+            final Stream<FeatureDTO> features = featureID == null ? featureManager.getFeatures()
+                    : featureManager.getFeatures(featureID);
+            json.name("features");
+            writeFeatures(json, features.iterator());
+        } else {
+            final Set<String> updated = changeLog.getUpdatedSince(sinceGeneration);
+            final Set<String> removed = changeLog.getRemovedSince(sinceGeneration);
+            if (featureID != null) {
+                updated.retainAll(Collections.singleton(featureID));
+                removed.retainAll(Collections.singleton(featureID));
+            }
+            json.name("since")
+                    .value(changeLog.toToken(sinceGeneration));
+            writeChanges(json, featureManager, updated, removed);
+        }
+        json.endObject();
+    }
+
+    /**
+     * Checks whether the specified {@code If-None-Match} header matches the
+     * specified entity tag
+     */
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String tag : ifNoneMatch.split(",")) {
+            final String trimmed = tag.trim();
+            if ("*".equals(trimmed) || etag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
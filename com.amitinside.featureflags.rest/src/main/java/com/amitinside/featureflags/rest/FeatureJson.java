@@ -0,0 +1,86 @@
+package com.amitinside.featureflags.rest;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+
+/**
+ * Writes the JSON representation of the features shared by the servlets.
+ */
+final class FeatureJson {
+
+    /** Constructor */
+    private FeatureJson() {
+        throw new IllegalAccessError("Non-Instantiable");
+    }
+
+    /**
+     * Writes the specified features as JSON array
+     *
+     * @param json the JSON writer
+     * @param features the features to write
+     * @throws IOException if the features cannot be written
+     */
+    static void writeFeatures(final JsonWriter json, final Iterator<FeatureDTO> features) throws IOException {
+        json.beginArray();
+        while (features.hasNext()) {
+            final FeatureDTO feature = features.next();
+            json.beginObject()
+                    .name("id")
+                    .value(feature.id)
+                    .name("bundleId")
+                    .value(feature.bundleId)
+                    .name("name")
+                    .value(feature.name)
+                    .name("description")
+                    .value(feature.description)
+                    .name("isEnabled")
+                    .value(feature.isEnabled)
+                    .name("isEffectivelyEnabled")
+                    .value(feature.isEffectivelyEnabled)
+                    .name("prerequisites")
+                    .beginArray();
+            if (feature.prerequisites != null) {
+                for (final String prerequisite : feature.prerequisites) {
+                    json.value(prerequisite);
+                }
+            }
+            json.endArray();
+            if (feature.value != null) {
+                json.name("value")
+                        .value(feature.value);
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    /**
+     * Writes the current states of the updated features as {@code features}
+     * member and the identifiers of the removed features as {@code removed}
+     * member of the current object
+     *
+     * @param json the JSON writer
+     * @param featureManager the feature manager to retrieve the current states
+     * @param updated the identifiers of the updated features
+     * @param removed the identifiers of the removed features
+     * @throws IOException if the changes cannot be written
+     */
+    static void writeChanges(final JsonWriter json, final FeatureManager featureManager, final Set<String> updated,
+            final Set<String> removed) throws IOException {
+        json.name("features");
+        writeFeatures(json, updated.stream()
+                .flatMap(featureManager::getFeatures)
+                .iterator());
+        json.name("removed")
+                .beginArray();
+        for (final String id : removed) {
+            json.value(id);
+        }
+        json.endArray();
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.amitinside.featureflags.rest;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal JSON writer which streams the tokens directly to the underlying
+ * {@link Writer} without building any intermediate string.
+ *
+ * <p>
+ * The writer only keeps track of the nesting to place the separators and
+ * does not validate the written structure.
+ * </p>
+ *
+ * @NotThreadSafe
+ */
+public final class JsonWriter {
+
+    /** The underlying writer */
+    private final Writer         writer;
+
+    /** Whether the current object or array already has an element */
+    private final Deque<Boolean> hasElements = new ArrayDeque<>();
+
+    /** Whether a name has been written whose value is pending */
+    private boolean              isNamed;
+
+    /**
+     * Constructor
+     *
+     * @param writer the underlying writer
+     *
+     * @throws NullPointerException if {@code writer} is {@code null}
+     */
+    public JsonWriter(final Writer writer) {
+        this.writer = requireNonNull(writer, "Writer instance cannot be null");
+    }
+
+    /**
+     * Begins an object
+     *
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Ends the current object
+     *
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Begins an array
+     *
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Ends the current array
+     *
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object
+     *
+     * @param name the name
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter name(final String name) throws IOException {
+        separate();
+        string(name);
+        writer.write(':');
+        isNamed = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value
+     *
+     * @param value the value (might be {@code null})
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter value(final String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter value(final boolean value) throws IOException {
+        separate();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     *
+     * @param value the value
+     * @return this writer
+     * @throws IOException if the token cannot be written
+     */
+    public JsonWriter value(final long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the specified value as number, boolean or string depending on its
+     * type. Numbers which cannot be represented in JSON (infinity and NaN) are
+     * written as strings.
+     *
+     * @param value the value to write (might be {@code null})
+     * @return this writer
+     * @throws IOException if the value cannot be written
+     */
+    public JsonWriter value(final Object value) throws IOException {
+        if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Number) {
+            final double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return value(value.toString());
+            }
+            separate();
+            writer.write(value.toString());
+            return this;
+        }
+        return value(value == null ? null : value.toString());
+    }
+
+    private JsonWriter open(final char bracket) throws IOException {
+        separate();
+        writer.write(bracket);
+        hasElements.push(Boolean.FALSE);
+        return this;
+    }
+
+    private JsonWriter close(final char bracket) throws IOException {
+        hasElements.pop();
+        writer.write(bracket);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (isNamed) {
+            // the value of a name
+            isNamed = false;
+            return;
+        }
+        if (hasElements.isEmpty()) {
+            return;
+        }
+        if (hasElements.peek()) {
+            writer.write(',');
+        } else {
+            hasElements.pop();
+            hasElements.push(Boolean.TRUE);
+        }
+    }
+
+    private void string(final String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char   c = value.charAt(i);
+            final String escaped;
+            switch (c) {
+                case '"':
+                    escaped = "\\\"";
+                    break;
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                case '\t':
+                    escaped = "\\t";
+                    break;
+                default:
+                    // line separators are escaped for embedding into scripts
+                    escaped = c < 0x20 || c == 0x2028 || c == 0x2029 ? String.format("\\u%04x", (int) c) : null;
+            }
+            if (escaped != null) {
+                writer.write(value, start, i - start);
+                writer.write(escaped);
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.amitinside.featureflags.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.amitinside.featureflags.rest.EventBuffer.Event;
+
+public final class EventBufferTest {
+
+    @Test
+    public void testPublishAndGet() {
+        final EventBuffer buffer = new EventBuffer(4);
+        final byte[]      data   = new byte[] { 1 };
+
+        assertNull(buffer.get(0));
+
+        final Event event = buffer.publish(7, data);
+        assertEquals(0, event.sequence);
+        assertEquals(7, event.generation);
+        assertSame(data, event.data);
+        assertSame(event, buffer.get(0));
+        assertEquals(1, buffer.getHead());
+        assertNull(buffer.get(1));
+    }
+
+    @Test
+    public void testOverwrittenEventsAreNotReturned() {
+        final EventBuffer buffer = new EventBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.publish(i, new byte[0]);
+        }
+
+        for (int i = 0; i < 6; i++) {
+            assertNull(buffer.get(i));
+        }
+        for (int i = 6; i < 10; i++) {
+            assertEquals(i, buffer.get(i).generation);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIAEinCapacity() {
+        new EventBuffer(0);
+    }
+
+}
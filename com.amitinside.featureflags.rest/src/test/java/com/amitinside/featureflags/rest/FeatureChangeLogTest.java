@@ -0,0 +1,124 @@
+package com.amitinside.featureflags.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureChangeLogTest {
+
+    @Mock
+    private FeatureManager  featureManager;
+    @Mock
+    private FeatureSnapshot snapshot;
+
+    @Test
+    public void testChangesSinceGeneration() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog();
+        when(featureManager.snapshot()).thenReturn(snapshot);
+
+        when(snapshot.getGeneration()).thenReturn(7L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", true), feature("b", true))
+                .stream());
+        assertEquals(1, changeLog.sync(featureManager));
+
+        when(snapshot.getGeneration()).thenReturn(8L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", false), feature("c", true))
+                .stream());
+        assertEquals(2, changeLog.sync(featureManager));
+
+        // removed features are only reported as removed
+        assertEquals(Arrays.asList("a", "c"), Arrays.asList(changeLog.getUpdatedSince(0)
+                .toArray()));
+        assertEquals(Arrays.asList("a", "c"), Arrays.asList(changeLog.getUpdatedSince(1)
+                .toArray()));
+        assertEquals(Collections.singleton("b"), changeLog.getRemovedSince(1));
+        assertTrue(changeLog.getRemovedSince(0)
+                .contains("b"));
+        assertTrue(changeLog.getUpdatedSince(2)
+                .isEmpty());
+    }
+
+    @Test
+    public void testUnchangedRegistryIsNotCompared() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog();
+        when(featureManager.snapshot()).thenReturn(snapshot);
+        when(snapshot.getGeneration()).thenReturn(3L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", true))
+                .stream());
+
+        assertEquals(1, changeLog.sync(featureManager));
+        assertEquals(1, changeLog.sync(featureManager));
+        verify(featureManager, times(1)).getFeatures();
+
+        // an advanced registry generation without any change of the features
+        when(snapshot.getGeneration()).thenReturn(4L);
+        assertEquals(1, changeLog.sync(featureManager));
+    }
+
+    @Test
+    public void testFeaturesWithSameIdentifier() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog();
+        when(featureManager.snapshot()).thenReturn(snapshot);
+
+        when(snapshot.getGeneration()).thenReturn(1L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", true), feature("a", false))
+                .stream());
+        assertEquals(1, changeLog.sync(featureManager));
+
+        // the order of the features does not matter
+        when(snapshot.getGeneration()).thenReturn(2L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", false), feature("a", true))
+                .stream());
+        assertEquals(1, changeLog.sync(featureManager));
+    }
+
+    @Test
+    public void testTokens() {
+        final FeatureChangeLog changeLog = new FeatureChangeLog();
+        final FeatureChangeLog restarted = new FeatureChangeLog();
+        when(featureManager.snapshot()).thenReturn(snapshot);
+        when(snapshot.getGeneration()).thenReturn(1L);
+        when(featureManager.getFeatures()).thenAnswer(i -> Arrays.asList(feature("a", true))
+                .stream());
+        assertEquals(1, changeLog.sync(featureManager));
+        assertEquals(1, restarted.sync(featureManager));
+
+        assertEquals(1, changeLog.fromToken(changeLog.toToken(1)));
+        assertEquals(0, changeLog.fromToken(changeLog.toToken(0)));
+
+        // tokens of other logs and generations ahead of the log are not resolved
+        assertEquals(-1, changeLog.fromToken(restarted.toToken(1)));
+        assertEquals(-1, changeLog.fromToken("1"));
+        assertEquals(-1, changeLog.fromToken(changeLog.toToken(2)));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testInvalidToken() {
+        new FeatureChangeLog().fromToken("abc-x");
+    }
+
+    static FeatureDTO feature(final String id, final boolean isEnabled) {
+        final FeatureDTO feature = new FeatureDTO();
+        feature.id                   = id;
+        feature.name                 = id;
+        feature.isEnabled            = isEnabled;
+        feature.isEffectivelyEnabled = isEnabled;
+        return feature;
+    }
+
+}
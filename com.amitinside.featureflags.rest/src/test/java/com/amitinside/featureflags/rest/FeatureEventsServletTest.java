@@ -0,0 +1,343 @@
+package com.amitinside.featureflags.rest;
+
+import static com.amitinside.featureflags.rest.FeatureChangeLogTest.feature;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureEventsServletTest {
+
+    @Mock
+    private FeatureManager        featureManager;
+    @Mock
+    private FeatureSnapshot       snapshot;
+
+    @InjectMocks
+    private FeatureEventsServlet  servlet;
+
+    private final AtomicLong      registryGeneration = new AtomicLong(1);
+
+    private volatile FeatureDTO[] features;
+
+    /**
+     * Simulated client whose output stream only accepts writes while ready
+     */
+    private final class Client extends ServletOutputStream {
+        private final HttpServletRequest  request  = mock(HttpServletRequest.class);
+        private final HttpServletResponse response = mock(HttpServletResponse.class);
+        private final AsyncContext        context  = mock(AsyncContext.class);
+        private final List<byte[]>        frames   = new ArrayList<>();
+        private boolean                   isReady  = true;
+        private boolean                   isSlow;
+        private boolean                   isBroken;
+        private WriteListener             listener;
+
+        private Client(final String lastEventID) throws IOException {
+            when(request.getHeader("Last-Event-ID")).thenReturn(lastEventID);
+            when(request.startAsync()).thenReturn(context);
+            when(response.getOutputStream()).thenReturn(this);
+        }
+
+        private Client connect() throws IOException {
+            servlet.doGet(request, response);
+            return this;
+        }
+
+        private void resume() throws IOException {
+            isReady = true;
+            listener.onWritePossible();
+        }
+
+        @Override
+        public boolean isReady() {
+            return isReady;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener listener) {
+            this.listener = listener;
+            if (isReady) {
+                try {
+                    listener.onWritePossible();
+                } catch (final IOException e) {
+                    listener.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void write(final byte[] frame) throws IOException {
+            if (isBroken) {
+                throw new IOException("Connection reset");
+            }
+            frames.add(frame);
+            isReady = !isSlow;
+        }
+
+        @Override
+        public void write(final int b) {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<Long> ids() {
+            final List<Long> ids = new ArrayList<>();
+            for (final byte[] frame : frames) {
+                final String event = new String(frame, UTF_8);
+                ids.add(Long.parseLong(event.substring(event.indexOf('-') + 1, event.indexOf('\n'))));
+            }
+            return ids;
+        }
+
+        private String event(final int index) {
+            return new String(frames.get(index), UTF_8);
+        }
+
+        /**
+         * Returns the token of the specified generation of the servlet's
+         * change log
+         */
+        private String token(final long generation) {
+            final String event = event(0);
+            return event.substring(4, event.indexOf('-') + 1) + generation;
+        }
+
+        /**
+         * Returns the beginning of an event of the specified generation
+         */
+        private String header(final long generation) {
+            return "id: " + token(generation) + "\nevent: features\ndata: {\"generation\":\"" + token(generation)
+                    + "\",";
+        }
+
+        /**
+         * Returns the beginning of an event of the changes between the
+         * specified generations
+         */
+        private String header(final long generation, final long since) {
+            return header(generation) + "\"since\":\"" + token(since) + "\",";
+        }
+    }
+
+    @Before
+    public void setUp() {
+        features = new FeatureDTO[] { feature("a", true), feature("b", false) };
+        when(featureManager.snapshot()).thenReturn(snapshot);
+        when(snapshot.getGeneration()).thenAnswer(i -> registryGeneration.get());
+        when(featureManager.getFeatures()).thenAnswer(i -> Stream.of(features));
+        when(featureManager.getFeatures(anyString())).thenAnswer(i -> Arrays.stream(features)
+                .filter(f -> f.id.equals(i.getArguments()[0])));
+        servlet.activate();
+    }
+
+    @Test
+    public void testInitialStateAndChanges() throws Exception {
+        final Client client = new Client(null).connect();
+
+        verify(client.response).setContentType("text/event-stream");
+        verify(client.context).setTimeout(0);
+        assertEquals(client.header(1) + "\"features\":[" + json("a", true) + "," + json("b", false) + "]}\n\n",
+                client.event(0));
+
+        change(feature("a", false), feature("c", true));
+
+        assertEquals(client.header(2, 1) + "\"features\":[" + json("a", false) + "," + json("c", true)
+                + "],\"removed\":[\"b\"]}\n\n", client.event(1));
+        assertEquals(2, client.frames.size());
+    }
+
+    @Test
+    public void testResumeWithLastEventID() throws Exception {
+        final Client first = new Client(null).connect();
+        change(feature("a", false), feature("b", false));
+        change(feature("a", false), feature("b", true));
+
+        final Client resumed = new Client(first.token(1)).connect();
+        assertEquals(first.header(3, 1) + "\"features\":[" + json("a", false) + "," + json("b", true)
+                + "],\"removed\":[]}\n\n", resumed.event(0));
+
+        final Client upToDate = new Client(first.token(3)).connect();
+        assertTrue(upToDate.frames.isEmpty());
+        change(feature("a", true), feature("b", true));
+        assertEquals(Arrays.asList(4L), upToDate.ids());
+
+        // identifiers of another log (e.g. before a restart), ahead of the log and invalid receive all features
+        for (final String lastEventID : Arrays.asList("0123abcd-1", "1", first.token(99), "x")) {
+            assertTrue(new Client(lastEventID).connect()
+                    .event(0)
+                    .startsWith(first.header(4) + "\"features\":["));
+        }
+    }
+
+    @Test
+    public void testOverrunSubscriberReceivesMissedChangesAtOnce() throws Exception {
+        final Client client = new Client(null);
+        client.isReady = false;
+        client.connect();
+
+        for (int i = 0; i < FeatureEventsServlet.BUFFER_CAPACITY + 10; i++) {
+            change(feature("a", i % 2 == 1), feature("b", false));
+        }
+        client.resume();
+
+        final long last = FeatureEventsServlet.BUFFER_CAPACITY + 11;
+        assertEquals(Arrays.asList(1L, last), client.ids());
+        assertEquals(client.header(last, 1) + "\"features\":[" + json("a", true) + "],\"removed\":[]}\n\n",
+                client.event(1));
+    }
+
+    @Test
+    public void testManySubscribersShareOneBuffer() throws Exception {
+        final List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final Client client = new Client(null);
+            client.isSlow = i % 2 == 1;
+            clients.add(client.connect());
+        }
+        assertEquals(5000, servlet.getSubscriberCount());
+
+        for (int i = 0; i < 100; i++) {
+            change(feature("a", i % 2 == 1), feature("b", false));
+            if (i % 10 == 0) {
+                for (final Client client : clients) {
+                    if (client.isSlow) {
+                        client.resume();
+                    }
+                }
+            }
+        }
+        for (final Client client : clients) {
+            client.isSlow = false;
+            client.resume();
+        }
+
+        final Client fast = clients.get(0);
+        assertEquals(101, fast.frames.size());
+        for (final Client client : clients) {
+            assertInOrder(client.ids(), 101);
+            for (int i = 1; i < client.frames.size(); i++) {
+                // every change is encoded once for all subscribers
+                assertSame(fast.frames.get(i), client.frames.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentSubscribersAndChanges() throws Exception {
+        final List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final Client client = new Client(null);
+            client.isSlow = i % 3 == 0;
+            clients.add(client);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final CountDownLatch  start    = new CountDownLatch(1);
+        final List<Future<?>> futures  = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final List<Client> batch = clients.subList(t * 250, (t + 1) * 250);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (final Client client : batch) {
+                    client.connect();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < 200; i++) {
+            change(feature("a", i % 2 == 0), feature("b", i % 3 == 0));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // changes observed by a connecting subscriber in between might be merged
+        final long last = new Client(null).connect()
+                .ids()
+                .get(0);
+        for (final Client client : clients) {
+            client.isSlow = false;
+            client.resume();
+            assertInOrder(client.ids(), last);
+        }
+    }
+
+    @Test
+    public void testDisconnectedSubscribersAreRemoved() throws Exception {
+        final Client completed = new Client(null).connect();
+        final Client broken    = new Client(null).connect();
+        final Client remaining = new Client(null).connect();
+        assertEquals(3, servlet.getSubscriberCount());
+
+        final ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(completed.context).addListener(listener.capture());
+        listener.getValue()
+                .onComplete(new AsyncEvent(completed.context));
+        assertEquals(2, servlet.getSubscriberCount());
+
+        broken.isBroken = true;
+        change(feature("a", false), feature("b", false));
+        verify(broken.context).complete();
+        assertEquals(1, servlet.getSubscriberCount());
+
+        servlet.deactivate();
+        verify(remaining.context).complete();
+        assertEquals(0, servlet.getSubscriberCount());
+    }
+
+    private void change(final FeatureDTO... features) {
+        this.features = features;
+        registryGeneration.incrementAndGet();
+        servlet.featuresChanged(snapshot);
+    }
+
+    private static void assertInOrder(final List<Long> ids, final long last) {
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i));
+        }
+        assertEquals(last, (long) ids.get(ids.size() - 1));
+    }
+
+    private static String json(final String id, final boolean isEnabled) {
+        return "{\"id\":\"" + id + "\",\"bundleId\":0,\"name\":\"" + id + "\",\"description\":null,\"isEnabled\":"
+                + isEnabled + ",\"isEffectivelyEnabled\":" + isEnabled + ",\"prerequisites\":[]}";
+    }
+
+}
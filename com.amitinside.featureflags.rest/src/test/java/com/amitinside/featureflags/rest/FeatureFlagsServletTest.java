@@ -0,0 +1,205 @@
+package com.amitinside.featureflags.rest;
+
+import static com.amitinside.featureflags.rest.FeatureChangeLogTest.feature;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.amitinside.featureflags.api.FeatureDTO;
+import com.amitinside.featureflags.api.FeatureManager;
+import com.amitinside.featureflags.api.FeatureSnapshot;
+
+@RunWith(MockitoJUnitRunner.class)
+public final class FeatureFlagsServletTest {
+
+    @Mock
+    private FeatureManager      featureManager;
+    @Mock
+    private FeatureSnapshot     snapshot;
+    @Mock
+    private HttpServletRequest  request;
+    @Mock
+    private HttpServletResponse response;
+
+    @InjectMocks
+    private FeatureFlagsServlet servlet;
+    @InjectMocks
+    private FeatureFlagsServlet restarted;
+
+    private final StringWriter  body = new StringWriter();
+
+    @Before
+    public void setUp() throws Exception {
+        when(featureManager.snapshot()).thenReturn(snapshot);
+        when(snapshot.getGeneration()).thenReturn(1L);
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        mockFeatures(feature("a", true), feature("b", false));
+    }
+
+    @Test
+    public void testAllFeatures() throws Exception {
+        final FeatureDTO feature = feature("c", true);
+        feature.prerequisites = new String[] { "a" };
+        feature.value         = 5;
+        mockFeatures(feature("a", true), feature);
+
+        servlet.doGet(request, response);
+
+        assertTrue(etag().matches("\"[0-9a-f]+-1\""));
+        verify(response).setContentType("application/json");
+        assertEquals("{\"generation\":\"" + token(1) + "\",\"features\":[" + json("a", true)
+                + ",{\"id\":\"c\",\"bundleId\":0,\"name\":\"c\",\"description\":null,\"isEnabled\":true,"
+                + "\"isEffectivelyEnabled\":true,\"prerequisites\":[\"a\"],\"value\":5}]}", body.toString());
+    }
+
+    @Test
+    public void testSingleFeature() throws Exception {
+        when(request.getPathInfo()).thenReturn("/b");
+
+        servlet.doGet(request, response);
+
+        assertEquals("{\"generation\":\"" + token(1) + "\",\"features\":[" + json("b", false) + "]}",
+                body.toString());
+    }
+
+    @Test
+    public void testUnknownFeature() throws Exception {
+        when(request.getPathInfo()).thenReturn("/x");
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(SC_NOT_FOUND, "Feature not found: x");
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        servlet.doGet(request, response);
+
+        final String etag = etag();
+        when(request.getHeader("If-None-Match")).thenReturn("\"0\", W/" + etag);
+        servlet.doGet(request, response);
+
+        verify(response).setStatus(SC_NOT_MODIFIED);
+
+        // modified as soon as the features changed
+        when(snapshot.getGeneration()).thenReturn(2L);
+        mockFeatures(feature("a", false), feature("b", false));
+        servlet.doGet(request, response);
+
+        assertEquals("\"" + token(2) + "\"", etag());
+    }
+
+    @Test
+    public void testEntityTagOfAnotherLog() throws Exception {
+        servlet.doGet(request, response);
+        final String etag = etag();
+
+        // the same generation of a previous log (e.g. before a restart) never matches
+        when(request.getHeader("If-None-Match")).thenReturn(etag);
+        restarted.doGet(request, response);
+
+        verify(response, never()).setStatus(SC_NOT_MODIFIED);
+        assertNotEquals(etag, etag());
+    }
+
+    @Test
+    public void testDelta() throws Exception {
+        servlet.doGet(request, response);
+        final String since = token(1);
+
+        when(snapshot.getGeneration()).thenReturn(2L);
+        mockFeatures(feature("a", false), feature("c", true));
+        when(request.getParameter("since")).thenReturn(since);
+        final StringWriter delta = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(delta));
+        servlet.doGet(request, response);
+
+        assertEquals("{\"generation\":\"" + token(2) + "\",\"since\":\"" + since + "\",\"features\":["
+                + json("a", false) + "," + json("c", true) + "],\"removed\":[\"b\"]}", delta.toString());
+    }
+
+    @Test
+    public void testDeltaOfUnknownGeneration() throws Exception {
+        servlet.doGet(request, response);
+        final String ahead = token(5);
+
+        // generations of another log or ahead of this one are answered with all features
+        for (final String since : Arrays.asList("1", "0123abcd-1", ahead)) {
+            when(request.getParameter("since")).thenReturn(since);
+            final StringWriter full = new StringWriter();
+            when(response.getWriter()).thenReturn(new PrintWriter(full));
+            servlet.doGet(request, response);
+
+            assertEquals("{\"generation\":\"" + token(1) + "\",\"features\":[" + json("a", true) + ","
+                    + json("b", false) + "]}", full.toString());
+        }
+    }
+
+    @Test
+    public void testInvalidGeneration() throws Exception {
+        when(request.getParameter("since")).thenReturn("x");
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(SC_BAD_REQUEST, "Invalid generation: x");
+        verify(response, never()).setHeader(anyString(), anyString());
+    }
+
+    /**
+     * Returns the last entity tag sent
+     */
+    private String etag() {
+        final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response, atLeastOnce()).setHeader(eq("ETag"), etag.capture());
+        return etag.getValue();
+    }
+
+    /**
+     * Returns the token of the specified generation of the servlet's change
+     * log
+     */
+    private String token(final long generation) {
+        final String etag = etag();
+        return etag.substring(1, etag.lastIndexOf('-') + 1) + generation;
+    }
+
+    private void mockFeatures(final FeatureDTO... features) {
+        when(featureManager.getFeatures()).thenAnswer(i -> Stream.of(features));
+        for (final FeatureDTO feature : features) {
+            when(featureManager.getFeatures(feature.id)).thenAnswer(i -> Arrays.stream(features)
+                    .filter(f -> f.id.equals(feature.id)));
+        }
+        when(featureManager.getFeatures("x")).thenAnswer(i -> Stream.empty());
+    }
+
+    private static String json(final String id, final boolean isEnabled) {
+        return "{\"id\":\"" + id + "\",\"bundleId\":0,\"name\":\"" + id + "\",\"description\":null,\"isEnabled\":"
+                + isEnabled + ",\"isEffectivelyEnabled\":" + isEnabled + ",\"prerequisites\":[]}";
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.amitinside.featureflags.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public final class JsonWriterTest {
+
+    @Test
+    public void testStructure() throws IOException {
+        final StringWriter writer = new StringWriter();
+
+        new JsonWriter(writer).beginObject()
+                .name("a")
+                .value(1L)
+                .name("b")
+                .beginArray()
+                .value(true)
+                .value((String) null)
+                .beginObject()
+                .endObject()
+                .beginArray()
+                .endArray()
+                .endArray()
+                .name("c")
+                .value("x")
+                .endObject();
+
+        assertEquals("{\"a\":1,\"b\":[true,null,{},[]],\"c\":\"x\"}", writer.toString());
+    }
+
+    @Test
+    public void testEscaping() throws IOException {
+        final StringWriter writer = new StringWriter();
+
+        new JsonWriter(writer).value("a\"b\\c\nd\u0001e\u2028");
+
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001e\\u2028\"", writer.toString());
+    }
+
+    @Test
+    public void testObjectValues() throws IOException {
+        final StringWriter writer = new StringWriter();
+
+        new JsonWriter(writer).beginArray()
+                .value((Object) 5)
+                .value((Object) 2.5)
+                .value((Object) Double.NaN)
+                .value((Object) Boolean.FALSE)
+                .value((Object) "s")
+                .value((Object) null)
+                .endArray();
+
+        assertEquals("[5,2.5,\"NaN\",false,\"s\",null]", writer.toString());
+    }
+
+}